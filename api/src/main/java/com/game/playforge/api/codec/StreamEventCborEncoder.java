@@ -0,0 +1,74 @@
+package com.game.playforge.api.codec;
+
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.game.playforge.application.dto.AgentStreamEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * 流式事件CBOR编码器
+ * <p>
+ * 二进制子协议下使用，字段与 {@link StreamEventJsonEncoder} 的JSON帧一致（type、content、id），
+ * 编码为CBOR映射：字符串以长度前缀代替引号与转义，中文与Markdown内容无需转义开销。
+ * 按字段顺序直接流式写出，不经过Map与对象映射。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public final class StreamEventCborEncoder {
+
+    private static final CBORFactory FACTORY = new CBORFactory();
+
+    /**
+     * 复用缓冲区的当前分段超过该容量后不再保留（reset只清空已写长度，会保留编码超长内容时扩出的分段）
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private StreamEventCborEncoder() {
+    }
+
+    /**
+     * 编码为CBOR字节
+     */
+    public static byte[] encode(AgentStreamEvent event) {
+        return encode(event, new ByteArrayBuilder(256));
+    }
+
+    /**
+     * 使用调用方复用的缓冲区编码为CBOR字节（缓冲区不可并发使用）
+     */
+    public static byte[] encode(AgentStreamEvent event, ByteArrayBuilder buffer) {
+        buffer.reset();
+        boolean done = AgentStreamEvent.TYPE_DONE.equals(event.type());
+        int fields = 1 + (done ? 0 : 1) + (event.id() != null ? 1 : 0);
+        try (CBORGenerator generator = FACTORY.createGenerator(buffer)) {
+            generator.writeStartObject(null, fields);
+            generator.writeStringField("type", event.type());
+            if (!done) {
+                generator.writeStringField("content", event.content() != null ? event.content() : "");
+            }
+            if (event.id() != null) {
+                generator.writeStringField("id", event.id());
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("CBOR编码失败", e);
+        }
+        byte[] bytes = buffer.toByteArray();
+        buffer.reset();
+        return bytes;
+    }
+
+    /**
+     * 缓冲区用完后按容量决定是否继续复用
+     *
+     * @return 可继续复用的缓冲区
+     */
+    public static ByteArrayBuilder recycle(ByteArrayBuilder buffer) {
+        return buffer.getCurrentSegment().length > MAX_RETAINED_CAPACITY ? new ByteArrayBuilder(256) : buffer;
+    }
+}
@@ -0,0 +1,145 @@
+package com.game.playforge.api.codec;
+
+import com.game.playforge.application.dto.AgentStreamEvent;
+
+/**
+ * 流式事件JSON编码器
+ * <p>
+ * 流式事件每个分片都要编码一次，经由Map与ObjectMapper编码时每帧都会产生Map、节点与生成器对象。
+ * 这里按固定字段顺序直接写入调用方复用的缓冲区：已知事件类型的 {@code {"type":"...","content":"} 前缀预先拼好，
+ * 内容只对需要转义的字符逐个处理，其余连续片段整段追加。
+ * </p>
+ * <p>
+ * 输出格式：{@code {"type":"token","content":"...","id":"3-121"}}，done事件不含content，无事件ID时不含id。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public final class StreamEventJsonEncoder {
+
+    private static final String TOKEN_PREFIX = prefix(AgentStreamEvent.TYPE_TOKEN);
+    private static final String THINKING_PREFIX = prefix(AgentStreamEvent.TYPE_THINKING);
+    private static final String PROGRESS_PREFIX = prefix(AgentStreamEvent.TYPE_PROGRESS);
+    private static final String RESPONSE_PREFIX = prefix(AgentStreamEvent.TYPE_RESPONSE);
+    private static final String ERROR_PREFIX = prefix(AgentStreamEvent.TYPE_ERROR);
+    private static final String DONE_FRAME = "{\"type\":\"" + AgentStreamEvent.TYPE_DONE + "\"";
+    private static final String ID_FIELD = "\",\"id\":\"";
+    private static final String ID_FIELD_AFTER_TYPE = ",\"id\":\"";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * 复用缓冲区超过该容量后不再保留，避免偶发的超长内容长期占用内存
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private StreamEventJsonEncoder() {
+    }
+
+    /**
+     * 编码为JSON字符串
+     */
+    public static String encode(AgentStreamEvent event) {
+        return encode(event, new StringBuilder(estimateSize(event)));
+    }
+
+    /**
+     * 使用调用方复用的缓冲区编码为JSON字符串（缓冲区不可并发使用）
+     */
+    public static String encode(AgentStreamEvent event, StringBuilder buffer) {
+        buffer.setLength(0);
+        encodeTo(event, buffer);
+        return buffer.toString();
+    }
+
+    /**
+     * 把事件编码追加到缓冲区
+     */
+    public static void encodeTo(AgentStreamEvent event, StringBuilder out) {
+        String type = event.type();
+        if (AgentStreamEvent.TYPE_DONE.equals(type)) {
+            out.append(DONE_FRAME);
+            if (event.id() != null) {
+                out.append(ID_FIELD_AFTER_TYPE);
+                appendEscaped(out, event.id());
+                out.append('"');
+            }
+            out.append('}');
+            return;
+        }
+        String prefix = knownPrefix(type);
+        if (prefix != null) {
+            out.append(prefix);
+        } else {
+            out.append("{\"type\":\"");
+            appendEscaped(out, type);
+            out.append("\",\"content\":\"");
+        }
+        if (event.content() != null) {
+            appendEscaped(out, event.content());
+        }
+        if (event.id() != null) {
+            out.append(ID_FIELD);
+            appendEscaped(out, event.id());
+        }
+        out.append("\"}");
+    }
+
+    /**
+     * 缓冲区用完后按容量决定是否继续复用
+     *
+     * @return 可继续复用的缓冲区
+     */
+    public static StringBuilder recycle(StringBuilder buffer) {
+        return buffer.capacity() > MAX_RETAINED_CAPACITY ? new StringBuilder(256) : buffer;
+    }
+
+    private static String knownPrefix(String type) {
+        return switch (type) {
+            case AgentStreamEvent.TYPE_TOKEN -> TOKEN_PREFIX;
+            case AgentStreamEvent.TYPE_THINKING -> THINKING_PREFIX;
+            case AgentStreamEvent.TYPE_PROGRESS -> PROGRESS_PREFIX;
+            case AgentStreamEvent.TYPE_RESPONSE -> RESPONSE_PREFIX;
+            case AgentStreamEvent.TYPE_ERROR -> ERROR_PREFIX;
+            case null, default -> null;
+        };
+    }
+
+    private static void appendEscaped(StringBuilder out, String value) {
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            if (i > start) {
+                out.append(value, start, i);
+            }
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                case '\b' -> out.append("\\b");
+                case '\f' -> out.append("\\f");
+                default -> out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            }
+            start = i + 1;
+        }
+        if (start < length) {
+            out.append(value, start, length);
+        }
+    }
+
+    private static int estimateSize(AgentStreamEvent event) {
+        int content = event.content() != null ? event.content().length() : 0;
+        return 48 + content + (content >> 3);
+    }
+
+    private static String prefix(String type) {
+        return "{\"type\":\"" + type + "\",\"content\":\"";
+    }
+}
@@ -1,17 +1,25 @@
 package com.game.playforge.api.config;
 
 import com.game.playforge.api.websocket.AgentChatWebSocketHandler;
+import com.game.playforge.api.websocket.WebSocketSendProperties;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.List;
 
 /**
  * WebSocket配置
  * <p>
  * 注册Agent聊天WebSocket处理器到 {@code /ws/agent-chat} 路径。
+ * 容器内置permessage-deflate扩展，客户端声明支持时默认协商压缩，可通过
+ * {@code playforge.websocket.compression} 关闭。
  * </p>
  *
  * @author Richard Zhang
@@ -22,13 +30,37 @@ import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry
 @RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketConfigurer {
 
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
     private final AgentChatWebSocketHandler agentChatWebSocketHandler;
+    private final WebSocketSendProperties sendProperties;
     @Value("${app.security.websocket-allowed-origins:http://localhost:3000}")
     private String[] allowedOrigins;
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(agentChatWebSocketHandler, "/ws/agent-chat")
+                .setHandshakeHandler(new CompressionHandshakeHandler())
                 .setAllowedOrigins(allowedOrigins);
     }
+
+    /**
+     * 按配置决定是否保留客户端请求的permessage-deflate扩展
+     */
+    private class CompressionHandshakeHandler extends DefaultHandshakeHandler {
+
+        @Override
+        protected List<WebSocketExtension> filterRequestedExtensions(ServerHttpRequest request,
+                                                                     List<WebSocketExtension> requestedExtensions,
+                                                                     List<WebSocketExtension> supportedExtensions) {
+            List<WebSocketExtension> extensions =
+                    super.filterRequestedExtensions(request, requestedExtensions, supportedExtensions);
+            if (sendProperties.isCompression()) {
+                return extensions;
+            }
+            return extensions.stream()
+                    .filter(extension -> !PERMESSAGE_DEFLATE.equalsIgnoreCase(extension.getName()))
+                    .toList();
+        }
+    }
 }
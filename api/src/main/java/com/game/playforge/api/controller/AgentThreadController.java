@@ -1,5 +1,6 @@
 package com.game.playforge.api.controller;
 
+import com.game.playforge.api.codec.StreamEventJsonEncoder;
 import com.game.playforge.api.dto.request.ChatRequest;
 import com.game.playforge.api.dto.request.CreateThreadRequest;
 import com.game.playforge.api.dto.response.AgentMessageResponse;
@@ -11,6 +12,7 @@ import com.game.playforge.application.dto.AgentChatResponse;
 import com.game.playforge.application.dto.AgentStreamEvent;
 import com.game.playforge.application.service.AgentChatAppService;
 import com.game.playforge.application.service.AgentThreadService;
+import com.game.playforge.application.service.agent.StreamEventBatcher;
 import com.game.playforge.common.constant.AuthConstants;
 import com.game.playforge.common.result.ApiResult;
 import com.game.playforge.domain.model.AgentMessage;
@@ -21,9 +23,12 @@ import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 
 import java.io.IOException;
 
@@ -47,6 +52,7 @@ public class AgentThreadController {
     private final AgentChatAppService agentChatAppService;
     private final AgentThreadMapper agentThreadMapper;
     private final AgentMessageMapper agentMessageMapper;
+    private final StreamEventBatcher streamEventBatcher;
 
     /**
      * 创建会话
@@ -123,7 +129,9 @@ public class AgentThreadController {
      * @param request HTTP请求
      * @param id      会话ID
      * @param limit   查询条数
-     * @param offset  偏移量
+     * @param offset  偏移量（兼容旧客户端，指定游标时忽略）
+     * @param before  游标：返回该消息ID之前的消息
+     * @param after   游标：返回该消息ID之后的消息
      * @return 消息列表
      */
     @GetMapping("/{id}/messages")
@@ -131,10 +139,15 @@ public class AgentThreadController {
             HttpServletRequest request,
             @PathVariable Long id,
             @RequestParam(defaultValue = "50") @Min(value = 1, message = "limit最小为1") @Max(value = 200, message = "limit最大为200") int limit,
-            @RequestParam(defaultValue = "0") @Min(value = 0, message = "offset不能小于0") int offset) {
+            @RequestParam(defaultValue = "0") @Min(value = 0, message = "offset不能小于0") int offset,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after) {
         Long userId = (Long) request.getAttribute(AuthConstants.CURRENT_USER_ID);
-        log.info("获取消息历史, userId={}, threadId={}, limit={}, offset={}", userId, id, limit, offset);
-        List<AgentMessage> messages = agentThreadService.getMessageHistory(userId, id, limit, offset);
+        log.info("获取消息历史, userId={}, threadId={}, limit={}, offset={}, before={}, after={}",
+                userId, id, limit, offset, before, after);
+        List<AgentMessage> messages = before != null || after != null
+                ? agentThreadService.getMessageHistory(userId, id, limit, before, after)
+                : agentThreadService.getMessageHistory(userId, id, limit, offset);
         return ApiResult.success(agentMessageMapper.toResponseList(messages));
     }
 
@@ -183,43 +196,87 @@ public class AgentThreadController {
      * @param request     HTTP请求
      * @param id          会话ID
      * @param chatRequest 聊天请求
+     * @param flushMs     token/thinking分片合并窗口（毫秒，0为逐个下发，可选）
      * @return SSE事件流
      */
     @PostMapping("/{id}/chat-progress")
     public SseEmitter chatWithProgress(
             HttpServletRequest request,
             @PathVariable Long id,
-            @Valid @RequestBody ChatRequest chatRequest) {
+            @Valid @RequestBody ChatRequest chatRequest,
+            @RequestParam(required = false) Long flushMs) {
         Long userId = (Long) request.getAttribute(AuthConstants.CURRENT_USER_ID);
         log.info("带进度聊天(SSE), userId={}, threadId={}", userId, id);
 
         SseEmitter emitter = new SseEmitter(1_800_000L); // 30 minutes for long Lead Agent workflows
 
-        agentChatAppService.chatWithProgress(userId, id, chatRequest.getMessage())
-                .subscribe(
-                        event -> {
-                            try {
-                                emitter.send(SseEmitter.event()
-                                        .name(event.type())
-                                        .data(event));
-                            } catch (IOException e) {
-                                log.warn("SSE发送失败, threadId={}", id, e);
-                                emitter.completeWithError(e);
-                            }
-                        },
-                        error -> {
-                            log.error("SSE流错误, threadId={}", id, error);
-                            try {
-                                emitter.send(SseEmitter.event()
-                                        .name("error")
-                                        .data(new AgentStreamEvent("error", error.getMessage())));
-                            } catch (IOException ignored) {
-                            }
-                            emitter.complete();
-                        },
-                        emitter::complete
-                );
+        subscribeSse(emitter, id, streamEventBatcher.batch(
+                agentChatAppService.chatWithProgress(userId, id, chatRequest.getMessage()),
+                streamEventBatcher.resolveInterval(flushMs)));
+        return emitter;
+    }
 
+    /**
+     * 续传生成事件（SSE）
+     * <p>
+     * 断线重连后补发指定事件之后的事件并跟随进行中的轮次直到结束。
+     * 续传起点取 {@code Last-Event-ID} 请求头（浏览器EventSource自动携带），其次取 {@code lastEventId} 参数。
+     * </p>
+     *
+     * @param request           HTTP请求
+     * @param id                会话ID
+     * @param lastEventIdHeader 最后收到的事件ID（Last-Event-ID请求头，可选）
+     * @param lastEventId       最后收到的事件ID（可选）
+     * @param flushMs           token/thinking分片合并窗口（毫秒，0为逐个下发，可选）
+     * @return SSE事件流
+     */
+    @GetMapping("/{id}/events")
+    public SseEmitter resumeEvents(
+            HttpServletRequest request,
+            @PathVariable Long id,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(required = false) String lastEventId,
+            @RequestParam(required = false) Long flushMs) {
+        Long userId = (Long) request.getAttribute(AuthConstants.CURRENT_USER_ID);
+        String resumeFrom = lastEventIdHeader != null && !lastEventIdHeader.isBlank() ? lastEventIdHeader : lastEventId;
+        log.info("续传生成事件(SSE), userId={}, threadId={}, lastEventId={}", userId, id, resumeFrom);
+
+        SseEmitter emitter = new SseEmitter(1_800_000L);
+        Disposable disposable = subscribeSse(emitter, id, streamEventBatcher.batch(
+                agentChatAppService.resumeStream(userId, id, resumeFrom), streamEventBatcher.resolveInterval(flushMs)));
+        // 续传只跟随事件流，客户端断开即停止轮询（不影响后台生成）
+        emitter.onCompletion(disposable::dispose);
         return emitter;
     }
+
+    private Disposable subscribeSse(SseEmitter emitter, Long id, Flux<AgentStreamEvent> events) {
+        return events.subscribe(
+                event -> {
+                    try {
+                        SseEmitter.SseEventBuilder builder = SseEmitter.event()
+                                .name(event.type())
+                                .data(StreamEventJsonEncoder.encode(event), MediaType.APPLICATION_JSON);
+                        if (event.id() != null) {
+                            builder.id(event.id());
+                        }
+                        emitter.send(builder);
+                    } catch (IOException e) {
+                        log.warn("SSE发送失败, threadId={}", id, e);
+                        emitter.completeWithError(e);
+                    }
+                },
+                error -> {
+                    log.error("SSE流错误, threadId={}", id, error);
+                    try {
+                        emitter.send(SseEmitter.event()
+                                .name("error")
+                                .data(StreamEventJsonEncoder.encode(AgentStreamEvent.error(error.getMessage())),
+                                        MediaType.APPLICATION_JSON));
+                    } catch (IOException ignored) {
+                    }
+                    emitter.complete();
+                },
+                emitter::complete
+        );
+    }
 }
@@ -2,25 +2,35 @@ package com.game.playforge.api.websocket;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.game.playforge.application.dto.AgentStreamEvent;
 import com.game.playforge.application.service.AgentChatAppService;
 import com.game.playforge.application.service.UserService;
+import com.game.playforge.application.service.agent.StreamEventBatcher;
 import com.game.playforge.common.constant.AuthConstants;
+import com.game.playforge.common.exception.BusinessException;
 import com.game.playforge.domain.model.User;
+import com.game.playforge.infrastructure.external.ai.RateLimitErrors;
 import com.game.playforge.infrastructure.external.auth.JwtUtil;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 
 import java.io.IOException;
 import java.net.URI;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -37,11 +47,19 @@ import java.util.concurrent.ConcurrentHashMap;
  * <ul>
  *   <li>{@code {"type": "message", "content": "用户消息"}} — 发送聊天消息</li>
  *   <li>{@code {"type": "cancel"}} — 中断当前流式响应</li>
+ *   <li>{@code {"type": "resume", "lastEventId": "3-120"}} — 断线重连后续传进行中的生成（补发之后的事件并跟随到结束）</li>
  * </ul>
  * <p>
+ * 默认使用JSON文本帧（子协议 {@code bearer}）；握手时把 {@code playforge-cbor} 列在 {@code bearer} 之前即协商二进制子协议，
+ * 事件以同样字段的CBOR二进制帧下发。客户端声明支持时协商permessage-deflate压缩。
+ * </p>
+ * <p>
+ * 连接参数 {@code flushMs} 指定token/thinking分片的合并窗口（毫秒，0为逐个下发，缺省使用服务端配置）。
+ * </p>
+ * <p>
  * 服务端发送JSON:
  * <ul>
- *   <li>{@code {"type": "token", "content": "部分内容"}} — 流式Token</li>
+ *   <li>{@code {"type": "token", "content": "部分内容", "id": "3-121"}} — 流式Token（id用于续传，未记录时省略）</li>
  *   <li>{@code {"type": "thinking", "content": "思考过程"}} — 流式Thinking</li>
  *   <li>{@code {"type": "done"}} — 流式完成</li>
  *   <li>{@code {"type": "error", "content": "错误信息"}} — 错误</li>
@@ -53,25 +71,47 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class AgentChatWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
+public class AgentChatWebSocketHandler extends AbstractWebSocketHandler implements SubProtocolCapable {
 
     private final AgentChatAppService agentChatAppService;
     private final UserService userService;
     private final JwtUtil jwtUtil;
     private final ObjectMapper objectMapper;
+    private final AgentMetrics agentMetrics;
+    private final WebSocketSendProperties sendProperties;
+    private final StreamEventBatcher streamEventBatcher;
+
+    /**
+     * 认证子协议：客户端以 {@code Sec-WebSocket-Protocol: bearer, <token>} 携带token
+     */
+    public static final String BEARER_SUBPROTOCOL = "bearer";
+
+    /**
+     * 二进制子协议：服务端以CBOR二进制帧下发事件，客户端消息可用CBOR二进制帧或JSON文本帧
+     */
+    public static final String CBOR_SUBPROTOCOL = "playforge-cbor";
+
+    private static final CBORMapper CBOR_MAPPER = new CBORMapper();
 
     private static final String ATTR_USER_ID = "userId";
     private static final String ATTR_THREAD_ID = "threadId";
     private static final String ATTR_TRACE_ID = "traceId";
+    private static final String ATTR_SENDER = "eventSender";
+    private static final String ATTR_FLUSH_INTERVAL = "flushInterval";
     private static final String GENERIC_ERROR_MESSAGE = "服务异常，请稍后重试";
     private static final String RATE_LIMIT_ERROR_MESSAGE = "模型请求过于频繁，请稍后重试";
     private final Map<Long, Disposable> activeStreams = new ConcurrentHashMap<>();
+    private final Map<String, Disposable> resumeStreams = new ConcurrentHashMap<>();
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         String traceId = UUID.randomUUID().toString().replace("-", "");
         session.getAttributes().put(ATTR_TRACE_ID, traceId);
+        session.getAttributes().put(ATTR_SENDER,
+                new StreamEventSender(session, CBOR_SUBPROTOCOL.equals(session.getAcceptedProtocol()),
+                        sendProperties, agentMetrics));
         MDC.put(AuthConstants.TRACE_ID_MDC_KEY, traceId);
+        agentMetrics.webSocketOpened();
         try {
             doAfterConnectionEstablished(session);
         } finally {
@@ -120,6 +160,7 @@ public class AgentChatWebSocketHandler extends TextWebSocketHandler implements S
 
         session.getAttributes().put(ATTR_USER_ID, userId);
         session.getAttributes().put(ATTR_THREAD_ID, threadId);
+        session.getAttributes().put(ATTR_FLUSH_INTERVAL, streamEventBatcher.resolveInterval(parseFlushMillis(params)));
 
         log.info("WebSocket连接建立, sessionId={}, userId={}, threadId={}",
                 session.getId(), userId, threadId);
@@ -127,6 +168,19 @@ public class AgentChatWebSocketHandler extends TextWebSocketHandler implements S
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        handleClientMessage(session, objectMapper.readTree(message.getPayload()));
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        if (!CBOR_SUBPROTOCOL.equals(session.getAcceptedProtocol())) {
+            session.close(CloseStatus.NOT_ACCEPTABLE.withReason("未协商二进制子协议"));
+            return;
+        }
+        handleClientMessage(session, CBOR_MAPPER.readTree(new ByteBufferBackedInputStream(message.getPayload())));
+    }
+
+    private void handleClientMessage(WebSocketSession session, JsonNode node) {
         setTraceId(session);
         try {
             Long userId = (Long) session.getAttributes().get(ATTR_USER_ID);
@@ -137,12 +191,12 @@ public class AgentChatWebSocketHandler extends TextWebSocketHandler implements S
                 return;
             }
 
-            JsonNode node = objectMapper.readTree(message.getPayload());
             String type = node.has("type") ? node.get("type").asText() : "";
 
             switch (type) {
                 case "message" -> handleChatMessage(session, userId, threadId, node);
                 case "cancel" -> handleCancel(session);
+                case "resume" -> handleResume(session, userId, threadId, node);
                 default -> sendError(session, "未知消息类型: " + type);
             }
         } finally {
@@ -150,8 +204,7 @@ public class AgentChatWebSocketHandler extends TextWebSocketHandler implements S
         }
     }
 
-    private void handleChatMessage(WebSocketSession session, Long userId, Long threadId, JsonNode node)
-            throws IOException {
+    private void handleChatMessage(WebSocketSession session, Long userId, Long threadId, JsonNode node) {
         String content = node.has("content") ? node.get("content").asText() : "";
         if (content.isBlank()) {
             sendError(session, "消息内容不能为空");
@@ -164,41 +217,9 @@ public class AgentChatWebSocketHandler extends TextWebSocketHandler implements S
         cancelActiveStream(threadId);
 
         try {
-            Disposable disposable = agentChatAppService.chatStream(userId, threadId, content)
-                    .subscribe(
-                            event -> {
-                                try {
-                                    if (session.isOpen()) {
-                                        String json = objectMapper.writeValueAsString(
-                                                Map.of(
-                                                        "type", event.type(),
-                                                        "content", event.content() == null ? "" : event.content()
-                                                ));
-                                        session.sendMessage(new TextMessage(json));
-                                    }
-                                } catch (IOException e) {
-                                    log.error("发送流式事件失败, sessionId={}, type={}",
-                                            session.getId(), event.type(), e);
-                                }
-                            },
-                            error -> {
-                                log.error("流式聊天错误, sessionId={}", session.getId(), error);
-                                sendErrorSafe(session, resolveErrorMessage(error));
-                                activeStreams.remove(threadId);
-                            },
-                            () -> {
-                                try {
-                                    if (session.isOpen()) {
-                                        String json = objectMapper.writeValueAsString(Map.of("type", "done"));
-                                        session.sendMessage(new TextMessage(json));
-                                    }
-                                } catch (IOException e) {
-                                    log.error("发送完成消息失败, sessionId={}", session.getId(), e);
-                                }
-                                activeStreams.remove(threadId);
-                            }
-                    );
-
+            Disposable disposable = subscribeStream(session,
+                    agentChatAppService.chatStream(userId, threadId, content),
+                    () -> activeStreams.remove(threadId));
             activeStreams.put(threadId, disposable);
         } catch (Exception e) {
             log.error("启动流式聊天失败, sessionId={}", session.getId(), e);
@@ -206,26 +227,73 @@ public class AgentChatWebSocketHandler extends TextWebSocketHandler implements S
         }
     }
 
+    private void handleResume(WebSocketSession session, Long userId, Long threadId, JsonNode node) {
+        String lastEventId = node.hasNonNull("lastEventId") ? node.get("lastEventId").asText() : null;
+        log.info("WebSocket续传, sessionId={}, threadId={}, lastEventId={}", session.getId(), threadId, lastEventId);
+
+        // 续传只跟随事件流，不影响仍在后台运行的生成；随连接关闭而结束
+        cancelResume(session);
+        try {
+            Disposable disposable = subscribeStream(session,
+                    agentChatAppService.resumeStream(userId, threadId, lastEventId),
+                    () -> resumeStreams.remove(session.getId()));
+            resumeStreams.put(session.getId(), disposable);
+        } catch (Exception e) {
+            log.error("启动续传失败, sessionId={}", session.getId(), e);
+            sendError(session, GENERIC_ERROR_MESSAGE);
+        }
+    }
+
+    private Disposable subscribeStream(WebSocketSession session, Flux<AgentStreamEvent> events,
+                                       Runnable onTerminate) {
+        StreamEventSender sender = sender(session);
+        Duration flushInterval = (Duration) session.getAttributes().get(ATTR_FLUSH_INTERVAL);
+        return streamEventBatcher.batch(events, flushInterval).subscribe(
+                sender::send,
+                error -> {
+                    log.error("流式聊天错误, sessionId={}", session.getId(), error);
+                    sender.send(AgentStreamEvent.error(resolveErrorMessage(error)));
+                    onTerminate.run();
+                },
+                () -> {
+                    sender.send(AgentStreamEvent.done());
+                    onTerminate.run();
+                }
+        );
+    }
+
+    private void cancelResume(WebSocketSession session) {
+        Disposable disposable = resumeStreams.remove(session.getId());
+        if (disposable != null && !disposable.isDisposed()) {
+            disposable.dispose();
+        }
+    }
+
     private void handleCancel(WebSocketSession session) {
         Long threadId = (Long) session.getAttributes().get(ATTR_THREAD_ID);
         log.info("取消流式聊天, sessionId={}, threadId={}", session.getId(), threadId);
-        if (threadId != null) {
-            cancelActiveStream(threadId);
+        if (threadId != null && !cancelActiveStream(threadId)) {
+            // 流不在本连接上（如重连到其他节点），交由集群注册中心转发给处理节点
+            agentChatAppService.cancelProcessing(threadId);
         }
     }
 
-    private void cancelActiveStream(Long threadId) {
+    private boolean cancelActiveStream(Long threadId) {
         Disposable disposable = activeStreams.remove(threadId);
         if (disposable != null && !disposable.isDisposed()) {
             disposable.dispose();
             log.debug("已取消活跃流, threadId={}", threadId);
+            return true;
         }
+        return false;
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         setTraceId(session);
+        agentMetrics.webSocketClosed();
         try {
+            cancelResume(session);
             // Don't cancel active streams on close — let them complete in background and save to DB.
             // This allows the frontend to switch threads without losing in-flight results.
             log.info("WebSocket连接关闭, sessionId={}, status={}", session.getId(), status);
@@ -249,22 +317,26 @@ public class AgentChatWebSocketHandler extends TextWebSocketHandler implements S
         }
     }
 
-    private void sendError(WebSocketSession session, String errorMessage) throws IOException {
-        if (session.isOpen()) {
-            String json = objectMapper.writeValueAsString(
-                    Map.of("type", "error", "content", errorMessage));
-            session.sendMessage(new TextMessage(json));
-        }
+    private void sendError(WebSocketSession session, String errorMessage) {
+        sender(session).send(AgentStreamEvent.error(errorMessage));
     }
 
-    private void sendErrorSafe(WebSocketSession session, String errorMessage) {
+    private static Long parseFlushMillis(Map<String, String> params) {
+        String value = params.get("flushMs");
+        if (value == null || value.isBlank()) {
+            return null;
+        }
         try {
-            sendError(session, errorMessage);
-        } catch (IOException e) {
-            log.error("发送错误消息失败, sessionId={}", session.getId(), e);
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
 
+    private StreamEventSender sender(WebSocketSession session) {
+        return (StreamEventSender) session.getAttributes().get(ATTR_SENDER);
+    }
+
     private void setTraceId(WebSocketSession session) {
         String traceId = (String) session.getAttributes().get(ATTR_TRACE_ID);
         if (traceId != null) {
@@ -273,33 +345,18 @@ public class AgentChatWebSocketHandler extends TextWebSocketHandler implements S
     }
 
     private String resolveErrorMessage(Throwable error) {
-        if (isRateLimitError(error)) {
+        if (error instanceof BusinessException businessException) {
+            return businessException.getResultCode().getMessage();
+        }
+        if (RateLimitErrors.isRateLimitError(error)) {
             return RATE_LIMIT_ERROR_MESSAGE;
         }
         return GENERIC_ERROR_MESSAGE;
     }
 
-    private boolean isRateLimitError(Throwable throwable) {
-        Throwable cursor = throwable;
-        while (cursor != null) {
-            if ("RateLimitException".equals(cursor.getClass().getSimpleName())) {
-                return true;
-            }
-            String message = cursor.getMessage();
-            if (message != null) {
-                String lower = message.toLowerCase();
-                if (lower.contains("rate_limit") || lower.contains("rate limit")) {
-                    return true;
-                }
-            }
-            cursor = cursor.getCause();
-        }
-        return false;
-    }
-
     @Override
     public List<String> getSubProtocols() {
-        return List.of("bearer");
+        return List.of(CBOR_SUBPROTOCOL, BEARER_SUBPROTOCOL);
     }
 
     private String extractToken(WebSocketSession session) {
@@ -309,8 +366,11 @@ public class AgentChatWebSocketHandler extends TextWebSocketHandler implements S
                     .map(String::trim)
                     .filter(p -> !p.isBlank())
                     .toArray(String[]::new);
-            if (protocols.length >= 2 && "bearer".equalsIgnoreCase(protocols[0])) {
-                return protocols[1];
+            // token紧跟在bearer之后，前面可以先列出二进制子协议
+            for (int i = 0; i < protocols.length - 1; i++) {
+                if (BEARER_SUBPROTOCOL.equalsIgnoreCase(protocols[i])) {
+                    return protocols[i + 1];
+                }
             }
         }
 
@@ -0,0 +1,245 @@
+package com.game.playforge.api.websocket;
+
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.game.playforge.api.codec.StreamEventCborEncoder;
+import com.game.playforge.api.codec.StreamEventJsonEncoder;
+import com.game.playforge.application.dto.AgentStreamEvent;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单连接的流式事件发送器
+ * <p>
+ * 参照 {@link org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator}：
+ * 所有帧先进入连接级队列，同一时刻只有一个发送任务（虚拟线程）按顺序写出，
+ * 模型回调线程只负责入队，不会被慢客户端阻塞，也不会对同一连接并发发送。
+ * </p>
+ * <p>
+ * 单次发送超过时限即关闭连接；缓冲超过上限时按 {@link WebSocketSendProperties.OverflowPolicy} 处理：
+ * 合并相邻的token/thinking分片、丢弃thinking分片，仍超限则关闭连接。
+ * 连接关闭不影响后台生成，客户端可重连后续传。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Slf4j
+public class StreamEventSender {
+
+    /**
+     * 每帧除内容外的JSON开销估算（字符）
+     */
+    private static final int FRAME_OVERHEAD = 40;
+
+    private final WebSocketSession session;
+    private final boolean binary;
+    private final WebSocketSendProperties properties;
+    private final AgentMetrics agentMetrics;
+
+    /**
+     * 待发送队列及其估算字符数，由队列自身加锁保护
+     */
+    private final ArrayDeque<AgentStreamEvent> queue = new ArrayDeque<>();
+    private long bufferedChars;
+
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile long sendStartNanos;
+    private volatile boolean terminated;
+
+    /**
+     * 编码缓冲区，仅由当前发送任务使用
+     */
+    private StringBuilder encodeBuffer;
+    private ByteArrayBuilder binaryBuffer;
+
+    /**
+     * @param binary 是否以CBOR二进制帧发送（二进制子协议），否则发送JSON文本帧
+     */
+    public StreamEventSender(WebSocketSession session, boolean binary, WebSocketSendProperties properties,
+                             AgentMetrics agentMetrics) {
+        this.session = session;
+        this.binary = binary;
+        if (binary) {
+            this.binaryBuffer = new ByteArrayBuilder(256);
+        } else {
+            this.encodeBuffer = new StringBuilder(256);
+        }
+        this.properties = properties;
+        this.agentMetrics = agentMetrics;
+    }
+
+    /**
+     * 发送事件（入队后立即返回）
+     */
+    public void send(AgentStreamEvent event) {
+        if (terminated || !session.isOpen()) {
+            return;
+        }
+        boolean overflow;
+        synchronized (queue) {
+            queue.addLast(event);
+            bufferedChars += weight(event);
+            overflow = bufferedChars > properties.getBufferSizeLimit() && !relieveOverflow();
+        }
+        if (overflow) {
+            terminate("发送缓冲超限, limit=" + properties.getBufferSizeLimit());
+            return;
+        }
+        long started = sendStartNanos;
+        if (started != 0 && System.nanoTime() - started > properties.getSendTimeLimit().toNanos()) {
+            terminate("单次发送超时, limit=" + properties.getSendTimeLimit());
+            return;
+        }
+        if (wip.getAndIncrement() == 0) {
+            Thread.ofVirtual().name("ws-send-" + session.getId()).start(this::drain);
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        do {
+            AgentStreamEvent event;
+            while (!terminated && (event = poll()) != null) {
+                write(event);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private AgentStreamEvent poll() {
+        synchronized (queue) {
+            AgentStreamEvent event = queue.pollFirst();
+            if (event != null) {
+                bufferedChars -= weight(event);
+            }
+            return event;
+        }
+    }
+
+    private void write(AgentStreamEvent event) {
+        if (!session.isOpen()) {
+            return;
+        }
+        long start = System.nanoTime();
+        sendStartNanos = start;
+        try {
+            if (binary) {
+                session.sendMessage(new BinaryMessage(StreamEventCborEncoder.encode(event, binaryBuffer)));
+            } else {
+                session.sendMessage(new TextMessage(StreamEventJsonEncoder.encode(event, encodeBuffer)));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("发送流式事件失败, sessionId={}, type={}, cause={}", session.getId(), event.type(), e.getMessage());
+        } finally {
+            if (binary) {
+                binaryBuffer = StreamEventCborEncoder.recycle(binaryBuffer);
+            } else {
+                encodeBuffer = StreamEventJsonEncoder.recycle(encodeBuffer);
+            }
+            sendStartNanos = 0;
+            agentMetrics.recordWebSocketSend(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 按溢出策略缩减缓冲（持有队列锁时调用）
+     *
+     * @return 缩减后是否回到上限以内
+     */
+    private boolean relieveOverflow() {
+        if (properties.getOverflowPolicy() != WebSocketSendProperties.OverflowPolicy.COALESCE) {
+            return false;
+        }
+        int merged = coalesce();
+        if (merged > 0) {
+            agentMetrics.countWebSocketOverflow("coalesced", merged);
+        }
+        if (bufferedChars <= properties.getBufferSizeLimit()) {
+            return true;
+        }
+        int dropped = 0;
+        Iterator<AgentStreamEvent> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            AgentStreamEvent event = iterator.next();
+            if (AgentStreamEvent.TYPE_THINKING.equals(event.type())) {
+                iterator.remove();
+                bufferedChars -= weight(event);
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            agentMetrics.countWebSocketOverflow("dropped_thinking", dropped);
+            log.info("慢客户端丢弃thinking分片, sessionId={}, count={}", session.getId(), dropped);
+        }
+        return bufferedChars <= properties.getBufferSizeLimit();
+    }
+
+    /**
+     * 合并队列中相邻的同类型token/thinking分片，保留后一个分片的事件ID
+     *
+     * @return 被合并掉的分片数
+     */
+    private int coalesce() {
+        ArrayDeque<AgentStreamEvent> merged = new ArrayDeque<>(queue.size());
+        int removed = 0;
+        for (AgentStreamEvent event : queue) {
+            AgentStreamEvent last = merged.peekLast();
+            if (last != null && isDelta(event) && last.type().equals(event.type())) {
+                merged.pollLast();
+                merged.addLast(new AgentStreamEvent(event.type(),
+                        nullToEmpty(last.content()) + nullToEmpty(event.content()),
+                        event.id() != null ? event.id() : last.id()));
+                removed++;
+            } else {
+                merged.addLast(event);
+            }
+        }
+        if (removed > 0) {
+            queue.clear();
+            queue.addAll(merged);
+            bufferedChars -= (long) removed * FRAME_OVERHEAD;
+        }
+        return removed;
+    }
+
+    private void terminate(String reason) {
+        if (terminated) {
+            return;
+        }
+        terminated = true;
+        int pending;
+        synchronized (queue) {
+            pending = queue.size();
+            queue.clear();
+            bufferedChars = 0;
+        }
+        agentMetrics.countWebSocketOverflow("terminated", Math.max(pending, 1));
+        log.warn("慢客户端连接关闭, sessionId={}, reason={}, pending={}", session.getId(), reason, pending);
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            log.debug("关闭连接失败, sessionId={}", session.getId(), e);
+        }
+    }
+
+    private static boolean isDelta(AgentStreamEvent event) {
+        return AgentStreamEvent.TYPE_TOKEN.equals(event.type()) || AgentStreamEvent.TYPE_THINKING.equals(event.type());
+    }
+
+    private static long weight(AgentStreamEvent event) {
+        return FRAME_OVERHEAD + (event.content() != null ? event.content().length() : 0);
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
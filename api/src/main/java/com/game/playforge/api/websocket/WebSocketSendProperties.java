@@ -0,0 +1,60 @@
+package com.game.playforge.api.websocket;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * WebSocket发送配置属性
+ * <p>
+ * 从 {@code application.yaml} 中的 {@code playforge.websocket} 前缀读取配置。
+ * 与 {@link org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator} 的
+ * 发送时限、缓冲上限含义一致，另增加慢客户端溢出时的处理策略。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "playforge.websocket")
+public class WebSocketSendProperties {
+
+    /**
+     * 单次发送的最长时间，超过后判定客户端不可靠并关闭连接
+     */
+    private Duration sendTimeLimit = Duration.ofSeconds(10);
+
+    /**
+     * 单个连接待发送缓冲的上限（按字符估算），超出后按溢出策略处理
+     */
+    private int bufferSizeLimit = 512 * 1024;
+
+    /**
+     * 缓冲超限时的处理策略
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.COALESCE;
+
+    /**
+     * 客户端声明支持时是否协商permessage-deflate压缩（长Markdown与thinking内容压缩率高，关闭可节省CPU）
+     */
+    private boolean compression = true;
+
+    /**
+     * 缓冲溢出策略
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * 先合并相邻的token/thinking分片，仍超限则丢弃thinking分片，最后关闭连接
+         */
+        COALESCE,
+
+        /**
+         * 直接关闭连接
+         */
+        TERMINATE
+    }
+}
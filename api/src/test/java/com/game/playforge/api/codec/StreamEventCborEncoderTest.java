@@ -0,0 +1,61 @@
+package com.game.playforge.api.codec;
+
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.game.playforge.application.dto.AgentStreamEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamEventCborEncoderTest {
+
+    private final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
+    @Test
+    void decodesToSameFieldsAsJsonFrame() throws Exception {
+        List<AgentStreamEvent> events = List.of(
+                AgentStreamEvent.token("中文内容，带\"引号\"与\\反斜杠\n换行").withId("3-121"),
+                AgentStreamEvent.thinking("emoji 😀"),
+                AgentStreamEvent.error("失败").withId("3-122"),
+                new AgentStreamEvent(AgentStreamEvent.TYPE_TOKEN, null, "3-123"),
+                AgentStreamEvent.done(),
+                AgentStreamEvent.done().withId("3-124"));
+
+        for (AgentStreamEvent event : events) {
+            JsonNode decoded = cborMapper.readTree(StreamEventCborEncoder.encode(event));
+            JsonNode json = jsonMapper.readTree(StreamEventJsonEncoder.encode(event));
+
+            assertThat(decoded).isEqualTo(json);
+        }
+    }
+
+    @Test
+    void reusedBufferProducesSameBytes() {
+        ByteArrayBuilder buffer = new ByteArrayBuilder(256);
+        List<AgentStreamEvent> events = List.of(
+                AgentStreamEvent.token("x".repeat(1000)).withId("1-1"),
+                AgentStreamEvent.token("短").withId("1-2"),
+                AgentStreamEvent.done());
+
+        for (AgentStreamEvent event : events) {
+            assertThat(StreamEventCborEncoder.encode(event, buffer)).isEqualTo(StreamEventCborEncoder.encode(event));
+            buffer = StreamEventCborEncoder.recycle(buffer);
+        }
+    }
+
+    @Test
+    void recycleDropsBufferThatGrewForLargeEvent() {
+        ByteArrayBuilder small = new ByteArrayBuilder(256);
+        StreamEventCborEncoder.encode(AgentStreamEvent.token("x".repeat(100)), small);
+        ByteArrayBuilder large = new ByteArrayBuilder(256);
+        StreamEventCborEncoder.encode(AgentStreamEvent.token("x".repeat(200_000)), large);
+
+        assertThat(StreamEventCborEncoder.recycle(small)).isSameAs(small);
+        assertThat(StreamEventCborEncoder.recycle(large)).isNotSameAs(large);
+    }
+}
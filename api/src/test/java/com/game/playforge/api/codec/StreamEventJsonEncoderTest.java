@@ -0,0 +1,95 @@
+package com.game.playforge.api.codec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.game.playforge.application.dto.AgentStreamEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamEventJsonEncoderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void escapedContentRoundTripsThroughObjectMapper() throws Exception {
+        StringBuilder controls = new StringBuilder();
+        for (char c = 0; c < 0x20; c++) {
+            controls.append(c);
+        }
+        List<String> contents = List.of(
+                "plain",
+                "",
+                "quote \" and backslash \\ and slash /",
+                "line\nbreak\r\ttab\bback\fform",
+                controls.toString(),
+                "中文内容，带**Markdown**与`代码`",
+                "emoji 😀 and \u2028 separator \u007f del",
+                "\\\"\\n already escaped text");
+
+        for (String content : contents) {
+            for (String type : List.of(AgentStreamEvent.TYPE_TOKEN, AgentStreamEvent.TYPE_ERROR, "custom\"type")) {
+                assertMatchesObjectMapper(new AgentStreamEvent(type, content, "3-121"));
+                assertMatchesObjectMapper(new AgentStreamEvent(type, content));
+            }
+        }
+    }
+
+    @Test
+    void doneFrameOmitsContent() throws Exception {
+        JsonNode plain = objectMapper.readTree(StreamEventJsonEncoder.encode(AgentStreamEvent.done()));
+        JsonNode withId = objectMapper.readTree(StreamEventJsonEncoder.encode(AgentStreamEvent.done().withId("3-9")));
+
+        assertThat(plain).isEqualTo(objectMapper.readTree("{\"type\":\"done\"}"));
+        assertThat(withId).isEqualTo(objectMapper.readTree("{\"type\":\"done\",\"id\":\"3-9\"}"));
+    }
+
+    @Test
+    void nullContentIsEncodedAsEmptyString() throws Exception {
+        JsonNode frame = objectMapper.readTree(StreamEventJsonEncoder.encode(new AgentStreamEvent("token", null)));
+
+        assertThat(frame.path("content").asText()).isEmpty();
+    }
+
+    @Test
+    void reusedBufferProducesSameOutput() {
+        StringBuilder buffer = new StringBuilder();
+        List<AgentStreamEvent> events = List.of(
+                AgentStreamEvent.token("a long \"quoted\" token ".repeat(20)).withId("1-1"),
+                AgentStreamEvent.thinking("短").withId("1-2"),
+                AgentStreamEvent.done());
+
+        for (AgentStreamEvent event : events) {
+            assertThat(StreamEventJsonEncoder.encode(event, buffer)).isEqualTo(StreamEventJsonEncoder.encode(event));
+            buffer = StreamEventJsonEncoder.recycle(buffer);
+        }
+    }
+
+    @Test
+    void recycleDropsOversizedBuffer() {
+        StringBuilder small = new StringBuilder();
+        StreamEventJsonEncoder.encode(AgentStreamEvent.token("x".repeat(100)), small);
+        StringBuilder large = new StringBuilder();
+        StreamEventJsonEncoder.encode(AgentStreamEvent.token("x".repeat(200_000)), large);
+
+        assertThat(StreamEventJsonEncoder.recycle(small)).isSameAs(small);
+        assertThat(StreamEventJsonEncoder.recycle(large)).isNotSameAs(large);
+    }
+
+    private void assertMatchesObjectMapper(AgentStreamEvent event) throws Exception {
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("type", event.type());
+        expected.put("content", event.content());
+        if (event.id() != null) {
+            expected.put("id", event.id());
+        }
+        String encoded = StreamEventJsonEncoder.encode(event);
+
+        assertThat(objectMapper.readTree(encoded)).isEqualTo(objectMapper.valueToTree(expected));
+        assertThat(objectMapper.readTree(encoded).path("content").asText()).isEqualTo(event.content());
+    }
+}
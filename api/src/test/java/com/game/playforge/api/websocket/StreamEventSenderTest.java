@@ -0,0 +1,159 @@
+package com.game.playforge.api.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.game.playforge.application.dto.AgentStreamEvent;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StreamEventSenderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AgentMetrics agentMetrics = new AgentMetrics(registry);
+
+    @Test
+    void sendsFramesInOrder() throws Exception {
+        BlockingSession session = new BlockingSession();
+        session.release();
+        StreamEventSender sender = new StreamEventSender(session.mock, false, properties(1024 * 1024,
+                WebSocketSendProperties.OverflowPolicy.COALESCE), agentMetrics);
+
+        for (int i = 1; i <= 200; i++) {
+            sender.send(AgentStreamEvent.token("t" + i).withId("1-" + i));
+        }
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> session.sent.size() == 200);
+        for (int i = 0; i < 200; i++) {
+            JsonNode frame = objectMapper.readTree(session.sent.get(i));
+            assertThat(frame.path("content").asText()).isEqualTo("t" + (i + 1));
+            assertThat(frame.path("id").asText()).isEqualTo("1-" + (i + 1));
+        }
+    }
+
+    @Test
+    void overflowCoalescesQueuedDeltasAndKeepsLastId() throws Exception {
+        BlockingSession session = new BlockingSession();
+        StreamEventSender sender = new StreamEventSender(session.mock, false, properties(300,
+                WebSocketSendProperties.OverflowPolicy.COALESCE), agentMetrics);
+
+        // 第一帧卡在发送中，其余分片在队列中累积并触发合并
+        sender.send(AgentStreamEvent.token("first").withId("1-1"));
+        session.awaitFirstSend();
+        for (int i = 2; i <= 11; i++) {
+            sender.send(AgentStreamEvent.token("0123456789").withId("1-" + i));
+        }
+        sender.send(AgentStreamEvent.done().withId("1-12"));
+        session.release();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> !session.sent.isEmpty()
+                && session.sent.getLast().contains("\"type\":\"done\""));
+        List<JsonNode> frames = session.frames(objectMapper);
+        assertThat(frames.getFirst().path("content").asText()).isEqualTo("first");
+        JsonNode lastFrame = frames.getLast();
+        assertThat(lastFrame.path("type").asText()).isEqualTo(AgentStreamEvent.TYPE_DONE);
+        assertThat(lastFrame.path("id").asText()).isEqualTo("1-12");
+
+        StringBuilder content = new StringBuilder();
+        frames.subList(1, frames.size() - 1).forEach(frame -> content.append(frame.path("content").asText()));
+        assertThat(content.toString()).isEqualTo("0123456789".repeat(10));
+        assertThat(frames.get(frames.size() - 2).path("id").asText()).isEqualTo("1-11");
+        assertThat(frames.size()).isLessThan(12);
+        assertThat(registry.get("playforge.ws.overflow").tag("action", "coalesced").counter().count())
+                .isPositive();
+        verify(session.mock, never()).close(any(CloseStatus.class));
+    }
+
+    @Test
+    void overflowWithTerminatePolicyClosesSessionAndDropsLaterFrames() throws Exception {
+        BlockingSession session = new BlockingSession();
+        StreamEventSender sender = new StreamEventSender(session.mock, false, properties(100,
+                WebSocketSendProperties.OverflowPolicy.TERMINATE), agentMetrics);
+
+        sender.send(AgentStreamEvent.token("first").withId("1-1"));
+        session.awaitFirstSend();
+        for (int i = 2; i <= 6; i++) {
+            sender.send(AgentStreamEvent.token("0123456789").withId("1-" + i));
+        }
+
+        verify(session.mock).close(CloseStatus.SESSION_NOT_RELIABLE);
+        sender.send(AgentStreamEvent.token("late").withId("1-7"));
+        session.release();
+
+        Thread.sleep(100);
+        assertThat(session.sent).hasSize(1);
+    }
+
+    private static WebSocketSendProperties properties(int bufferSizeLimit,
+                                                      WebSocketSendProperties.OverflowPolicy policy) {
+        WebSocketSendProperties properties = new WebSocketSendProperties();
+        properties.setBufferSizeLimit(bufferSizeLimit);
+        properties.setOverflowPolicy(policy);
+        return properties;
+    }
+
+    /**
+     * 首次发送阻塞到 {@link #release()} 的会话，模拟慢客户端
+     */
+    private static final class BlockingSession {
+
+        private final WebSocketSession mock = mock(WebSocketSession.class);
+        private final List<String> sent = new CopyOnWriteArrayList<>();
+        private final CountDownLatch firstSend = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final AtomicBoolean open = new AtomicBoolean(true);
+
+        private BlockingSession() throws Exception {
+            when(mock.getId()).thenReturn("test");
+            when(mock.isOpen()).thenAnswer(invocation -> open.get());
+            doAnswer(invocation -> {
+                open.set(false);
+                return null;
+            }).when(mock).close(any(CloseStatus.class));
+            doAnswer(invocation -> {
+                firstSend.countDown();
+                released.await(5, TimeUnit.SECONDS);
+                WebSocketMessage<?> message = invocation.getArgument(0);
+                sent.add(((TextMessage) message).getPayload());
+                return null;
+            }).when(mock).sendMessage(any());
+        }
+
+        void awaitFirstSend() throws InterruptedException {
+            assertThat(firstSend.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        List<JsonNode> frames(ObjectMapper objectMapper) throws Exception {
+            List<JsonNode> frames = new ArrayList<>();
+            for (String payload : sent) {
+                frames.add(objectMapper.readTree(payload));
+            }
+            return frames;
+        }
+    }
+}
@@ -5,8 +5,13 @@ package com.game.playforge.application.dto;
  *
  * @param type    事件类型
  * @param content 事件内容
+ * @param id      事件ID（记录到会话事件流后分配，用于断线续传；未记录时为null）
  */
-public record AgentStreamEvent(String type, String content) {
+public record AgentStreamEvent(String type, String content, String id) {
+
+    public AgentStreamEvent(String type, String content) {
+        this(type, content, null);
+    }
 
     public static final String TYPE_TOKEN = "token";
     public static final String TYPE_THINKING = "thinking";
@@ -14,6 +19,10 @@ public record AgentStreamEvent(String type, String content) {
     public static final String TYPE_RESPONSE = "response";
     public static final String TYPE_DONE = "done";
     public static final String TYPE_ERROR = "error";
+    /**
+     * 续传的事件已不完整（被裁剪或写入失败），客户端应从历史消息重新加载本轮内容
+     */
+    public static final String TYPE_RESYNC = "resync";
 
     public static AgentStreamEvent token(String content) {
         return new AgentStreamEvent(TYPE_TOKEN, content);
@@ -38,4 +47,15 @@ public record AgentStreamEvent(String type, String content) {
     public static AgentStreamEvent error(String content) {
         return new AgentStreamEvent(TYPE_ERROR, content);
     }
+
+    public static AgentStreamEvent resync(String content) {
+        return new AgentStreamEvent(TYPE_RESYNC, content);
+    }
+
+    /**
+     * 附加事件ID
+     */
+    public AgentStreamEvent withId(String id) {
+        return id == null ? this : new AgentStreamEvent(type, content, id);
+    }
 }
@@ -45,6 +45,16 @@ public interface AgentChatAppService {
      */
     Flux<AgentStreamEvent> chatWithProgress(Long userId, Long threadId, String message);
 
+    /**
+     * 断线续传：补发指定事件之后的生成事件，并跟随进行中的轮次直到结束
+     *
+     * @param userId      用户ID
+     * @param threadId    会话ID
+     * @param lastEventId 客户端最后收到的事件ID，为空时从当前轮次开头补发
+     * @return 流式事件（不含done，流完成即表示本轮结束）
+     */
+    Flux<AgentStreamEvent> resumeStream(Long userId, Long threadId, String lastEventId);
+
     /**
      * 检查指定会话是否正在后台处理中
      *
@@ -52,4 +62,11 @@ public interface AgentChatAppService {
      * @return true表示后台仍在处理
      */
     boolean isThreadProcessing(Long threadId);
+
+    /**
+     * 取消指定会话的处理（处理方在其他节点时通过Redis频道转发）
+     *
+     * @param threadId 会话ID（Lead会话或子Agent会话）
+     */
+    void cancelProcessing(Long threadId);
 }
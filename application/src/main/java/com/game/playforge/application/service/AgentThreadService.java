@@ -59,4 +59,19 @@ public interface AgentThreadService {
      * @return 消息列表
      */
     List<AgentMessage> getMessageHistory(Long userId, Long threadId, int limit, int offset);
+
+    /**
+     * 按游标获取消息历史
+     * <p>
+     * {@code beforeId} 与 {@code afterId} 至多指定一个，均为空时返回最新一页。
+     * </p>
+     *
+     * @param userId   用户ID
+     * @param threadId 会话ID
+     * @param limit    查询条数
+     * @param beforeId 返回该消息之前的消息，可为null
+     * @param afterId  返回该消息之后的消息，可为null
+     * @return 消息列表（按创建时间升序）
+     */
+    List<AgentMessage> getMessageHistory(Long userId, Long threadId, int limit, Long beforeId, Long afterId);
 }
@@ -5,7 +5,8 @@ import dev.langchain4j.service.UserMessage;
 /**
  * Agent同步聊天代理接口
  * <p>
- * 由LangChain4J {@code AiServices} 动态代理实现。
+ * 由 {@link AgentFactory} 绑定到具体会话，委托给按Agent定义版本缓存的
+ * {@link CachedAgentChatService}。
  * </p>
  *
  * @author Richard Zhang
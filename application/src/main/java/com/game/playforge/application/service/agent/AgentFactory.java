@@ -3,36 +3,47 @@ package com.game.playforge.application.service.agent;
 import com.game.playforge.common.constant.AgentConstants;
 import com.game.playforge.common.constant.AuthConstants;
 import com.game.playforge.common.enums.ModelProvider;
-import com.game.playforge.common.exception.BusinessException;
-import com.game.playforge.common.result.ResultCode;
 import com.game.playforge.domain.model.AgentDefinition;
-import com.game.playforge.infrastructure.external.ai.AgentTypeRegistry;
+import com.game.playforge.infrastructure.external.ai.AgentProfileRegistry;
+import com.game.playforge.infrastructure.external.ai.AgentRuntimeProfile;
 import com.game.playforge.infrastructure.external.ai.ModelProviderRegistry;
-import com.game.playforge.infrastructure.external.ai.SkillRegistry;
+import com.game.playforge.infrastructure.external.ai.StreamRetryProperties;
 import com.game.playforge.infrastructure.external.ai.SummarizingChatMemoryStore;
-import com.game.playforge.infrastructure.external.ai.SkillRegistry.SkillDescriptor;
-import com.game.playforge.infrastructure.external.ai.SystemPromptResolver;
-import com.game.playforge.infrastructure.external.ai.ToolRegistry;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.chat.TokenWindowChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.chat.request.ChatRequestParameters;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.observability.api.event.AiServiceCompletedEvent;
+import dev.langchain4j.observability.api.event.AiServiceErrorEvent;
+import dev.langchain4j.observability.api.event.AiServiceRequestIssuedEvent;
+import dev.langchain4j.observability.api.event.AiServiceResponseReceivedEvent;
+import dev.langchain4j.observability.api.listener.AiServiceListener;
 import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.memory.ChatMemoryAccess;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 /**
  * Agent工厂
  * <p>
  * 根据Agent定义动态构建LangChain4J AiService代理实例，
  * 组装模型、记忆、提示词和工具。
+ * 代理按Agent定义的运行时配置（{@link AgentRuntimeProfile}）缓存复用，
+ * 会话记忆与SubAgentTool等调用级工具在每次调用时绑定。
  * 技能采用目录模式：system prompt中只注入轻量级目录，
  * LLM通过调用loadSkill工具按需加载完整内容。
  * </p>
@@ -46,11 +57,21 @@ import java.util.stream.Collectors;
 public class AgentFactory {
 
     private final ModelProviderRegistry modelProviderRegistry;
-    private final SystemPromptResolver systemPromptResolver;
-    private final ToolRegistry toolRegistry;
-    private final SkillRegistry skillRegistry;
-    private final AgentTypeRegistry agentTypeRegistry;
+    private final AgentProfileRegistry agentProfileRegistry;
     private final SummarizingChatMemoryStore summarizingChatMemoryStore;
+    private final AgentMetrics agentMetrics;
+    private final StreamRetryProperties streamRetryProperties;
+
+    /**
+     * 已构建的AiService代理，按Agent定义ID缓存并绑定其运行时配置实例，LRU淘汰
+     */
+    private final Map<AgentServiceKey, CachedService> serviceCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<AgentServiceKey, CachedService> eldest) {
+                    return size() > AgentConstants.AGENT_SERVICE_CACHE_SIZE;
+                }
+            });
 
     /**
      * 创建同步聊天Agent代理
@@ -76,24 +97,70 @@ public class AgentFactory {
     public AgentChatService createAgent(AgentDefinition definition, Long threadId,
                                         Long userId, List<Object> extraTools,
                                         Consumer<ChatResponse> responseInterceptor) {
-        log.info("创建同步Agent, agent={}, threadId={}", definition.getName(), threadId);
+        AgentRuntimeProfile profile = agentProfileRegistry.getProfile(definition);
+        CachedAgentChatService service = getOrBuild(
+                new AgentServiceKey(definition.getId(), false), profile,
+                () -> buildChatService(definition, profile));
+        AgentInvocation invocation = new AgentInvocation(
+                threadId, buildRequestAttributes(definition, threadId, userId), extraTools, responseInterceptor);
+        return userMessage -> service.chat(threadId, userMessage, invocation.toParameters());
+    }
+
+    /**
+     * 创建流式聊天Agent代理
+     *
+     * @param definition Agent定义
+     * @param threadId   会话ID（用于绑定记忆）
+     * @param userId     用户ID（用于判断是否注入子Agent工具，null表示不注入）
+     * @param extraTools 额外工具实例（如SubAgentTool）
+     * @return 流式聊天代理
+     */
+    public AgentStreamingChatService createStreamingAgent(AgentDefinition definition, Long threadId,
+                                                          Long userId, List<Object> extraTools) {
+        AgentRuntimeProfile profile = agentProfileRegistry.getProfile(definition);
+        CachedAgentStreamingChatService service = getOrBuild(
+                new AgentServiceKey(definition.getId(), true), profile,
+                () -> buildStreamingService(definition, profile));
+        AgentInvocation invocation = new AgentInvocation(
+                threadId, buildRequestAttributes(definition, threadId, userId), extraTools, null);
+        return userMessage -> service.chat(threadId, userMessage, invocation.toParameters());
+    }
+
+    /**
+     * 获取缓存的代理，运行时配置已重新编译（定义更新）时重建
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T getOrBuild(AgentServiceKey key, AgentRuntimeProfile profile, Supplier<T> builder) {
+        if (key.definitionId() == null) {
+            return builder.get();
+        }
+        CachedService cached = serviceCache.get(key);
+        if (cached != null && cached.profile() == profile) {
+            return (T) cached.service();
+        }
+        // 构建在锁外进行，并发构建时以后写入者为准，落选的代理仅本次使用
+        T built = builder.get();
+        serviceCache.put(key, new CachedService(profile, built));
+        return built;
+    }
 
-        ModelProvider provider = resolveProvider(definition.getProvider());
+    private CachedAgentChatService buildChatService(AgentDefinition definition, AgentRuntimeProfile profile) {
+        log.info("构建同步Agent, agent={}, version={}", definition.getName(), definition.getUpdatedAt());
+
+        ModelProvider provider = profile.provider();
         ChatModel chatModel = modelProviderRegistry.getChatModel(provider);
         ChatRequestParameters scopedParameters = buildScopedRequestParameters(definition, provider);
-        Map<Object, Object> requestAttributes = buildRequestAttributes(threadId);
         ChatModel effectiveChatModel = new AgentScopedChatModel(
-                chatModel, scopedParameters, requestAttributes, responseInterceptor);
-        List<String> skillNameList = parseSkillNames(definition);
-        boolean hasSubAgentTool = hasSubAgentTool(definition);
-        String additionalContext = buildAdditionalContext(skillNameList, hasSubAgentTool);
-        String systemPrompt = systemPromptResolver.resolve(definition, additionalContext);
-        MessageWindowChatMemory memory = buildMemory(definition, threadId);
-        List<Object> tools = collectTools(definition, skillNameList, extraTools);
-
-        AiServices<AgentChatService> builder = AiServices.builder(AgentChatService.class)
+                chatModel, scopedParameters, buildScopedAttributes(definition, provider), agentMetrics);
+        String systemPrompt = profile.systemPrompt();
+        List<Object> tools = profile.toolBeans();
+        AtomicReference<ChatMemoryAccess> self = new AtomicReference<>();
+
+        AiServices<CachedAgentChatService> builder = AiServices.builder(CachedAgentChatService.class)
                 .chatModel(effectiveChatModel)
-                .chatMemory(memory);
+                .chatMemoryProvider(memoryProvider(profile))
+                .toolProvider(new InvocationToolProvider());
+        registerInvocationListeners(builder, self);
 
         if (systemPrompt != null && !systemPrompt.isBlank()) {
             builder.systemMessageProvider(memoryId -> systemPrompt);
@@ -103,40 +170,32 @@ public class AgentFactory {
             builder.tools(tools);
         }
 
-        log.info("同步Agent创建完成, agent={}, threadId={}, toolCount={}",
-                definition.getName(), threadId, tools.size());
-        return builder.build();
+        CachedAgentChatService service = builder.build();
+        self.set(service);
+        log.info("同步Agent构建完成, agent={}, toolCount={}", definition.getName(), tools.size());
+        return service;
     }
 
-    /**
-     * 创建流式聊天Agent代理
-     *
-     * @param definition Agent定义
-     * @param threadId   会话ID（用于绑定记忆）
-     * @param userId     用户ID（用于判断是否注入子Agent工具，null表示不注入）
-     * @param extraTools 额外工具实例（如SubAgentTool）
-     * @return 流式聊天代理
-     */
-    public AgentStreamingChatService createStreamingAgent(AgentDefinition definition, Long threadId,
-                                                          Long userId, List<Object> extraTools) {
-        log.info("创建流式Agent, agent={}, threadId={}", definition.getName(), threadId);
+    private CachedAgentStreamingChatService buildStreamingService(AgentDefinition definition,
+                                                                  AgentRuntimeProfile profile) {
+        log.info("构建流式Agent, agent={}, version={}", definition.getName(), definition.getUpdatedAt());
 
-        ModelProvider provider = resolveProvider(definition.getProvider());
+        ModelProvider provider = profile.provider();
         StreamingChatModel streamingModel = modelProviderRegistry.getStreamingChatModel(provider);
         ChatRequestParameters scopedParameters = buildScopedRequestParameters(definition, provider);
-        Map<Object, Object> requestAttributes = buildRequestAttributes(threadId);
         StreamingChatModel effectiveStreamingModel =
-                new AgentScopedStreamingChatModel(streamingModel, scopedParameters, requestAttributes);
-        List<String> skillNameList = parseSkillNames(definition);
-        boolean hasSubAgentTool = hasSubAgentTool(definition);
-        String additionalContext = buildAdditionalContext(skillNameList, hasSubAgentTool);
-        String systemPrompt = systemPromptResolver.resolve(definition, additionalContext);
-        MessageWindowChatMemory memory = buildMemory(definition, threadId);
-        List<Object> tools = collectTools(definition, skillNameList, extraTools);
-
-        AiServices<AgentStreamingChatService> builder = AiServices.builder(AgentStreamingChatService.class)
+                new AgentScopedStreamingChatModel(
+                        streamingModel, scopedParameters, buildScopedAttributes(definition, provider), agentMetrics,
+                        streamRetryProperties);
+        String systemPrompt = profile.systemPrompt();
+        List<Object> tools = profile.toolBeans();
+        AtomicReference<ChatMemoryAccess> self = new AtomicReference<>();
+
+        AiServices<CachedAgentStreamingChatService> builder = AiServices.builder(CachedAgentStreamingChatService.class)
                 .streamingChatModel(effectiveStreamingModel)
-                .chatMemory(memory);
+                .chatMemoryProvider(memoryProvider(profile))
+                .toolProvider(new InvocationToolProvider());
+        registerInvocationListeners(builder, self);
 
         if (systemPrompt != null && !systemPrompt.isBlank()) {
             builder.systemMessageProvider(memoryId -> systemPrompt);
@@ -146,105 +205,109 @@ public class AgentFactory {
             builder.tools(tools);
         }
 
-        log.info("流式Agent创建完成, agent={}, threadId={}, toolCount={}",
-                definition.getName(), threadId, tools.size());
-        return builder.build();
+        CachedAgentStreamingChatService service = builder.build();
+        self.set(service);
+        log.info("流式Agent构建完成, agent={}, toolCount={}", definition.getName(), tools.size());
+        return service;
     }
 
-    private boolean hasSubAgentTool(AgentDefinition definition) {
-        if (definition.getToolNames() == null || definition.getToolNames().isBlank()) {
-            return false;
-        }
-        return Arrays.stream(definition.getToolNames().split(","))
-                .map(String::trim)
-                .anyMatch("subAgentTool"::equals);
-    }
+    /**
+     * 注册调用级监听器
+     * <p>
+     * 1. 请求发出前把本次调用的请求属性交给模型包装层（同一线程紧接着调用模型）；
+     * 2. 每轮响应回调本次调用的响应拦截器；
+     * 3. 调用结束后释放代理内按会话持有的记忆实例（记忆内容在Store中，实例本身无状态）；
+     * 4. 记录每次工具执行的耗时。
+     * </p>
+     */
+    private void registerInvocationListeners(AiServices<?> builder, AtomicReference<ChatMemoryAccess> self) {
+        Map<ToolExecutionRequest, Long> toolStarts = new ConcurrentHashMap<>();
+        builder.beforeToolExecution(before -> toolStarts.put(before.request(), System.nanoTime()));
+        builder.afterToolExecution(execution -> {
+            Long start = toolStarts.remove(execution.request());
+            if (start != null) {
+                agentMetrics.recordToolExecution(execution.request().name(), execution.hasFailed(),
+                        System.nanoTime() - start);
+            }
+        });
+        builder.registerListener(new AiServiceListener<AiServiceRequestIssuedEvent>() {
+            @Override
+            public Class<AiServiceRequestIssuedEvent> getEventClass() {
+                return AiServiceRequestIssuedEvent.class;
+            }
 
-    private String buildAdditionalContext(List<String> skillNameList, boolean hasSubAgentTool) {
-        StringBuilder sb = new StringBuilder();
+            @Override
+            public void onEvent(AiServiceRequestIssuedEvent event) {
+                AgentInvocation invocation = AgentInvocation.from(event.invocationContext());
+                if (invocation != null) {
+                    AgentInvocation.stageRequestAttributes(invocation.requestAttributes());
+                }
+            }
+        });
+        builder.registerListener(new AiServiceListener<AiServiceResponseReceivedEvent>() {
+            @Override
+            public Class<AiServiceResponseReceivedEvent> getEventClass() {
+                return AiServiceResponseReceivedEvent.class;
+            }
 
-        // 技能目录
-        String skillCatalog = skillRegistry.getSkillCatalog(skillNameList);
-        if (skillCatalog != null && !skillCatalog.isBlank()) {
-            sb.append(skillCatalog);
-        }
+            @Override
+            public void onEvent(AiServiceResponseReceivedEvent event) {
+                AgentInvocation invocation = AgentInvocation.from(event.invocationContext());
+                if (invocation != null && invocation.responseInterceptor() != null) {
+                    invocation.responseInterceptor().accept(event.response());
+                }
+            }
+        });
+        builder.registerListener(new AiServiceListener<AiServiceCompletedEvent>() {
+            @Override
+            public Class<AiServiceCompletedEvent> getEventClass() {
+                return AiServiceCompletedEvent.class;
+            }
 
-        // Agent类型目录（仅Lead Agent有subAgentTool时注入）
-        if (hasSubAgentTool) {
-            if (!sb.isEmpty()) {
-                sb.append("\n\n");
+            @Override
+            public void onEvent(AiServiceCompletedEvent event) {
+                evictMemory(self.get(), event.invocationContext().chatMemoryId());
+            }
+        });
+        builder.registerListener(new AiServiceListener<AiServiceErrorEvent>() {
+            @Override
+            public Class<AiServiceErrorEvent> getEventClass() {
+                return AiServiceErrorEvent.class;
             }
-            sb.append(agentTypeRegistry.getTypeCatalog());
-        }
 
-        return sb.toString();
+            @Override
+            public void onEvent(AiServiceErrorEvent event) {
+                evictMemory(self.get(), event.invocationContext().chatMemoryId());
+            }
+        });
     }
 
-    private List<String> parseSkillNames(AgentDefinition definition) {
-        if (definition.getSkillNames() == null || definition.getSkillNames().isBlank()) {
-            return Collections.emptyList();
+    private void evictMemory(ChatMemoryAccess service, Object memoryId) {
+        if (service != null && memoryId != null) {
+            service.evictChatMemory(memoryId);
         }
-        return Arrays.stream(definition.getSkillNames().split(","))
-                .map(String::trim)
-                .filter(s -> !s.isEmpty())
-                .collect(Collectors.toList());
     }
 
-    private MessageWindowChatMemory buildMemory(AgentDefinition definition, Long threadId) {
-        int windowSize = definition.getMemoryWindowSize() != null
-                ? definition.getMemoryWindowSize()
-                : AgentConstants.DEFAULT_MEMORY_WINDOW_SIZE;
-        return MessageWindowChatMemory.builder()
-                .id(threadId)
+    private ChatMemoryProvider memoryProvider(AgentRuntimeProfile profile) {
+        int tokenBudget = profile.memoryTokenBudget();
+        int windowSize = profile.memoryWindowSize();
+        if (tokenBudget > 0) {
+            TokenCountEstimator estimator = profile.tokenCountEstimator();
+            // Token预算与消息窗口同时生效：先按Token裁剪，写入前再按条数封顶
+            MessageCappedChatMemoryStore store = new MessageCappedChatMemoryStore(summarizingChatMemoryStore, windowSize);
+            return memoryId -> TokenWindowChatMemory.builder()
+                    .id(memoryId)
+                    .maxTokens(tokenBudget, estimator)
+                    .chatMemoryStore(store)
+                    .build();
+        }
+        return memoryId -> MessageWindowChatMemory.builder()
+                .id(memoryId)
                 .maxMessages(windowSize)
                 .chatMemoryStore(summarizingChatMemoryStore)
                 .build();
     }
 
-    private List<Object> collectTools(AgentDefinition definition, List<String> skillNameList,
-                                      List<Object> extraTools) {
-        Set<String> toolNames = new LinkedHashSet<>();
-
-        // 1. Agent自身配置的工具
-        if (definition.getToolNames() != null && !definition.getToolNames().isBlank()) {
-            Arrays.stream(definition.getToolNames().split(","))
-                    .map(String::trim)
-                    .filter(s -> !s.isEmpty())
-                    .forEach(toolNames::add);
-        }
-
-        // 2. 移除subAgentTool（不在ToolRegistry中，由extraTools提供）
-        toolNames.remove("subAgentTool");
-
-        // 3. 如果有技能配置，自动加入 skillLoaderTool
-        List<SkillDescriptor> skills = skillRegistry.getSkills(skillNameList);
-        if (!skills.isEmpty()) {
-            toolNames.add("skillLoaderTool");
-        }
-
-        // 4. 收集各技能引用的外部工具
-        for (SkillDescriptor skill : skills) {
-            toolNames.addAll(skill.toolNames());
-        }
-
-        // 5. 从 ToolRegistry 获取工具 Bean
-        List<Object> tools = new ArrayList<>(toolRegistry.getToolBeans(new ArrayList<>(toolNames)));
-
-        // 6. 加入技能自身的 @Tool Bean（selfToolBean）
-        for (SkillDescriptor skill : skills) {
-            if (skill.selfToolBean() != null) {
-                tools.add(skill.selfToolBean());
-            }
-        }
-
-        // 7. 加入额外工具（如SubAgentTool实例）
-        if (extraTools != null) {
-            tools.addAll(extraTools);
-        }
-
-        return tools;
-    }
-
     private ChatRequestParameters buildScopedRequestParameters(AgentDefinition definition, ModelProvider provider) {
         var builder = ChatRequestParameters.builder()
                 .modelName(definition.getModelName());
@@ -285,22 +348,58 @@ public class AgentFactory {
         return configured;
     }
 
-    private Map<Object, Object> buildRequestAttributes(Long threadId) {
+    /**
+     * 构建透传给 ChatModelListener 的请求属性，用于链路追踪与Token用量归属
+     */
+    private Map<Object, Object> buildRequestAttributes(AgentDefinition definition, Long threadId, Long userId) {
         Map<Object, Object> attributes = new HashMap<>();
         String traceId = MDC.get(AuthConstants.TRACE_ID_MDC_KEY);
         if (traceId == null || traceId.isBlank()) {
             traceId = "thread-" + threadId;
         }
         attributes.put(AuthConstants.TRACE_ID_MDC_KEY, traceId);
-        attributes.put("threadId", threadId);
+        if (threadId != null) {
+            attributes.put(AgentConstants.ATTR_THREAD_ID, threadId);
+        }
+        // 子Agent调用不传userId，归属到定义所属用户
+        Long ownerId = userId != null ? userId : definition.getUserId();
+        if (ownerId != null) {
+            attributes.put(AgentConstants.ATTR_USER_ID, ownerId);
+        }
+        if (definition.getId() != null) {
+            attributes.put(AgentConstants.ATTR_AGENT_ID, definition.getId());
+        }
+        if (definition.getName() != null) {
+            attributes.put(AgentConstants.ATTR_AGENT_NAME, definition.getName());
+        }
+        return attributes;
+    }
+
+    /**
+     * 构建按Agent定义固定的请求属性（供应商与Agent类型），用于指标标签
+     */
+    private Map<Object, Object> buildScopedAttributes(AgentDefinition definition, ModelProvider provider) {
+        Map<Object, Object> attributes = new HashMap<>();
+        attributes.put(AgentConstants.ATTR_PROVIDER, provider.getValue());
+        attributes.put(AgentConstants.ATTR_AGENT_TYPE, resolveAgentType(definition));
         return attributes;
     }
 
-    private ModelProvider resolveProvider(String provider) {
-        try {
-            return ModelProvider.valueOf(provider.toUpperCase());
-        } catch (Exception e) {
-            throw new BusinessException(ResultCode.AGENT_PROVIDER_UNAVAILABLE, "不支持的模型供应商");
+    /**
+     * 子Agent名称为 {@code <类型>-<随机后缀>}，取类型作为标签；其余视为Lead Agent
+     */
+    private String resolveAgentType(AgentDefinition definition) {
+        String name = definition.getName();
+        if (definition.getParentThreadId() == null || name == null) {
+            return "lead";
         }
+        int separator = name.lastIndexOf('-');
+        return separator > 0 ? name.substring(0, separator) : name;
+    }
+
+    private record AgentServiceKey(Long definitionId, boolean streaming) {
+    }
+
+    private record CachedService(AgentRuntimeProfile profile, Object service) {
     }
 }
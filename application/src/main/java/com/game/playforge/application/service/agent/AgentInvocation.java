@@ -0,0 +1,81 @@
+package com.game.playforge.application.service.agent;
+
+import dev.langchain4j.invocation.InvocationContext;
+import dev.langchain4j.invocation.InvocationParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 单次Agent调用的绑定数据
+ * <p>
+ * 缓存的AiService代理在Agent定义版本内共享，会话相关的数据（请求属性、额外工具、响应拦截器）
+ * 通过 {@link InvocationParameters} 在每次调用时传入，由工具提供者和监听器按调用读取。
+ * </p>
+ *
+ * @param threadId            会话ID
+ * @param requestAttributes   透传给 ChatModelListener 的请求属性（traceId、threadId、userId、agentId、agentName）
+ * @param extraTools          额外工具实例（如SubAgentTool）
+ * @param responseInterceptor 每轮LLM响应回调，可为null
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public record AgentInvocation(Long threadId,
+                              Map<Object, Object> requestAttributes,
+                              List<Object> extraTools,
+                              Consumer<ChatResponse> responseInterceptor) {
+
+    private static final String PARAMETER_KEY = "playforge.agentInvocation";
+
+    /**
+     * 模型请求前由监听器写入、被 ChatModelListener 取走的请求属性
+     * <p>
+     * LangChain4J 在同一线程上先触发 RequestIssued 事件再调用模型，借此把调用级属性交给模型包装层。
+     * 模型包装层在调用结束时（finally）清除未被取走的属性，避免残留到该线程的下一次调用。
+     * </p>
+     */
+    private static final ThreadLocal<Map<Object, Object>> PENDING_ATTRIBUTES = new ThreadLocal<>();
+
+    public AgentInvocation {
+        requestAttributes = requestAttributes == null ? Map.of() : Map.copyOf(requestAttributes);
+        extraTools = extraTools == null ? List.of() : List.copyOf(extraTools);
+    }
+
+    /**
+     * 转换为LangChain4J调用参数
+     */
+    public InvocationParameters toParameters() {
+        return InvocationParameters.from(PARAMETER_KEY, this);
+    }
+
+    /**
+     * 从调用上下文中取出绑定数据
+     *
+     * @return 绑定数据，未绑定时返回null
+     */
+    public static AgentInvocation from(InvocationContext context) {
+        if (context == null || context.invocationParameters() == null) {
+            return null;
+        }
+        return context.invocationParameters().get(PARAMETER_KEY);
+    }
+
+    static void stageRequestAttributes(Map<Object, Object> attributes) {
+        PENDING_ATTRIBUTES.set(attributes);
+    }
+
+    static Map<Object, Object> takeRequestAttributes() {
+        Map<Object, Object> attributes = PENDING_ATTRIBUTES.get();
+        if (attributes == null) {
+            return Map.of();
+        }
+        PENDING_ATTRIBUTES.remove();
+        return attributes;
+    }
+
+    static void clearRequestAttributes() {
+        PENDING_ATTRIBUTES.remove();
+    }
+}
@@ -1,5 +1,8 @@
 package com.game.playforge.application.service.agent;
 
+import com.game.playforge.common.constant.AgentConstants;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
+import com.game.playforge.infrastructure.metrics.ModelCallTiming;
 import dev.langchain4j.model.ModelProvider;
 import dev.langchain4j.model.chat.Capability;
 import dev.langchain4j.model.chat.ChatModel;
@@ -20,7 +23,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.function.Consumer;
 
 /**
  * Agent级别请求参数包装（同步模型）
@@ -32,36 +34,50 @@ public class AgentScopedChatModel implements ChatModel {
     private final ChatModel delegate;
     private final ChatRequestParameters scopedParameters;
     private final Map<Object, Object> requestAttributes;
-    private final Consumer<ChatResponse> responseInterceptor;
-
-    public AgentScopedChatModel(ChatModel delegate,
-                                ChatRequestParameters scopedParameters,
-                                Map<Object, Object> requestAttributes) {
-        this(delegate, scopedParameters, requestAttributes, null);
-    }
+    private final AgentMetrics agentMetrics;
 
     public AgentScopedChatModel(ChatModel delegate,
                                 ChatRequestParameters scopedParameters,
                                 Map<Object, Object> requestAttributes,
-                                Consumer<ChatResponse> responseInterceptor) {
+                                AgentMetrics agentMetrics) {
         this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
         this.scopedParameters = Objects.requireNonNull(scopedParameters, "scopedParameters must not be null");
         this.requestAttributes = requestAttributes == null
                 ? Map.of()
                 : Map.copyOf(new LinkedHashMap<>(requestAttributes));
-        this.responseInterceptor = responseInterceptor;
+        this.agentMetrics = Objects.requireNonNull(agentMetrics, "agentMetrics must not be null");
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        try {
+            return ChatModel.super.chat(chatRequest);
+        } finally {
+            // 请求在监听器取走前失败时，暂存的调用级属性不得残留到该线程的下一次调用
+            AgentInvocation.clearRequestAttributes();
+        }
     }
 
     @Override
     public ChatResponse doChat(ChatRequest chatRequest) {
         ChatRequest sanitizedRequest = sanitizeGeminiToolMessages(chatRequest);
+        long start = System.nanoTime();
+        // 限流包装获得许可后会重置计时起点，输出速率不含排队时间
+        ModelCallTiming timing = ModelCallTiming.current();
         ChatResponse response = delegate.doChat(sanitizedRequest);
-        if (responseInterceptor != null) {
-            responseInterceptor.accept(response);
+        if (response != null && response.tokenUsage() != null && response.tokenUsage().outputTokenCount() != null) {
+            agentMetrics.recordTokensPerSecond(attribute(AgentConstants.ATTR_PROVIDER), sanitizedRequest.modelName(),
+                    attribute(AgentConstants.ATTR_AGENT_TYPE), response.tokenUsage().outputTokenCount(),
+                    timing != null ? timing.elapsedNanos() : System.nanoTime() - start);
         }
         return response;
     }
 
+    private String attribute(String key) {
+        Object value = requestAttributes.get(key);
+        return value != null ? value.toString() : null;
+    }
+
     @Override
     public ChatRequestParameters defaultRequestParameters() {
         return delegate.defaultRequestParameters().overrideWith(scopedParameters);
@@ -70,9 +86,6 @@ public class AgentScopedChatModel implements ChatModel {
     @Override
     public List<ChatModelListener> listeners() {
         List<ChatModelListener> delegateListeners = delegate.listeners();
-        if (requestAttributes.isEmpty()) {
-            return delegateListeners;
-        }
         List<ChatModelListener> listeners = new ArrayList<>(delegateListeners.size() + 1);
         listeners.add(new FixedAttributesListener(requestAttributes));
         listeners.addAll(delegateListeners);
@@ -164,6 +177,11 @@ public class AgentScopedChatModel implements ChatModel {
         @Override
         public void onRequest(ChatModelRequestContext context) {
             mergeAttributes(context.attributes());
+            // 调用级属性（缓存代理按调用绑定），在发起请求的线程上取走
+            Map<Object, Object> invocationAttributes = AgentInvocation.takeRequestAttributes();
+            if (context.attributes() != null) {
+                invocationAttributes.forEach(context.attributes()::putIfAbsent);
+            }
         }
 
         @Override
@@ -1,5 +1,9 @@
 package com.game.playforge.application.service.agent;
 
+import com.game.playforge.common.constant.AgentConstants;
+import com.game.playforge.infrastructure.external.ai.StreamRetryProperties;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
+import com.game.playforge.infrastructure.metrics.ModelCallTiming;
 import dev.langchain4j.model.ModelProvider;
 import dev.langchain4j.model.chat.Capability;
 import dev.langchain4j.model.chat.StreamingChatModel;
@@ -31,21 +35,50 @@ public class AgentScopedStreamingChatModel implements StreamingChatModel {
     private final StreamingChatModel delegate;
     private final ChatRequestParameters scopedParameters;
     private final Map<Object, Object> requestAttributes;
+    private final AgentMetrics agentMetrics;
+    private final StreamRetryProperties streamRetryProperties;
 
     public AgentScopedStreamingChatModel(StreamingChatModel delegate,
                                          ChatRequestParameters scopedParameters,
-                                         Map<Object, Object> requestAttributes) {
+                                         Map<Object, Object> requestAttributes,
+                                         AgentMetrics agentMetrics,
+                                         StreamRetryProperties streamRetryProperties) {
         this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
         this.scopedParameters = Objects.requireNonNull(scopedParameters, "scopedParameters must not be null");
         this.requestAttributes = requestAttributes == null
                 ? Map.of()
                 : Map.copyOf(new LinkedHashMap<>(requestAttributes));
+        this.agentMetrics = Objects.requireNonNull(agentMetrics, "agentMetrics must not be null");
+        this.streamRetryProperties = Objects.requireNonNull(
+                streamRetryProperties, "streamRetryProperties must not be null");
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        try {
+            StreamingChatModel.super.chat(chatRequest, handler);
+        } finally {
+            // 请求在监听器取走前失败时，暂存的调用级属性不得残留到该线程的下一次调用
+            AgentInvocation.clearRequestAttributes();
+        }
     }
 
     @Override
     public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
         ChatRequest sanitizedRequest = sanitizeGeminiToolMessages(chatRequest);
-        delegate.doChat(sanitizedRequest, handler);
+        String provider = attribute(AgentConstants.ATTR_PROVIDER);
+        StreamingChatResponseHandler metered = new MeteredStreamingResponseHandler(handler, agentMetrics,
+                provider, sanitizedRequest.modelName(), attribute(AgentConstants.ATTR_AGENT_TYPE),
+                ModelCallTiming.current());
+        delegate.doChat(sanitizedRequest, streamRetryProperties.supportsResume(provider)
+                ? new ResumableStreamingResponseHandler(new ResumeModel(), sanitizedRequest, metered,
+                        streamRetryProperties)
+                : metered);
+    }
+
+    private String attribute(String key) {
+        Object value = requestAttributes.get(key);
+        return value != null ? value.toString() : null;
     }
 
     @Override
@@ -56,9 +89,6 @@ public class AgentScopedStreamingChatModel implements StreamingChatModel {
     @Override
     public List<ChatModelListener> listeners() {
         List<ChatModelListener> delegateListeners = delegate.listeners();
-        if (requestAttributes.isEmpty()) {
-            return delegateListeners;
-        }
         List<ChatModelListener> listeners = new ArrayList<>(delegateListeners.size() + 1);
         listeners.add(new FixedAttributesListener(requestAttributes));
         listeners.addAll(delegateListeners);
@@ -139,6 +169,28 @@ public class AgentScopedStreamingChatModel implements StreamingChatModel {
         return value == null || value.isBlank();
     }
 
+    /**
+     * 续写请求使用的模型视图：直接请求底层模型（不再套续传与计时包装），
+     * 但带上Agent级监听器，使每次续写都按Agent属性记录耗时、Token与错误
+     */
+    private class ResumeModel implements StreamingChatModel {
+
+        @Override
+        public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            delegate.doChat(chatRequest, handler);
+        }
+
+        @Override
+        public List<ChatModelListener> listeners() {
+            return AgentScopedStreamingChatModel.this.listeners();
+        }
+
+        @Override
+        public ModelProvider provider() {
+            return delegate.provider();
+        }
+    }
+
     private static class FixedAttributesListener implements ChatModelListener {
 
         private final Map<Object, Object> attributes;
@@ -150,6 +202,11 @@ public class AgentScopedStreamingChatModel implements StreamingChatModel {
         @Override
         public void onRequest(ChatModelRequestContext context) {
             mergeAttributes(context.attributes());
+            // 调用级属性（缓存代理按调用绑定），在发起请求的线程上取走
+            Map<Object, Object> invocationAttributes = AgentInvocation.takeRequestAttributes();
+            if (context.attributes() != null) {
+                invocationAttributes.forEach(context.attributes()::putIfAbsent);
+            }
         }
 
         @Override
@@ -6,7 +6,8 @@ import dev.langchain4j.service.UserMessage;
 /**
  * Agent流式聊天代理接口
  * <p>
- * 由LangChain4J {@code AiServices} 动态代理实现，返回 {@link TokenStream} 支持流式输出。
+ * 由 {@link AgentFactory} 绑定到具体会话，委托给按Agent定义版本缓存的
+ * {@link CachedAgentStreamingChatService}，返回 {@link TokenStream} 支持流式输出。
  * </p>
  *
  * @author Richard Zhang
@@ -0,0 +1,30 @@
+package com.game.playforge.application.service.agent;
+
+import dev.langchain4j.invocation.InvocationParameters;
+import dev.langchain4j.service.MemoryId;
+import dev.langchain4j.service.UserMessage;
+import dev.langchain4j.service.memory.ChatMemoryAccess;
+
+/**
+ * 可缓存的Agent同步聊天代理接口
+ * <p>
+ * 由LangChain4J {@code AiServices} 动态代理实现，按Agent定义版本构建一次后复用。
+ * 会话记忆通过 {@link MemoryId} 按调用绑定，额外工具等调用级数据通过
+ * {@link InvocationParameters} 传入（见 {@link AgentInvocation}）。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public interface CachedAgentChatService extends ChatMemoryAccess {
+
+    /**
+     * 同步聊天
+     *
+     * @param threadId    会话ID（记忆ID）
+     * @param userMessage 用户消息
+     * @param parameters  调用级参数
+     * @return 助手回复
+     */
+    String chat(@MemoryId Long threadId, @UserMessage String userMessage, InvocationParameters parameters);
+}
@@ -0,0 +1,67 @@
+package com.game.playforge.application.service.agent;
+
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.agent.tool.ToolSpecifications;
+import dev.langchain4j.service.tool.DefaultToolExecutor;
+import dev.langchain4j.service.tool.ToolProvider;
+import dev.langchain4j.service.tool.ToolProviderRequest;
+import dev.langchain4j.service.tool.ToolProviderResult;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 调用级工具提供者
+ * <p>
+ * 从 {@link AgentInvocation} 中读取本次调用的额外工具实例（如绑定了会话的SubAgentTool），
+ * 使缓存的AiService代理可以在不同会话间复用。工具规格按类型反射一次后缓存。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+class InvocationToolProvider implements ToolProvider {
+
+    private static final Map<Class<?>, List<ToolMethod>> TOOL_METHODS = new ConcurrentHashMap<>();
+
+    @Override
+    public ToolProviderResult provideTools(ToolProviderRequest request) {
+        AgentInvocation invocation = AgentInvocation.from(request.invocationContext());
+        if (invocation == null || invocation.extraTools().isEmpty()) {
+            return null;
+        }
+
+        ToolProviderResult.Builder builder = ToolProviderResult.builder();
+        for (Object tool : invocation.extraTools()) {
+            for (ToolMethod toolMethod : TOOL_METHODS.computeIfAbsent(tool.getClass(), InvocationToolProvider::scan)) {
+                DefaultToolExecutor executor = DefaultToolExecutor.builder()
+                        .object(tool)
+                        .originalMethod(toolMethod.method())
+                        .methodToInvoke(toolMethod.method())
+                        .wrapToolArgumentsExceptions(true)
+                        .propagateToolExecutionExceptions(true)
+                        .build();
+                builder.add(toolMethod.specification(), executor, toolMethod.annotation().returnBehavior());
+            }
+        }
+        return builder.build();
+    }
+
+    private static List<ToolMethod> scan(Class<?> type) {
+        List<ToolMethod> methods = new ArrayList<>();
+        for (Method method : type.getDeclaredMethods()) {
+            Tool annotation = method.getAnnotation(Tool.class);
+            if (annotation != null) {
+                methods.add(new ToolMethod(ToolSpecifications.toolSpecificationFrom(method), method, annotation));
+            }
+        }
+        return List.copyOf(methods);
+    }
+
+    private record ToolMethod(ToolSpecification specification, Method method, Tool annotation) {
+    }
+}
@@ -0,0 +1,67 @@
+package com.game.playforge.application.service.agent;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按消息条数封顶的记忆存储
+ * <p>
+ * 启用Token预算后记忆由 {@code TokenWindowChatMemory} 按Token裁剪，Agent配置的消息窗口大小不再生效。
+ * 这里在写入前再按条数裁剪一次，两个上限同时生效，且只写一次存储。
+ * 淘汰规则与 {@code MessageWindowChatMemory} 一致：保留首条系统消息，淘汰带工具调用的AI消息时一并淘汰其工具结果。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+class MessageCappedChatMemoryStore implements ChatMemoryStore {
+
+    private final ChatMemoryStore delegate;
+    private final int maxMessages;
+
+    MessageCappedChatMemoryStore(ChatMemoryStore delegate, int maxMessages) {
+        this.delegate = delegate;
+        this.maxMessages = maxMessages;
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        return delegate.getMessages(memoryId);
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        delegate.updateMessages(memoryId, cap(messages, maxMessages));
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        delegate.deleteMessages(memoryId);
+    }
+
+    static List<ChatMessage> cap(List<ChatMessage> messages, int maxMessages) {
+        if (maxMessages <= 0 || messages.size() <= maxMessages) {
+            return messages;
+        }
+        List<ChatMessage> capped = new ArrayList<>(messages);
+        while (capped.size() > maxMessages) {
+            int index = capped.getFirst() instanceof SystemMessage ? 1 : 0;
+            if (index >= capped.size()) {
+                break;
+            }
+            ChatMessage evicted = capped.remove(index);
+            if (evicted instanceof AiMessage aiMessage && aiMessage.hasToolExecutionRequests()) {
+                while (index < capped.size() && capped.get(index) instanceof ToolExecutionResultMessage) {
+                    capped.remove(index);
+                }
+            }
+        }
+        return capped;
+    }
+}
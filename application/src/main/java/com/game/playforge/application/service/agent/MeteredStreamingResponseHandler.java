@@ -0,0 +1,111 @@
+package com.game.playforge.application.service.agent;
+
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
+import com.game.playforge.infrastructure.metrics.ModelCallTiming;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialThinkingContext;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.PartialToolCallContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+/**
+ * 流式响应计时包装
+ * <p>
+ * 透传全部回调，记录首个增量（文本、思考或工具调用）的到达时间作为首Token延迟，
+ * 完成时按首Token之后的生成时长计算输出速率。首Token延迟从获得限流许可开始计算（见 {@link ModelCallTiming}）。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+class MeteredStreamingResponseHandler implements StreamingChatResponseHandler {
+
+    private final StreamingChatResponseHandler delegate;
+    private final AgentMetrics agentMetrics;
+    private final String provider;
+    private final String model;
+    private final String agentType;
+    private final long startNanos = System.nanoTime();
+    private final ModelCallTiming timing;
+    private volatile long firstTokenNanos;
+
+    MeteredStreamingResponseHandler(StreamingChatResponseHandler delegate, AgentMetrics agentMetrics,
+                                    String provider, String model, String agentType, ModelCallTiming timing) {
+        this.delegate = delegate;
+        this.agentMetrics = agentMetrics;
+        this.provider = provider;
+        this.model = model;
+        this.agentType = agentType;
+        this.timing = timing;
+    }
+
+    @Override
+    public void onPartialResponse(String partialResponse) {
+        markFirstToken();
+        delegate.onPartialResponse(partialResponse);
+    }
+
+    @Override
+    public void onPartialResponse(PartialResponse partialResponse, PartialResponseContext context) {
+        markFirstToken();
+        delegate.onPartialResponse(partialResponse, context);
+    }
+
+    @Override
+    public void onPartialThinking(PartialThinking partialThinking) {
+        markFirstToken();
+        delegate.onPartialThinking(partialThinking);
+    }
+
+    @Override
+    public void onPartialThinking(PartialThinking partialThinking, PartialThinkingContext context) {
+        markFirstToken();
+        delegate.onPartialThinking(partialThinking, context);
+    }
+
+    @Override
+    public void onPartialToolCall(PartialToolCall partialToolCall) {
+        markFirstToken();
+        delegate.onPartialToolCall(partialToolCall);
+    }
+
+    @Override
+    public void onPartialToolCall(PartialToolCall partialToolCall, PartialToolCallContext context) {
+        markFirstToken();
+        delegate.onPartialToolCall(partialToolCall, context);
+    }
+
+    @Override
+    public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+        delegate.onCompleteToolCall(completeToolCall);
+    }
+
+    @Override
+    public void onCompleteResponse(ChatResponse completeResponse) {
+        long first = firstTokenNanos;
+        if (first != 0 && completeResponse != null && completeResponse.tokenUsage() != null
+                && completeResponse.tokenUsage().outputTokenCount() != null) {
+            agentMetrics.recordTokensPerSecond(provider, model, agentType,
+                    completeResponse.tokenUsage().outputTokenCount(), System.nanoTime() - first);
+        }
+        delegate.onCompleteResponse(completeResponse);
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        delegate.onError(error);
+    }
+
+    private void markFirstToken() {
+        if (firstTokenNanos == 0) {
+            long now = System.nanoTime();
+            firstTokenNanos = now;
+            agentMetrics.recordTimeToFirstToken(provider, model, agentType,
+                    now - (timing != null ? timing.startNanos() : startNanos));
+        }
+    }
+}
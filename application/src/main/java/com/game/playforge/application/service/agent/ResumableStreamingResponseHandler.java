@@ -0,0 +1,199 @@
+package com.game.playforge.application.service.agent;
+
+import com.game.playforge.infrastructure.external.ai.RateLimitErrors;
+import com.game.playforge.infrastructure.external.ai.StreamRetryProperties;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.exception.RetriableException;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialThinkingContext;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.PartialToolCallContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式响应断点续传包装
+ * <p>
+ * 记录已透传给下游的文本。流在输出部分文本后遇到可重试错误时，不把错误交给下游，
+ * 而是在Reactor调度器上延迟后以“原请求 + 已输出文本作为助手预填充”重新请求，
+ * 续写的增量继续透传给同一个下游，完成时把预填充与续写合并为完整回复。
+ * 续写请求经 {@code model.chat} 发起，每次续写各自触发监听器（耗时、Token记账、限流计数），
+ * 因此合并后的回复不再携带Token用量，避免续写的用量被外层调用重复记账。
+ * 已输出思考或工具调用增量的流不续传（预填充无法还原这两类内容），错误照常上报。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Slf4j
+class ResumableStreamingResponseHandler implements StreamingChatResponseHandler {
+
+    private final StreamingChatModel model;
+    private final ChatRequest request;
+    private final StreamingChatResponseHandler delegate;
+    private final StreamRetryProperties properties;
+
+    /**
+     * 已透传给下游的文本，回调在同一条流上串行触发
+     */
+    private final StringBuilder emitted = new StringBuilder();
+    private String resumedPrefix = "";
+    private boolean trimNextLeadingWhitespace;
+    private boolean structuredOutput;
+    private int resumeAttempts;
+
+    ResumableStreamingResponseHandler(StreamingChatModel model, ChatRequest request,
+                                      StreamingChatResponseHandler delegate, StreamRetryProperties properties) {
+        this.model = model;
+        this.request = request;
+        this.delegate = delegate;
+        this.properties = properties;
+    }
+
+    @Override
+    public void onPartialResponse(String partialResponse) {
+        String text = trimResumeBoundary(partialResponse);
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        emitted.append(text);
+        delegate.onPartialResponse(text);
+    }
+
+    @Override
+    public void onPartialResponse(PartialResponse partialResponse, PartialResponseContext context) {
+        onPartialResponse(partialResponse.text());
+    }
+
+    @Override
+    public void onPartialThinking(PartialThinking partialThinking) {
+        structuredOutput = true;
+        delegate.onPartialThinking(partialThinking);
+    }
+
+    @Override
+    public void onPartialThinking(PartialThinking partialThinking, PartialThinkingContext context) {
+        structuredOutput = true;
+        delegate.onPartialThinking(partialThinking, context);
+    }
+
+    @Override
+    public void onPartialToolCall(PartialToolCall partialToolCall) {
+        structuredOutput = true;
+        delegate.onPartialToolCall(partialToolCall);
+    }
+
+    @Override
+    public void onPartialToolCall(PartialToolCall partialToolCall, PartialToolCallContext context) {
+        structuredOutput = true;
+        delegate.onPartialToolCall(partialToolCall, context);
+    }
+
+    @Override
+    public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+        delegate.onCompleteToolCall(completeToolCall);
+    }
+
+    @Override
+    public void onCompleteResponse(ChatResponse completeResponse) {
+        if (resumedPrefix.isEmpty() || completeResponse == null || completeResponse.aiMessage() == null) {
+            delegate.onCompleteResponse(completeResponse);
+            return;
+        }
+        AiMessage continuation = completeResponse.aiMessage();
+        // 下游收到的文本即完整回复：断点前的输出 + 续写；续写的用量已由其自身的监听器记账
+        AiMessage.Builder merged = AiMessage.builder()
+                .text(emitted.toString())
+                .attributes(continuation.attributes());
+        if (continuation.thinking() != null) {
+            merged.thinking(continuation.thinking());
+        }
+        if (continuation.hasToolExecutionRequests()) {
+            merged.toolExecutionRequests(continuation.toolExecutionRequests());
+        }
+        delegate.onCompleteResponse(completeResponse.toBuilder()
+                .aiMessage(merged.build())
+                .metadata(completeResponse.metadata().toBuilder().tokenUsage(null).build())
+                .build());
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        if (!canResume(error)) {
+            delegate.onError(error);
+            return;
+        }
+        resumeAttempts++;
+        long backoffMillis = properties.getResumeBackoff().toMillis() << (resumeAttempts - 1);
+        log.warn("流式输出中断，从断点续传, emittedChars={}, attempt={}/{}, backoffMs={}, error={}",
+                emitted.length(), resumeAttempts, properties.getMaxResumeAttempts(), backoffMillis,
+                error.getMessage());
+        // 在调度器上延迟，不阻塞供应商HTTP客户端的回调线程
+        Mono.delay(Duration.ofMillis(backoffMillis), Schedulers.boundedElastic())
+                .subscribe(tick -> resume(), delegate::onError);
+    }
+
+    private void resume() {
+        // 预填充不能以空白结尾，续写开头的空白在透传时去掉以免重复
+        resumedPrefix = emitted.toString().stripTrailing();
+        trimNextLeadingWhitespace = resumedPrefix.length() < emitted.length();
+        List<ChatMessage> messages = new ArrayList<>(request.messages());
+        messages.add(AiMessage.from(resumedPrefix));
+        model.chat(request.toBuilder().messages(messages).build(), this);
+    }
+
+    private boolean canResume(Throwable error) {
+        return resumeAttempts < properties.getMaxResumeAttempts()
+                && !structuredOutput
+                && !emitted.toString().isBlank()
+                && isRetriable(error);
+    }
+
+    private String trimResumeBoundary(String text) {
+        if (!trimNextLeadingWhitespace || text == null) {
+            return text;
+        }
+        String trimmed = stripLeading(text);
+        if (!trimmed.isEmpty()) {
+            trimNextLeadingWhitespace = false;
+        }
+        return trimmed;
+    }
+
+    static boolean isRetriable(Throwable error) {
+        if (RateLimitErrors.isRateLimitError(error)) {
+            return true;
+        }
+        Throwable cursor = error;
+        while (cursor != null) {
+            if (cursor instanceof RetriableException
+                    || cursor instanceof IOException
+                    || cursor instanceof UncheckedIOException
+                    || (cursor instanceof HttpException http && http.statusCode() >= 500)) {
+                return true;
+            }
+            cursor = cursor.getCause();
+        }
+        return false;
+    }
+
+    private static String stripLeading(String value) {
+        return value == null ? "" : value.stripLeading();
+    }
+}
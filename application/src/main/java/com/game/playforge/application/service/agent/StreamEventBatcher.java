@@ -0,0 +1,179 @@
+package com.game.playforge.application.service.agent;
+
+import com.game.playforge.application.dto.AgentStreamEvent;
+import com.game.playforge.infrastructure.external.stream.StreamBatchProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式分片合并
+ * <p>
+ * 模型每个增量都是一个token/thinking事件，逐个下发时一次长回答会产生数千帧。
+ * 合并后每个窗口最多下发一帧：距上一帧超过窗口时立即下发（不增加首Token延迟），
+ * 否则把相邻的同类型分片累积到窗口结束或内容达到上限时合并为一帧，合并帧沿用最后一个分片的事件ID，不影响续传。
+ * 其他类型的事件到达前先下发已累积的分片，保持事件顺序。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Component
+@RequiredArgsConstructor
+public class StreamEventBatcher {
+
+    private final StreamBatchProperties properties;
+
+    /**
+     * 解析客户端指定的合并窗口
+     *
+     * @param flushMillis 窗口毫秒数，为空或负数时使用默认值，0表示不合并
+     * @return 合并窗口（不超过配置上限）
+     */
+    public Duration resolveInterval(Long flushMillis) {
+        if (flushMillis == null || flushMillis < 0) {
+            return properties.getFlushInterval();
+        }
+        Duration requested = Duration.ofMillis(flushMillis);
+        return requested.compareTo(properties.getMaxFlushInterval()) > 0 ? properties.getMaxFlushInterval() : requested;
+    }
+
+    /**
+     * 按合并窗口合并事件流中的token/thinking分片
+     *
+     * @param events   原始事件流
+     * @param interval 合并窗口，为0时原样返回
+     * @return 合并后的事件流
+     */
+    public Flux<AgentStreamEvent> batch(Flux<AgentStreamEvent> events, Duration interval) {
+        if (!properties.isEnabled() || interval == null || interval.isZero() || interval.isNegative()) {
+            return events;
+        }
+        return Flux.create(sink -> {
+            Batch batch = new Batch(sink, interval.toNanos(), Math.max(1, properties.getMaxChars()));
+            Disposable upstream = events.subscribe(batch::onNext, batch::onError, batch::onComplete);
+            sink.onDispose(() -> {
+                upstream.dispose();
+                batch.cancelTimer();
+            });
+        });
+    }
+
+    private static boolean isDelta(AgentStreamEvent event) {
+        return AgentStreamEvent.TYPE_TOKEN.equals(event.type()) || AgentStreamEvent.TYPE_THINKING.equals(event.type());
+    }
+
+    /**
+     * 单个订阅的合并状态，上游回调与定时下发互斥
+     */
+    private static final class Batch {
+
+        private final FluxSink<AgentStreamEvent> sink;
+        private final long intervalNanos;
+        private final int maxChars;
+
+        /**
+         * 累积中的首个分片，仅一个分片时原样下发
+         */
+        private AgentStreamEvent pending;
+        private StringBuilder merged;
+        private String lastId;
+        private long lastEmitNanos;
+        private long generation;
+        private Disposable timer;
+
+        private Batch(FluxSink<AgentStreamEvent> sink, long intervalNanos, int maxChars) {
+            this.sink = sink;
+            this.intervalNanos = intervalNanos;
+            this.maxChars = maxChars;
+            this.lastEmitNanos = System.nanoTime() - intervalNanos;
+        }
+
+        synchronized void onNext(AgentStreamEvent event) {
+            if (!isDelta(event)) {
+                flush();
+                emit(event);
+                return;
+            }
+            if (pending != null && !pending.type().equals(event.type())) {
+                flush();
+            }
+            if (pending == null) {
+                long elapsed = System.nanoTime() - lastEmitNanos;
+                if (elapsed >= intervalNanos) {
+                    emit(event);
+                    return;
+                }
+                pending = event;
+                lastId = event.id();
+                long scheduled = ++generation;
+                timer = Schedulers.parallel().schedule(() -> onTimer(scheduled),
+                        intervalNanos - elapsed, TimeUnit.NANOSECONDS);
+                return;
+            }
+            if (merged == null) {
+                merged = new StringBuilder(Math.min(maxChars, 256));
+                merged.append(nullToEmpty(pending.content()));
+            }
+            merged.append(nullToEmpty(event.content()));
+            if (event.id() != null) {
+                lastId = event.id();
+            }
+            if (merged.length() >= maxChars) {
+                flush();
+            }
+        }
+
+        synchronized void onError(Throwable error) {
+            flush();
+            sink.error(error);
+        }
+
+        synchronized void onComplete() {
+            flush();
+            sink.complete();
+        }
+
+        synchronized void cancelTimer() {
+            generation++;
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+        }
+
+        private synchronized void onTimer(long scheduled) {
+            if (scheduled == generation) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (pending == null) {
+                return;
+            }
+            AgentStreamEvent event = merged == null ? pending
+                    : new AgentStreamEvent(pending.type(), merged.toString(), lastId);
+            pending = null;
+            merged = null;
+            lastId = null;
+            cancelTimer();
+            emit(event);
+        }
+
+        private void emit(AgentStreamEvent event) {
+            lastEmitNanos = System.nanoTime();
+            sink.next(event);
+        }
+
+        private static String nullToEmpty(String value) {
+            return value != null ? value : "";
+        }
+    }
+}
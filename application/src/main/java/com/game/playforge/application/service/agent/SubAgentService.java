@@ -10,9 +10,15 @@ import com.game.playforge.domain.model.AgentThread;
 import com.game.playforge.domain.repository.AgentDefinitionRepository;
 import com.game.playforge.domain.repository.AgentMessageRepository;
 import com.game.playforge.domain.repository.AgentThreadRepository;
+import com.game.playforge.infrastructure.external.ai.AgentProfileRegistry;
+import com.game.playforge.infrastructure.external.ai.AgentRuntimeProfile;
 import com.game.playforge.infrastructure.external.ai.AgentTypeRegistry;
 import com.game.playforge.infrastructure.external.ai.AgentTypeRegistry.AgentTypeDescriptor;
+import com.game.playforge.infrastructure.external.ai.RateLimitErrors;
 import com.game.playforge.infrastructure.external.ai.RedisChatMemoryStore;
+import com.game.playforge.infrastructure.external.ai.TokenUsageTracker;
+import com.game.playforge.infrastructure.external.ai.ratelimit.ProviderRateLimiter;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.UserMessage;
@@ -41,11 +47,15 @@ public class SubAgentService {
 
     private final AgentFactory agentFactory;
     private final AgentTypeRegistry agentTypeRegistry;
+    private final AgentProfileRegistry agentProfileRegistry;
     private final AgentDefinitionRepository agentDefinitionRepository;
     private final AgentThreadRepository agentThreadRepository;
     private final AgentMessageRepository agentMessageRepository;
     private final RedisChatMemoryStore redisChatMemoryStore;
     private final TransactionTemplate transactionTemplate;
+    private final TokenUsageTracker tokenUsageTracker;
+    private final AgentMetrics agentMetrics;
+    private final ProviderRateLimiter providerRateLimiter;
 
     /**
      * 子Agent使用更快的模型（Sonnet 4.6比Opus快且省token，接近Opus水平）
@@ -91,7 +101,7 @@ public class SubAgentService {
         if (parentAgent == null) {
             throw new BusinessException(ResultCode.AGENT_NOT_FOUND, "父Agent不存在");
         }
-        if (!hasSubAgentTool(parentAgent)) {
+        if (!agentProfileRegistry.getProfile(parentAgent).hasSubAgentTool()) {
             throw new BusinessException(ResultCode.AGENT_ACCESS_DENIED, "当前Agent不允许创建子Agent");
         }
 
@@ -166,15 +176,13 @@ public class SubAgentService {
         recoverMemoryIfNeeded(thread, definition);
 
         // 先保存用户消息（确保前端能看到已派发的任务）
-        transactionTemplate.executeWithoutResult(status -> {
-            AgentMessage userMsg = new AgentMessage();
-            userMsg.setThreadId(threadId);
-            userMsg.setRole("user");
-            userMsg.setContent(message);
-            userMsg.setTokenCount(0);
-            agentMessageRepository.insert(userMsg);
-            agentThreadRepository.incrementMessageCount(threadId, 1, java.time.LocalDateTime.now());
-        });
+        AgentMessage userMsg = new AgentMessage();
+        userMsg.setThreadId(threadId);
+        userMsg.setRole("user");
+        userMsg.setContent(message);
+        userMsg.setTokenCount(0);
+        agentMessageRepository.insertAsync(userMsg);
+        agentThreadRepository.incrementMessageCount(threadId, 1, java.time.LocalDateTime.now());
 
         // 调用LLM（带速率限制重试）
         String response;
@@ -184,28 +192,26 @@ public class SubAgentService {
         } catch (Exception e) {
             // 保存错误消息到对话中（用户能看到失败原因）
             String errorContent = "[Error] " + extractErrorMessage(e);
-            transactionTemplate.executeWithoutResult(status -> {
-                AgentMessage errorMsg = new AgentMessage();
-                errorMsg.setThreadId(threadId);
-                errorMsg.setRole("assistant");
-                errorMsg.setContent(errorContent);
-                errorMsg.setTokenCount(0);
-                agentMessageRepository.insert(errorMsg);
-                agentThreadRepository.incrementMessageCount(threadId, 1, java.time.LocalDateTime.now());
-            });
+            AgentMessage errorMsg = new AgentMessage();
+            errorMsg.setThreadId(threadId);
+            errorMsg.setRole("assistant");
+            errorMsg.setContent(errorContent);
+            errorMsg.setTokenCount(tokenUsageTracker.takeOutputTokens(threadId));
+            agentMessageRepository.insertAsync(errorMsg);
+            agentThreadRepository.incrementMessageCount(threadId, 1, java.time.LocalDateTime.now());
+            agentThreadRepository.flushMessageStats(threadId);
             throw e;
         }
 
         // 保存助手回复
-        transactionTemplate.executeWithoutResult(status -> {
-            AgentMessage assistantMsg = new AgentMessage();
-            assistantMsg.setThreadId(threadId);
-            assistantMsg.setRole("assistant");
-            assistantMsg.setContent(response);
-            assistantMsg.setTokenCount(0);
-            agentMessageRepository.insert(assistantMsg);
-            agentThreadRepository.incrementMessageCount(threadId, 1, java.time.LocalDateTime.now());
-        });
+        AgentMessage assistantMsg = new AgentMessage();
+        assistantMsg.setThreadId(threadId);
+        assistantMsg.setRole("assistant");
+        assistantMsg.setContent(response);
+        assistantMsg.setTokenCount(tokenUsageTracker.takeOutputTokens(threadId));
+        agentMessageRepository.insertAsync(assistantMsg);
+        agentThreadRepository.incrementMessageCount(threadId, 1, java.time.LocalDateTime.now());
+        agentThreadRepository.flushMessageStats(threadId);
 
         log.info("子Agent聊天完成, threadId={}, responseLength={}", threadId, response.length());
         return response;
@@ -216,10 +222,11 @@ public class SubAgentService {
             try {
                 return agent.chat(message);
             } catch (Exception e) {
-                if (!isRateLimitError(e) || attempt >= MAX_RETRIES) {
+                if (!RateLimitErrors.isRateLimitError(e) || attempt >= MAX_RETRIES) {
                     throw e;
                 }
                 long waitSeconds = computeBackoffSeconds(attempt);
+                agentMetrics.countRetry("sub_agent", "rate_limit");
                 log.warn("子Agent速率限制, threadId={}, 等待{}秒后重试 ({}/{})",
                         threadId, waitSeconds, attempt + 1, MAX_RETRIES);
                 try {
@@ -272,24 +279,13 @@ public class SubAgentService {
         }
     }
 
-    private boolean isRateLimitError(Throwable e) {
-        while (e != null) {
-            if (e.getClass().getSimpleName().equals("RateLimitException")) {
-                return true;
-            }
-            String message = e.getMessage();
-            if (message != null) {
-                String lower = message.toLowerCase();
-                if (lower.contains("rate_limit") || lower.contains("rate limit")) {
-                    return true;
-                }
-            }
-            e = e.getCause();
-        }
-        return false;
-    }
-
+    /**
+     * 启用供应商限流时重试直接进入限流通道排队（429已触发通道冷却），无需额外退避
+     */
     private long computeBackoffSeconds(int attempt) {
+        if (providerRateLimiter.isEnabled()) {
+            return 0;
+        }
         long jitter = ThreadLocalRandom.current().nextInt(10);
         return (long) Math.pow(2, attempt) * BASE_BACKOFF_SECONDS + jitter;
     }
@@ -394,26 +390,12 @@ public class SubAgentService {
         if (typeDescriptor.defaultTools() != null) {
             tools.addAll(typeDescriptor.defaultTools());
         }
-        if (additionalTools != null && !additionalTools.isBlank()) {
-            Arrays.stream(additionalTools.split(","))
-                    .map(String::trim)
-                    .filter(s -> !s.isEmpty())
-                    .forEach(tools::add);
-        }
+        tools.addAll(AgentRuntimeProfile.parseNames(additionalTools));
         // 防止嵌套：子Agent不能创建子Agent
-        tools.remove("subAgentTool");
+        tools.remove(AgentRuntimeProfile.SUB_AGENT_TOOL);
         return String.join(",", tools);
     }
 
-    private boolean hasSubAgentTool(AgentDefinition definition) {
-        if (definition.getToolNames() == null || definition.getToolNames().isBlank()) {
-            return false;
-        }
-        return Arrays.stream(definition.getToolNames().split(","))
-                .map(String::trim)
-                .anyMatch("subAgentTool"::equals);
-    }
-
     private void validateParentThreadAccess(Long userId, Long parentThreadId) {
         AgentThread parentThread = agentThreadRepository.findById(parentThreadId);
         if (parentThread == null || ThreadStatus.DELETED.name().equals(parentThread.getStatus())) {
@@ -452,13 +434,13 @@ public class SubAgentService {
         userMsg.setRole("user");
         userMsg.setContent(userContent);
         userMsg.setTokenCount(0);
-        agentMessageRepository.insert(userMsg);
+        agentMessageRepository.insertAsync(userMsg);
 
         AgentMessage assistantMsg = new AgentMessage();
         assistantMsg.setThreadId(threadId);
         assistantMsg.setRole("assistant");
         assistantMsg.setContent(assistantContent);
-        assistantMsg.setTokenCount(0);
-        agentMessageRepository.insert(assistantMsg);
+        assistantMsg.setTokenCount(tokenUsageTracker.takeOutputTokens(threadId));
+        agentMessageRepository.insertAsync(assistantMsg);
     }
 }
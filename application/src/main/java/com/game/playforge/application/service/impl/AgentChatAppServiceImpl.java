@@ -17,8 +17,19 @@ import com.game.playforge.domain.model.AgentThread;
 import com.game.playforge.domain.repository.AgentDefinitionRepository;
 import com.game.playforge.domain.repository.AgentMessageRepository;
 import com.game.playforge.domain.repository.AgentThreadRepository;
+import com.game.playforge.infrastructure.external.ai.AgentProfileRegistry;
 import com.game.playforge.infrastructure.external.ai.AsyncTaskManager;
+import com.game.playforge.infrastructure.external.ai.RateLimitErrors;
 import com.game.playforge.infrastructure.external.ai.RedisChatMemoryStore;
+import com.game.playforge.infrastructure.external.ai.TokenUsageTracker;
+import com.game.playforge.infrastructure.external.ai.ratelimit.ProviderRateLimiter;
+import com.game.playforge.infrastructure.external.ai.scheduling.AgentTaskScheduler;
+import com.game.playforge.infrastructure.external.ai.scheduling.AgentTaskScheduler.Lane;
+import com.game.playforge.infrastructure.external.cluster.ClusterTaskRegistry;
+import com.game.playforge.infrastructure.external.cluster.ThreadExecutionLock;
+import com.game.playforge.infrastructure.external.stream.StreamEventLog;
+import com.game.playforge.infrastructure.external.stream.StreamEventLogProperties;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
 import com.game.playforge.application.service.agent.tools.SubAgentTool;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
@@ -29,19 +40,21 @@ import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.support.TransactionTemplate;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 /**
@@ -61,10 +74,21 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
     private static final int MAX_RATE_LIMIT_RETRIES = 2;
     private static final long BASE_BACKOFF_MILLIS = 2000L;
     private static final int STREAM_PERSIST_TOKEN_STEP = 80;
+    private static final int STREAM_PERSIST_MAX_PENDING_CHARS = 4096;
+    private static final long STREAM_PERSIST_INTERVAL_NANOS = 500_000_000L;
 
+    /**
+     * 流式回复的增量持久化状态
+     * <p>
+     * 首次落库插入assistant消息行，之后只追加增量分片；按字数和时间双阈值刷写，
+     * 完成时合并为最终内容。页面刷新或进程中断时，已刷写的部分由分片拼接还原。
+     * </p>
+     */
     private static final class StreamPersistenceState {
         private Long assistantMessageId;
         private int lastPersistedLength;
+        private int nextChunkSeq;
+        private long lastPersistedAtNanos = System.nanoTime();
     }
 
     private final AgentFactory agentFactory;
@@ -72,25 +96,48 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
     private final AgentDefinitionRepository agentDefinitionRepository;
     private final AgentMessageRepository agentMessageRepository;
     private final RedisChatMemoryStore redisChatMemoryStore;
-    private final TransactionTemplate transactionTemplate;
     private final SubAgentService subAgentService;
+    private final AgentProfileRegistry agentProfileRegistry;
+    private final TokenUsageTracker tokenUsageTracker;
+    private final AgentMetrics agentMetrics;
+    private final ProviderRateLimiter providerRateLimiter;
+    private final AgentTaskScheduler agentTaskScheduler;
+    private final ClusterTaskRegistry clusterTaskRegistry;
+    private final ThreadExecutionLock threadExecutionLock;
+    private final StreamEventLog streamEventLog;
+    private final StreamEventLogProperties streamEventLogProperties;
     private final Map<Long, AsyncTaskManager> taskManagers = new ConcurrentHashMap<>();
-    private final Set<Long> activeProcessingThreads = ConcurrentHashMap.newKeySet();
 
     public AgentChatAppServiceImpl(AgentFactory agentFactory,
                                    AgentThreadRepository agentThreadRepository,
                                    AgentDefinitionRepository agentDefinitionRepository,
                                    AgentMessageRepository agentMessageRepository,
                                    RedisChatMemoryStore redisChatMemoryStore,
-                                   TransactionTemplate transactionTemplate,
-                                   @Lazy SubAgentService subAgentService) {
+                                   @Lazy SubAgentService subAgentService,
+                                   AgentProfileRegistry agentProfileRegistry,
+                                   TokenUsageTracker tokenUsageTracker,
+                                   AgentMetrics agentMetrics,
+                                   ProviderRateLimiter providerRateLimiter,
+                                   AgentTaskScheduler agentTaskScheduler,
+                                   ClusterTaskRegistry clusterTaskRegistry,
+                                   ThreadExecutionLock threadExecutionLock,
+                                   StreamEventLog streamEventLog,
+                                   StreamEventLogProperties streamEventLogProperties) {
         this.agentFactory = agentFactory;
         this.agentThreadRepository = agentThreadRepository;
         this.agentDefinitionRepository = agentDefinitionRepository;
         this.agentMessageRepository = agentMessageRepository;
         this.redisChatMemoryStore = redisChatMemoryStore;
-        this.transactionTemplate = transactionTemplate;
         this.subAgentService = subAgentService;
+        this.agentProfileRegistry = agentProfileRegistry;
+        this.tokenUsageTracker = tokenUsageTracker;
+        this.agentMetrics = agentMetrics;
+        this.providerRateLimiter = providerRateLimiter;
+        this.agentTaskScheduler = agentTaskScheduler;
+        this.clusterTaskRegistry = clusterTaskRegistry;
+        this.threadExecutionLock = threadExecutionLock;
+        this.streamEventLog = streamEventLog;
+        this.streamEventLogProperties = streamEventLogProperties;
     }
 
     @Override
@@ -100,16 +147,27 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
         AgentThread thread = validateAndGetThread(userId, threadId);
         AgentDefinition definition = getAgentDefinition(thread.getAgentId());
 
-        recoverMemoryIfNeeded(thread, definition);
-
         List<Object> extraTools = buildExtraTools(definition, userId, threadId);
         AgentChatService agent = agentFactory.createAgent(definition, threadId, userId, extraTools);
-        String response = chatWithRetry(agent, message, threadId);
-
-        transactionTemplate.executeWithoutResult(status -> {
+        String response;
+        // 持有会话锁直到消息写入完成；租约失效时中断本线程取消本轮对话
+        ThreadExecutionLock.Lease threadLock = threadExecutionLock.acquireBlocking(threadId);
+        try (threadLock;
+             AgentTaskScheduler.Permit ignored = agentTaskScheduler.acquireBlocking(
+                     Lane.INTERACTIVE, userId, providerOf(definition))) {
+            threadLock.onLost(Thread.currentThread()::interrupt);
+            recoverMemoryIfNeeded(thread, definition);
+            response = chatWithRetry(agent, message, threadId);
+            ensureLeaseHeld(threadLock, threadId);
             saveMessages(threadId, message, response);
             updateThreadStats(threadId, 2);
-        });
+            agentThreadRepository.flushMessageStats(threadId);
+        } finally {
+            if (threadLock.isLost()) {
+                // 清除失效回调设置的中断标记，不影响请求线程后续使用
+                Thread.interrupted();
+            }
+        }
 
         log.info("同步聊天完成, threadId={}, responseLength={}", threadId, response.length());
         return new AgentChatResponse(threadId, response);
@@ -122,28 +180,68 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
         AgentThread thread = validateAndGetThread(userId, threadId);
         AgentDefinition definition = getAgentDefinition(thread.getAgentId());
 
-        recoverMemoryIfNeeded(thread, definition);
-
-        // Save user message immediately so it's visible in DB even if user switches away
-        transactionTemplate.executeWithoutResult(status -> {
-            saveUserMessage(threadId, message);
-            updateThreadStats(threadId, 1);
-        });
-
         List<Object> extraTools = buildExtraTools(definition, userId, threadId);
         AgentStreamingChatService agent = agentFactory.createStreamingAgent(definition, threadId, userId, extraTools);
+        // 其他节点转来的取消请求：结束下游订阅，上游随之收到取消
+        Sinks.One<Boolean> remoteCancel = Sinks.one();
+        AtomicReference<StreamEventLog.Recorder> recorder = new AtomicReference<>();
 
-        return Flux.create(sink -> {
+        return recordEvents(recorder, Flux.<AgentStreamEvent>create(sink -> {
             StringBuilder fullResponse = new StringBuilder();
             StringBuilder fullThinking = new StringBuilder();
-            startStreamingWithRetry(
-                    agent, message, threadId, sink, fullResponse, fullThinking,
-                    0, false, null);
+            Runnable metricsFinished = agentMetrics.streamStarted();
+            // 先取得会话锁（同一会话的上一轮结束前排队或直接拒绝），再在交互通道排队，流结束时依次归还
+            threadExecutionLock.acquire(threadId).whenComplete((threadLock, lockError) -> {
+                if (lockError != null) {
+                    sink.error(lockError);
+                    metricsFinished.run();
+                    return;
+                }
+                // 取得会话锁后才登记处理状态：排队或被拒绝的请求不会顶替正在进行的轮次接收取消、删除其处理标记；
+                // 结束时先注销登记再归还会话锁，下一轮的登记不会被本轮注销
+                ClusterTaskRegistry.Registration registration = clusterTaskRegistry.register(threadId,
+                        () -> remoteCancel.tryEmitValue(Boolean.TRUE));
+                Runnable streamFinished = () -> {
+                    registration.close();
+                    threadLock.close();
+                    metricsFinished.run();
+                };
+                // 取得会话锁后才开启事件流轮次、恢复记忆并写入用户消息：
+                // 被拒绝的请求不占用轮次号、不留下孤立消息，排队请求的消息时间也不会落在上一轮回复中间
+                try {
+                    recorder.set(streamEventLog.open(threadId));
+                    recoverMemoryIfNeeded(thread, definition);
+                    // Save user message immediately so it's visible in DB even if user switches away
+                    saveUserMessage(threadId, message);
+                    updateThreadStats(threadId, 1);
+                } catch (Exception e) {
+                    log.error("流式聊天初始化失败, threadId={}", threadId, e);
+                    sink.error(e);
+                    streamFinished.run();
+                    return;
+                }
+                // 租约失效（被其他节点取代）时按取消处理，结束本轮下发
+                threadLock.onLost(() -> remoteCancel.tryEmitValue(Boolean.TRUE));
+                agentTaskScheduler.acquire(Lane.INTERACTIVE, userId, providerOf(definition))
+                        .whenComplete((permit, error) -> {
+                            if (error != null) {
+                                sink.error(error);
+                                streamFinished.run();
+                                return;
+                            }
+                            startStreamingWithRetry(
+                                    agent, message, threadId, sink, fullResponse, fullThinking,
+                                    0, false, new StreamPersistenceState(), () -> {
+                                        permit.release();
+                                        streamFinished.run();
+                                    });
+                        });
+            });
 
             sink.onCancel(() -> {
                 log.info("流式聊天被取消, threadId={}", threadId);
             });
-        });
+        }).takeUntilOther(remoteCancel.asMono()));
     }
 
     @Override
@@ -152,28 +250,23 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
 
         AgentThread thread = validateAndGetThread(userId, threadId);
         AgentDefinition definition = getAgentDefinition(thread.getAgentId());
-        recoverMemoryIfNeeded(thread, definition);
-
-        // Save user message first so it is visible while lead agent is still processing.
-        transactionTemplate.executeWithoutResult(status -> {
-            saveUserMessage(threadId, message);
-            updateThreadStats(threadId, 1);
-        });
 
-        return Flux.create(sink -> {
+        AtomicReference<StreamEventLog.Recorder> recorder = new AtomicReference<>();
+        return recordEvents(recorder, Flux.create(sink -> {
             // Use virtual thread so SSE progress events are pushed in real-time
             // while the sync chat blocks until complete.
-            activeProcessingThreads.add(threadId);
+            Runnable streamFinished = agentMetrics.streamStarted();
             Thread.startVirtualThread(() -> {
+                ThreadExecutionLock.Lease threadLock = null;
+                ClusterTaskRegistry.Registration registration = null;
+                AgentTaskScheduler.Permit permit = null;
                 try {
                     Consumer<AgentStreamEvent> progressCallback = event -> {
                         if (AgentStreamEvent.TYPE_PROGRESS.equals(event.type())
                                 && event.content() != null
                                 && !event.content().isBlank()) {
-                            transactionTemplate.executeWithoutResult(status -> {
-                                saveToolMessage(threadId, AgentStreamEvent.TYPE_PROGRESS, event.content());
-                                updateThreadStats(threadId, 1);
-                            });
+                            saveToolMessage(threadId, AgentStreamEvent.TYPE_PROGRESS, event.content());
+                            updateThreadStats(threadId, 1);
                         }
                         if (!sink.isCancelled()) {
                             sink.next(event);
@@ -188,20 +281,16 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
                         }
                         String thinking = chatResponse.aiMessage().thinking();
                         if (thinking != null && !thinking.isBlank()) {
-                            transactionTemplate.executeWithoutResult(status -> {
-                                saveToolMessage(threadId, AgentStreamEvent.TYPE_THINKING, thinking);
-                                updateThreadStats(threadId, 1);
-                            });
+                            saveToolMessage(threadId, AgentStreamEvent.TYPE_THINKING, thinking);
+                            updateThreadStats(threadId, 1);
                             if (!sink.isCancelled()) {
                                 sink.next(AgentStreamEvent.thinking(thinking));
                             }
                         }
                         String text = chatResponse.aiMessage().text();
                         if (text != null && !text.isBlank()) {
-                            transactionTemplate.executeWithoutResult(status -> {
-                                saveAssistantMessage(threadId, text);
-                                updateThreadStats(threadId, 1);
-                            });
+                            saveAssistantMessage(threadId, text);
+                            updateThreadStats(threadId, 1);
                             if (!sink.isCancelled()) {
                                 sink.next(AgentStreamEvent.response(text));
                             }
@@ -211,9 +300,22 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
                     List<Object> extraTools = buildExtraTools(definition, userId, threadId, progressCallback);
                     AgentChatService agent = agentFactory.createAgent(
                             definition, threadId, userId, extraTools, responseInterceptor);
+                    // 会话锁与调度许可持有到结果下发、计数落库之后，租约失效时中断工作线程
+                    threadLock = threadExecutionLock.acquireBlocking(threadId);
+                    // 取得会话锁后才登记处理状态，取消时中断等待模型响应或子Agent结果的工作线程
+                    registration = clusterTaskRegistry.register(threadId, Thread.currentThread()::interrupt);
+                    recorder.set(streamEventLog.open(threadId));
+                    threadLock.onLost(Thread.currentThread()::interrupt);
+                    recoverMemoryIfNeeded(thread, definition);
+                    // Save user message first so it is visible while lead agent is still processing.
+                    saveUserMessage(threadId, message);
+                    updateThreadStats(threadId, 1);
+                    permit = agentTaskScheduler.acquireBlocking(Lane.INTERACTIVE, userId, providerOf(definition));
                     chatWithRetry(agent, message, threadId);
+                    ensureLeaseHeld(threadLock, threadId);
 
                     // All responses already persisted by responseInterceptor; just signal completion
+                    agentThreadRepository.flushMessageStats(threadId);
                     if (!sink.isCancelled()) {
                         sink.complete();
                     }
@@ -221,21 +323,130 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
                     log.info("带进度聊天完成, threadId={}", threadId);
                 } catch (Exception e) {
                     log.error("带进度聊天失败, threadId={}", threadId, e);
+                    agentThreadRepository.flushMessageStats(threadId);
                     if (!sink.isCancelled()) {
                         sink.next(AgentStreamEvent.error(e.getMessage()));
                         sink.complete();
                     }
                 } finally {
-                    activeProcessingThreads.remove(threadId);
+                    if (permit != null) {
+                        permit.close();
+                    }
+                    // 先注销登记再归还会话锁，下一轮的登记不会被本轮注销
+                    if (registration != null) {
+                        registration.close();
+                    }
+                    if (threadLock != null) {
+                        threadLock.close();
+                    }
+                    streamFinished.run();
                 }
             });
 
             sink.onCancel(() -> {
                 log.info("带进度聊天被取消, threadId={}", threadId);
             });
+        }));
+    }
+
+    @Override
+    public Flux<AgentStreamEvent> resumeStream(Long userId, Long threadId, String lastEventId) {
+        validateAndGetThread(userId, threadId);
+        log.info("续传生成事件, userId={}, threadId={}, lastEventId={}", userId, threadId, lastEventId);
+
+        return Flux.create(sink -> {
+            // 虚拟线程上轮询事件流：补发错过的事件后继续跟随，读到done/error即结束
+            Thread follower = Thread.startVirtualThread(() -> {
+                try {
+                    followEvents(threadId, lastEventId, sink);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    log.warn("续传生成事件失败, threadId={}", threadId, e);
+                    sink.error(e);
+                }
+            });
+            sink.onDispose(follower::interrupt);
         });
     }
 
+    /**
+     * 把一轮生成的事件记录到会话事件流并附加事件ID，结束时记录done/error
+     * <p>
+     * 记录器在取得会话锁后才开启（开启即分配轮次号）；开启前结束的流（如会话锁被拒绝）原样下发、不记录，
+     * 不会占用轮次号，也不会让正在进行的轮次的续传起点跳到一个空轮次。
+     * </p>
+     *
+     * @param recorder 本轮的事件记录器，取得会话锁后设置
+     */
+    private Flux<AgentStreamEvent> recordEvents(AtomicReference<StreamEventLog.Recorder> recorder,
+                                                Flux<AgentStreamEvent> events) {
+        return events
+                .map(event -> {
+                    StreamEventLog.Recorder current = recorder.get();
+                    return current != null ? event.withId(current.record(event.type(), event.content())) : event;
+                })
+                .doOnComplete(() -> {
+                    StreamEventLog.Recorder current = recorder.get();
+                    if (current != null) {
+                        current.record(AgentStreamEvent.TYPE_DONE, "");
+                    }
+                })
+                .doOnError(error -> {
+                    StreamEventLog.Recorder current = recorder.get();
+                    if (current != null) {
+                        current.record(AgentStreamEvent.TYPE_ERROR, error.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * 从事件流补发并跟随事件
+     * <p>
+     * 无新事件时按间隔轮询；会话已不在处理且连续两次读空时结束（等待最后一批异步写入落地）。
+     * 读到的事件与游标之间有缺口（被裁剪或写入失败）时发送resync事件并结束，由客户端从历史消息重新加载。
+     * </p>
+     */
+    private void followEvents(Long threadId, String lastEventId, FluxSink<AgentStreamEvent> sink)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + streamEventLogProperties.getFollowTimeout().toNanos();
+        String cursor = streamEventLog.resumePoint(threadId, lastEventId);
+        int idlePolls = 0;
+        while (!sink.isCancelled()) {
+            List<StreamEventLog.Entry> entries = streamEventLog.readAfter(
+                    threadId, cursor, streamEventLogProperties.getReadBatchSize());
+            if (entries.isEmpty()) {
+                idlePolls = clusterTaskRegistry.isProcessing(threadId) ? 0 : idlePolls + 1;
+                if (idlePolls >= 2 || System.nanoTime() > deadline) {
+                    sink.complete();
+                    return;
+                }
+                Thread.sleep(streamEventLogProperties.getPollInterval().toMillis());
+                continue;
+            }
+            idlePolls = 0;
+            if (!StreamEventLog.isNext(cursor, entries.getFirst().id())) {
+                log.info("续传事件存在缺口，通知客户端重新加载历史, threadId={}, cursor={}, firstId={}",
+                        threadId, cursor, entries.getFirst().id());
+                sink.next(AgentStreamEvent.resync("部分生成事件已过期，请重新加载会话历史"));
+                sink.complete();
+                return;
+            }
+            for (StreamEventLog.Entry entry : entries) {
+                if (AgentStreamEvent.TYPE_DONE.equals(entry.type())) {
+                    sink.complete();
+                    return;
+                }
+                sink.next(new AgentStreamEvent(entry.type(), entry.content(), entry.id()));
+                if (AgentStreamEvent.TYPE_ERROR.equals(entry.type())) {
+                    sink.complete();
+                    return;
+                }
+            }
+            cursor = entries.getLast().id();
+        }
+    }
+
     /**
      * 构建额外工具列表（如SubAgentTool）
      */
@@ -245,7 +456,7 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
 
     private List<Object> buildExtraTools(AgentDefinition definition, Long userId, Long threadId,
                                          Consumer<AgentStreamEvent> progressCallback) {
-        if (!hasSubAgentTool(definition)) {
+        if (!agentProfileRegistry.getProfile(definition).hasSubAgentTool()) {
             AsyncTaskManager removed = taskManagers.remove(threadId);
             if (removed != null) {
                 removed.shutdown();
@@ -253,16 +464,28 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
             return Collections.emptyList();
         }
 
-        AsyncTaskManager taskManager = taskManagers.computeIfAbsent(threadId, ignored -> new AsyncTaskManager());
+        // 子Agent继承Lead的供应商
+        AsyncTaskManager taskManager = taskManagers.computeIfAbsent(threadId,
+                ignored -> new AsyncTaskManager(agentTaskScheduler, clusterTaskRegistry,
+                        userId, threadId, providerOf(definition)));
         SubAgentTool subAgentTool = new SubAgentTool(userId, threadId, subAgentService, taskManager, progressCallback);
 
         log.info("已注入SubAgentTool, userId={}, threadId={}", userId, threadId);
         return List.of(subAgentTool);
     }
 
+    private String providerOf(AgentDefinition definition) {
+        return agentProfileRegistry.getProfile(definition).provider().getValue();
+    }
+
     @Override
     public boolean isThreadProcessing(Long threadId) {
-        return activeProcessingThreads.contains(threadId);
+        return clusterTaskRegistry.isProcessing(threadId);
+    }
+
+    @Override
+    public void cancelProcessing(Long threadId) {
+        clusterTaskRegistry.cancel(threadId);
     }
 
     @PreDestroy
@@ -273,15 +496,6 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
         taskManagers.clear();
     }
 
-    private boolean hasSubAgentTool(AgentDefinition definition) {
-        if (definition.getToolNames() == null || definition.getToolNames().isBlank()) {
-            return false;
-        }
-        return Arrays.stream(definition.getToolNames().split(","))
-                .map(String::trim)
-                .anyMatch("subAgentTool"::equals);
-    }
-
     private AgentThread validateAndGetThread(Long userId, Long threadId) {
         AgentThread thread = agentThreadRepository.findById(threadId);
         if (thread == null) {
@@ -349,7 +563,7 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
         userMsg.setRole("user");
         userMsg.setContent(userContent);
         userMsg.setTokenCount(0);
-        agentMessageRepository.insert(userMsg);
+        agentMessageRepository.insertAsync(userMsg);
     }
 
     private void saveAssistantMessage(Long threadId, String assistantContent) {
@@ -357,16 +571,17 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
         assistantMsg.setThreadId(threadId);
         assistantMsg.setRole("assistant");
         assistantMsg.setContent(assistantContent);
-        assistantMsg.setTokenCount(0);
-        agentMessageRepository.insert(assistantMsg);
+        assistantMsg.setTokenCount(tokenUsageTracker.takeOutputTokens(threadId));
+        agentMessageRepository.insertAsync(assistantMsg);
     }
 
-    private Long saveAssistantMessageReturningId(Long threadId, String assistantContent) {
+    private Long saveAssistantMessageReturningId(Long threadId, String assistantContent, int tokenCount) {
         AgentMessage assistantMsg = new AgentMessage();
         assistantMsg.setThreadId(threadId);
         assistantMsg.setRole("assistant");
         assistantMsg.setContent(assistantContent);
-        assistantMsg.setTokenCount(0);
+        assistantMsg.setTokenCount(tokenCount);
+        // 流式首行需同步落库，后续分片和合并按ID更新
         agentMessageRepository.insert(assistantMsg);
         return assistantMsg.getId();
     }
@@ -378,7 +593,7 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
         toolMsg.setToolName(toolName);
         toolMsg.setContent(content);
         toolMsg.setTokenCount(0);
-        agentMessageRepository.insert(toolMsg);
+        agentMessageRepository.insertAsync(toolMsg);
     }
 
     private void saveMessages(Long threadId, String userContent, String assistantContent) {
@@ -387,38 +602,46 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
         userMsg.setRole("user");
         userMsg.setContent(userContent);
         userMsg.setTokenCount(0);
-        agentMessageRepository.insert(userMsg);
+        agentMessageRepository.insertAsync(userMsg);
 
         AgentMessage assistantMsg = new AgentMessage();
         assistantMsg.setThreadId(threadId);
         assistantMsg.setRole("assistant");
         assistantMsg.setContent(assistantContent);
-        assistantMsg.setTokenCount(0);
-        agentMessageRepository.insert(assistantMsg);
+        assistantMsg.setTokenCount(tokenUsageTracker.takeOutputTokens(threadId));
+        agentMessageRepository.insertAsync(assistantMsg);
     }
 
     private void persistStreamingAssistantIfNeeded(Long threadId,
-                                                   String fullContent,
+                                                   StringBuilder fullResponse,
                                                    StreamPersistenceState state) {
-        if (fullContent == null || fullContent.isBlank()) {
+        int currentLength = fullResponse.length();
+        int pendingLength = currentLength - state.lastPersistedLength;
+        if (pendingLength < STREAM_PERSIST_TOKEN_STEP) {
             return;
         }
-        int currentLength = fullContent.length();
-        if (currentLength - state.lastPersistedLength < STREAM_PERSIST_TOKEN_STEP) {
+        long now = System.nanoTime();
+        if (pendingLength < STREAM_PERSIST_MAX_PENDING_CHARS
+                && now - state.lastPersistedAtNanos < STREAM_PERSIST_INTERVAL_NANOS) {
             return;
         }
+        String delta = fullResponse.substring(state.lastPersistedLength);
         if (state.assistantMessageId == null) {
-            Long messageId = saveAssistantMessageReturningId(threadId, fullContent);
+            if (delta.isBlank()) {
+                return;
+            }
+            // 生成中尚无用量，完成时随最终内容写入
+            Long messageId = saveAssistantMessageReturningId(threadId, delta, 0);
             if (messageId == null) {
                 return;
             }
             state.assistantMessageId = messageId;
-            state.lastPersistedLength = currentLength;
             updateThreadStats(threadId, 1);
-            return;
+        } else {
+            agentMessageRepository.appendContentChunk(state.assistantMessageId, state.nextChunkSeq++, delta);
         }
-        agentMessageRepository.updateContentById(state.assistantMessageId, fullContent);
         state.lastPersistedLength = currentLength;
+        state.lastPersistedAtNanos = now;
     }
 
     /**
@@ -427,8 +650,9 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
     private int persistFinalStreamingAssistant(Long threadId,
                                                String fullContent,
                                                StreamPersistenceState state) {
+        int tokenCount = tokenUsageTracker.takeOutputTokens(threadId);
         if (state.assistantMessageId == null) {
-            Long messageId = saveAssistantMessageReturningId(threadId, fullContent);
+            Long messageId = saveAssistantMessageReturningId(threadId, fullContent, tokenCount);
             if (messageId == null) {
                 return 0;
             }
@@ -436,24 +660,53 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
             state.lastPersistedLength = fullContent.length();
             return 1;
         }
-        agentMessageRepository.updateContentById(state.assistantMessageId, fullContent);
+        agentMessageRepository.compactContent(state.assistantMessageId, fullContent, tokenCount);
         state.lastPersistedLength = fullContent.length();
         return 0;
     }
 
+    /**
+     * 流式异常终止时，把已生成的部分合并为最终内容
+     */
+    private void compactInterruptedStreamingAssistant(Long threadId,
+                                                      String fullContent,
+                                                      StreamPersistenceState state) {
+        if (state == null || state.assistantMessageId == null) {
+            return;
+        }
+        try {
+            agentMessageRepository.compactContent(state.assistantMessageId, fullContent,
+                    tokenUsageTracker.takeOutputTokens(threadId));
+            state.lastPersistedLength = fullContent.length();
+        } catch (Exception e) {
+            log.error("合并中断的流式消息失败, threadId={}, messageId={}", threadId, state.assistantMessageId, e);
+        }
+    }
+
     private void updateThreadStats(Long threadId, int messageDelta) {
         agentThreadRepository.incrementMessageCount(threadId, messageDelta, LocalDateTime.now());
     }
 
+    /**
+     * 本轮结束时会话锁已失效（被其他请求取代）则放弃结果
+     */
+    private void ensureLeaseHeld(ThreadExecutionLock.Lease threadLock, Long threadId) {
+        if (threadLock.isLost()) {
+            log.warn("会话锁在本轮对话期间失效, 放弃本轮结果, threadId={}", threadId);
+            throw new BusinessException(ResultCode.THREAD_BUSY, "会话锁已失效，本轮对话已取消");
+        }
+    }
+
     private String chatWithRetry(AgentChatService agent, String message, Long threadId) {
         for (int attempt = 0; attempt <= MAX_RATE_LIMIT_RETRIES; attempt++) {
             try {
                 return agent.chat(message);
             } catch (Exception e) {
-                if (!isRateLimitError(e) || attempt >= MAX_RATE_LIMIT_RETRIES) {
+                if (!RateLimitErrors.isRateLimitError(e) || attempt >= MAX_RATE_LIMIT_RETRIES) {
                     throw e;
                 }
                 long waitMillis = computeBackoffMillis(attempt);
+                agentMetrics.countRetry("chat", "rate_limit");
                 log.warn("同步聊天触发速率限制, threadId={}, 等待{}ms后重试 ({}/{})",
                         threadId, waitMillis, attempt + 1, MAX_RATE_LIMIT_RETRIES);
                 if (!sleepQuietly(waitMillis)) {
@@ -472,8 +725,10 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
                                          StringBuilder fullThinking,
                                          int attempt,
                                          boolean persistWhenClientDisconnected,
-                                         StreamPersistenceState persistenceState) {
+                                         StreamPersistenceState persistenceState,
+                                         Runnable streamFinished) {
         if (sink.isCancelled() && !persistWhenClientDisconnected) {
+            streamFinished.run();
             return;
         }
 
@@ -481,23 +736,21 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
         try {
             tokenStream = agent.chat(message);
         } catch (Exception error) {
-            boolean canRetry = isRateLimitError(error)
+            boolean canRetry = RateLimitErrors.isRateLimitError(error)
                     && fullResponse.isEmpty()
                     && attempt < MAX_RATE_LIMIT_RETRIES;
             if (canRetry) {
                 long waitMillis = computeBackoffMillis(attempt);
+                agentMetrics.countRetry("stream", "rate_limit");
                 log.warn("流式聊天初始化触发速率限制, threadId={}, 等待{}ms后重试 ({}/{})",
                         threadId, waitMillis, attempt + 1, MAX_RATE_LIMIT_RETRIES);
-                if (!sleepQuietly(waitMillis)) {
-                    sink.error(error);
-                    return;
-                }
-                startStreamingWithRetry(
+                retryStreamingLater(waitMillis, threadId, sink, streamFinished, () -> startStreamingWithRetry(
                         agent, message, threadId, sink, fullResponse, fullThinking,
-                        attempt + 1, persistWhenClientDisconnected, persistenceState);
+                        attempt + 1, persistWhenClientDisconnected, persistenceState, streamFinished));
                 return;
             }
             sink.error(error);
+            streamFinished.run();
             return;
         }
         tokenStream
@@ -506,8 +759,8 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
                         return;
                     }
                     fullResponse.append(token);
-                    if (persistWhenClientDisconnected && persistenceState != null) {
-                        persistStreamingAssistantIfNeeded(threadId, fullResponse.toString(), persistenceState);
+                    if (persistenceState != null) {
+                        persistStreamingAssistantIfNeeded(threadId, fullResponse, persistenceState);
                     }
                     if (!sink.isCancelled()) {
                         sink.next(AgentStreamEvent.token(token));
@@ -527,22 +780,23 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
                     }
                 })
                 .onCompleteResponse(resp -> {
-                    if (sink.isCancelled() && !persistWhenClientDisconnected) {
-                        return;
-                    }
-                    boolean emitToClient = !sink.isCancelled();
-                    emitCompletionFallbackIfNeeded(
-                            threadId, sink, fullResponse, fullThinking, resp, emitToClient);
+                    // 会话锁、调度许可与处理登记保持到结果落库、流结束之后再归还，下一轮不会读到未写完的结果
                     try {
-                        String thinkingToSave = fullThinking.toString().trim();
-                        transactionTemplate.executeWithoutResult(status -> {
-                            // User message already saved before stream started
+                        if (sink.isCancelled() && !persistWhenClientDisconnected) {
+                            return;
+                        }
+                        boolean emitToClient = !sink.isCancelled();
+                        emitCompletionFallbackIfNeeded(
+                                threadId, sink, fullResponse, fullThinking, resp, emitToClient);
+                        try {
+                            String thinkingToSave = fullThinking.toString().trim();
+                            // 用户消息已在流开始前保存；消息异步写入、计数在内存合并，合并分片自带事务，无需外层事务
                             int delta = 0;
                             if (!thinkingToSave.isBlank()) {
                                 saveToolMessage(threadId, AgentStreamEvent.TYPE_THINKING, thinkingToSave);
                                 delta += 1;
                             }
-                            if (persistWhenClientDisconnected && persistenceState != null) {
+                            if (persistenceState != null) {
                                 delta += persistFinalStreamingAssistant(
                                         threadId, fullResponse.toString(), persistenceState);
                             } else {
@@ -550,37 +804,45 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
                                 delta += 1;
                             }
                             updateThreadStats(threadId, delta);
-                        });
-                    } catch (Exception e) {
-                        log.error("保存消息失败, threadId={}", threadId, e);
-                    }
-                    if (!sink.isCancelled()) {
-                        sink.complete();
+                            agentThreadRepository.flushMessageStats(threadId);
+                        } catch (Exception e) {
+                            log.error("保存消息失败, threadId={}", threadId, e);
+                        }
+                        if (!sink.isCancelled()) {
+                            sink.complete();
+                        }
+                    } finally {
+                        streamFinished.run();
                     }
                 })
                 .onError(error -> {
                     if (sink.isCancelled() && !persistWhenClientDisconnected) {
+                        streamFinished.run();
                         return;
                     }
-                    boolean canRetry = isRateLimitError(error)
+                    boolean canRetry = RateLimitErrors.isRateLimitError(error)
                             && fullResponse.isEmpty()
                             && attempt < MAX_RATE_LIMIT_RETRIES;
                     if (canRetry) {
                         long waitMillis = computeBackoffMillis(attempt);
+                        agentMetrics.countRetry("stream", "rate_limit");
                         log.warn("流式聊天触发速率限制, threadId={}, 等待{}ms后重试 ({}/{})",
                                 threadId, waitMillis, attempt + 1, MAX_RATE_LIMIT_RETRIES);
-                        if (!sleepQuietly(waitMillis)) {
-                            sink.error(error);
-                            return;
-                        }
-                        startStreamingWithRetry(
+                        // 在调度器上延迟重试，不阻塞供应商HTTP客户端的回调线程
+                        retryStreamingLater(waitMillis, threadId, sink, streamFinished, () -> startStreamingWithRetry(
                                 agent, message, threadId, sink, fullResponse, fullThinking,
-                                attempt + 1, persistWhenClientDisconnected, persistenceState);
+                                attempt + 1, persistWhenClientDisconnected, persistenceState, streamFinished));
                         return;
                     }
                     log.error("流式聊天错误, threadId={}", threadId, error);
-                    if (!sink.isCancelled()) {
-                        sink.error(error);
+                    try {
+                        compactInterruptedStreamingAssistant(threadId, fullResponse.toString(), persistenceState);
+                        agentThreadRepository.flushMessageStats(threadId);
+                        if (!sink.isCancelled()) {
+                            sink.error(error);
+                        }
+                    } finally {
+                        streamFinished.run();
                     }
                 })
                 .start();
@@ -647,30 +909,43 @@ public class AgentChatAppServiceImpl implements AgentChatAppService {
         return thinking == null ? "" : thinking.trim();
     }
 
-    private boolean isRateLimitError(Throwable throwable) {
-        Throwable cursor = throwable;
-        while (cursor != null) {
-            if ("RateLimitException".equals(cursor.getClass().getSimpleName())) {
-                return true;
-            }
-            String message = cursor.getMessage();
-            if (message != null) {
-                String lower = message.toLowerCase();
-                if (lower.contains("rate_limit") || lower.contains("rate limit")) {
-                    return true;
-                }
-            }
-            cursor = cursor.getCause();
-        }
-        return false;
-    }
-
+    /**
+     * 启用供应商限流时重试直接进入限流通道排队（429已触发通道冷却），无需额外退避
+     */
     private long computeBackoffMillis(int attempt) {
+        if (providerRateLimiter.isEnabled()) {
+            return 0;
+        }
         long base = (long) Math.pow(2, attempt) * BASE_BACKOFF_MILLIS;
         long jitter = ThreadLocalRandom.current().nextLong(300, 1200);
         return base + jitter;
     }
 
+    /**
+     * 延迟后在弹性调度器上重新发起流式请求
+     * <p>
+     * 等待由Reactor定时器完成，回调线程与调用线程都不休眠；重新发起时可能阻塞（建立连接、读取记忆），
+     * 因此切到 boundedElastic 执行。
+     * </p>
+     */
+    private void retryStreamingLater(long waitMillis,
+                                     Long threadId,
+                                     FluxSink<AgentStreamEvent> sink,
+                                     Runnable streamFinished,
+                                     Runnable retry) {
+        Mono.delay(Duration.ofMillis(waitMillis), Schedulers.boundedElastic())
+                .subscribe(tick -> retry.run(), error -> {
+                    log.error("流式聊天重试失败, threadId={}", threadId, error);
+                    try {
+                        if (!sink.isCancelled()) {
+                            sink.error(error);
+                        }
+                    } finally {
+                        streamFinished.run();
+                    }
+                });
+    }
+
     private boolean sleepQuietly(long waitMillis) {
         try {
             Thread.sleep(waitMillis);
@@ -106,4 +106,22 @@ public class AgentThreadServiceImpl implements AgentThreadService {
         getThread(userId, threadId);
         return agentMessageRepository.findByThreadId(threadId, safeLimit, safeOffset);
     }
+
+    @Override
+    public List<AgentMessage> getMessageHistory(Long userId, Long threadId, int limit, Long beforeId, Long afterId) {
+        if (beforeId != null && afterId != null) {
+            throw new BusinessException(ResultCode.PARAM_VALIDATION_FAILED, "before与after不能同时指定");
+        }
+        int safeLimit = Math.max(1, Math.min(limit, 200));
+        log.debug("游标获取消息历史, userId={}, threadId={}, limit={}, beforeId={}, afterId={}",
+                userId, threadId, safeLimit, beforeId, afterId);
+        getThread(userId, threadId);
+        if (beforeId != null) {
+            return agentMessageRepository.findByThreadIdBefore(threadId, beforeId, safeLimit);
+        }
+        if (afterId != null) {
+            return agentMessageRepository.findByThreadIdAfter(threadId, afterId, safeLimit);
+        }
+        return agentMessageRepository.findByThreadId(threadId, safeLimit, 0);
+    }
 }
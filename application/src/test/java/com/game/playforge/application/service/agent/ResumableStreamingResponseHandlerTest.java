@@ -0,0 +1,173 @@
+package com.game.playforge.application.service.agent;
+
+import com.game.playforge.infrastructure.external.ai.StreamRetryProperties;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.TokenUsage;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResumableStreamingResponseHandlerTest {
+
+    private static final ChatRequest REQUEST = ChatRequest.builder()
+            .messages(UserMessage.from("hi"))
+            .build();
+
+    private final RecordingListener listener = new RecordingListener();
+    private final RecordingHandler downstream = new RecordingHandler();
+
+    @Test
+    void resumedAttemptRunsListenersAndMergedResponseCarriesNoUsage() throws Exception {
+        ScriptedModel model = new ScriptedModel(listener, handler -> {
+            handler.onPartialResponse("world");
+            handler.onCompleteResponse(ChatResponse.builder()
+                    .aiMessage(AiMessage.from("world"))
+                    .tokenUsage(new TokenUsage(10, 5))
+                    .build());
+        });
+        ResumableStreamingResponseHandler handler = new ResumableStreamingResponseHandler(
+                model, REQUEST, downstream, properties());
+
+        handler.onPartialResponse("Hello ");
+        handler.onError(new IOException("connection reset"));
+
+        ChatResponse merged = downstream.response.get(1, TimeUnit.SECONDS);
+        assertThat(merged.aiMessage().text()).isEqualTo("Hello world");
+        assertThat(merged.tokenUsage()).isNull();
+        assertThat(downstream.partials).containsExactly("Hello ", "world");
+
+        // 续写请求以已输出文本作为助手预填充，并按一次独立调用触发监听器
+        List<AiMessage> prefills = model.requests.getFirst().messages().stream()
+                .filter(AiMessage.class::isInstance)
+                .map(AiMessage.class::cast)
+                .toList();
+        assertThat(prefills).extracting(AiMessage::text).containsExactly("Hello");
+        assertThat(listener.requests).hasSize(1);
+        assertThat(listener.usages).containsExactly(new TokenUsage(10, 5));
+    }
+
+    @Test
+    void failedResumeIsReportedToListenersAndDownstream() throws Exception {
+        ScriptedModel model = new ScriptedModel(listener,
+                handler -> handler.onError(new IllegalArgumentException("bad request")));
+        ResumableStreamingResponseHandler handler = new ResumableStreamingResponseHandler(
+                model, REQUEST, downstream, properties());
+
+        handler.onPartialResponse("Hello");
+        handler.onError(new IOException("connection reset"));
+
+        assertThat(downstream.error.get(1, TimeUnit.SECONDS)).hasMessage("bad request");
+        assertThat(listener.errors).extracting(Throwable::getMessage).containsExactly("bad request");
+    }
+
+    @Test
+    void synchronousResumeFailureReachesDownstream() throws Exception {
+        ScriptedModel model = new ScriptedModel(listener, handler -> {
+            throw new IllegalStateException("client closed");
+        });
+        ResumableStreamingResponseHandler handler = new ResumableStreamingResponseHandler(
+                model, REQUEST, downstream, properties());
+
+        handler.onPartialResponse("Hello");
+        handler.onError(new IOException("connection reset"));
+
+        assertThat(downstream.error.get(1, TimeUnit.SECONDS)).hasMessage("client closed");
+    }
+
+    private static StreamRetryProperties properties() {
+        StreamRetryProperties properties = new StreamRetryProperties();
+        properties.setMaxResumeAttempts(1);
+        properties.setResumeBackoff(Duration.ofMillis(1));
+        return properties;
+    }
+
+    /**
+     * 按顺序执行脚本的模型，记录收到的续写请求
+     */
+    private static final class ScriptedModel implements StreamingChatModel {
+
+        private final List<ChatModelListener> listeners;
+        private final Queue<Consumer<StreamingChatResponseHandler>> script;
+        private final List<ChatRequest> requests = new CopyOnWriteArrayList<>();
+
+        @SafeVarargs
+        private ScriptedModel(ChatModelListener listener, Consumer<StreamingChatResponseHandler>... steps) {
+            this.listeners = List.of(listener);
+            this.script = new ArrayDeque<>(List.of(steps));
+        }
+
+        @Override
+        public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            requests.add(chatRequest);
+            script.remove().accept(handler);
+        }
+
+        @Override
+        public List<ChatModelListener> listeners() {
+            return listeners;
+        }
+    }
+
+    private static final class RecordingListener implements ChatModelListener {
+
+        private final List<ChatRequest> requests = new CopyOnWriteArrayList<>();
+        private final List<TokenUsage> usages = new CopyOnWriteArrayList<>();
+        private final List<Throwable> errors = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onRequest(ChatModelRequestContext context) {
+            requests.add(context.chatRequest());
+        }
+
+        @Override
+        public void onResponse(ChatModelResponseContext context) {
+            usages.add(context.chatResponse().tokenUsage());
+        }
+
+        @Override
+        public void onError(ChatModelErrorContext context) {
+            errors.add(context.error());
+        }
+    }
+
+    private static final class RecordingHandler implements StreamingChatResponseHandler {
+
+        private final List<String> partials = new CopyOnWriteArrayList<>();
+        private final CompletableFuture<ChatResponse> response = new CompletableFuture<>();
+        private final CompletableFuture<Throwable> error = new CompletableFuture<>();
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            partials.add(partialResponse);
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            response.complete(completeResponse);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error.complete(throwable);
+        }
+    }
+}
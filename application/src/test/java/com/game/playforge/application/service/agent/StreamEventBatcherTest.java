@@ -0,0 +1,119 @@
+package com.game.playforge.application.service.agent;
+
+import com.game.playforge.application.dto.AgentStreamEvent;
+import com.game.playforge.infrastructure.external.stream.StreamBatchProperties;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamEventBatcherTest {
+
+    private static final Duration LONG_WINDOW = Duration.ofHours(1);
+
+    private final StreamEventBatcher batcher = new StreamEventBatcher(properties());
+
+    @Test
+    void flushesPendingDeltasBeforeOtherEventsToKeepOrder() {
+        Flux<AgentStreamEvent> events = Flux.just(
+                token("a", "1-1"), token("b", "1-2"), AgentStreamEvent.progress("tool").withId("1-3"),
+                token("c", "1-4"), AgentStreamEvent.done().withId("1-5"));
+
+        StepVerifier.create(batcher.batch(events, LONG_WINDOW))
+                .expectNext(token("a", "1-1"))
+                .expectNext(token("b", "1-2"))
+                .expectNext(AgentStreamEvent.progress("tool").withId("1-3"))
+                .expectNext(token("c", "1-4"))
+                .expectNext(AgentStreamEvent.done().withId("1-5"))
+                .verifyComplete();
+    }
+
+    @Test
+    void mergedFrameKeepsLastNonNullId() {
+        Flux<AgentStreamEvent> events = Flux.just(
+                token("a", "1-1"), token("b", "1-2"), token("c", "1-3"), AgentStreamEvent.token("d"));
+
+        StepVerifier.create(batcher.batch(events, LONG_WINDOW))
+                .expectNext(token("a", "1-1"))
+                .expectNext(token("bcd", "1-3"))
+                .verifyComplete();
+    }
+
+    @Test
+    void switchingDeltaTypeFlushesMergedFrame() {
+        Flux<AgentStreamEvent> events = Flux.just(
+                token("a", "1-1"), thinking("x", "1-2"), thinking("y", "1-3"), token("b", "1-4"));
+
+        StepVerifier.create(batcher.batch(events, LONG_WINDOW))
+                .expectNext(token("a", "1-1"))
+                .expectNext(thinking("xy", "1-3"))
+                .expectNext(token("b", "1-4"))
+                .verifyComplete();
+    }
+
+    @Test
+    void timerFlushesPendingDeltaWithoutUpstreamSignal() {
+        Sinks.Many<AgentStreamEvent> upstream = Sinks.many().unicast().onBackpressureBuffer();
+
+        StepVerifier.create(batcher.batch(upstream.asFlux(), Duration.ofMillis(50)))
+                .then(() -> {
+                    upstream.tryEmitNext(token("a", "1-1"));
+                    upstream.tryEmitNext(token("b", "1-2"));
+                })
+                .expectNext(token("a", "1-1"))
+                .expectNext(token("b", "1-2"))
+                .then(upstream::tryEmitComplete)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void completeBeforeTimerEmitsPendingDeltaExactlyOnce() throws InterruptedException {
+        List<AgentStreamEvent> received = new CopyOnWriteArrayList<>();
+        Flux<AgentStreamEvent> events = Flux.just(token("a", "1-1"), token("b", "1-2"));
+
+        StepVerifier.create(batcher.batch(events, Duration.ofMillis(30)).doOnNext(received::add))
+                .expectNextCount(2)
+                .verifyComplete();
+        // 完成时已下发并取消定时器，窗口结束后不会重复下发
+        Thread.sleep(100);
+
+        assertThat(received).containsExactly(token("a", "1-1"), token("b", "1-2"));
+    }
+
+    @Test
+    void zeroIntervalPassesEventsThrough() {
+        Flux<AgentStreamEvent> events = Flux.just(token("a", "1-1"), token("b", "1-2"));
+
+        assertThat(batcher.batch(events, Duration.ZERO)).isSameAs(events);
+    }
+
+    @Test
+    void resolveIntervalCapsClientWindow() {
+        assertThat(batcher.resolveInterval(null)).isEqualTo(Duration.ofMillis(50));
+        assertThat(batcher.resolveInterval(0L)).isEqualTo(Duration.ZERO);
+        assertThat(batcher.resolveInterval(60_000L)).isEqualTo(Duration.ofSeconds(1));
+    }
+
+    private static StreamBatchProperties properties() {
+        StreamBatchProperties properties = new StreamBatchProperties();
+        properties.setFlushInterval(Duration.ofMillis(50));
+        properties.setMaxFlushInterval(Duration.ofSeconds(1));
+        properties.setMaxChars(2048);
+        return properties;
+    }
+
+    private static AgentStreamEvent token(String content, String id) {
+        return AgentStreamEvent.token(content).withId(id);
+    }
+
+    private static AgentStreamEvent thinking(String content, String id) {
+        return AgentStreamEvent.thinking(content).withId(id);
+    }
+}
@@ -21,6 +21,31 @@ public final class AgentConstants {
      */
     public static final String LOCK_PREFIX = "playforge:agent:lock:";
 
+    /**
+     * Redis Key前缀：正在处理的会话（值为处理节点ID，带租约过期）
+     */
+    public static final String PROCESSING_PREFIX = "playforge:agent:processing:";
+
+    /**
+     * Redis Key前缀：Lead会话下运行中的子Agent任务（Hash，子线程ID → 节点ID）
+     */
+    public static final String SUB_TASKS_PREFIX = "playforge:agent:subtasks:";
+
+    /**
+     * Redis Key前缀：集群节点存活标记
+     */
+    public static final String NODE_PREFIX = "playforge:agent:node:";
+
+    /**
+     * Redis频道：跨节点取消会话处理
+     */
+    public static final String CANCEL_CHANNEL = "playforge:agent:cancel";
+
+    /**
+     * Redis Key前缀：会话生成事件流（Redis Stream，供断线重连续传）
+     */
+    public static final String EVENTS_PREFIX = "playforge:agent:events:";
+
     /**
      * 默认记忆窗口大小（消息条数）
      */
@@ -55,4 +80,39 @@ public final class AgentConstants {
      * 子Agent最大输出Token数（每个Agent专注一份完整文件）
      */
     public static final int SUB_AGENT_MAX_OUTPUT_TOKENS = 24576;
+
+    /**
+     * Agent运行时配置及已构建AiService代理的缓存上限（按Agent定义计，LRU淘汰）
+     */
+    public static final int AGENT_SERVICE_CACHE_SIZE = 512;
+
+    /**
+     * 模型请求属性Key：会话ID
+     */
+    public static final String ATTR_THREAD_ID = "threadId";
+
+    /**
+     * 模型请求属性Key：用户ID
+     */
+    public static final String ATTR_USER_ID = "userId";
+
+    /**
+     * 模型请求属性Key：Agent定义ID
+     */
+    public static final String ATTR_AGENT_ID = "agentId";
+
+    /**
+     * 模型请求属性Key：Agent名称
+     */
+    public static final String ATTR_AGENT_NAME = "agentName";
+
+    /**
+     * 模型请求属性Key：模型供应商
+     */
+    public static final String ATTR_PROVIDER = "provider";
+
+    /**
+     * 模型请求属性Key：Agent类型（Lead为lead，子Agent为其类型名）
+     */
+    public static final String ATTR_AGENT_TYPE = "agentType";
 }
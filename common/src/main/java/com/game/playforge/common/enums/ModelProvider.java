@@ -26,7 +26,12 @@ public enum ModelProvider {
     /**
      * Google Gemini
      */
-    GEMINI("gemini");
+    GEMINI("gemini"),
+
+    /**
+     * 本地模拟供应商（压测/基准测试用，需显式开启）
+     */
+    MOCK("mock");
 
     /**
      * 供应商标识值
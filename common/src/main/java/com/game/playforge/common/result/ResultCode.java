@@ -112,6 +112,16 @@ public enum ResultCode {
      */
     AGENT_TOOL_ERROR(5005, "工具执行错误", 500),
 
+    /**
+     * 排队请求过多，等待执行超时
+     */
+    AGENT_BUSY(5007, "AI服务繁忙，请稍后重试", 429),
+
+    /**
+     * 会话正在处理上一条消息
+     */
+    THREAD_BUSY(5008, "会话正在处理中，请稍后重试", 409),
+
     // ---------- 9xxx - 系统级 ----------
 
     /**
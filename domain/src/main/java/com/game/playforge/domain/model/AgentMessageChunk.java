@@ -0,0 +1,48 @@
+package com.game.playforge.domain.model;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Agent流式消息分片实体
+ * <p>
+ * 流式回复过程中按序追加的内容片段，完成后合并回 {@link AgentMessage#getContent()} 并删除。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Data
+@TableName("t_agent_message_chunk")
+public class AgentMessageChunk {
+
+    /**
+     * 分片ID
+     */
+    @TableId(type = IdType.ASSIGN_ID)
+    private Long id;
+
+    /**
+     * 消息ID
+     */
+    private Long messageId;
+
+    /**
+     * 分片序号（从0开始）
+     */
+    private Integer seq;
+
+    /**
+     * 分片内容
+     */
+    private String content;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createdAt;
+}
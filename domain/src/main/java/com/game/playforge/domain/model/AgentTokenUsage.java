@@ -0,0 +1,83 @@
+package com.game.playforge.domain.model;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Agent Token用量实体
+ * <p>
+ * 每次LLM调用一条记录，归属到会话、用户、Agent定义与模型。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Data
+@TableName("t_agent_token_usage")
+public class AgentTokenUsage {
+
+    /**
+     * 记录ID
+     */
+    @TableId(type = IdType.ASSIGN_ID)
+    private Long id;
+
+    /**
+     * 会话ID
+     */
+    private Long threadId;
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * Agent定义ID
+     */
+    private Long agentId;
+
+    /**
+     * Agent名称
+     */
+    private String agentName;
+
+    /**
+     * 模型供应商
+     */
+    private String provider;
+
+    /**
+     * 模型名称
+     */
+    private String modelName;
+
+    /**
+     * 输入Token数
+     */
+    private Integer inputTokens;
+
+    /**
+     * 输出Token数
+     */
+    private Integer outputTokens;
+
+    /**
+     * 命中缓存的输入Token数
+     */
+    private Integer cachedTokens;
+
+    /**
+     * 总Token数
+     */
+    private Integer totalTokens;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createdAt;
+}
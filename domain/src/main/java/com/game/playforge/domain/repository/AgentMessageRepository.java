@@ -20,7 +20,18 @@ public interface AgentMessageRepository {
     void insert(AgentMessage agentMessage);
 
     /**
-     * 批量新增消息
+     * 异步新增消息（写后批量落库）
+     * <p>
+     * 消息ID和创建时间在提交时即确定；落库在后台攒批完成，不参与调用方事务。
+     * 需要紧接着按ID更新的消息（如流式分片的首行）应使用 {@link #insert(AgentMessage)}。
+     * </p>
+     *
+     * @param agentMessage 消息实体
+     */
+    void insertAsync(AgentMessage agentMessage);
+
+    /**
+     * 批量新增消息（多行INSERT）
      *
      * @param messages 消息列表
      */
@@ -34,22 +45,63 @@ public interface AgentMessageRepository {
      */
     void updateContentById(Long messageId, String content);
 
+    /**
+     * 追加流式消息内容分片
+     * <p>
+     * 只写入增量内容，避免流式过程中反复整行重写消息内容。
+     * </p>
+     *
+     * @param messageId 消息ID
+     * @param seq       分片序号（从0开始递增）
+     * @param content   增量内容
+     */
+    void appendContentChunk(Long messageId, int seq, String content);
+
+    /**
+     * 将流式消息的最终内容及其Token数写回消息行，并清理已合并的分片
+     *
+     * @param messageId  消息ID
+     * @param content    完整内容
+     * @param tokenCount 生成该消息消耗的输出Token数
+     */
+    void compactContent(Long messageId, String content, int tokenCount);
+
     /**
      * 根据会话ID查询消息列表（支持分页）
      *
      * @param threadId 会话ID
      * @param limit    查询条数
      * @param offset   偏移量
-     * @return 消息列表（按创建时间升序）
+     * @return 消息列表（按创建时间升序，未合并的流式分片已拼接到内容中）
      */
     List<AgentMessage> findByThreadId(Long threadId, int limit, int offset);
 
+    /**
+     * 游标分页：查询指定消息之前的消息
+     *
+     * @param threadId 会话ID
+     * @param beforeId 游标消息ID（不包含）
+     * @param limit    查询条数
+     * @return 消息列表（按创建时间升序），游标不存在时返回空列表
+     */
+    List<AgentMessage> findByThreadIdBefore(Long threadId, Long beforeId, int limit);
+
+    /**
+     * 游标分页：查询指定消息之后的消息
+     *
+     * @param threadId 会话ID
+     * @param afterId  游标消息ID（不包含）
+     * @param limit    查询条数
+     * @return 消息列表（按创建时间升序），游标不存在时返回空列表
+     */
+    List<AgentMessage> findByThreadIdAfter(Long threadId, Long afterId, int limit);
+
     /**
      * 查询会话最新消息（按创建时间倒序）
      *
      * @param threadId 会话ID
      * @param limit    查询条数
-     * @return 最新消息列表（按创建时间倒序）
+     * @return 最新消息列表（按创建时间倒序，未合并的流式分片已拼接到内容中）
      */
     List<AgentMessage> findLatestByThreadId(Long threadId, int limit);
 
@@ -63,11 +63,32 @@ public interface AgentThreadRepository {
     void update(AgentThread agentThread);
 
     /**
-     * 原子递增消息数并更新最后消息时间
+     * 递增消息数并更新最后消息时间
+     * <p>
+     * 增量可能先在内存中合并，稍后刷写到数据库。
+     * </p>
      *
      * @param threadId       会话ID
      * @param messageDelta   增量消息数
      * @param lastMessageAt  最后消息时间
      */
     void incrementMessageCount(Long threadId, int messageDelta, LocalDateTime lastMessageAt);
+
+    /**
+     * 立即刷写指定会话尚未落库的消息数增量
+     *
+     * @param threadId 会话ID
+     */
+    void flushMessageStats(Long threadId);
+
+    /**
+     * 累加会话已消耗的Token数
+     * <p>
+     * 增量可能先在内存中合并，稍后刷写到数据库。
+     * </p>
+     *
+     * @param threadId 会话ID
+     * @param tokens   增量Token数
+     */
+    void addTokensUsed(Long threadId, long tokens);
 }
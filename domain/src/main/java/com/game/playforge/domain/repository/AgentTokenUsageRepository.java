@@ -0,0 +1,19 @@
+package com.game.playforge.domain.repository;
+
+import com.game.playforge.domain.model.AgentTokenUsage;
+
+/**
+ * Agent Token用量仓储接口
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public interface AgentTokenUsageRepository {
+
+    /**
+     * 记录一次LLM调用的Token用量（异步批量写入）
+     *
+     * @param usage 用量记录
+     */
+    void recordAsync(AgentTokenUsage usage);
+}
@@ -37,6 +37,12 @@ export const getMessages = (threadId: string, limit = 50, offset = 0, signal?: A
     signal,
   });
 
+export const getMessagesBefore = (threadId: string, beforeId: string, limit = 50, signal?: AbortSignal) =>
+  client.get<ApiResponse<AgentMessage[]>>(`/agent-threads/${threadId}/messages`, {
+    params: { limit, before: beforeId },
+    signal,
+  });
+
 export const getThreadProcessingStatus = (threadId: string) =>
   client.get<ApiResponse<{ processing: boolean }>>(`/agent-threads/${threadId}/processing-status`);
 
@@ -19,7 +19,7 @@ import {
 } from '@ant-design/icons';
 import ReactMarkdown from 'react-markdown';
 import remarkGfm from 'remark-gfm';
-import { listAgents, createAgentWithThread, deleteAgent, getMessages, getThreadProcessingStatus, chatThreadSSE } from '../api/chat';
+import { listAgents, createAgentWithThread, deleteAgent, getMessages, getMessagesBefore, getThreadProcessingStatus, chatThreadSSE } from '../api/chat';
 import TeamPanel from '../components/TeamPanel';
 import { getAgentLabel, getAgentColor, getAgentTypeFromName } from '../constants/agentTypes';
 import { AgentDefinition, AgentMessage, UserProfile } from '../types/api';
@@ -56,6 +56,15 @@ const hasAssistantReplyAfterLastUser = (history: AgentMessage[]): boolean => {
 const buildMessageFingerprint = (history: AgentMessage[]): string =>
   history.map((msg) => `${msg.id}:${msg.content.length}`).join('|');
 
+// Replace the latest window but keep history loaded before it (scroll-back pages and
+// messages that slid out of the window as new ones arrived).
+const mergeLatestWindow = (prev: AgentMessage[], latest: AgentMessage[]): AgentMessage[] => {
+  if (latest.length === 0) return latest;
+  const index = prev.findIndex((msg) => msg.id === latest[0].id);
+  if (index <= 0) return latest;
+  return [...prev.slice(0, index), ...latest];
+};
+
 const ChatPage = () => {
   const { user } = useOutletContext<{ user: UserProfile | null }>();
   const isAdmin = user?.isAdmin === true;
@@ -74,12 +83,15 @@ const ChatPage = () => {
   const [copiedId, setCopiedId] = useState<string | null>(null);
   const [statusExpanded, setStatusExpanded] = useState(false);
   const [thinkingExpanded, setThinkingExpanded] = useState(false);
+  const [hasOlderMessages, setHasOlderMessages] = useState(false);
+  const [loadingOlder, setLoadingOlder] = useState(false);
 
   const messagesEndRef = useRef<HTMLDivElement>(null);
   const inputRef = useRef<HTMLTextAreaElement>(null);
   const activeThreadIdRef = useRef<string | null>(null);
   const streamingThreadIdRef = useRef<string | null>(null);
   const streamingBubblesRef = useRef<AgentMessage[]>([]);
+  const skipAutoScrollRef = useRef(false);
 
   const activeThreadId = selectedAgent?.threadId ?? null;
   const isAnyMainStreamRunning = streamingThreadId !== null;
@@ -183,6 +195,11 @@ const ChatPage = () => {
   }, [streamingBubbles]);
 
   useEffect(() => {
+    if (skipAutoScrollRef.current) {
+      // Older history was prepended; keep the reader's position
+      skipAutoScrollRef.current = false;
+      return;
+    }
     scrollToBottom();
   }, [
     messages,
@@ -252,6 +269,7 @@ const ChatPage = () => {
   // Also poll for new messages to catch updates from ongoing backend processing
   // (e.g., after page refresh while chat is still running on the server).
   useEffect(() => {
+    setHasOlderMessages(false);
     if (!activeThreadId) {
       setMessages([]);
       return;
@@ -263,6 +281,7 @@ const ChatPage = () => {
       .then((res) => {
         const data = res.data.data;
         setMessages(data);
+        setHasOlderMessages(data.length >= MESSAGE_FETCH_LIMIT);
         lastFingerprint = buildMessageFingerprint(data);
       })
       .catch((error) => {
@@ -281,7 +300,7 @@ const ChatPage = () => {
         const data = res.data.data;
         const fingerprint = buildMessageFingerprint(data);
         if (fingerprint !== lastFingerprint) {
-          setMessages(data);
+          setMessages((prev) => mergeLatestWindow(prev, data));
           stablePolls = 0;
           backendConfirmedIdle = false;
         } else {
@@ -315,6 +334,31 @@ const ChatPage = () => {
     // eslint-disable-next-line react-hooks/exhaustive-deps
   }, [activeThreadId]);
 
+  // Keyset scroll-back: fetch the page before the oldest loaded message
+  const handleLoadOlder = async () => {
+    const threadId = activeThreadId;
+    const oldest = messages[0];
+    if (!threadId || !oldest || loadingOlder) return;
+    setLoadingOlder(true);
+    try {
+      const res = await getMessagesBefore(threadId, oldest.id, MESSAGE_FETCH_LIMIT);
+      if (activeThreadIdRef.current !== threadId) return;
+      const older = res.data.data;
+      setHasOlderMessages(older.length >= MESSAGE_FETCH_LIMIT);
+      if (older.length > 0) {
+        skipAutoScrollRef.current = true;
+        setMessages((prev) => {
+          const loaded = new Set(prev.map((msg) => msg.id));
+          return [...older.filter((msg) => !loaded.has(msg.id)), ...prev];
+        });
+      }
+    } catch {
+      message.error('Failed to load earlier messages');
+    } finally {
+      setLoadingOlder(false);
+    }
+  };
+
   const handleSelectAgent = (agent: AgentDefinition) => {
     setSelectedAgent(agent);
   };
@@ -533,7 +577,7 @@ const ChatPage = () => {
           : latestMessages;
 
       if (activeThreadIdRef.current === sendingThreadId) {
-        setMessages(mergedMessages);
+        setMessages((prev) => mergeLatestWindow(prev, mergedMessages));
       }
       refreshedFromDb = true;
       loadAgents();
@@ -784,6 +828,16 @@ const ChatPage = () => {
             </div>
           )}
 
+          {selectedAgent && hasOlderMessages && messages.length > 0 && (
+            <button
+              className="sf-chat-load-older"
+              onClick={handleLoadOlder}
+              disabled={loadingOlder}
+            >
+              {loadingOlder ? <LoadingOutlined /> : 'Load earlier messages'}
+            </button>
+          )}
+
           {messages
             .filter((msg) => !(msg.role === 'tool' && msg.toolName === 'progress'))
             .map((msg) => (
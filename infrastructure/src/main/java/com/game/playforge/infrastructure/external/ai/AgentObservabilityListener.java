@@ -1,11 +1,15 @@
 package com.game.playforge.infrastructure.external.ai;
 
+import com.game.playforge.common.constant.AgentConstants;
 import com.game.playforge.common.constant.AuthConstants;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
+import com.game.playforge.infrastructure.metrics.ModelCallTiming;
 import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
 import dev.langchain4j.model.chat.listener.ChatModelListener;
 import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
 import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
 import dev.langchain4j.model.output.TokenUsage;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
 import org.springframework.stereotype.Component;
@@ -16,7 +20,10 @@ import java.util.Map;
  * Agent可观测性监听器
  * <p>
  * 实现LangChain4J的 {@link ChatModelListener} 接口，
- * 记录AI模型请求、响应和错误的日志，集成链路追踪。
+ * 记录AI模型请求、响应和错误的日志，集成链路追踪，
+ * 将每次响应的Token用量交给 {@link TokenUsageTracker} 记账，
+ * 并按供应商、模型与Agent类型记录调用耗时、Token数与限流次数指标。
+ * 调用耗时从获得限流许可开始计算，见 {@link ModelCallTiming}。
  * </p>
  *
  * @author Richard Zhang
@@ -24,9 +31,14 @@ import java.util.Map;
  */
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class AgentObservabilityListener implements ChatModelListener {
 
     private static final String TRACE_ID_ATTR_KEY = "traceId";
+    private static final String TIMING_ATTR_KEY = "playforge.timing";
+
+    private final TokenUsageTracker tokenUsageTracker;
+    private final AgentMetrics agentMetrics;
 
     @Override
     public void onRequest(ChatModelRequestContext context) {
@@ -34,6 +46,7 @@ public class AgentObservabilityListener implements ChatModelListener {
         if (traceId != null && !traceId.isBlank()) {
             context.attributes().put(TRACE_ID_ATTR_KEY, traceId);
         }
+        context.attributes().put(TIMING_ATTR_KEY, ModelCallTiming.begin());
         int messageCount = context.chatRequest().messages() != null
                 ? context.chatRequest().messages().size() : 0;
         log.info("[Agent请求] traceId={}, model={}, messageCount={}",
@@ -50,12 +63,56 @@ public class AgentObservabilityListener implements ChatModelListener {
         } else {
             log.info("[Agent响应] traceId={}, tokenUsage=null", traceId);
         }
+        String modelName = context.chatResponse().modelName() != null
+                ? context.chatResponse().modelName() : context.chatRequest().modelName();
+        String provider = resolveProvider(context.attributes(), context.modelProvider());
+        String agentType = stringAttribute(context.attributes(), AgentConstants.ATTR_AGENT_TYPE);
+        agentMetrics.recordLlmCall(provider, modelName, agentType, AgentMetrics.OUTCOME_SUCCESS,
+                elapsedNanos(context.attributes()));
+        if (usage != null) {
+            agentMetrics.countTokens(provider, modelName, agentType, "input", valueOf(usage.inputTokenCount()));
+            agentMetrics.countTokens(provider, modelName, agentType, "output", valueOf(usage.outputTokenCount()));
+            agentMetrics.countTokens(provider, modelName, agentType, "cached", TokenUsageTracker.cachedTokens(usage));
+        }
+        tokenUsageTracker.record(context.attributes(), provider, modelName, usage);
     }
 
     @Override
     public void onError(ChatModelErrorContext context) {
         String traceId = resolveTraceId(context.attributes());
         log.error("[Agent错误] traceId={}, error={}", traceId, context.error().getMessage(), context.error());
+        String provider = resolveProvider(context.attributes(), context.modelProvider());
+        String modelName = context.chatRequest() != null ? context.chatRequest().modelName() : null;
+        boolean rateLimited = RateLimitErrors.isRateLimitError(context.error());
+        if (rateLimited) {
+            agentMetrics.countRateLimited(provider, modelName);
+        }
+        agentMetrics.recordLlmCall(provider, modelName,
+                stringAttribute(context.attributes(), AgentConstants.ATTR_AGENT_TYPE),
+                rateLimited ? AgentMetrics.OUTCOME_RATE_LIMITED : AgentMetrics.OUTCOME_ERROR,
+                elapsedNanos(context.attributes()));
+    }
+
+    private String resolveProvider(Map<Object, Object> attributes, dev.langchain4j.model.ModelProvider fallback) {
+        String provider = stringAttribute(attributes, AgentConstants.ATTR_PROVIDER);
+        if (provider != null) {
+            return provider;
+        }
+        return fallback != null ? fallback.name().toLowerCase() : null;
+    }
+
+    private long elapsedNanos(Map<Object, Object> attributes) {
+        Object timing = attributes != null ? attributes.get(TIMING_ATTR_KEY) : null;
+        return timing instanceof ModelCallTiming callTiming ? callTiming.elapsedNanos() : 0L;
+    }
+
+    private static String stringAttribute(Map<Object, Object> attributes, String key) {
+        Object value = attributes != null ? attributes.get(key) : null;
+        return value != null ? value.toString() : null;
+    }
+
+    private static int valueOf(Integer value) {
+        return value != null ? value : 0;
     }
 
     private String resolveTraceId(Map<Object, Object> attributes) {
@@ -0,0 +1,162 @@
+package com.game.playforge.infrastructure.external.ai;
+
+import com.game.playforge.common.constant.AgentConstants;
+import com.game.playforge.common.enums.ModelProvider;
+import com.game.playforge.common.exception.BusinessException;
+import com.game.playforge.common.result.ResultCode;
+import com.game.playforge.domain.model.AgentDefinition;
+import com.game.playforge.infrastructure.external.ai.SkillRegistry.SkillDescriptor;
+import com.game.playforge.infrastructure.external.ai.token.MemoryTokenBudgetRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Agent运行时配置注册中心
+ * <p>
+ * 按Agent定义编译 {@link AgentRuntimeProfile}：解析供应商、工具、技能、记忆Token预算并拼接最终系统提示词。
+ * 编译结果按定义ID缓存（LRU），定义版本（updatedAt）变化或经
+ * {@code AgentDefinitionRepository.update} 更新时失效重建。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AgentProfileRegistry {
+
+    private final SystemPromptResolver systemPromptResolver;
+    private final ToolRegistry toolRegistry;
+    private final SkillRegistry skillRegistry;
+    private final AgentTypeRegistry agentTypeRegistry;
+    private final MemoryTokenBudgetRegistry memoryTokenBudgetRegistry;
+
+    private final Map<Long, AgentRuntimeProfile> profiles = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, AgentRuntimeProfile> eldest) {
+                    return size() > AgentConstants.AGENT_SERVICE_CACHE_SIZE;
+                }
+            });
+
+    /**
+     * 获取Agent定义的运行时配置
+     *
+     * @param definition Agent定义
+     * @return 运行时配置（同一版本返回同一实例）
+     */
+    public AgentRuntimeProfile getProfile(AgentDefinition definition) {
+        if (definition.getId() == null) {
+            return compile(definition);
+        }
+        AgentRuntimeProfile cached = profiles.get(definition.getId());
+        if (cached != null && Objects.equals(cached.version(), definition.getUpdatedAt())) {
+            return cached;
+        }
+        AgentRuntimeProfile compiled = compile(definition);
+        profiles.put(definition.getId(), compiled);
+        return compiled;
+    }
+
+    /**
+     * 使Agent定义的运行时配置失效
+     *
+     * @param definitionId Agent定义ID
+     */
+    public void invalidate(Long definitionId) {
+        if (definitionId != null && profiles.remove(definitionId) != null) {
+            log.debug("Agent运行时配置已失效, definitionId={}", definitionId);
+        }
+    }
+
+    private AgentRuntimeProfile compile(AgentDefinition definition) {
+        ModelProvider provider = resolveProvider(definition.getProvider());
+        List<String> toolNames = AgentRuntimeProfile.parseNames(definition.getToolNames());
+        List<String> skillNames = AgentRuntimeProfile.parseNames(definition.getSkillNames());
+        List<SkillDescriptor> skills = List.copyOf(skillRegistry.getSkills(skillNames));
+        boolean hasSubAgentTool = toolNames.contains(AgentRuntimeProfile.SUB_AGENT_TOOL);
+        String systemPrompt = systemPromptResolver.resolve(
+                definition, buildAdditionalContext(skillNames, hasSubAgentTool));
+        int memoryWindowSize = definition.getMemoryWindowSize() != null
+                ? definition.getMemoryWindowSize()
+                : AgentConstants.DEFAULT_MEMORY_WINDOW_SIZE;
+
+        AgentRuntimeProfile profile = new AgentRuntimeProfile(
+                definition.getId(),
+                definition.getUpdatedAt(),
+                provider,
+                toolNames,
+                collectToolBeans(toolNames, skills),
+                skills,
+                hasSubAgentTool,
+                systemPrompt,
+                memoryWindowSize,
+                memoryTokenBudgetRegistry.resolveBudget(provider, definition.getModelName()),
+                memoryTokenBudgetRegistry.getEstimator(provider, definition.getModelName()));
+        log.debug("编译Agent运行时配置, agent={}, version={}, toolCount={}, skillCount={}",
+                definition.getName(), definition.getUpdatedAt(), profile.toolBeans().size(), skills.size());
+        return profile;
+    }
+
+    private String buildAdditionalContext(List<String> skillNames, boolean hasSubAgentTool) {
+        StringBuilder sb = new StringBuilder();
+
+        // 技能目录
+        String skillCatalog = skillRegistry.getSkillCatalog(skillNames);
+        if (skillCatalog != null && !skillCatalog.isBlank()) {
+            sb.append(skillCatalog);
+        }
+
+        // Agent类型目录（仅Lead Agent有subAgentTool时注入）
+        if (hasSubAgentTool) {
+            if (!sb.isEmpty()) {
+                sb.append("\n\n");
+            }
+            sb.append(agentTypeRegistry.getTypeCatalog());
+        }
+
+        return sb.toString();
+    }
+
+    private List<Object> collectToolBeans(List<String> configuredToolNames, List<SkillDescriptor> skills) {
+        // 1. Agent自身配置的工具
+        Set<String> toolNames = new LinkedHashSet<>(configuredToolNames);
+
+        // 2. 移除subAgentTool（不在ToolRegistry中，由调用级extraTools提供）
+        toolNames.remove(AgentRuntimeProfile.SUB_AGENT_TOOL);
+
+        // 3. 如果有技能配置，自动加入 skillLoaderTool
+        if (!skills.isEmpty()) {
+            toolNames.add("skillLoaderTool");
+        }
+
+        // 4. 收集各技能引用的外部工具
+        for (SkillDescriptor skill : skills) {
+            toolNames.addAll(skill.toolNames());
+        }
+
+        // 5. 从 ToolRegistry 获取工具 Bean
+        List<Object> tools = new ArrayList<>(toolRegistry.getToolBeans(new ArrayList<>(toolNames)));
+
+        // 6. 加入技能自身的 @Tool Bean（selfToolBean）
+        for (SkillDescriptor skill : skills) {
+            if (skill.selfToolBean() != null) {
+                tools.add(skill.selfToolBean());
+            }
+        }
+
+        return List.copyOf(tools);
+    }
+
+    private ModelProvider resolveProvider(String provider) {
+        try {
+            return ModelProvider.valueOf(provider.toUpperCase());
+        } catch (Exception e) {
+            throw new BusinessException(ResultCode.AGENT_PROVIDER_UNAVAILABLE, "不支持的模型供应商");
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.game.playforge.infrastructure.external.ai;
+
+import com.game.playforge.common.enums.ModelProvider;
+import com.game.playforge.infrastructure.external.ai.SkillRegistry.SkillDescriptor;
+import dev.langchain4j.model.TokenCountEstimator;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Agent定义的预编译运行时配置
+ * <p>
+ * 将 {@code toolNames}/{@code skillNames} 等逗号分隔字段一次性解析为不可变结构，
+ * 按Agent定义ID + 版本（updatedAt）由 {@link AgentProfileRegistry} 缓存，聊天链路上直接复用。
+ * </p>
+ *
+ * @param definitionId     Agent定义ID
+ * @param version          定义版本（updatedAt）
+ * @param provider         模型供应商
+ * @param toolNames        定义中配置的工具名称（已去空白）
+ * @param toolBeans        需静态注册的工具Bean（含技能引用的工具与技能自身工具，不含subAgentTool）
+ * @param skills           技能描述符
+ * @param hasSubAgentTool  是否允许创建子Agent
+ * @param systemPrompt     最终系统提示词（已拼接技能目录、类型目录）
+ * @param memoryWindowSize 记忆窗口大小（消息条数，启用Token预算时同样作为条数上限）
+ * @param memoryTokenBudget 记忆窗口Token预算，0表示只按消息条数裁剪
+ * @param tokenCountEstimator 供应商/模型对应的Token估算器
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public record AgentRuntimeProfile(
+        Long definitionId,
+        LocalDateTime version,
+        ModelProvider provider,
+        List<String> toolNames,
+        List<Object> toolBeans,
+        List<SkillDescriptor> skills,
+        boolean hasSubAgentTool,
+        String systemPrompt,
+        int memoryWindowSize,
+        int memoryTokenBudget,
+        TokenCountEstimator tokenCountEstimator
+) {
+
+    /**
+     * 子Agent工具名称（不在ToolRegistry中，按会话动态注入）
+     */
+    public static final String SUB_AGENT_TOOL = "subAgentTool";
+
+    /**
+     * 解析逗号分隔的名称列表
+     *
+     * @param names 逗号分隔字符串，可为null
+     * @return 去空白、去空项后的名称列表
+     */
+    public static List<String> parseNames(String names) {
+        if (names == null || names.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(names.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toList();
+    }
+}
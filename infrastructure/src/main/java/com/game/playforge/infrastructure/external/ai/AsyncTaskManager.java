@@ -1,5 +1,7 @@
 package com.game.playforge.infrastructure.external.ai;
 
+import com.game.playforge.infrastructure.external.ai.scheduling.AgentTaskScheduler;
+import com.game.playforge.infrastructure.external.cluster.ClusterTaskRegistry;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.*;
@@ -10,8 +12,9 @@ import java.util.function.Supplier;
  * 异步任务管理器
  * <p>
  * 每会话实例（非Spring Bean），基于BlockingQueue实现高效的异步任务分发与结果收集。
- * 支持"第一个完成即返回"的等待语义。不限制并发数量，所有任务在虚拟线程上真正并行执行。
- * 速率限制由SubAgentService的重试逻辑处理。
+ * 支持"第一个完成即返回"的等待语义。任务提交到全局共享的 {@link AgentTaskScheduler} 后台通道，
+ * 受单用户与单供应商并发上限约束，超出部分排队，不会挤占其他用户的交互对话。
+ * 执行中的任务登记到 {@link ClusterTaskRegistry}，其他节点可查询状态并跨节点取消。
  * </p>
  *
  * @author Richard Zhang
@@ -26,16 +29,32 @@ public class AsyncTaskManager {
     private final Map<String, String> agentNames = new ConcurrentHashMap<>();
     private final Set<String> cancelled = ConcurrentHashMap.newKeySet();
     private final BlockingQueue<TaskResult> completed = new LinkedBlockingQueue<>();
-    private final ExecutorService executor;
+    private final AgentTaskScheduler scheduler;
+    private final ClusterTaskRegistry registry;
+    private final Long userId;
+    private final Long parentThreadId;
+    private final String provider;
 
-    public AsyncTaskManager() {
-        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+    /**
+     * @param scheduler      共享任务调度器
+     * @param registry       集群任务注册中心
+     * @param userId         所属用户ID（单用户并发上限）
+     * @param parentThreadId Lead会话ID
+     * @param provider       子Agent使用的供应商标识（单供应商并发上限）
+     */
+    public AsyncTaskManager(AgentTaskScheduler scheduler, ClusterTaskRegistry registry,
+                            Long userId, Long parentThreadId, String provider) {
+        this.scheduler = scheduler;
+        this.registry = registry;
+        this.userId = userId;
+        this.parentThreadId = parentThreadId;
+        this.provider = provider;
     }
 
     /**
      * 分发任务到后台执行
      * <p>
-     * 任务在虚拟线程上立即执行，不限制并发数量。
+     * 任务进入共享调度器的后台通道，获得名额后在虚拟线程上执行。
      * </p>
      *
      * @param threadId  子Agent的线程ID
@@ -48,10 +67,13 @@ public class AsyncTaskManager {
         }
         agentNames.put(threadId, agentName);
 
-        CompletableFuture<String> future = CompletableFuture.supplyAsync(task, executor);
+        CompletableFuture<String> future = scheduler.submit(userId, provider, task);
         pending.put(threadId, future);
+        ClusterTaskRegistry.Registration registration = registry.registerSubTask(
+                parentThreadId, Long.parseLong(threadId), () -> cancel(threadId));
 
         future.whenComplete((result, error) -> {
+            registration.close();
             pending.remove(threadId);
             agentNames.remove(threadId);
 
@@ -62,7 +84,9 @@ public class AsyncTaskManager {
             }
 
             if (error != null) {
-                String errorMsg = error.getCause() != null ? error.getCause().getMessage() : error.getMessage();
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                String errorMsg = cause.getMessage();
                 log.error("子Agent任务执行失败, threadId={}, agent={}", threadId, agentName, error);
                 completed.offer(new TaskResult(threadId, agentName, "Error: " + errorMsg, true));
             } else {
@@ -156,7 +180,6 @@ public class AsyncTaskManager {
         for (String threadId : new ArrayList<>(pending.keySet())) {
             cancel(threadId);
         }
-        executor.shutdownNow();
         log.info("AsyncTaskManager已关闭");
     }
 }
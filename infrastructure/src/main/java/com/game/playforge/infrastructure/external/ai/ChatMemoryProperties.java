@@ -0,0 +1,69 @@
+package com.game.playforge.infrastructure.external.ai;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 聊天记忆存储配置属性
+ * <p>
+ * 从 {@code application.yaml} 中的 {@code playforge.chat-memory} 前缀读取配置。
+ * </p>
+ * <p>
+ * 默认STRING+json与旧版本的值格式一致；STRING模式的Key带会话ID哈希标签（与会话锁栅栏计数同槽位），
+ * 读不到时回退读取旧版本的Key，滚动升级期间旧版本节点写入的记忆可能被新节点忽略，应尽快完成升级。
+ * zstd与LIST需显式开启，且必须按顺序滚动：
+ * 先让所有节点升级到能识别两种编码与两种存储模式的版本（仍使用默认配置），再切换 {@code codec}，
+ * 最后切换 {@code storage-mode}。存储模式需全部节点同时切换，切换期间仍为STRING模式的节点读不到LIST键，
+ * 会从数据库恢复记忆。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "playforge.chat-memory")
+public class ChatMemoryProperties {
+
+    /**
+     * Redis存储模式，默认整窗口字符串
+     */
+    private StorageMode storageMode = StorageMode.STRING;
+
+    /**
+     * LIST模式下本地缓存的记忆快照数（用于计算增量），超出后按LRU淘汰
+     */
+    private int snapshotCacheSize = 10000;
+
+    /**
+     * 写入时使用的编码器（json/zstd），读取时按头字节自动识别，默认json
+     */
+    private String codec = "json";
+
+    /**
+     * zstd压缩级别
+     */
+    private int compressionLevel = 3;
+
+    /**
+     * 低于该字节数的值不压缩
+     */
+    private int minCompressSize = 256;
+
+    /**
+     * 记忆在Redis中的存储模式
+     */
+    public enum StorageMode {
+
+        /**
+         * 整个消息窗口序列化为一个字符串，每次更新整体SET
+         */
+        STRING,
+
+        /**
+         * 每条消息一个列表元素，更新时只追加新消息、裁剪被淘汰的消息
+         */
+        LIST
+    }
+}
@@ -3,6 +3,9 @@ package com.game.playforge.infrastructure.external.ai;
 import com.game.playforge.common.enums.ModelProvider;
 import com.game.playforge.common.exception.BusinessException;
 import com.game.playforge.common.result.ResultCode;
+import com.game.playforge.infrastructure.external.ai.ratelimit.ProviderRateLimiter;
+import com.game.playforge.infrastructure.external.ai.ratelimit.RateLimitedChatModel;
+import com.game.playforge.infrastructure.external.ai.ratelimit.RateLimitedStreamingChatModel;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import jakarta.annotation.PostConstruct;
@@ -21,6 +24,7 @@ import java.util.Map;
  * 管理多个AI供应商的ChatModel实例，提供统一的模型获取接口。
  * 配合 LangChain4jBeanFilter 使用：未配置 API Key 的供应商 Bean 定义
  * 已被移除，此处通过 @Autowired(required=false) 获得 null。
+ * 注册的模型统一包装一层 {@link ProviderRateLimiter} 限流，调用方拿到的模型在供应商额度不足时排队而非失败。
  * </p>
  *
  * @author Richard Zhang
@@ -33,6 +37,9 @@ public class ModelProviderRegistry {
     private final Map<ModelProvider, ChatModel> chatModels = new EnumMap<>(ModelProvider.class);
     private final Map<ModelProvider, StreamingChatModel> streamingModels = new EnumMap<>(ModelProvider.class);
 
+    @Autowired
+    private ProviderRateLimiter rateLimiter;
+
     @Autowired(required = false)
     @Qualifier("playforgeOpenAiChatModel")
     private ChatModel openAiChatModel;
@@ -45,6 +52,10 @@ public class ModelProviderRegistry {
     @Qualifier("playforgeGeminiChatModel")
     private ChatModel geminiChatModel;
 
+    @Autowired(required = false)
+    @Qualifier("playforgeMockChatModel")
+    private ChatModel mockChatModel;
+
     @Autowired(required = false)
     @Qualifier("playforgeOpenAiStreamingChatModel")
     private StreamingChatModel openAiStreamingChatModel;
@@ -57,20 +68,38 @@ public class ModelProviderRegistry {
     @Qualifier("playforgeGeminiStreamingChatModel")
     private StreamingChatModel geminiStreamingChatModel;
 
+    @Autowired(required = false)
+    @Qualifier("playforgeMockStreamingChatModel")
+    private StreamingChatModel mockStreamingChatModel;
+
     @PostConstruct
     public void init() {
-        register(ModelProvider.OPENAI, openAiChatModel, chatModels, "ChatModel");
-        register(ModelProvider.ANTHROPIC, anthropicChatModel, chatModels, "ChatModel");
-        register(ModelProvider.GEMINI, geminiChatModel, chatModels, "ChatModel");
-
-        register(ModelProvider.OPENAI, openAiStreamingChatModel, streamingModels, "StreamingChatModel");
-        register(ModelProvider.ANTHROPIC, anthropicStreamingChatModel, streamingModels, "StreamingChatModel");
-        register(ModelProvider.GEMINI, geminiStreamingChatModel, streamingModels, "StreamingChatModel");
+        register(ModelProvider.OPENAI, limited(ModelProvider.OPENAI, openAiChatModel), chatModels, "ChatModel");
+        register(ModelProvider.ANTHROPIC, limited(ModelProvider.ANTHROPIC, anthropicChatModel), chatModels, "ChatModel");
+        register(ModelProvider.GEMINI, limited(ModelProvider.GEMINI, geminiChatModel), chatModels, "ChatModel");
+        register(ModelProvider.MOCK, limited(ModelProvider.MOCK, mockChatModel), chatModels, "ChatModel");
+
+        register(ModelProvider.OPENAI, limited(ModelProvider.OPENAI, openAiStreamingChatModel),
+                streamingModels, "StreamingChatModel");
+        register(ModelProvider.ANTHROPIC, limited(ModelProvider.ANTHROPIC, anthropicStreamingChatModel),
+                streamingModels, "StreamingChatModel");
+        register(ModelProvider.GEMINI, limited(ModelProvider.GEMINI, geminiStreamingChatModel),
+                streamingModels, "StreamingChatModel");
+        register(ModelProvider.MOCK, limited(ModelProvider.MOCK, mockStreamingChatModel),
+                streamingModels, "StreamingChatModel");
 
         log.info("ModelProviderRegistry初始化完成, chatModels={}, streamingModels={}",
                 chatModels.keySet(), streamingModels.keySet());
     }
 
+    private ChatModel limited(ModelProvider provider, ChatModel model) {
+        return model != null ? new RateLimitedChatModel(model, rateLimiter, provider.getValue()) : null;
+    }
+
+    private StreamingChatModel limited(ModelProvider provider, StreamingChatModel model) {
+        return model != null ? new RateLimitedStreamingChatModel(model, rateLimiter, provider.getValue()) : null;
+    }
+
     private <T> void register(ModelProvider provider, T model, Map<ModelProvider, T> target, String type) {
         if (model != null) {
             target.put(provider, model);
@@ -92,9 +121,13 @@ public class ModelProviderRegistry {
 
     /**
      * 获取用于内部任务（如摘要压缩）的ChatModel，优先使用成本较低的供应商
+     * <p>
+     * 模拟供应商仅在压测时开启，开启后优先使用，避免压测期间的摘要请求消耗真实额度。
+     * </p>
      */
     public ChatModel getCheapestChatModel() {
-        for (ModelProvider provider : List.of(ModelProvider.GEMINI, ModelProvider.OPENAI, ModelProvider.ANTHROPIC)) {
+        for (ModelProvider provider : List.of(ModelProvider.MOCK, ModelProvider.GEMINI,
+                ModelProvider.OPENAI, ModelProvider.ANTHROPIC)) {
             ChatModel model = chatModels.get(provider);
             if (model != null) {
                 return model;
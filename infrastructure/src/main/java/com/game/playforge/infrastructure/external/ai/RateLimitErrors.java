@@ -0,0 +1,40 @@
+package com.game.playforge.infrastructure.external.ai;
+
+/**
+ * 供应商限流错误识别
+ * <p>
+ * 各供应商SDK的限流异常类型不同，且经过Agent代理、流式回调后可能被包装多层，
+ * 因此沿异常链查找名为RateLimitException的异常或包含rate limit文案的消息。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public final class RateLimitErrors {
+
+    private RateLimitErrors() {
+    }
+
+    /**
+     * 判断是否为供应商限流错误
+     *
+     * @param throwable 异常，可为null
+     */
+    public static boolean isRateLimitError(Throwable throwable) {
+        Throwable cursor = throwable;
+        while (cursor != null) {
+            if ("RateLimitException".equals(cursor.getClass().getSimpleName())) {
+                return true;
+            }
+            String message = cursor.getMessage();
+            if (message != null) {
+                String lower = message.toLowerCase();
+                if (lower.contains("rate_limit") || lower.contains("rate limit")) {
+                    return true;
+                }
+            }
+            cursor = cursor.getCause();
+        }
+        return false;
+    }
+}
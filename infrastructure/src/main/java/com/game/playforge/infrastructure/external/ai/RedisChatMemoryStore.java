@@ -1,25 +1,55 @@
 package com.game.playforge.infrastructure.external.ai;
 
 import com.game.playforge.common.constant.AgentConstants;
+import com.game.playforge.infrastructure.external.ai.codec.ChatMemoryCodec;
+import com.game.playforge.infrastructure.external.cluster.ThreadExecutionLock;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.store.memory.chat.ChatMemoryStore;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
 import java.util.concurrent.TimeUnit;
 
+import static dev.langchain4j.data.message.ChatMessageDeserializer.messageFromJson;
 import static dev.langchain4j.data.message.ChatMessageDeserializer.messagesFromJson;
+import static dev.langchain4j.data.message.ChatMessageSerializer.messageToJson;
 import static dev.langchain4j.data.message.ChatMessageSerializer.messagesToJson;
 
 /**
  * 基于Redis的聊天记忆存储
  * <p>
  * 实现LangChain4J的 {@link ChatMemoryStore} 接口，
- * 使用Redis存储Agent会话的聊天记忆。
+ * 使用Redis存储Agent会话的聊天记忆。支持两种存储模式（见 {@link ChatMemoryProperties.StorageMode}）：
+ * </p>
+ * <ul>
+ *     <li>STRING：整个窗口序列化为一个字符串，每次更新整体SET。Key使用会话ID作哈希标签；
+ *     读不到时回退读取不带哈希标签的旧Key（旧Key不再写入，租约到期后自然过期）</li>
+ *     <li>LIST：每条消息一个列表元素并带版本号。本地缓存上次读写的消息指纹（序列化JSON的128位摘要），
+ *     更新时只RPUSH新增消息、裁剪被窗口淘汰的消息，读取为一次LRANGE；
+ *     版本号不一致（其他节点已写入）或本地无快照时退化为全量重写</li>
+ * </ul>
+ * <p>
+ * LIST模式读不到列表时回退读取STRING模式的Key，下次写入时迁移并删除STRING模式的Key。
+ * 值的字节格式由 {@link ChatMemoryCodec} 决定，读取时按头字节识别，兼容切换前写入的JSON。
+ * 每次加载/更新的耗时与读写字节数记录到 {@link AgentMetrics}。
+ * 本节点持有 {@link ThreadExecutionLock} 会话锁时，写入携带栅栏令牌，锁已被其他请求取得时拒绝写入。
+ * 两种模式的Key都与栅栏计数使用同一哈希标签，令牌在写入脚本中原子校验。
  * </p>
  *
  * @author Richard Zhang
@@ -27,49 +57,506 @@ import static dev.langchain4j.data.message.ChatMessageSerializer.messagesToJson;
  */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class RedisChatMemoryStore implements ChatMemoryStore {
 
-    private final StringRedisTemplate redisTemplate;
+    private static final long TTL_SECONDS = TimeUnit.HOURS.toSeconds(AgentConstants.MEMORY_TTL_HOURS);
+
+    /**
+     * 写入脚本返回值：栅栏令牌已过期
+     */
+    private static final long FENCED = -2;
+
+    /**
+     * 原子读取版本号与全部消息
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> READ_SCRIPT = new DefaultRedisScript<>("""
+            local ver = tonumber(redis.call('GET', KEYS[2]) or '0')
+            return {ver, redis.call('LRANGE', KEYS[1], 0, -1)}
+            """, List.class);
+
+    /**
+     * 版本校验后增量写入
+     * <p>
+     * ARGV: 期望版本（-1表示无条件全量重写）、TTL秒数、删除下标个数、删除下标（升序）…、追加消息…；
+     * 版本不一致返回-1，否则返回新版本号。删除下标为头部连续区间时用LTRIM，否则用墓碑值+LREM。
+     * 传入KEYS[3]（会话锁栅栏计数）时，最后一个ARGV为栅栏令牌，计数已超过令牌（锁已被新请求取得）返回-2。
+     * </p>
+     */
+    private static final RedisScript<Long> WRITE_SCRIPT = new DefaultRedisScript<>("""
+            local last = #ARGV
+            if #KEYS > 2 then
+                if tonumber(redis.call('GET', KEYS[3]) or '0') > tonumber(ARGV[last]) then
+                    return -2
+                end
+                last = last - 1
+            end
+            local expected = tonumber(ARGV[1])
+            local ver = tonumber(redis.call('GET', KEYS[2]) or '0')
+            if expected >= 0 and ver ~= expected then
+                return -1
+            end
+            local removeCount = tonumber(ARGV[3])
+            if expected < 0 then
+                redis.call('DEL', KEYS[1])
+            elseif removeCount > 0 then
+                local head = true
+                for i = 1, removeCount do
+                    if tonumber(ARGV[3 + i]) ~= i - 1 then
+                        head = false
+                        break
+                    end
+                end
+                if head then
+                    redis.call('LTRIM', KEYS[1], removeCount, -1)
+                else
+                    for i = 1, removeCount do
+                        redis.call('LSET', KEYS[1], tonumber(ARGV[3 + i]), '__playforge_removed__')
+                    end
+                    redis.call('LREM', KEYS[1], 0, '__playforge_removed__')
+                end
+            end
+            for i = 4 + removeCount, last, 256 do
+                redis.call('RPUSH', KEYS[1], unpack(ARGV, i, math.min(i + 255, last)))
+            end
+            ver = redis.call('INCR', KEYS[2])
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            redis.call('EXPIRE', KEYS[2], ARGV[2])
+            return ver
+            """, Long.class);
+
+    /**
+     * STRING模式读取值及其SHA1（作为比较并替换的版本）
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> STRING_READ_SCRIPT = new DefaultRedisScript<>("""
+            local value = redis.call('GET', KEYS[1])
+            if not value then
+                return {'', ''}
+            end
+            return {redis.sha1hex(value), value}
+            """, List.class);
+
+    /**
+     * STRING模式写入
+     * <p>
+     * ARGV: 值、TTL秒数；传入KEYS[2]（会话锁栅栏计数）时ARGV[3]为栅栏令牌，计数已超过令牌返回-2，否则返回1。
+     * </p>
+     */
+    private static final RedisScript<Long> STRING_WRITE_SCRIPT = new DefaultRedisScript<>("""
+            if #KEYS > 1 and tonumber(redis.call('GET', KEYS[2]) or '0') > tonumber(ARGV[3]) then
+                return -2
+            end
+            redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2])
+            return 1
+            """, Long.class);
+
+    /**
+     * STRING模式比较并替换：当前值的SHA1与期望一致时才写入
+     * <p>
+     * 传入KEYS[2]（会话锁栅栏计数）时ARGV[4]为栅栏令牌，计数已超过令牌返回-2。
+     * </p>
+     */
+    private static final RedisScript<Long> STRING_CAS_SCRIPT = new DefaultRedisScript<>("""
+            if #KEYS > 1 and tonumber(redis.call('GET', KEYS[2]) or '0') > tonumber(ARGV[4]) then
+                return -2
+            end
+            local value = redis.call('GET', KEYS[1])
+            local current = value and redis.sha1hex(value) or ''
+            if current ~= ARGV[1] then
+                return 0
+            end
+            redis.call('SET', KEYS[1], ARGV[2], 'EX', ARGV[3])
+            return 1
+            """, Long.class);
+
+    private final RedisTemplate<String, byte[]> redisTemplate;
+    private final ChatMemoryProperties properties;
+    private final List<ChatMemoryCodec> codecs;
+    private final ChatMemoryCodec writeCodec;
+    private final AgentMetrics agentMetrics;
+    private final ThreadExecutionLock threadExecutionLock;
+
+    /**
+     * LIST模式下各会话上次读写时的版本与消息指纹，用于计算增量
+     */
+    private final Map<Object, Snapshot> snapshots;
+
+    public RedisChatMemoryStore(StringRedisTemplate stringRedisTemplate,
+                                ChatMemoryProperties properties,
+                                List<ChatMemoryCodec> codecs,
+                                AgentMetrics agentMetrics,
+                                ThreadExecutionLock threadExecutionLock) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(stringRedisTemplate.getRequiredConnectionFactory());
+        template.setKeySerializer(RedisSerializer.string());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.afterPropertiesSet();
+        this.redisTemplate = template;
+        this.properties = properties;
+        this.agentMetrics = agentMetrics;
+        this.threadExecutionLock = threadExecutionLock;
+        this.codecs = List.copyOf(codecs);
+        this.writeCodec = codecs.stream()
+                .filter(codec -> codec.name().equalsIgnoreCase(properties.getCodec()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("未知的记忆编码器: " + properties.getCodec()));
+        int capacity = Math.max(1, properties.getSnapshotCacheSize());
+        this.snapshots = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Snapshot> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
 
     @Override
     public List<ChatMessage> getMessages(Object memoryId) {
-        String key = AgentConstants.MEMORY_PREFIX + memoryId;
+        long start = System.nanoTime();
         try {
-            String json = redisTemplate.opsForValue().get(key);
-            if (json == null || json.isBlank()) {
+            List<ChatMessage> messages = isListMode() ? readList(memoryId) : readString(memoryId);
+            if (messages.isEmpty()) {
                 log.debug("Redis记忆为空, memoryId={}", memoryId);
-                return Collections.emptyList();
+            } else {
+                log.debug("从Redis加载记忆, memoryId={}, messageCount={}", memoryId, messages.size());
             }
-            List<ChatMessage> messages = messagesFromJson(json);
-            log.debug("从Redis加载记忆, memoryId={}, messageCount={}", memoryId, messages.size());
             return messages;
         } catch (Exception e) {
             log.error("从Redis加载记忆失败, memoryId={}", memoryId, e);
             return Collections.emptyList();
+        } finally {
+            agentMetrics.recordMemoryOperation("load", storageModeName(), System.nanoTime() - start);
         }
     }
 
     @Override
     public void updateMessages(Object memoryId, List<ChatMessage> messages) {
-        String key = AgentConstants.MEMORY_PREFIX + memoryId;
+        long start = System.nanoTime();
         try {
-            String json = messagesToJson(messages);
-            redisTemplate.opsForValue().set(key, json, AgentConstants.MEMORY_TTL_HOURS, TimeUnit.HOURS);
+            if (isListMode()) {
+                writeList(memoryId, messages);
+            } else {
+                writeString(memoryId, messages);
+            }
             log.debug("更新Redis记忆, memoryId={}, messageCount={}", memoryId, messages.size());
         } catch (Exception e) {
+            snapshots.remove(memoryId);
             log.error("更新Redis记忆失败, memoryId={}", memoryId, e);
+        } finally {
+            agentMetrics.recordMemoryOperation("store", storageModeName(), System.nanoTime() - start);
         }
     }
 
     @Override
     public void deleteMessages(Object memoryId) {
-        String key = AgentConstants.MEMORY_PREFIX + memoryId;
         try {
-            Boolean deleted = redisTemplate.delete(key);
-            log.info("删除Redis记忆, memoryId={}, deleted={}", memoryId, Boolean.TRUE.equals(deleted));
+            snapshots.remove(memoryId);
+            Long deleted = redisTemplate.delete(List.of(stringKey(memoryId), legacyStringKey(memoryId),
+                    listKey(memoryId), versionKey(memoryId)));
+            log.info("删除Redis记忆, memoryId={}, deleted={}", memoryId, deleted != null && deleted > 0);
         } catch (Exception e) {
             log.error("删除Redis记忆失败, memoryId={}", memoryId, e);
         }
     }
+
+    /**
+     * 读取记忆及其版本，供比较并替换使用
+     *
+     * @param memoryId 记忆ID
+     * @return 带版本的消息列表
+     */
+    @SuppressWarnings("unchecked")
+    public VersionedMessages getVersionedMessages(Object memoryId) {
+        if (isListMode()) {
+            List<Object> result = redisTemplate.execute(READ_SCRIPT, List.of(listKey(memoryId), versionKey(memoryId)));
+            long version = ((Number) result.get(0)).longValue();
+            List<byte[]> entries = (List<byte[]>) result.get(1);
+            List<ChatMessage> messages = new ArrayList<>(entries.size());
+            for (byte[] entry : entries) {
+                messages.add(messageFromJson(decode(entry)));
+            }
+            return new VersionedMessages(Long.toString(version), messages);
+        }
+        List<Object> result = redisTemplate.execute(STRING_READ_SCRIPT, List.of(stringKey(memoryId)));
+        String version = new String((byte[]) result.get(0), StandardCharsets.UTF_8);
+        byte[] value = (byte[]) result.get(1);
+        if (value.length == 0) {
+            // 新Key不存在（版本为空串）：回退旧Key的内容，替换时写入新Key
+            value = redisTemplate.opsForValue().get(legacyStringKey(memoryId));
+        }
+        List<ChatMessage> messages = value == null || value.length == 0
+                ? Collections.emptyList()
+                : messagesFromJson(decode(value));
+        return new VersionedMessages(version, messages);
+    }
+
+    /**
+     * 比较并替换：记忆自读取后未被修改时才整体替换
+     *
+     * @param memoryId 记忆ID
+     * @param current  读取时的版本与消息
+     * @param messages 替换后的消息
+     * @return 是否替换成功，false表示期间有并发写入
+     */
+    public boolean replaceMessages(Object memoryId, VersionedMessages current, List<ChatMessage> messages) {
+        if (isListMode()) {
+            List<Integer> allIndexes = new ArrayList<>(current.messages().size());
+            for (int i = 0; i < current.messages().size(); i++) {
+                allIndexes.add(i);
+            }
+            List<String> entries = toJson(messages);
+            long version = executeWrite(memoryId, Long.parseLong(current.version()), allIndexes, entries);
+            if (version < 0) {
+                return false;
+            }
+            remember(memoryId, new Snapshot(version, fingerprints(entries)));
+            return true;
+        }
+        OptionalLong fencingToken = threadExecutionLock.fencingToken(memoryId);
+        byte[] version = current.version().getBytes(StandardCharsets.UTF_8);
+        byte[] value = writeCodec.encode(messagesToJson(messages));
+        Long replaced = fencingToken.isPresent()
+                ? redisTemplate.execute(STRING_CAS_SCRIPT,
+                        List.of(stringKey(memoryId), ThreadExecutionLock.fenceKey(memoryId)),
+                        version, value, numberArg(TTL_SECONDS), numberArg(fencingToken.getAsLong()))
+                : redisTemplate.execute(STRING_CAS_SCRIPT, List.of(stringKey(memoryId)),
+                        version, value, numberArg(TTL_SECONDS));
+        return replaced != null && replaced == 1;
+    }
+
+    private boolean isListMode() {
+        return properties.getStorageMode() == ChatMemoryProperties.StorageMode.LIST;
+    }
+
+    private String storageModeName() {
+        return isListMode() ? "list" : "string";
+    }
+
+    private List<ChatMessage> readString(Object memoryId) {
+        byte[] value = redisTemplate.opsForValue().get(stringKey(memoryId));
+        if (value == null || value.length == 0) {
+            value = redisTemplate.opsForValue().get(legacyStringKey(memoryId));
+        }
+        if (value == null || value.length == 0) {
+            return Collections.emptyList();
+        }
+        agentMetrics.recordMemoryPayload("load", writeCodec.name(), value.length);
+        return messagesFromJson(decode(value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ChatMessage> readList(Object memoryId) {
+        List<Object> result = redisTemplate.execute(READ_SCRIPT, List.of(listKey(memoryId), versionKey(memoryId)));
+        long version = ((Number) result.get(0)).longValue();
+        List<byte[]> entries = (List<byte[]>) result.get(1);
+        if (entries.isEmpty()) {
+            List<ChatMessage> legacy = readString(memoryId);
+            if (legacy.isEmpty()) {
+                remember(memoryId, new Snapshot(version, new Fingerprint[0]));
+            } else {
+                // 旧格式数据：不记录快照，下次写入时全量迁移
+                snapshots.remove(memoryId);
+            }
+            return legacy;
+        }
+        List<ChatMessage> messages = new ArrayList<>(entries.size());
+        List<String> jsons = new ArrayList<>(entries.size());
+        long bytes = 0;
+        for (byte[] entry : entries) {
+            bytes += entry.length;
+            String json = decode(entry);
+            jsons.add(json);
+            messages.add(messageFromJson(json));
+        }
+        agentMetrics.recordMemoryPayload("load", writeCodec.name(), bytes);
+        remember(memoryId, new Snapshot(version, fingerprints(jsons)));
+        return messages;
+    }
+
+    private void writeString(Object memoryId, List<ChatMessage> messages) {
+        byte[] value = writeCodec.encode(messagesToJson(messages));
+        agentMetrics.recordMemoryPayload("store", writeCodec.name(), value.length);
+        OptionalLong fencingToken = threadExecutionLock.fencingToken(memoryId);
+        Long result = fencingToken.isPresent()
+                ? redisTemplate.execute(STRING_WRITE_SCRIPT,
+                        List.of(stringKey(memoryId), ThreadExecutionLock.fenceKey(memoryId)),
+                        value, numberArg(TTL_SECONDS), numberArg(fencingToken.getAsLong()))
+                : redisTemplate.execute(STRING_WRITE_SCRIPT, List.of(stringKey(memoryId)),
+                        value, numberArg(TTL_SECONDS));
+        if (result != null && result == FENCED) {
+            throw new IllegalStateException("会话锁已被新请求取得，拒绝写入");
+        }
+    }
+
+    private void writeList(Object memoryId, List<ChatMessage> messages) {
+        List<String> entries = toJson(messages);
+        Fingerprint[] fingerprints = fingerprints(entries);
+        Snapshot previous = snapshots.get(memoryId);
+        long version = -1;
+        if (previous != null) {
+            Delta delta = Delta.between(previous.fingerprints(), fingerprints);
+            if (delta != null) {
+                version = executeWrite(memoryId, previous.version(), delta.removedIndexes(),
+                        entries.subList(delta.appendFrom(), entries.size()));
+                if (version == FENCED) {
+                    throw new IllegalStateException("会话锁已被新请求取得，拒绝写入");
+                }
+                if (version < 0) {
+                    log.debug("Redis记忆版本冲突，全量重写, memoryId={}", memoryId);
+                }
+            }
+        }
+        if (version < 0) {
+            version = executeWrite(memoryId, -1, List.of(), entries);
+            if (version == FENCED) {
+                throw new IllegalStateException("会话锁已被新请求取得，拒绝写入");
+            }
+            redisTemplate.delete(List.of(stringKey(memoryId), legacyStringKey(memoryId)));
+        }
+        remember(memoryId, new Snapshot(version, fingerprints));
+    }
+
+    private long executeWrite(Object memoryId, long expectedVersion, List<Integer> removedIndexes,
+                              List<String> appended) {
+        OptionalLong fencingToken = threadExecutionLock.fencingToken(memoryId);
+        Object[] args = new Object[3 + removedIndexes.size() + appended.size()
+                + (fencingToken.isPresent() ? 1 : 0)];
+        args[0] = numberArg(expectedVersion);
+        args[1] = numberArg(TTL_SECONDS);
+        args[2] = numberArg(removedIndexes.size());
+        int i = 3;
+        for (Integer index : removedIndexes) {
+            args[i++] = numberArg(index);
+        }
+        long bytes = 0;
+        for (String json : appended) {
+            byte[] encoded = writeCodec.encode(json);
+            bytes += encoded.length;
+            args[i++] = encoded;
+        }
+        agentMetrics.recordMemoryPayload("store", writeCodec.name(), bytes);
+        List<String> keys = List.of(listKey(memoryId), versionKey(memoryId));
+        if (fencingToken.isPresent()) {
+            args[i] = numberArg(fencingToken.getAsLong());
+            keys = List.of(listKey(memoryId), versionKey(memoryId), ThreadExecutionLock.fenceKey(memoryId));
+        }
+        Long version = redisTemplate.execute(WRITE_SCRIPT, keys, args);
+        return version != null ? version : -1;
+    }
+
+    private String decode(byte[] value) {
+        for (ChatMemoryCodec codec : codecs) {
+            if (codec.supports(value)) {
+                return codec.decode(value);
+            }
+        }
+        throw new IllegalStateException("无法识别的记忆编码, header=" + value[0]);
+    }
+
+    private static byte[] numberArg(long value) {
+        return Long.toString(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void remember(Object memoryId, Snapshot snapshot) {
+        snapshots.merge(memoryId, snapshot,
+                (current, candidate) -> candidate.version() >= current.version() ? candidate : current);
+    }
+
+    private static List<String> toJson(List<ChatMessage> messages) {
+        List<String> jsons = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            jsons.add(messageToJson(message));
+        }
+        return jsons;
+    }
+
+    private static Fingerprint[] fingerprints(List<String> jsons) {
+        Fingerprint[] fingerprints = new Fingerprint[jsons.size()];
+        for (int i = 0; i < fingerprints.length; i++) {
+            fingerprints[i] = Fingerprint.of(jsons.get(i));
+        }
+        return fingerprints;
+    }
+
+    /**
+     * STRING模式的Key使用哈希标签，与会话锁栅栏计数落在同一个集群槽位
+     */
+    private static String stringKey(Object memoryId) {
+        return AgentConstants.MEMORY_PREFIX + "{" + memoryId + "}";
+    }
+
+    /**
+     * 引入哈希标签之前的STRING模式Key，只读不写
+     */
+    private static String legacyStringKey(Object memoryId) {
+        return AgentConstants.MEMORY_PREFIX + memoryId;
+    }
+
+    /**
+     * LIST模式的Key使用哈希标签，保证列表、版本号与会话锁栅栏计数落在同一个集群槽位
+     */
+    private static String listKey(Object memoryId) {
+        return AgentConstants.MEMORY_PREFIX + "{" + memoryId + "}:msgs";
+    }
+
+    private static String versionKey(Object memoryId) {
+        return AgentConstants.MEMORY_PREFIX + "{" + memoryId + "}:ver";
+    }
+
+    /**
+     * 带版本的记忆内容
+     *
+     * @param version  LIST模式为版本号，STRING模式为值的SHA1
+     * @param messages 消息列表
+     */
+    public record VersionedMessages(String version, List<ChatMessage> messages) {
+    }
+
+    private record Snapshot(long version, Fingerprint[] fingerprints) {
+    }
+
+    /**
+     * 消息指纹：序列化JSON的MD5摘要（仅作内容标识）。
+     * 32位hashCode碰撞会让已修改的消息被当作未变而跳过重写，128位摘要可忽略此概率。
+     */
+    private record Fingerprint(long high, long low) {
+
+        static Fingerprint of(String json) {
+            try {
+                byte[] digest = MessageDigest.getInstance("MD5").digest(json.getBytes(StandardCharsets.UTF_8));
+                ByteBuffer buffer = ByteBuffer.wrap(digest);
+                return new Fingerprint(buffer.getLong(), buffer.getLong());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * 新旧窗口之间的增量：从旧列表删除若干下标后，剩余部分等于新窗口的前缀，再追加其余新消息
+     *
+     * @param removedIndexes 需删除的旧列表下标（升序）
+     * @param appendFrom     新窗口中需追加部分的起始下标
+     */
+    private record Delta(List<Integer> removedIndexes, int appendFrom) {
+
+        /**
+         * @return 增量，删除量超过旧列表一半时返回null（改为全量重写更划算）
+         */
+        static Delta between(Fingerprint[] previous, Fingerprint[] current) {
+            List<Integer> removed = new ArrayList<>();
+            int j = 0;
+            for (int i = 0; i < previous.length; i++) {
+                if (j < current.length && previous[i].equals(current[j])) {
+                    j++;
+                } else {
+                    removed.add(i);
+                }
+            }
+            if (removed.size() > Math.max(1, previous.length / 2)) {
+                return null;
+            }
+            return new Delta(removed, j);
+        }
+    }
 }
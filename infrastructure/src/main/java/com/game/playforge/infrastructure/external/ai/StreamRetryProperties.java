@@ -0,0 +1,48 @@
+package com.game.playforge.infrastructure.external.ai;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式调用中断续传配置属性
+ * <p>
+ * 从 {@code application.yaml} 中的 {@code playforge.stream-retry} 前缀读取配置。
+ * 流式回复已输出部分文本后遇到可重试错误（限流、网络中断、5xx）时，
+ * 对支持助手消息预填充的供应商，把已输出的文本作为预填充重新请求，从断点继续生成。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "playforge.stream-retry")
+public class StreamRetryProperties {
+
+    /**
+     * 单次流式调用内最多续传次数，0表示关闭续传
+     */
+    private int maxResumeAttempts = 2;
+
+    /**
+     * 续传前的基础等待时间（按续传次数指数增长）
+     */
+    private Duration resumeBackoff = Duration.ofSeconds(1);
+
+    /**
+     * 支持从断点续传的供应商（需支持以助手消息结尾的预填充请求）
+     */
+    private List<String> resumeProviders = new ArrayList<>(List.of("anthropic"));
+
+    /**
+     * 指定供应商是否支持续传
+     */
+    public boolean supportsResume(String provider) {
+        return maxResumeAttempts > 0 && provider != null && resumeProviders.contains(provider);
+    }
+}
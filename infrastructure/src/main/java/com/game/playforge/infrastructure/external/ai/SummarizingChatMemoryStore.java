@@ -7,13 +7,19 @@ import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 带摘要压缩的聊天记忆存储
@@ -21,6 +27,11 @@ import java.util.concurrent.ConcurrentHashMap;
  * 装饰器模式包装 {@link RedisChatMemoryStore}，当消息数超过阈值时，
  * 自动调用LLM生成摘要替代旧消息，保留近期消息原文。
  * </p>
+ * <p>
+ * 写入时先原样保存窗口，摘要在后台线程生成，不阻塞用户当前的LLM轮次；
+ * 生成后以比较并替换的方式写回：期间窗口若只追加了新消息，则在最新窗口上重新拼接后再替换，
+ * 被摘要的前缀已变化（窗口淘汰或清空）时放弃本次摘要，不会丢失并发追加的消息。
+ * </p>
  *
  * @author Richard Zhang
  * @since 1.0
@@ -31,6 +42,9 @@ public class SummarizingChatMemoryStore implements ChatMemoryStore {
 
     private static final long SUMMARIZATION_COOLDOWN_MS = 5 * 60 * 1000L;
     private static final String SUMMARY_PREFIX = "[Context Summary]";
+    private static final int SUMMARIZER_THREADS = 2;
+    private static final int SUMMARIZER_QUEUE_CAPACITY = 1000;
+    private static final int MAX_SWAP_ATTEMPTS = 3;
 
     private static final String SUMMARY_PROMPT = """
             Summarize the following conversation history concisely, preserving:
@@ -44,11 +58,17 @@ public class SummarizingChatMemoryStore implements ChatMemoryStore {
     private final RedisChatMemoryStore delegate;
     private final ModelProviderRegistry modelProviderRegistry;
     private final Map<Object, Long> recentlySummarized = new ConcurrentHashMap<>();
+    private final Set<Object> inFlight = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor summarizer;
 
     public SummarizingChatMemoryStore(RedisChatMemoryStore delegate,
                                       ModelProviderRegistry modelProviderRegistry) {
         this.delegate = delegate;
         this.modelProviderRegistry = modelProviderRegistry;
+        this.summarizer = new ThreadPoolExecutor(
+                SUMMARIZER_THREADS, SUMMARIZER_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(SUMMARIZER_QUEUE_CAPACITY),
+                Thread.ofPlatform().name("memory-summarizer-", 0).daemon(true).factory());
     }
 
     @Override
@@ -58,24 +78,24 @@ public class SummarizingChatMemoryStore implements ChatMemoryStore {
 
     @Override
     public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        delegate.updateMessages(memoryId, messages);
         if (messages.size() <= AgentConstants.SUMMARIZATION_TRIGGER_SIZE) {
-            delegate.updateMessages(memoryId, messages);
             return;
         }
 
         Long lastSummarized = recentlySummarized.get(memoryId);
         if (lastSummarized != null && System.currentTimeMillis() - lastSummarized < SUMMARIZATION_COOLDOWN_MS) {
-            delegate.updateMessages(memoryId, messages);
             return;
         }
-
+        if (!inFlight.add(memoryId)) {
+            return;
+        }
         try {
-            List<ChatMessage> compressed = compressMessages(memoryId, messages);
-            delegate.updateMessages(memoryId, compressed);
-            recentlySummarized.put(memoryId, System.currentTimeMillis());
-        } catch (Exception e) {
-            log.warn("记忆摘要生成失败, 回退到原始消息, memoryId={}", memoryId, e);
-            delegate.updateMessages(memoryId, messages);
+            summarizer.execute(() -> summarize(memoryId));
+            log.debug("记忆摘要任务已提交, memoryId={}, messageCount={}", memoryId, messages.size());
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(memoryId);
+            log.warn("记忆摘要队列已满, 跳过本次摘要, memoryId={}", memoryId);
         }
     }
 
@@ -85,11 +105,50 @@ public class SummarizingChatMemoryStore implements ChatMemoryStore {
         delegate.deleteMessages(memoryId);
     }
 
-    private List<ChatMessage> compressMessages(Object memoryId, List<ChatMessage> messages) {
-        int splitIndex = messages.size() - AgentConstants.RECENT_MESSAGES_TO_KEEP;
-        List<ChatMessage> oldMessages = messages.subList(0, splitIndex);
-        List<ChatMessage> recentMessages = messages.subList(splitIndex, messages.size());
+    @PreDestroy
+    public void shutdown() {
+        summarizer.shutdownNow();
+    }
 
+    private void summarize(Object memoryId) {
+        // 无论成功与否都进入冷却，避免摘要失败时每次写入都重新触发LLM调用
+        recentlySummarized.put(memoryId, System.currentTimeMillis());
+        try {
+            RedisChatMemoryStore.VersionedMessages current = delegate.getVersionedMessages(memoryId);
+            List<ChatMessage> messages = current.messages();
+            if (messages.size() <= AgentConstants.SUMMARIZATION_TRIGGER_SIZE) {
+                return;
+            }
+            int splitIndex = messages.size() - AgentConstants.RECENT_MESSAGES_TO_KEEP;
+            List<ChatMessage> summarized = List.copyOf(messages.subList(0, splitIndex));
+            SystemMessage summary = SystemMessage.from(SUMMARY_PREFIX + "\n" + summarizePrefix(summarized));
+
+            for (int attempt = 0; attempt < MAX_SWAP_ATTEMPTS; attempt++) {
+                List<ChatMessage> latest = current.messages();
+                if (latest.size() < splitIndex || !latest.subList(0, splitIndex).equals(summarized)) {
+                    log.info("记忆在摘要期间被改写, 放弃本次摘要, memoryId={}", memoryId);
+                    return;
+                }
+                List<ChatMessage> result = new ArrayList<>();
+                result.add(summary);
+                result.addAll(latest.subList(splitIndex, latest.size()));
+                if (delegate.replaceMessages(memoryId, current, result)) {
+                    log.info("记忆摘要压缩完成, memoryId={}, 原消息数={}, 压缩后={}",
+                            memoryId, latest.size(), result.size());
+                    return;
+                }
+                log.debug("记忆摘要写回冲突, 基于最新窗口重试, memoryId={}, attempt={}", memoryId, attempt + 1);
+                current = delegate.getVersionedMessages(memoryId);
+            }
+            log.warn("记忆摘要写回多次冲突, 放弃本次摘要, memoryId={}", memoryId);
+        } catch (Exception e) {
+            log.warn("记忆摘要生成失败, 保留原始消息, memoryId={}", memoryId, e);
+        } finally {
+            inFlight.remove(memoryId);
+        }
+    }
+
+    private String summarizePrefix(List<ChatMessage> oldMessages) {
         String existingSummary = null;
         List<ChatMessage> toSummarize = oldMessages;
         if (!oldMessages.isEmpty() && oldMessages.getFirst() instanceof SystemMessage sm
@@ -97,16 +156,7 @@ public class SummarizingChatMemoryStore implements ChatMemoryStore {
             existingSummary = sm.text();
             toSummarize = oldMessages.subList(1, oldMessages.size());
         }
-
-        String summaryText = generateSummary(existingSummary, toSummarize);
-
-        List<ChatMessage> result = new ArrayList<>();
-        result.add(SystemMessage.from(SUMMARY_PREFIX + "\n" + summaryText));
-        result.addAll(recentMessages);
-
-        log.info("记忆摘要压缩完成, memoryId={}, 原消息数={}, 压缩后={}",
-                memoryId, messages.size(), result.size());
-        return result;
+        return generateSummary(existingSummary, toSummarize);
     }
 
     private String generateSummary(String existingSummary, List<ChatMessage> messages) {
@@ -0,0 +1,189 @@
+package com.game.playforge.infrastructure.external.ai;
+
+import com.game.playforge.common.constant.AgentConstants;
+import com.game.playforge.domain.model.AgentTokenUsage;
+import com.game.playforge.domain.repository.AgentThreadRepository;
+import com.game.playforge.domain.repository.AgentTokenUsageRepository;
+import dev.langchain4j.model.output.TokenUsage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * LLM调用Token用量记账器
+ * <p>
+ * 由 {@link AgentObservabilityListener} 在每次模型响应时回调，按请求属性中的
+ * 会话、用户、Agent与模型归属用量：明细与会话累计值经仓储批量写入，
+ * 输出Token按会话暂存，供应用层在保存assistant消息时取走写入消息的 token_count。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TokenUsageTracker {
+
+    /**
+     * 各供应商TokenUsage子类的缓存命中Token读取方式（不依赖供应商模块编译期类型）
+     */
+    private static final ClassValue<ToIntFunction<TokenUsage>> CACHED_TOKEN_READERS = new ClassValue<>() {
+        @Override
+        protected ToIntFunction<TokenUsage> computeValue(Class<?> type) {
+            return resolveCachedTokenReader(type);
+        }
+    };
+
+    private final AgentTokenUsageRepository agentTokenUsageRepository;
+    private final AgentThreadRepository agentThreadRepository;
+
+    private final ConcurrentHashMap<Long, Integer> pendingOutputTokens = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次LLM调用的Token用量
+     *
+     * @param attributes 请求属性（见 AgentConstants.ATTR_*）
+     * @param provider   属性中缺少供应商时使用的兜底值
+     * @param modelName  模型名称
+     * @param usage      Token用量
+     */
+    public void record(Map<Object, Object> attributes, String provider, String modelName, TokenUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        int input = valueOf(usage.inputTokenCount());
+        int output = valueOf(usage.outputTokenCount());
+        int total = usage.totalTokenCount() != null ? usage.totalTokenCount() : input + output;
+        if (total <= 0) {
+            return;
+        }
+
+        Long threadId = longAttribute(attributes, AgentConstants.ATTR_THREAD_ID);
+        AgentTokenUsage record = new AgentTokenUsage();
+        record.setThreadId(threadId);
+        record.setUserId(longAttribute(attributes, AgentConstants.ATTR_USER_ID));
+        record.setAgentId(longAttribute(attributes, AgentConstants.ATTR_AGENT_ID));
+        record.setAgentName(stringAttribute(attributes, AgentConstants.ATTR_AGENT_NAME));
+        String attrProvider = stringAttribute(attributes, AgentConstants.ATTR_PROVIDER);
+        record.setProvider(attrProvider != null ? attrProvider : provider);
+        record.setModelName(modelName);
+        record.setInputTokens(input);
+        record.setOutputTokens(output);
+        record.setCachedTokens(cachedTokens(usage));
+        record.setTotalTokens(total);
+
+        try {
+            agentTokenUsageRepository.recordAsync(record);
+            if (threadId != null) {
+                agentThreadRepository.addTokensUsed(threadId, total);
+                if (output > 0) {
+                    pendingOutputTokens.merge(threadId, output, Integer::sum);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("记录Token用量失败, threadId={}, model={}", threadId, modelName, e);
+        }
+    }
+
+    /**
+     * 取走会话自上次取用以来累计的输出Token数
+     *
+     * @param threadId 会话ID
+     * @return 输出Token数，无记录返回0
+     */
+    public int takeOutputTokens(Long threadId) {
+        if (threadId == null) {
+            return 0;
+        }
+        Integer tokens = pendingOutputTokens.remove(threadId);
+        return tokens != null ? tokens : 0;
+    }
+
+    /**
+     * 读取供应商上报的缓存命中输入Token数，不支持的供应商返回0
+     */
+    static int cachedTokens(TokenUsage usage) {
+        try {
+            return CACHED_TOKEN_READERS.get(usage.getClass()).applyAsInt(usage);
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private static ToIntFunction<TokenUsage> resolveCachedTokenReader(Class<?> type) {
+        // Anthropic: cacheReadInputTokens()
+        Method direct = findMethod(type, "cacheReadInputTokens");
+        if (direct != null) {
+            return usage -> invokeInt(direct, usage);
+        }
+        // OpenAI: inputTokensDetails().cachedTokens()
+        Method details = findMethod(type, "inputTokensDetails");
+        if (details != null) {
+            Method cached = findMethod(details.getReturnType(), "cachedTokens");
+            if (cached != null) {
+                return usage -> {
+                    try {
+                        Object detail = details.invoke(usage);
+                        return detail != null ? invokeInt(cached, detail) : 0;
+                    } catch (ReflectiveOperationException e) {
+                        return 0;
+                    }
+                };
+            }
+        }
+        // Gemini: cachedContentTokenCount()
+        Method gemini = findMethod(type, "cachedContentTokenCount");
+        if (gemini != null) {
+            return usage -> invokeInt(gemini, usage);
+        }
+        return usage -> 0;
+    }
+
+    private static Method findMethod(Class<?> type, String name) {
+        try {
+            Method method = type.getMethod(name);
+            method.setAccessible(true);
+            return method;
+        } catch (NoSuchMethodException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static int invokeInt(Method method, Object target) {
+        try {
+            return method.invoke(target) instanceof Number number ? number.intValue() : 0;
+        } catch (ReflectiveOperationException e) {
+            return 0;
+        }
+    }
+
+    private static int valueOf(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    private static Long longAttribute(Map<Object, Object> attributes, String key) {
+        Object value = attributes != null ? attributes.get(key) : null;
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        if (value instanceof String text && !text.isBlank()) {
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static String stringAttribute(Map<Object, Object> attributes, String key) {
+        Object value = attributes != null ? attributes.get(key) : null;
+        return value != null ? value.toString() : null;
+    }
+}
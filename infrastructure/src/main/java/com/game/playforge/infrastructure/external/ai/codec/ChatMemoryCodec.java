@@ -0,0 +1,40 @@
+package com.game.playforge.infrastructure.external.ai.codec;
+
+/**
+ * 聊天记忆编解码器
+ * <p>
+ * 负责LangChain4J消息JSON与Redis中字节值之间的转换。二进制格式以固定的头字节开头，
+ * 读取时按首字节识别格式，因此切换编码器后旧数据（无头字节的JSON）仍可读取。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public interface ChatMemoryCodec {
+
+    /**
+     * 编码器名称，对应配置项 {@code playforge.chat-memory.codec}
+     */
+    String name();
+
+    /**
+     * 是否能解码该字节值（按头字节判断）
+     */
+    boolean supports(byte[] data);
+
+    /**
+     * 编码
+     *
+     * @param json LangChain4J序列化后的JSON
+     * @return 写入Redis的字节值
+     */
+    byte[] encode(String json);
+
+    /**
+     * 解码
+     *
+     * @param data Redis中读取的字节值
+     * @return LangChain4J可反序列化的JSON
+     */
+    String decode(byte[] data);
+}
@@ -0,0 +1,41 @@
+package com.game.playforge.infrastructure.external.ai.codec;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 纯JSON编解码器（原有格式，无头字节）
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Component
+public class JsonChatMemoryCodec implements ChatMemoryCodec {
+
+    public static final String NAME = "json";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(byte[] data) {
+        if (data.length == 0) {
+            return false;
+        }
+        byte first = data[0];
+        return first == '[' || first == '{' || first == ' ' || first == '\n' || first == '\r' || first == '\t';
+    }
+
+    @Override
+    public byte[] encode(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String decode(byte[] data) {
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,73 @@
+package com.game.playforge.infrastructure.external.ai.codec;
+
+import com.game.playforge.infrastructure.external.ai.ChatMemoryProperties;
+import com.github.luben.zstd.Zstd;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * zstd压缩编解码器
+ * <p>
+ * 格式：1字节头（{@link #HEADER}）+ zstd帧。帧头自带原始长度，解压时按此分配缓冲区。
+ * 低于 {@code minCompressSize} 的短消息直接写JSON，压缩收益抵不过帧开销。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Component
+@RequiredArgsConstructor
+public class ZstdChatMemoryCodec implements ChatMemoryCodec {
+
+    public static final String NAME = "zstd";
+
+    /**
+     * 格式头字节，不与JSON首字符冲突
+     */
+    static final byte HEADER = 0x01;
+
+    private final ChatMemoryProperties properties;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(byte[] data) {
+        return data.length > 0 && data[0] == HEADER;
+    }
+
+    @Override
+    public byte[] encode(String json) {
+        byte[] raw = json.getBytes(StandardCharsets.UTF_8);
+        if (raw.length < properties.getMinCompressSize()) {
+            return raw;
+        }
+        byte[] compressed = new byte[(int) Zstd.compressBound(raw.length) + 1];
+        long size = Zstd.compressByteArray(compressed, 1, compressed.length - 1,
+                raw, 0, raw.length, properties.getCompressionLevel());
+        if (Zstd.isError(size)) {
+            throw new IllegalStateException("zstd压缩失败: " + Zstd.getErrorName(size));
+        }
+        compressed[0] = HEADER;
+        return Arrays.copyOf(compressed, (int) size + 1);
+    }
+
+    @Override
+    public String decode(byte[] data) {
+        long originalSize = Zstd.getFrameContentSize(data, 1, data.length - 1);
+        if (originalSize < 0 || originalSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("zstd帧长度无效: " + originalSize);
+        }
+        byte[] raw = new byte[(int) originalSize];
+        long size = Zstd.decompressByteArray(raw, 0, raw.length, data, 1, data.length - 1);
+        if (Zstd.isError(size)) {
+            throw new IllegalStateException("zstd解压失败: " + Zstd.getErrorName(size));
+        }
+        return new String(raw, 0, (int) size, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,74 @@
+package com.game.playforge.infrastructure.external.ai.mock;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.FinishReason;
+
+import java.util.List;
+
+/**
+ * 模拟ChatModel
+ * <p>
+ * 不访问任何外部服务，按 {@link MockModelProperties} 配置的TTFT和输出速率阻塞后返回结果，
+ * 支持脚本化工具调用与限流错误注入，用于在不消耗真实额度的情况下压测Agent链路。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public class MockChatModel implements ChatModel {
+
+    private final MockModelProperties properties;
+    private final List<ChatModelListener> listeners;
+
+    public MockChatModel(MockModelProperties properties, List<ChatModelListener> listeners) {
+        this.properties = properties;
+        this.listeners = listeners != null ? List.copyOf(listeners) : List.of();
+    }
+
+    @Override
+    public ChatResponse doChat(ChatRequest chatRequest) {
+        MockResponseScript.maybeRateLimit(properties);
+
+        ToolExecutionRequest toolCall = MockResponseScript.nextToolCall(chatRequest, properties.getToolCallScript());
+        int outputTokens = toolCall != null ? 1 : properties.getThinkingTokens() + properties.getOutputTokens();
+        long delayNanos = properties.getTimeToFirstToken().toNanos()
+                + MockResponseScript.tokenIntervalNanos(properties) * Math.max(outputTokens - 1, 0);
+        if (!MockResponseScript.pause(delayNanos)) {
+            throw new IllegalStateException("Mock chat interrupted");
+        }
+
+        AiMessage aiMessage;
+        if (toolCall != null) {
+            aiMessage = AiMessage.from(List.of(toolCall));
+        } else {
+            AiMessage.Builder builder = AiMessage.builder()
+                    .text(String.join("", MockResponseScript.tokens(properties.getOutputTokens())));
+            if (properties.getThinkingTokens() > 0) {
+                builder.thinking(String.join("", MockResponseScript.tokens(properties.getThinkingTokens())));
+            }
+            aiMessage = builder.build();
+        }
+        return ChatResponse.builder()
+                .aiMessage(aiMessage)
+                .modelName(MockResponseScript.modelName(chatRequest, properties))
+                .tokenUsage(MockResponseScript.estimateUsage(chatRequest, outputTokens))
+                .finishReason(toolCall != null ? FinishReason.TOOL_EXECUTION : FinishReason.STOP)
+                .build();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return listeners;
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return ModelProvider.OTHER;
+    }
+}
@@ -0,0 +1,96 @@
+package com.game.playforge.infrastructure.external.ai.mock;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 模拟LLM供应商配置属性
+ * <p>
+ * 从 {@code application.yaml} 中的 {@code playforge.mock-llm} 前缀读取配置。
+ * 仅用于本地压测与基准测试，默认关闭；开启后以 {@code mock} 供应商注册到 ModelProviderRegistry。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "playforge.mock-llm")
+public class MockModelProperties {
+
+    /**
+     * 是否启用模拟供应商，默认false
+     */
+    private boolean enabled = false;
+
+    /**
+     * 响应中返回的模型名称（请求未指定模型时使用）
+     */
+    private String modelName = "playforge-mock";
+
+    /**
+     * 首Token延迟（TTFT），默认300ms
+     */
+    private Duration timeToFirstToken = Duration.ofMillis(300);
+
+    /**
+     * 输出速率（tokens/s），小于等于0时不做限速
+     */
+    private int tokensPerSecond = 60;
+
+    /**
+     * 每轮文本回复的输出Token数，默认200
+     */
+    private int outputTokens = 200;
+
+    /**
+     * 每轮回复前输出的思考Token数，默认0
+     */
+    private int thinkingTokens = 0;
+
+    /**
+     * 注入限流错误（RateLimitException）的概率，取值0~1，默认0
+     */
+    private double rateLimitErrorRate = 0.0;
+
+    /**
+     * 脚本化工具调用序列
+     * <p>
+     * 每次用户消息后按顺序发起调用，仅执行请求中已声明的工具；参数中的
+     * {@code {{threadId}}} 会替换为最近一次工具结果中出现的 threadId。
+     * </p>
+     */
+    private List<ToolCallStep> toolCallScript = new ArrayList<>(List.of(
+            new ToolCallStep("createSubAgent",
+                    "{\"type\":\"systemDesigner\",\"task\":\"Mock task\",\"additionalPrompt\":\"\",\"additionalTools\":\"\"}"),
+            new ToolCallStep("dispatchTask",
+                    "{\"threadId\":\"{{threadId}}\",\"message\":\"Mock task message\"}"),
+            new ToolCallStep("awaitResults",
+                    "{\"timeoutSeconds\":60}")));
+
+    /**
+     * 脚本化工具调用步骤
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ToolCallStep {
+
+        /**
+         * 工具名称
+         */
+        private String name;
+
+        /**
+         * 工具参数JSON
+         */
+        private String arguments = "{}";
+    }
+}
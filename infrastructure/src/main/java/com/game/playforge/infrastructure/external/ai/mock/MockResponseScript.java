@@ -0,0 +1,162 @@
+package com.game.playforge.infrastructure.external.ai.mock;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 模拟LLM的响应脚本
+ * <p>
+ * 根据请求中的消息历史决定本轮是发起脚本化工具调用还是输出文本，
+ * 并负责生成模拟Token、估算Token用量和按配置注入限流错误。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+final class MockResponseScript {
+
+    private static final String THREAD_ID_PLACEHOLDER = "{{threadId}}";
+    private static final Pattern THREAD_ID_PATTERN = Pattern.compile("threadId:\\s*(\\d+)");
+    private static final String[] WORDS = {
+            "game", "design", "player", "loop", "balance", "level", "combat", "economy",
+            "reward", "progression", "narrative", "system", "mechanic", "feedback", "challenge", "flow"
+    };
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private MockResponseScript() {
+    }
+
+    /**
+     * 计算本轮应发起的工具调用，脚本已执行完毕或请求未声明对应工具时返回null
+     */
+    static ToolExecutionRequest nextToolCall(ChatRequest request, List<MockModelProperties.ToolCallStep> script) {
+        if (script == null || script.isEmpty() || request.toolSpecifications() == null
+                || request.toolSpecifications().isEmpty()) {
+            return null;
+        }
+        Set<String> available = request.toolSpecifications().stream()
+                .map(ToolSpecification::name)
+                .collect(Collectors.toSet());
+        List<MockModelProperties.ToolCallStep> steps = script.stream()
+                .filter(step -> available.contains(step.getName()))
+                .toList();
+
+        List<ChatMessage> messages = request.messages();
+        int toolResults = 0;
+        String lastThreadId = null;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            ChatMessage message = messages.get(i);
+            if (message instanceof UserMessage) {
+                break;
+            }
+            if (message instanceof ToolExecutionResultMessage result) {
+                toolResults++;
+                if (lastThreadId == null && result.text() != null) {
+                    Matcher matcher = THREAD_ID_PATTERN.matcher(result.text());
+                    if (matcher.find()) {
+                        lastThreadId = matcher.group(1);
+                    }
+                }
+            }
+        }
+        if (toolResults >= steps.size()) {
+            return null;
+        }
+
+        MockModelProperties.ToolCallStep step = steps.get(toolResults);
+        String arguments = step.getArguments() != null ? step.getArguments() : "{}";
+        if (arguments.contains(THREAD_ID_PLACEHOLDER)) {
+            arguments = arguments.replace(THREAD_ID_PLACEHOLDER, lastThreadId != null ? lastThreadId : "0");
+        }
+        return ToolExecutionRequest.builder()
+                .id("mock-call-" + UUID.randomUUID())
+                .name(step.getName())
+                .arguments(arguments)
+                .build();
+    }
+
+    /**
+     * 生成指定数量的模拟Token，每个Token为一个单词加空格
+     */
+    static List<String> tokens(int count) {
+        List<String> tokens = new ArrayList<>(Math.max(count, 0));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < count; i++) {
+            tokens.add(WORDS[random.nextInt(WORDS.length)] + " ");
+        }
+        return tokens;
+    }
+
+    /**
+     * 按字符数粗略估算Token用量（约4字符/Token）
+     */
+    static TokenUsage estimateUsage(ChatRequest request, int outputTokens) {
+        long chars = 0;
+        for (ChatMessage message : request.messages()) {
+            chars += message.toString().length();
+        }
+        return new TokenUsage((int) (chars / CHARS_PER_TOKEN), outputTokens);
+    }
+
+    /**
+     * 按配置概率抛出限流异常
+     */
+    static void maybeRateLimit(MockModelProperties properties) {
+        double rate = properties.getRateLimitErrorRate();
+        if (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate) {
+            throw new RateLimitException("Mock provider injected rate_limit error (HTTP 429)");
+        }
+    }
+
+    /**
+     * 模拟输出间隔，返回false表示线程已被中断
+     */
+    static boolean pause(long nanos) {
+        if (nanos <= 0) {
+            return !Thread.currentThread().isInterrupted();
+        }
+        long deadline = System.nanoTime() + nanos;
+        long remaining = nanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            remaining = deadline - System.nanoTime();
+        }
+        return true;
+    }
+
+    /**
+     * 计算每个Token之间的间隔（纳秒）
+     */
+    static long tokenIntervalNanos(MockModelProperties properties) {
+        int tokensPerSecond = properties.getTokensPerSecond();
+        return tokensPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / tokensPerSecond : 0;
+    }
+
+    /**
+     * 解析响应中的模型名称
+     */
+    static String modelName(ChatRequest request, MockModelProperties properties) {
+        String modelName = request.modelName();
+        return modelName != null && !modelName.isBlank() ? modelName : properties.getModelName();
+    }
+}
@@ -0,0 +1,114 @@
+package com.game.playforge.infrastructure.external.ai.mock;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.FinishReason;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * 模拟StreamingChatModel
+ * <p>
+ * 每个请求在独立虚拟线程上回调，先等待TTFT，再按配置速率逐个推送思考Token与文本Token，
+ * 回调时序与真实供应商SDK一致（非调用线程），用于压测流式链路。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Slf4j
+public class MockStreamingChatModel implements StreamingChatModel {
+
+    private final MockModelProperties properties;
+    private final List<ChatModelListener> listeners;
+
+    public MockStreamingChatModel(MockModelProperties properties, List<ChatModelListener> listeners) {
+        this.properties = properties;
+        this.listeners = listeners != null ? List.copyOf(listeners) : List.of();
+    }
+
+    @Override
+    public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        Thread.ofVirtual()
+                .name("mock-llm-stream")
+                .start(() -> stream(chatRequest, handler));
+    }
+
+    private void stream(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        try {
+            if (!MockResponseScript.pause(properties.getTimeToFirstToken().toNanos())) {
+                handler.onError(new IllegalStateException("Mock stream interrupted"));
+                return;
+            }
+            MockResponseScript.maybeRateLimit(properties);
+
+            String modelName = MockResponseScript.modelName(chatRequest, properties);
+            ToolExecutionRequest toolCall = MockResponseScript.nextToolCall(chatRequest, properties.getToolCallScript());
+            if (toolCall != null) {
+                handler.onCompleteResponse(ChatResponse.builder()
+                        .aiMessage(AiMessage.from(List.of(toolCall)))
+                        .modelName(modelName)
+                        .tokenUsage(MockResponseScript.estimateUsage(chatRequest, 1))
+                        .finishReason(FinishReason.TOOL_EXECUTION)
+                        .build());
+                return;
+            }
+
+            long interval = MockResponseScript.tokenIntervalNanos(properties);
+            boolean first = true;
+            StringBuilder thinking = new StringBuilder();
+            for (String token : MockResponseScript.tokens(properties.getThinkingTokens())) {
+                if (!first && !MockResponseScript.pause(interval)) {
+                    handler.onError(new IllegalStateException("Mock stream interrupted"));
+                    return;
+                }
+                first = false;
+                thinking.append(token);
+                handler.onPartialThinking(new PartialThinking(token));
+            }
+            StringBuilder text = new StringBuilder();
+            for (String token : MockResponseScript.tokens(properties.getOutputTokens())) {
+                if (!first && !MockResponseScript.pause(interval)) {
+                    handler.onError(new IllegalStateException("Mock stream interrupted"));
+                    return;
+                }
+                first = false;
+                text.append(token);
+                handler.onPartialResponse(token);
+            }
+
+            AiMessage.Builder aiMessage = AiMessage.builder().text(text.toString());
+            if (!thinking.isEmpty()) {
+                aiMessage.thinking(thinking.toString());
+            }
+            handler.onCompleteResponse(ChatResponse.builder()
+                    .aiMessage(aiMessage.build())
+                    .modelName(modelName)
+                    .tokenUsage(MockResponseScript.estimateUsage(chatRequest,
+                            properties.getThinkingTokens() + properties.getOutputTokens()))
+                    .finishReason(FinishReason.STOP)
+                    .build());
+        } catch (Exception e) {
+            log.debug("模拟流式响应异常: {}", e.getMessage());
+            handler.onError(e);
+        }
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return listeners;
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return ModelProvider.OTHER;
+    }
+}
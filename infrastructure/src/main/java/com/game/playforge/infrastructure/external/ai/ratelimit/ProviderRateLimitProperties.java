@@ -0,0 +1,104 @@
+package com.game.playforge.infrastructure.external.ai.ratelimit;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 模型供应商限流配置属性
+ * <p>
+ * 从 {@code application.yaml} 中的 {@code playforge.rate-limit} 前缀读取配置。
+ * 配置值是每个（供应商, 模型, API Key）通道的上限，实际速率会根据429响应与限流响应头自适应下调，
+ * 成功后逐步恢复。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "playforge.rate-limit")
+public class ProviderRateLimitProperties {
+
+    /**
+     * 是否启用限流（关闭时直接调用模型，限流由应用层重试兜底）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 排队等待许可的最长时间，超时按限流错误返回
+     */
+    private Duration acquireTimeout = Duration.ofMinutes(2);
+
+    /**
+     * 触发429后的初始冷却时间（连续429时翻倍）
+     */
+    private Duration initialCooldown = Duration.ofSeconds(2);
+
+    /**
+     * 冷却时间上限
+     */
+    private Duration maxCooldown = Duration.ofSeconds(60);
+
+    /**
+     * 429后速率下调系数
+     */
+    private double decreaseFactor = 0.5;
+
+    /**
+     * 每次成功调用恢复的速率比例（相对配置上限）
+     */
+    private double recoveryStep = 0.05;
+
+    /**
+     * 未单独配置的供应商使用的默认上限
+     */
+    private Limits defaults = new Limits(60, 8, "default");
+
+    /**
+     * 各供应商上限，key为供应商标识（openai/anthropic/gemini/mock）
+     */
+    private Map<String, Limits> providers = new HashMap<>(Map.of(
+            "openai", new Limits(500, 32, "default"),
+            "anthropic", new Limits(50, 8, "default"),
+            "gemini", new Limits(150, 16, "default"),
+            "mock", new Limits(6000, 256, "default")));
+
+    /**
+     * 按供应商解析上限
+     */
+    public Limits resolve(String provider) {
+        Limits limits = provider != null ? providers.get(provider) : null;
+        return limits != null ? limits : defaults;
+    }
+
+    /**
+     * 单个通道的上限
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limits {
+
+        /**
+         * 每分钟请求数上限
+         */
+        private int requestsPerMinute;
+
+        /**
+         * 并发请求上限
+         */
+        private int maxConcurrency;
+
+        /**
+         * API Key标识（同一供应商配置多个Key时区分限流通道，不填写Key本身）
+         */
+        private String keyId;
+    }
+}
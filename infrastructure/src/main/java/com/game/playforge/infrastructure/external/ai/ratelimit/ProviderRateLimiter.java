@@ -0,0 +1,358 @@
+package com.game.playforge.infrastructure.external.ai.ratelimit;
+
+import com.game.playforge.infrastructure.external.ai.RateLimitErrors;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 模型供应商自适应限流器
+ * <p>
+ * 按（供应商, 模型, API Key）划分通道，每个通道同时受令牌桶（请求速率）与并发数约束，
+ * 请求在通道内按先到先得排队等待许可，而不是先失败再由调用方休眠重试：
+ * </p>
+ * <ul>
+ *     <li>收到429时速率按系数下调，并进入冷却期（连续429时冷却时间翻倍）；成功调用后速率逐步恢复到上限</li>
+ *     <li>响应头给出的每分钟上限低于配置时以响应头为准；剩余请求数为0时冷却到窗口重置</li>
+ *     <li>排队超过 {@code acquire-timeout} 时以 {@link RateLimitException} 失败，交由调用方的限流处理</li>
+ * </ul>
+ * <p>
+ * 等待许可不占用线程：许可以 {@link CompletableFuture} 形式发放，通道阻塞于速率或冷却时由调度线程定时唤醒。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class ProviderRateLimiter {
+
+    private static final Permit NOOP_PERMIT = new Permit(null);
+
+    private final ProviderRateLimitProperties properties;
+    private final AgentMetrics agentMetrics;
+    private final ConcurrentHashMap<LaneKey, Lane> lanes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("provider-rate-limiter").daemon(true).factory());
+    private final ExecutorService dispatchExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("provider-dispatch-", 0).factory());
+
+    public ProviderRateLimiter(ProviderRateLimitProperties properties, AgentMetrics agentMetrics) {
+        this.properties = properties;
+        this.agentMetrics = agentMetrics;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 异步申请许可，超时以 {@link RateLimitException} 异常完成
+     *
+     * @param provider 供应商标识
+     * @param model    模型名称
+     * @return 许可
+     */
+    public CompletableFuture<Permit> acquire(String provider, String model) {
+        if (!properties.isEnabled()) {
+            return CompletableFuture.completedFuture(NOOP_PERMIT);
+        }
+        Lane lane = lane(provider, model);
+        CompletableFuture<Permit> future = new CompletableFuture<>();
+        lane.enqueue(future);
+        long timeoutMillis = properties.getAcquireTimeout().toMillis();
+        CompletableFuture<Permit> acquired = future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .exceptionallyCompose(error -> CompletableFuture.failedFuture(
+                        error instanceof TimeoutException
+                                ? new RateLimitException("等待限流许可超时, lane=" + lane.key)
+                                : error));
+        acquired.whenComplete((permit, error) -> {
+            if (acquired.isCancelled()) {
+                // 调用方放弃等待：撤销排队；许可已发放时归还
+                future.cancel(false);
+                future.thenAccept(Permit::cancel);
+            }
+        });
+        return acquired;
+    }
+
+    /**
+     * 同步申请许可（阻塞当前线程直到获得许可或超时）
+     *
+     * @throws RateLimitException 排队超时
+     */
+    public Permit acquireBlocking(String provider, String model) {
+        CompletableFuture<Permit> future = acquire(provider, model);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            if (!future.cancel(false)) {
+                // 中断与发放许可并发：许可已发放但调用方不再使用，归还许可
+                future.thenAccept(Permit::cancel);
+            }
+            Thread.currentThread().interrupt();
+            throw new RateLimitException("等待限流许可被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new RateLimitException(e.getCause());
+        }
+    }
+
+    /**
+     * 获得许可后发起请求使用的执行器（虚拟线程），避免在释放许可的回调线程上发起下一个请求
+     */
+    public Executor dispatchExecutor() {
+        return dispatchExecutor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        dispatchExecutor.shutdown();
+    }
+
+    private Lane lane(String provider, String model) {
+        ProviderRateLimitProperties.Limits limits = properties.resolve(provider);
+        LaneKey key = new LaneKey(provider, model, limits.getKeyId());
+        return lanes.computeIfAbsent(key, k -> {
+            Lane lane = new Lane(k, limits);
+            agentMetrics.registerLimiterLane(provider, model, lane, Lane::queued, Lane::requestsPerMinute);
+            log.info("创建限流通道, lane={}, rpm={}, maxConcurrency={}",
+                    k, limits.getRequestsPerMinute(), limits.getMaxConcurrency());
+            return lane;
+        });
+    }
+
+    /**
+     * 许可调用结果
+     */
+    private enum Outcome {
+        SUCCESS, RATE_LIMITED, ERROR, CANCELLED
+    }
+
+    /**
+     * 请求许可，调用结束后必须通过 {@link #complete} 或 {@link #fail} 归还（重复归还无副作用）
+     */
+    public static final class Permit {
+
+        private final Lane lane;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Lane lane) {
+            this.lane = lane;
+        }
+
+        /**
+         * 调用成功：归还许可并根据响应头校准通道
+         */
+        public void complete(ChatResponse response) {
+            if (lane != null && released.compareAndSet(false, true)) {
+                lane.release(Outcome.SUCCESS, RateLimitHeaders.parse(RateLimitHeaders.headersOf(response)));
+            }
+        }
+
+        /**
+         * 调用失败：归还许可，限流错误会下调通道速率并进入冷却
+         */
+        public void fail(Throwable error) {
+            if (lane != null && released.compareAndSet(false, true)) {
+                Outcome outcome = RateLimitErrors.isRateLimitError(error)
+                        ? Outcome.RATE_LIMITED : Outcome.ERROR;
+                lane.release(outcome, null);
+            }
+        }
+
+        private void cancel() {
+            if (lane != null && released.compareAndSet(false, true)) {
+                lane.release(Outcome.CANCELLED, null);
+            }
+        }
+    }
+
+    private record LaneKey(String provider, String model, String keyId) {
+    }
+
+    private record Waiter(CompletableFuture<Permit> future, long enqueuedNanos) {
+    }
+
+    /**
+     * 单个限流通道，状态均在通道锁内修改，许可的发放在锁外完成
+     */
+    private final class Lane {
+
+        private final LaneKey key;
+        private final int maxConcurrency;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+
+        /**
+         * 速率上限与当前速率（请求/秒）
+         */
+        private double ceilingRate;
+        private double rate;
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+        private int inFlight;
+        private long cooldownUntilNanos;
+        private long nextCooldownNanos;
+        private boolean drainScheduled;
+
+        private Lane(LaneKey key, ProviderRateLimitProperties.Limits limits) {
+            this.key = key;
+            this.maxConcurrency = Math.max(1, limits.getMaxConcurrency());
+            this.ceilingRate = Math.max(1, limits.getRequestsPerMinute()) / 60.0;
+            this.rate = ceilingRate;
+            this.tokens = burstCapacity();
+            this.nextCooldownNanos = properties.getInitialCooldown().toNanos();
+        }
+
+        void enqueue(CompletableFuture<Permit> future) {
+            synchronized (this) {
+                waiters.addLast(new Waiter(future, System.nanoTime()));
+            }
+            drain();
+        }
+
+        void release(Outcome outcome, RateLimitHeaders.Observation observation) {
+            synchronized (this) {
+                inFlight = Math.max(0, inFlight - 1);
+                long now = System.nanoTime();
+                switch (outcome) {
+                    case SUCCESS -> {
+                        rate = Math.min(ceilingRate, rate + ceilingRate * properties.getRecoveryStep());
+                        nextCooldownNanos = properties.getInitialCooldown().toNanos();
+                    }
+                    case RATE_LIMITED -> {
+                        rate = Math.max(minRate(), rate * properties.getDecreaseFactor());
+                        tokens = Math.min(tokens, 0);
+                        cooldownUntilNanos = Math.max(cooldownUntilNanos, now + nextCooldownNanos);
+                        log.warn("供应商限流，通道降速冷却, lane={}, rpm={}, cooldownMs={}",
+                                key, Math.round(rate * 60), TimeUnit.NANOSECONDS.toMillis(nextCooldownNanos));
+                        nextCooldownNanos = Math.min(properties.getMaxCooldown().toNanos(), nextCooldownNanos * 2);
+                    }
+                    case CANCELLED -> tokens = Math.min(burstCapacity(), tokens + 1);
+                    case ERROR -> {
+                    }
+                }
+                if (observation != null && !observation.isEmpty()) {
+                    calibrate(observation, now);
+                }
+            }
+            drain();
+        }
+
+        private void calibrate(RateLimitHeaders.Observation observation, long now) {
+            if (observation.requestsPerMinute() != null && observation.requestsPerMinute() > 0) {
+                double learned = observation.requestsPerMinute() / 60.0;
+                if (learned < ceilingRate) {
+                    log.info("根据响应头下调通道上限, lane={}, rpm={}", key, observation.requestsPerMinute());
+                    ceilingRate = learned;
+                    rate = Math.min(rate, ceilingRate);
+                }
+            }
+            if (observation.remaining() != null && observation.remaining() <= 0
+                    && observation.resetAfter() != null) {
+                Duration reset = observation.resetAfter();
+                if (reset.compareTo(properties.getMaxCooldown()) > 0) {
+                    reset = properties.getMaxCooldown();
+                }
+                cooldownUntilNanos = Math.max(cooldownUntilNanos, now + reset.toNanos());
+                tokens = Math.min(tokens, 0);
+            }
+        }
+
+        private void drain() {
+            List<Waiter> granted = new ArrayList<>();
+            synchronized (this) {
+                long now = System.nanoTime();
+                refill(now);
+                long delayNanos = 0;
+                while (!waiters.isEmpty()) {
+                    Waiter head = waiters.peekFirst();
+                    if (head.future().isDone()) {
+                        waiters.pollFirst();
+                        continue;
+                    }
+                    if (inFlight >= maxConcurrency) {
+                        // 并发占满时由归还许可触发下一次发放
+                        break;
+                    }
+                    if (now < cooldownUntilNanos) {
+                        delayNanos = cooldownUntilNanos - now;
+                        break;
+                    }
+                    if (tokens < 1) {
+                        delayNanos = (long) Math.ceil((1 - tokens) / rate * 1_000_000_000L);
+                        break;
+                    }
+                    tokens -= 1;
+                    inFlight++;
+                    granted.add(waiters.pollFirst());
+                }
+                if (delayNanos > 0 && !drainScheduled) {
+                    drainScheduled = true;
+                    scheduler.schedule(this::scheduledDrain, delayNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+            for (Waiter waiter : granted) {
+                Permit permit = new Permit(this);
+                agentMetrics.recordLimiterWait(key.provider(), key.model(), System.nanoTime() - waiter.enqueuedNanos());
+                if (!waiter.future().complete(permit)) {
+                    // 已超时或取消，退回令牌与并发名额
+                    permit.cancel();
+                }
+            }
+        }
+
+        private void scheduledDrain() {
+            synchronized (this) {
+                drainScheduled = false;
+            }
+            drain();
+        }
+
+        private void refill(long now) {
+            double elapsedSeconds = (now - lastRefillNanos) / 1_000_000_000.0;
+            lastRefillNanos = now;
+            tokens = Math.min(burstCapacity(), tokens + elapsedSeconds * rate);
+        }
+
+        /**
+         * 令牌桶容量：当前速率下约6秒的请求量，至少1个
+         */
+        private double burstCapacity() {
+            return Math.max(1, rate * 6);
+        }
+
+        private double minRate() {
+            return Math.max(1 / 60.0, ceilingRate * 0.02);
+        }
+
+        synchronized double queued() {
+            return waiters.size();
+        }
+
+        synchronized double requestsPerMinute() {
+            return rate * 60;
+        }
+    }
+}
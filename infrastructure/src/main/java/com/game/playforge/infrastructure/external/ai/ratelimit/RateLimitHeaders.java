@@ -0,0 +1,165 @@
+package com.game.playforge.infrastructure.external.ai.ratelimit;
+
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 供应商限流响应头解析
+ * <p>
+ * 兼容OpenAI（{@code x-ratelimit-*-requests}，重置时间为 {@code 1m2.5s} 形式）、
+ * Anthropic（{@code anthropic-ratelimit-requests-*}，重置时间为RFC 3339时间戳）
+ * 与通用的 {@code retry-after}（秒）。原始响应头通过响应元数据的 {@code rawHttpResponse()} 读取，
+ * 不依赖供应商模块的编译期类型，未暴露原始响应的供应商返回空。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+final class RateLimitHeaders {
+
+    private static final Pattern GO_DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|s|m|h)");
+
+    private static final ClassValue<Method> RAW_RESPONSE_METHODS = new ClassValue<>() {
+        @Override
+        protected Method computeValue(Class<?> type) {
+            return findMethod(type, "rawHttpResponse");
+        }
+    };
+
+    private RateLimitHeaders() {
+    }
+
+    /**
+     * 从响应头解析出的限流状态，未知字段为null
+     *
+     * @param requestsPerMinute 每分钟请求上限
+     * @param remaining         当前窗口剩余请求数
+     * @param resetAfter        距离窗口重置的时长
+     */
+    record Observation(Integer requestsPerMinute, Integer remaining, Duration resetAfter) {
+
+        boolean isEmpty() {
+            return requestsPerMinute == null && remaining == null && resetAfter == null;
+        }
+    }
+
+    /**
+     * 读取响应中的原始响应头
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, List<String>> headersOf(ChatResponse response) {
+        if (response == null || response.metadata() == null) {
+            return Map.of();
+        }
+        try {
+            Method rawMethod = RAW_RESPONSE_METHODS.get(response.metadata().getClass());
+            if (rawMethod == null) {
+                return Map.of();
+            }
+            Object raw = rawMethod.invoke(response.metadata());
+            if (raw == null) {
+                return Map.of();
+            }
+            Method headers = findMethod(raw.getClass(), "headers");
+            Object value = headers != null ? headers.invoke(raw) : null;
+            return value instanceof Map<?, ?> map ? (Map<String, List<String>>) map : Map.of();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Map.of();
+        }
+    }
+
+    static Observation parse(Map<String, List<String>> headers) {
+        if (headers == null || headers.isEmpty()) {
+            return new Observation(null, null, null);
+        }
+        Integer limit = null;
+        Integer remaining = null;
+        Duration reset = null;
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null || entry.getValue().isEmpty()) {
+                continue;
+            }
+            String name = entry.getKey().toLowerCase(Locale.ROOT);
+            String value = entry.getValue().getFirst();
+            switch (name) {
+                case "x-ratelimit-limit-requests", "anthropic-ratelimit-requests-limit" -> limit = parseInt(value);
+                case "x-ratelimit-remaining-requests", "anthropic-ratelimit-requests-remaining" ->
+                        remaining = parseInt(value);
+                case "x-ratelimit-reset-requests" -> reset = longer(reset, parseGoDuration(value));
+                case "anthropic-ratelimit-requests-reset" -> reset = longer(reset, parseInstant(value));
+                case "retry-after" -> reset = longer(reset, parseSeconds(value));
+                default -> {
+                }
+            }
+        }
+        return new Observation(limit, remaining, reset);
+    }
+
+    private static Integer parseInt(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static Duration parseGoDuration(String value) {
+        Matcher matcher = GO_DURATION_PART.matcher(value.trim());
+        double millis = 0;
+        boolean matched = false;
+        while (matcher.find()) {
+            matched = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "ms" -> amount;
+                case "s" -> amount * 1_000;
+                case "m" -> amount * 60_000;
+                default -> amount * 3_600_000;
+            };
+        }
+        return matched ? Duration.ofMillis((long) Math.ceil(millis)) : null;
+    }
+
+    private static Duration parseInstant(String value) {
+        try {
+            Duration duration = Duration.between(Instant.now(), Instant.parse(value.trim()));
+            return duration.isNegative() ? Duration.ZERO : duration;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static Duration parseSeconds(String value) {
+        try {
+            return Duration.ofMillis((long) (Double.parseDouble(value.trim()) * 1_000));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Duration longer(Duration current, Duration candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        return current == null || candidate.compareTo(current) > 0 ? candidate : current;
+    }
+
+    private static Method findMethod(Class<?> type, String name) {
+        try {
+            Method method = type.getMethod(name);
+            method.setAccessible(true);
+            return method;
+        } catch (NoSuchMethodException | RuntimeException e) {
+            return null;
+        }
+    }
+}
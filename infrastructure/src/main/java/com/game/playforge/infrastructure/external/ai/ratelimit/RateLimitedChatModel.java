@@ -0,0 +1,79 @@
+package com.game.playforge.infrastructure.external.ai.ratelimit;
+
+import com.game.playforge.infrastructure.metrics.ModelCallTiming;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 限流包装（同步模型）
+ * <p>
+ * 调用前在 {@link ProviderRateLimiter} 对应通道排队获取许可，调用结束后归还并反馈结果。
+ * 监听器与默认参数均透传给被包装模型，对上层Agent包装透明；获得许可后重置调用计时起点，耗时不含排队时间。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public class RateLimitedChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final ProviderRateLimiter rateLimiter;
+    private final String provider;
+
+    public RateLimitedChatModel(ChatModel delegate, ProviderRateLimiter rateLimiter, String provider) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
+        this.rateLimiter = Objects.requireNonNull(rateLimiter, "rateLimiter must not be null");
+        this.provider = provider;
+    }
+
+    @Override
+    public ChatResponse doChat(ChatRequest chatRequest) {
+        ModelCallTiming timing = ModelCallTiming.detach();
+        ProviderRateLimiter.Permit permit = rateLimiter.acquireBlocking(provider, modelName(chatRequest));
+        if (timing != null) {
+            timing.restart();
+        }
+        try {
+            ChatResponse response = delegate.doChat(chatRequest);
+            permit.complete(response);
+            return response;
+        } catch (RuntimeException | Error e) {
+            permit.fail(e);
+            throw e;
+        }
+    }
+
+    private String modelName(ChatRequest chatRequest) {
+        String modelName = chatRequest != null ? chatRequest.modelName() : null;
+        return modelName != null ? modelName : delegate.defaultRequestParameters().modelName();
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return delegate.listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
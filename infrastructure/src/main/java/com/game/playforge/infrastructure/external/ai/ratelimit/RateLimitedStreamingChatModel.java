@@ -0,0 +1,159 @@
+package com.game.playforge.infrastructure.external.ai.ratelimit;
+
+import com.game.playforge.infrastructure.metrics.ModelCallTiming;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialThinkingContext;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.PartialToolCallContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 限流包装（流式模型）
+ * <p>
+ * 异步获取许可，获得许可后在限流器的派发线程上发起请求，排队期间不占用调用线程；
+ * 流结束（完成或出错）时归还许可。排队超时以 {@code RateLimitException} 回调 {@code onError}。
+ * 获得许可后重置调用计时起点，调用耗时与首Token延迟不含排队时间。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public class RateLimitedStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+    private final ProviderRateLimiter rateLimiter;
+    private final String provider;
+
+    public RateLimitedStreamingChatModel(StreamingChatModel delegate, ProviderRateLimiter rateLimiter,
+                                         String provider) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
+        this.rateLimiter = Objects.requireNonNull(rateLimiter, "rateLimiter must not be null");
+        this.provider = provider;
+    }
+
+    @Override
+    public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        ModelCallTiming timing = ModelCallTiming.detach();
+        if (!rateLimiter.isEnabled()) {
+            delegate.doChat(chatRequest, handler);
+            return;
+        }
+        rateLimiter.acquire(provider, modelName(chatRequest)).whenCompleteAsync((permit, error) -> {
+            if (error != null) {
+                handler.onError(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+                return;
+            }
+            if (timing != null) {
+                timing.restart();
+            }
+            try {
+                delegate.doChat(chatRequest, new PermitReleasingHandler(handler, permit));
+            } catch (RuntimeException e) {
+                permit.fail(e);
+                handler.onError(e);
+            }
+        }, rateLimiter.dispatchExecutor());
+    }
+
+    private String modelName(ChatRequest chatRequest) {
+        String modelName = chatRequest != null ? chatRequest.modelName() : null;
+        return modelName != null ? modelName : delegate.defaultRequestParameters().modelName();
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return delegate.listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    /**
+     * 透传全部回调，在终止回调前归还许可
+     */
+    private static final class PermitReleasingHandler implements StreamingChatResponseHandler {
+
+        private final StreamingChatResponseHandler delegate;
+        private final ProviderRateLimiter.Permit permit;
+
+        private PermitReleasingHandler(StreamingChatResponseHandler delegate, ProviderRateLimiter.Permit permit) {
+            this.delegate = delegate;
+            this.permit = permit;
+        }
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            delegate.onPartialResponse(partialResponse);
+        }
+
+        @Override
+        public void onPartialResponse(PartialResponse partialResponse, PartialResponseContext context) {
+            delegate.onPartialResponse(partialResponse, context);
+        }
+
+        @Override
+        public void onPartialThinking(PartialThinking partialThinking) {
+            delegate.onPartialThinking(partialThinking);
+        }
+
+        @Override
+        public void onPartialThinking(PartialThinking partialThinking, PartialThinkingContext context) {
+            delegate.onPartialThinking(partialThinking, context);
+        }
+
+        @Override
+        public void onPartialToolCall(PartialToolCall partialToolCall) {
+            delegate.onPartialToolCall(partialToolCall);
+        }
+
+        @Override
+        public void onPartialToolCall(PartialToolCall partialToolCall, PartialToolCallContext context) {
+            delegate.onPartialToolCall(partialToolCall, context);
+        }
+
+        @Override
+        public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+            delegate.onCompleteToolCall(completeToolCall);
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            permit.complete(completeResponse);
+            delegate.onCompleteResponse(completeResponse);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            permit.fail(error);
+            delegate.onError(error);
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.game.playforge.infrastructure.external.ai.scheduling;
+
+import com.game.playforge.common.exception.BusinessException;
+import com.game.playforge.common.result.ResultCode;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Agent任务共享调度器
+ * <p>
+ * 所有会话共用的有界调度器，取代每个Lead会话各自的无界虚拟线程执行器：
+ * </p>
+ * <ul>
+ *     <li>交互通道：用户发起的对话轮次，只受单用户上限约束，每次发放名额时优先处理</li>
+ *     <li>后台通道：子Agent任务，受总并发、单用户、单供应商上限约束，按用户轮转发放，
+ *     避免单个Lead扇出大量子Agent占满供应商额度</li>
+ * </ul>
+ * <p>
+ * 名额以 {@link CompletableFuture} 异步发放，在虚拟线程上完成，排队期间不占用调用线程。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class AgentTaskScheduler {
+
+    /**
+     * 调度通道，声明顺序即发放优先级
+     */
+    public enum Lane {
+        INTERACTIVE, BACKGROUND;
+
+        String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    private static final long ANONYMOUS_USER = 0L;
+
+    private final AgentTaskSchedulerProperties properties;
+    private final AgentMetrics agentMetrics;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("agent-task-", 0).factory());
+
+    private final Map<Lane, FairQueue> queues = new EnumMap<>(Lane.class);
+    private final Map<Lane, Integer> runningByLane = new EnumMap<>(Lane.class);
+    private final Map<Lane, Map<Long, Integer>> runningByUser = new EnumMap<>(Lane.class);
+    private final Map<String, Integer> backgroundByProvider = new HashMap<>();
+
+    public AgentTaskScheduler(AgentTaskSchedulerProperties properties, AgentMetrics agentMetrics) {
+        this.properties = properties;
+        this.agentMetrics = agentMetrics;
+        for (Lane lane : Lane.values()) {
+            queues.put(lane, new FairQueue());
+            runningByLane.put(lane, 0);
+            runningByUser.put(lane, new HashMap<>());
+            agentMetrics.registerSchedulerLane(lane.tag(), this, scheduler -> scheduler.queued(lane),
+                    scheduler -> scheduler.running(lane));
+        }
+    }
+
+    /**
+     * 申请执行名额，超过排队时限以 {@link BusinessException}（{@link ResultCode#AGENT_BUSY}）异常完成
+     *
+     * @param lane     调度通道
+     * @param userId   用户ID（为空时归入匿名用户）
+     * @param provider 供应商标识
+     * @return 名额，使用结束后必须释放
+     */
+    public CompletableFuture<Permit> acquire(Lane lane, Long userId, String provider) {
+        Ticket ticket = new Ticket(lane, userId != null ? userId : ANONYMOUS_USER, provider,
+                new CompletableFuture<>(), System.nanoTime());
+        synchronized (this) {
+            queues.get(lane).add(ticket);
+        }
+        pump();
+        long timeoutMillis = (lane == Lane.INTERACTIVE
+                ? properties.getInteractiveQueueTimeout()
+                : properties.getBackgroundQueueTimeout()).toMillis();
+        CompletableFuture<Permit> acquired = ticket.future().orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .exceptionallyCompose(error -> {
+                    if (error instanceof TimeoutException) {
+                        log.warn("任务排队超时, lane={}, userId={}, provider={}", lane, userId, provider);
+                        return CompletableFuture.failedFuture(
+                                new BusinessException(ResultCode.AGENT_BUSY, "排队等待超时"));
+                    }
+                    return CompletableFuture.failedFuture(error);
+                });
+        acquired.whenComplete((permit, error) -> {
+            if (acquired.isCancelled()) {
+                // 调用方放弃等待：撤销排队；名额已发放时归还
+                ticket.future().cancel(false);
+                ticket.future().thenAccept(Permit::release);
+            }
+        });
+        return acquired;
+    }
+
+    /**
+     * 同步申请执行名额（阻塞当前线程）
+     *
+     * @throws BusinessException 排队超时
+     */
+    public Permit acquireBlocking(Lane lane, Long userId, String provider) {
+        CompletableFuture<Permit> future = acquire(lane, userId, provider);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            if (!future.cancel(false)) {
+                // 中断与发放名额并发：名额已发放但调用方不再使用，归还名额
+                future.thenAccept(Permit::release);
+            }
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ResultCode.AGENT_BUSY, "等待执行被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 提交后台任务
+     * <p>
+     * 获得名额后在虚拟线程上执行；取消返回的Future会撤销排队或中断正在执行的任务。
+     * </p>
+     */
+    public <T> CompletableFuture<T> submit(Long userId, String provider, Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<Permit> permitFuture = acquire(Lane.BACKGROUND, userId, provider);
+        permitFuture.whenComplete((permit, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            if (result.isDone()) {
+                permit.release();
+                return;
+            }
+            Future<?> running = executor.submit(() -> {
+                try {
+                    result.complete(task.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    permit.release();
+                }
+            });
+            result.whenComplete((ignored, resultError) -> {
+                if (result.isCancelled()) {
+                    running.cancel(true);
+                }
+            });
+        });
+        result.whenComplete((ignored, error) -> {
+            if (result.isCancelled()) {
+                permitFuture.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 发放名额：交互通道优先，通道内按用户轮转
+     */
+    private void pump() {
+        List<Grant> grants = new ArrayList<>();
+        synchronized (this) {
+            for (Lane lane : Lane.values()) {
+                FairQueue queue = queues.get(lane);
+                Ticket ticket;
+                while ((ticket = queue.pollEligible(this::canRun)) != null) {
+                    occupy(ticket);
+                    grants.add(new Grant(ticket, new Permit(ticket)));
+                }
+            }
+        }
+        for (Grant grant : grants) {
+            Ticket ticket = grant.ticket();
+            agentMetrics.recordSchedulerWait(ticket.lane().tag(), System.nanoTime() - ticket.enqueuedNanos());
+            executor.execute(() -> {
+                if (!ticket.future().complete(grant.permit())) {
+                    // 已超时或取消，退回名额
+                    grant.permit().release();
+                }
+            });
+        }
+    }
+
+    private boolean canRun(Ticket ticket) {
+        int userRunning = runningByUser.get(ticket.lane()).getOrDefault(ticket.userId(), 0);
+        if (ticket.lane() == Lane.INTERACTIVE) {
+            return userRunning < properties.getMaxInteractivePerUser();
+        }
+        int background = runningByLane.get(Lane.BACKGROUND);
+        int total = background + runningByLane.get(Lane.INTERACTIVE);
+        return userRunning < properties.getMaxBackgroundPerUser()
+                && backgroundByProvider.getOrDefault(ticket.provider(), 0)
+                < properties.resolveProviderConcurrency(ticket.provider())
+                && (background < properties.getBackgroundGuaranteed() || total < properties.getMaxConcurrency());
+    }
+
+    private void occupy(Ticket ticket) {
+        runningByLane.merge(ticket.lane(), 1, Integer::sum);
+        runningByUser.get(ticket.lane()).merge(ticket.userId(), 1, Integer::sum);
+        if (ticket.lane() == Lane.BACKGROUND) {
+            backgroundByProvider.merge(ticket.provider(), 1, Integer::sum);
+        }
+    }
+
+    private void vacate(Ticket ticket) {
+        synchronized (this) {
+            runningByLane.merge(ticket.lane(), -1, Integer::sum);
+            runningByUser.get(ticket.lane()).computeIfPresent(ticket.userId(), (k, v) -> v > 1 ? v - 1 : null);
+            if (ticket.lane() == Lane.BACKGROUND) {
+                backgroundByProvider.computeIfPresent(ticket.provider(), (k, v) -> v > 1 ? v - 1 : null);
+            }
+        }
+        pump();
+    }
+
+    private synchronized double queued(Lane lane) {
+        return queues.get(lane).size();
+    }
+
+    private synchronized double running(Lane lane) {
+        return runningByLane.get(lane);
+    }
+
+    /**
+     * 执行名额，重复释放无副作用
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final Ticket ticket;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Ticket ticket) {
+            this.ticket = ticket;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                vacate(ticket);
+            }
+        }
+
+        @Override
+        public void close() {
+            release();
+        }
+    }
+
+    private record Ticket(Lane lane, Long userId, String provider,
+                          CompletableFuture<Permit> future, long enqueuedNanos) {
+    }
+
+    private record Grant(Ticket ticket, Permit permit) {
+    }
+
+    /**
+     * 按用户分组的轮转队列：每次从最久未被服务的用户开始查找可运行的任务，发放后该用户移到队尾
+     * <p>
+     * 用户队列内按入队顺序查找第一个可运行的任务，某个供应商达到上限时不会挡住同一用户其他供应商的任务。
+     * </p>
+     */
+    private static final class FairQueue {
+
+        private final LinkedHashMap<Long, ArrayDeque<Ticket>> byUser = new LinkedHashMap<>();
+        private int size;
+
+        void add(Ticket ticket) {
+            byUser.computeIfAbsent(ticket.userId(), k -> new ArrayDeque<>()).addLast(ticket);
+            size++;
+        }
+
+        Ticket pollEligible(Predicate<Ticket> canRun) {
+            Iterator<Map.Entry<Long, ArrayDeque<Ticket>>> iterator = byUser.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Long, ArrayDeque<Ticket>> entry = iterator.next();
+                ArrayDeque<Ticket> tickets = entry.getValue();
+                Ticket eligible = null;
+                Iterator<Ticket> candidates = tickets.iterator();
+                while (candidates.hasNext()) {
+                    Ticket ticket = candidates.next();
+                    if (ticket.future().isDone()) {
+                        // 丢弃已超时或取消的排队项
+                        candidates.remove();
+                        size--;
+                    } else if (canRun.test(ticket)) {
+                        candidates.remove();
+                        size--;
+                        eligible = ticket;
+                        break;
+                    }
+                }
+                if (eligible == null) {
+                    if (tickets.isEmpty()) {
+                        iterator.remove();
+                    }
+                    continue;
+                }
+                iterator.remove();
+                if (!tickets.isEmpty()) {
+                    byUser.put(entry.getKey(), tickets);
+                }
+                return eligible;
+            }
+            return null;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.game.playforge.infrastructure.external.ai.scheduling;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Agent任务调度配置属性
+ * <p>
+ * 从 {@code application.yaml} 中的 {@code playforge.task-scheduler} 前缀读取配置。
+ * 交互轮次（用户发起的Lead对话）只受单用户上限约束，优先于后台子Agent任务获得执行名额；
+ * 后台任务同时受总量、单用户与单供应商上限约束。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "playforge.task-scheduler")
+public class AgentTaskSchedulerProperties {
+
+    /**
+     * 交互轮次与后台任务合计的并发上限，超出后后台任务排队（交互轮次不受此限制）
+     */
+    private int maxConcurrency = 64;
+
+    /**
+     * 后台任务的保底并发数：即使交互轮次占满总量也可运行，避免等待子Agent结果的Lead轮次与子Agent互相等待
+     */
+    private int backgroundGuaranteed = 8;
+
+    /**
+     * 单用户同时进行的交互轮次上限
+     */
+    private int maxInteractivePerUser = 4;
+
+    /**
+     * 单用户同时运行的后台任务上限
+     */
+    private int maxBackgroundPerUser = 4;
+
+    /**
+     * 未单独配置的供应商的后台任务并发上限
+     */
+    private int defaultProviderConcurrency = 16;
+
+    /**
+     * 各供应商的后台任务并发上限，key为供应商标识（openai/anthropic/gemini/mock）
+     */
+    private Map<String, Integer> providerConcurrency = new HashMap<>();
+
+    /**
+     * 交互轮次排队的最长时间，超时返回繁忙
+     */
+    private Duration interactiveQueueTimeout = Duration.ofSeconds(30);
+
+    /**
+     * 后台任务排队的最长时间，超时任务以错误结束
+     */
+    private Duration backgroundQueueTimeout = Duration.ofMinutes(10);
+
+    /**
+     * 按供应商解析后台任务并发上限
+     */
+    public int resolveProviderConcurrency(String provider) {
+        Integer limit = provider != null ? providerConcurrency.get(provider) : null;
+        return limit != null ? limit : defaultProviderConcurrency;
+    }
+}
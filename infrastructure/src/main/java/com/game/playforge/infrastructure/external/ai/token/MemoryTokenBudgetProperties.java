@@ -0,0 +1,43 @@
+package com.game.playforge.infrastructure.external.ai.token;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 记忆Token预算配置属性
+ * <p>
+ * 从 {@code application.yaml} 中的 {@code playforge.memory-budget} 前缀读取配置。
+ * 预算只约束记忆窗口（含系统提示词），需为模型上下文预留输出Token。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "playforge.memory-budget")
+public class MemoryTokenBudgetProperties {
+
+    /**
+     * 是否按Token预算裁剪记忆（关闭时使用Agent定义的消息条数窗口）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 各供应商默认预算，key为供应商标识（openai/anthropic/gemini/mock）
+     */
+    private Map<String, Integer> providers = new HashMap<>(Map.of(
+            "openai", 100_000,
+            "anthropic", 120_000,
+            "gemini", 200_000,
+            "mock", 32_000));
+
+    /**
+     * 按模型名称覆盖的预算（优先于供应商默认值）
+     */
+    private Map<String, Integer> models = new HashMap<>();
+}
@@ -0,0 +1,87 @@
+package com.game.playforge.infrastructure.external.ai.token;
+
+import com.game.playforge.common.enums.ModelProvider;
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingType;
+import dev.langchain4j.model.TokenCountEstimator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 记忆Token预算注册中心
+ * <p>
+ * 按供应商与模型解析记忆窗口的Token预算，并提供对应的Token估算器。
+ * OpenAI按模型名选择词表（未知模型使用o200k_base），其余供应商使用cl100k_base并按系数折算。
+ * 词表懒加载，首次估算时才读入。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MemoryTokenBudgetRegistry {
+
+    /**
+     * Claude词表对同一文本的切分数通常比cl100k多约15%
+     */
+    private static final double ANTHROPIC_SCALE = 1.15;
+
+    private final MemoryTokenBudgetProperties properties;
+
+    private final EncodingRegistry encodingRegistry = Encodings.newLazyEncodingRegistry();
+    private final Map<String, TokenCountEstimator> estimators = new ConcurrentHashMap<>();
+
+    /**
+     * 解析记忆Token预算
+     *
+     * @param provider  模型供应商
+     * @param modelName 模型名称，可为null
+     * @return Token预算，未启用或未配置时返回0（使用消息条数窗口）
+     */
+    public int resolveBudget(ModelProvider provider, String modelName) {
+        if (!properties.isEnabled()) {
+            return 0;
+        }
+        if (modelName != null) {
+            Integer modelBudget = properties.getModels().get(modelName);
+            if (modelBudget != null) {
+                return modelBudget;
+            }
+        }
+        return properties.getProviders().getOrDefault(provider.getValue(), 0);
+    }
+
+    /**
+     * 获取Token估算器（按词表与折算系数共享实例，计数缓存随之共享）
+     *
+     * @param provider  模型供应商
+     * @param modelName 模型名称，可为null
+     * @return Token估算器
+     */
+    public TokenCountEstimator getEstimator(ModelProvider provider, String modelName) {
+        Encoding encoding;
+        double scale = 1.0;
+        if (provider == ModelProvider.OPENAI) {
+            encoding = modelName != null
+                    ? encodingRegistry.getEncodingForModel(modelName)
+                            .orElseGet(() -> encodingRegistry.getEncoding(EncodingType.O200K_BASE))
+                    : encodingRegistry.getEncoding(EncodingType.O200K_BASE);
+        } else {
+            encoding = encodingRegistry.getEncoding(EncodingType.CL100K_BASE);
+            if (provider == ModelProvider.ANTHROPIC) {
+                scale = ANTHROPIC_SCALE;
+            }
+        }
+        double finalScale = scale;
+        return estimators.computeIfAbsent(encoding.getName() + "@" + scale,
+                key -> new ProviderTokenCountEstimator(encoding, finalScale));
+    }
+}
@@ -0,0 +1,139 @@
+package com.game.playforge.infrastructure.external.ai.token;
+
+import com.knuddels.jtokkit.api.Encoding;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 基于BPE词表的Token估算器
+ * <p>
+ * 用jtokkit的OpenAI词表计数，再按供应商系数折算（Anthropic/Gemini词表未公开，系数为经验值）。
+ * 记忆窗口每次读写都会重新估算整个窗口，因此以文本本身为键缓存计数（按内容比较，不会因哈希碰撞串用计数），
+ * 已出现过的消息（包括从Redis重新反序列化的）不再重复分词；缓存同时按条数与总字符数淘汰最久未用的文本。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public class ProviderTokenCountEstimator implements TokenCountEstimator {
+
+    /**
+     * 每条消息的角色与分隔符开销
+     */
+    private static final int TOKENS_PER_MESSAGE = 4;
+
+    /**
+     * 请求整体的回复引导开销
+     */
+    private static final int TOKENS_PER_REQUEST = 3;
+
+    /**
+     * 非文本内容（图片、文件等）按固定值估算
+     */
+    private static final int TOKENS_PER_MEDIA = 1000;
+
+    private static final int CACHE_SIZE = 20_000;
+
+    /**
+     * 缓存文本的总字符数上限（约16MB）
+     */
+    private static final long CACHE_MAX_CHARS = 8_000_000L;
+
+    private final Encoding encoding;
+    private final double scale;
+
+    /**
+     * 文本 → Token数，按访问顺序排列；读写都在该对象上同步
+     */
+    private final LinkedHashMap<String, Integer> cache = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedChars;
+
+    /**
+     * @param encoding 分词词表
+     * @param scale    供应商折算系数
+     */
+    public ProviderTokenCountEstimator(Encoding encoding, double scale) {
+        this.encoding = encoding;
+        this.scale = scale;
+    }
+
+    @Override
+    public int estimateTokenCountInText(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        Integer cached;
+        synchronized (cache) {
+            cached = cache.get(text);
+        }
+        if (cached != null) {
+            return cached;
+        }
+        int count = (int) Math.ceil(encoding.countTokensOrdinary(text) * scale);
+        synchronized (cache) {
+            if (cache.put(text, count) == null) {
+                cachedChars += text.length();
+                evictEldest();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int estimateTokenCountInMessage(ChatMessage message) {
+        int tokens = TOKENS_PER_MESSAGE;
+        switch (message) {
+            case SystemMessage sm -> tokens += estimateTokenCountInText(sm.text());
+            case UserMessage um -> {
+                for (Content content : um.contents()) {
+                    tokens += content instanceof TextContent tc
+                            ? estimateTokenCountInText(tc.text())
+                            : TOKENS_PER_MEDIA;
+                }
+            }
+            case AiMessage am -> {
+                tokens += estimateTokenCountInText(am.text());
+                if (am.hasToolExecutionRequests()) {
+                    for (ToolExecutionRequest request : am.toolExecutionRequests()) {
+                        tokens += estimateTokenCountInText(request.name());
+                        tokens += estimateTokenCountInText(request.arguments());
+                    }
+                }
+            }
+            case ToolExecutionResultMessage tr -> {
+                tokens += estimateTokenCountInText(tr.toolName());
+                tokens += estimateTokenCountInText(tr.text());
+            }
+            default -> tokens += estimateTokenCountInText(message.toString());
+        }
+        return tokens;
+    }
+
+    @Override
+    public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+        int tokens = TOKENS_PER_REQUEST;
+        for (ChatMessage message : messages) {
+            tokens += estimateTokenCountInMessage(message);
+        }
+        return tokens;
+    }
+
+    private void evictEldest() {
+        Iterator<Map.Entry<String, Integer>> eldest = cache.entrySet().iterator();
+        while (eldest.hasNext() && (cache.size() > CACHE_SIZE || cachedChars > CACHE_MAX_CHARS)) {
+            cachedChars -= eldest.next().getKey().length();
+            eldest.remove();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.game.playforge.infrastructure.external.cluster;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 集群处理状态注册配置属性
+ * <p>
+ * 从 {@code application.yaml} 中的 {@code playforge.cluster} 前缀读取配置。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "playforge.cluster")
+public class ClusterRegistryProperties {
+
+    /**
+     * 是否把处理状态写入Redis（关闭时仅在本节点内存中登记，适用于单实例部署）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 节点ID，为空时使用 主机名-随机后缀
+     */
+    private String nodeId;
+
+    /**
+     * 心跳间隔（续约本节点登记的会话与任务）
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(5);
+
+    /**
+     * 租约时长，节点宕机后其登记项在该时长后过期，应为心跳间隔的数倍
+     */
+    private Duration leaseTtl = Duration.ofSeconds(20);
+}
@@ -0,0 +1,344 @@
+package com.game.playforge.infrastructure.external.cluster;
+
+import com.game.playforge.common.constant.AgentConstants;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 集群处理状态与任务注册中心
+ * <p>
+ * 在Redis中登记正在处理的会话（Lead对话轮次与子Agent任务），值为处理节点ID并带租约过期；
+ * 本节点按心跳间隔续约，节点宕机后登记项在租约到期后自动消失。
+ * 登记与续约都按键逐条写入并以管道批量发送，不要求各键位于同一集群槽位。
+ * 任意节点都可查询会话是否在处理，取消请求在本节点找不到处理方时通过Redis频道广播给所有节点。
+ * </p>
+ * <p>
+ * 频道订阅在本节点首次登记时才建立，启动阶段不连接Redis；没有进行中工作的节点无需接收取消消息。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class ClusterTaskRegistry {
+
+    /**
+     * 仅当值仍为本节点ID时删除（避免删掉其他节点接管后的登记）
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ClusterRegistryProperties properties;
+    private final String nodeId;
+
+    /**
+     * 本节点进行中的登记：会话ID → 登记项
+     */
+    private final ConcurrentHashMap<Long, Registration> local = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("cluster-registry-heartbeat").daemon(true).factory());
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile RedisMessageListenerContainer listenerContainer;
+
+    public ClusterTaskRegistry(StringRedisTemplate redisTemplate, ClusterRegistryProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.nodeId = properties.getNodeId() != null && !properties.getNodeId().isBlank()
+                ? properties.getNodeId()
+                : defaultNodeId();
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 登记本节点开始处理的会话
+     *
+     * @param threadId      会话ID
+     * @param cancelHandler 收到取消请求时在本节点执行
+     * @return 登记项，处理结束时关闭
+     */
+    public Registration register(Long threadId, Runnable cancelHandler) {
+        return register(new Registration(threadId, null, cancelHandler));
+    }
+
+    /**
+     * 登记本节点开始执行的子Agent任务（子Agent会话同时登记为处理中）
+     *
+     * @param parentThreadId Lead会话ID
+     * @param subThreadId    子Agent会话ID
+     * @param cancelHandler  收到取消请求时在本节点执行
+     */
+    public Registration registerSubTask(Long parentThreadId, Long subThreadId, Runnable cancelHandler) {
+        return register(new Registration(subThreadId, parentThreadId, cancelHandler));
+    }
+
+    /**
+     * 会话是否在集群任一节点处理中
+     */
+    public boolean isProcessing(Long threadId) {
+        if (local.containsKey(threadId)) {
+            return true;
+        }
+        if (!properties.isEnabled()) {
+            return false;
+        }
+        try {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(AgentConstants.PROCESSING_PREFIX + threadId));
+        } catch (Exception e) {
+            log.warn("查询集群处理状态失败, threadId={}, error={}", threadId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 查询Lead会话下在集群中运行的子Agent任务
+     *
+     * @return 子Agent会话ID → 处理节点ID（已排除租约过期节点上的任务）
+     */
+    public Map<Long, String> subTasks(Long parentThreadId) {
+        Map<Long, String> result = new LinkedHashMap<>();
+        local.values().stream()
+                .filter(registration -> parentThreadId.equals(registration.parentThreadId))
+                .forEach(registration -> result.put(registration.threadId, nodeId));
+        if (!properties.isEnabled()) {
+            return result;
+        }
+        try {
+            Map<Object, Object> entries = redisTemplate.opsForHash()
+                    .entries(AgentConstants.SUB_TASKS_PREFIX + parentThreadId);
+            Set<String> nodes = new HashSet<>();
+            entries.values().forEach(node -> nodes.add(node.toString()));
+            Set<String> alive = new HashSet<>();
+            for (String node : nodes) {
+                if (node.equals(nodeId) || Boolean.TRUE.equals(redisTemplate.hasKey(AgentConstants.NODE_PREFIX + node))) {
+                    alive.add(node);
+                }
+            }
+            entries.forEach((field, node) -> {
+                if (alive.contains(node.toString())) {
+                    result.putIfAbsent(Long.parseLong(field.toString()), node.toString());
+                }
+            });
+        } catch (Exception e) {
+            log.warn("查询集群子任务失败, parentThreadId={}, error={}", parentThreadId, e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 取消会话处理：本节点在处理时直接执行取消，否则广播给其他节点
+     *
+     * @return true表示本节点已执行取消
+     */
+    public boolean cancel(Long threadId) {
+        if (cancelLocal(threadId)) {
+            return true;
+        }
+        if (properties.isEnabled()) {
+            try {
+                redisTemplate.convertAndSend(AgentConstants.CANCEL_CHANNEL, String.valueOf(threadId));
+                log.info("广播取消请求, threadId={}", threadId);
+            } catch (Exception e) {
+                log.warn("广播取消请求失败, threadId={}, error={}", threadId, e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        if (listenerContainer != null) {
+            try {
+                listenerContainer.destroy();
+            } catch (Exception e) {
+                log.warn("关闭取消频道订阅失败: {}", e.getMessage());
+            }
+        }
+        for (Registration registration : new ArrayList<>(local.values())) {
+            registration.close();
+        }
+    }
+
+    private Registration register(Registration registration) {
+        local.put(registration.threadId, registration);
+        if (properties.isEnabled()) {
+            ensureStarted();
+            try {
+                // 节点存活标记与登记一起写入，其他节点查询子任务时不会因标记尚未写入而忽略本节点的任务
+                writeLeases(List.of(registration), true);
+            } catch (Exception e) {
+                // 登记失败不影响本节点处理，心跳会重试写入
+                log.warn("登记集群处理状态失败, threadId={}, error={}", registration.threadId, e.getMessage());
+            }
+        }
+        return registration;
+    }
+
+    private boolean cancelLocal(Long threadId) {
+        Registration registration = local.get(threadId);
+        if (registration == null) {
+            return false;
+        }
+        log.info("执行取消请求, threadId={}, nodeId={}", threadId, nodeId);
+        try {
+            registration.cancelHandler.run();
+        } catch (Exception e) {
+            log.warn("执行取消回调失败, threadId={}", threadId, e);
+        }
+        return true;
+    }
+
+    private void ensureStarted() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        long intervalMillis = properties.getHeartbeatInterval().toMillis();
+        heartbeat.scheduleWithFixedDelay(this::renewLeases, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        try {
+            RedisConnectionFactory connectionFactory = redisTemplate.getRequiredConnectionFactory();
+            RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+            container.setConnectionFactory(connectionFactory);
+            container.addMessageListener((message, pattern) -> {
+                String body = new String(message.getBody(), StandardCharsets.UTF_8);
+                try {
+                    cancelLocal(Long.parseLong(body.trim()));
+                } catch (NumberFormatException e) {
+                    log.warn("忽略无效的取消消息: {}", body);
+                }
+            }, new ChannelTopic(AgentConstants.CANCEL_CHANNEL));
+            container.afterPropertiesSet();
+            container.start();
+            listenerContainer = container;
+            log.info("集群注册中心已启动, nodeId={}", nodeId);
+        } catch (Exception e) {
+            log.warn("订阅取消频道失败，跨节点取消不可用, nodeId={}, error={}", nodeId, e.getMessage());
+        }
+    }
+
+    private void renewLeases() {
+        if (local.isEmpty()) {
+            return;
+        }
+        List<Registration> registrations = new ArrayList<>(local.values());
+        try {
+            writeLeases(registrations, false);
+        } catch (Exception e) {
+            log.warn("集群租约续约失败, nodeId={}, count={}, error={}", nodeId, registrations.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 以管道写入节点存活标记与登记项的租约（各键单独命令，可分布在不同槽位）
+     *
+     * @param registrations 登记项
+     * @param addSubTasks   是否写入子任务Hash字段（首次登记时），否则只续期子任务Hash
+     */
+    private void writeLeases(Collection<Registration> registrations, boolean addSubTasks) {
+        long ttlMillis = properties.getLeaseTtl().toMillis();
+        Expiration expiration = Expiration.milliseconds(ttlMillis);
+        Set<String> subTaskKeys = new HashSet<>();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection commands = (StringRedisConnection) connection;
+            commands.set(AgentConstants.NODE_PREFIX + nodeId, nodeId, expiration,
+                    RedisStringCommands.SetOption.upsert());
+            for (Registration registration : registrations) {
+                commands.set(AgentConstants.PROCESSING_PREFIX + registration.threadId, nodeId, expiration,
+                        RedisStringCommands.SetOption.upsert());
+                if (registration.parentThreadId == null) {
+                    continue;
+                }
+                String key = AgentConstants.SUB_TASKS_PREFIX + registration.parentThreadId;
+                if (addSubTasks) {
+                    commands.hSet(key, String.valueOf(registration.threadId), nodeId);
+                }
+                if (subTaskKeys.add(key)) {
+                    commands.pExpire(key, ttlMillis);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * 本节点的一条登记，关闭后从Redis移除（重复关闭无副作用）
+     */
+    public final class Registration implements AutoCloseable {
+
+        private final Long threadId;
+        private final Long parentThreadId;
+        private final Runnable cancelHandler;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Registration(Long threadId, Long parentThreadId, Runnable cancelHandler) {
+            this.threadId = threadId;
+            this.parentThreadId = parentThreadId;
+            this.cancelHandler = cancelHandler != null ? cancelHandler : () -> { };
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            if (!local.remove(threadId, this) || !properties.isEnabled()) {
+                // 同一会话已被本节点新的处理接替，保留Redis登记
+                return;
+            }
+            try {
+                redisTemplate.execute(RELEASE_SCRIPT, List.of(AgentConstants.PROCESSING_PREFIX + threadId), nodeId);
+                if (parentThreadId != null) {
+                    redisTemplate.opsForHash().delete(AgentConstants.SUB_TASKS_PREFIX + parentThreadId,
+                            String.valueOf(threadId));
+                }
+            } catch (Exception e) {
+                log.warn("移除集群处理状态失败（租约到期后自动清除）, threadId={}, error={}", threadId, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.game.playforge.infrastructure.external.cluster;
+
+import com.game.playforge.common.constant.AgentConstants;
+import com.game.playforge.common.exception.BusinessException;
+import com.game.playforge.common.result.ResultCode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 会话执行锁
+ * <p>
+ * 每个会话同一时刻只允许一轮对话读取记忆、调用模型并写回，避免多个标签页或多个节点并发写入时互相覆盖。
+ * 锁存放在Redis中并带租约，持有期间定时续约；每次加锁递增会话的栅栏计数并把新值作为栅栏令牌（fencing token）
+ * 返回，记忆写入时比较令牌，租约失效后被新持有者取代的旧请求无法再写回记忆。
+ * </p>
+ * <p>
+ * 锁与栅栏计数的Key使用会话ID作哈希标签，与记忆Key（STRING与LIST模式）落在同一集群槽位，可在同一脚本中校验。
+ * </p>
+ * <p>
+ * 续约发现租约已失效时执行持有方登记的 {@link Lease#onLost} 回调，由持有方取消本轮对话；
+ * Redis不可用时降级放行（记录告警），此时没有栅栏令牌，并发写入不受保护。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class ThreadExecutionLock {
+
+    /**
+     * 加锁：锁空闲时递增栅栏计数并写入持有者，返回令牌；已被占用返回0
+     */
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 1 then
+                return 0
+            end
+            local token = redis.call('INCR', KEYS[2])
+            redis.call('EXPIRE', KEYS[2], ARGV[3])
+            redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+            return token
+            """, Long.class);
+
+    /**
+     * 续约：仍为持有者时延长租约
+     */
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * 解锁：仍为持有者时删除
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private static final long FENCE_TTL_SECONDS = TimeUnit.HOURS.toSeconds(AgentConstants.MEMORY_TTL_HOURS);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ThreadLockProperties properties;
+
+    /**
+     * 本节点持有的锁：会话ID（字符串形式，与记忆ID一致）→ 租约
+     */
+    private final ConcurrentHashMap<String, Lease> held = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点排队等待的加锁尝试，本地释放时立即唤醒而不必等到下次重试
+     */
+    private final ConcurrentHashMap<String, Set<Runnable>> waiters = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("thread-lock-scheduler").daemon(true).factory());
+    private final AtomicBoolean renewing = new AtomicBoolean();
+
+    public ThreadExecutionLock(StringRedisTemplate redisTemplate, ThreadLockProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+    }
+
+    /**
+     * 申请会话执行锁
+     * <p>
+     * 会话空闲时立即获得；被占用时按配置排队重试或立即以
+     * {@link BusinessException}（{@link ResultCode#THREAD_BUSY}）异常完成。
+     * Redis不可用时放行并返回无令牌的租约，不阻塞对话。
+     * </p>
+     *
+     * @param threadId 会话ID
+     * @return 租约，本轮对话结束时关闭
+     */
+    public CompletableFuture<Lease> acquire(Long threadId) {
+        String key = String.valueOf(threadId);
+        if (!properties.isEnabled()) {
+            return CompletableFuture.completedFuture(new Lease(key, null, 0L));
+        }
+        CompletableFuture<Lease> future = new CompletableFuture<>();
+        long deadline = System.nanoTime() + properties.getWaitTimeout().toNanos();
+        tryAcquire(key, future, deadline);
+        return future;
+    }
+
+    /**
+     * 同步申请会话执行锁（阻塞当前线程）
+     *
+     * @throws BusinessException 会话繁忙
+     */
+    public Lease acquireBlocking(Long threadId) {
+        CompletableFuture<Lease> future = acquire(threadId);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            if (!future.cancel(false)) {
+                // 中断与加锁成功并发：锁已取得但调用方不再使用，立即释放
+                future.thenAccept(Lease::close);
+            }
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ResultCode.THREAD_BUSY, "等待会话锁被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 本节点持有该会话锁时返回栅栏令牌（续约失败后仍返回，由写入方校验是否已被取代）
+     *
+     * @param threadId 会话ID（即记忆ID）
+     */
+    public OptionalLong fencingToken(Object threadId) {
+        Lease lease = held.get(String.valueOf(threadId));
+        return lease != null && lease.token > 0 ? OptionalLong.of(lease.token) : OptionalLong.empty();
+    }
+
+    /**
+     * 栅栏计数的Key
+     */
+    public static String fenceKey(Object threadId) {
+        return AgentConstants.LOCK_PREFIX + "{" + threadId + "}:fence";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (Lease lease : List.copyOf(held.values())) {
+            lease.close();
+        }
+    }
+
+    private static String lockKey(Object threadId) {
+        return AgentConstants.LOCK_PREFIX + "{" + threadId + "}";
+    }
+
+    private void tryAcquire(String key, CompletableFuture<Lease> future, long deadline) {
+        if (future.isDone()) {
+            return;
+        }
+        String owner = UUID.randomUUID().toString();
+        Long token;
+        try {
+            token = redisTemplate.execute(ACQUIRE_SCRIPT, List.of(lockKey(key), fenceKey(key)), owner,
+                    String.valueOf(properties.getLeaseTtl().toMillis()), String.valueOf(FENCE_TTL_SECONDS));
+        } catch (Exception e) {
+            log.warn("会话加锁失败，降级为无锁执行（无栅栏令牌，并发写入不受保护）, threadId={}, error={}",
+                    key, e.getMessage());
+            future.complete(new Lease(key, null, 0L));
+            return;
+        }
+        if (token != null && token > 0) {
+            Lease lease = new Lease(key, owner, token);
+            held.put(key, lease);
+            ensureRenewing();
+            if (!future.complete(lease)) {
+                // 调用方已放弃等待
+                lease.close();
+            }
+            return;
+        }
+        if (properties.getContention() == ThreadLockProperties.ContentionMode.FAIL_FAST) {
+            future.completeExceptionally(new BusinessException(ResultCode.THREAD_BUSY));
+            return;
+        }
+        long remainingNanos = deadline - System.nanoTime();
+        if (remainingNanos <= 0) {
+            log.warn("等待会话锁超时, threadId={}", key);
+            future.completeExceptionally(new BusinessException(ResultCode.THREAD_BUSY, "等待上一条消息处理超时"));
+            return;
+        }
+        AtomicBoolean fired = new AtomicBoolean();
+        Runnable retry = () -> {
+            if (fired.compareAndSet(false, true)) {
+                Thread.ofVirtual().start(() -> tryAcquire(key, future, deadline));
+            }
+        };
+        waiters.compute(key, (k, set) -> {
+            Set<Runnable> pending = set != null ? set : ConcurrentHashMap.newKeySet();
+            pending.add(retry);
+            return pending;
+        });
+        long retryMillis = properties.getRetryInterval().toMillis();
+        long delayMillis = Math.min(TimeUnit.NANOSECONDS.toMillis(remainingNanos) + 1,
+                retryMillis + ThreadLocalRandom.current().nextLong(retryMillis / 2 + 1));
+        scheduler.schedule(() -> {
+            waiters.computeIfPresent(key, (k, set) -> {
+                set.remove(retry);
+                return set.isEmpty() ? null : set;
+            });
+            retry.run();
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void wakeWaiters(String key) {
+        Set<Runnable> set = waiters.remove(key);
+        if (set != null) {
+            set.forEach(Runnable::run);
+        }
+    }
+
+    private void ensureRenewing() {
+        if (renewing.compareAndSet(false, true)) {
+            long intervalMillis = properties.getRenewInterval().toMillis();
+            scheduler.scheduleWithFixedDelay(this::renewAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void renewAll() {
+        String ttl = String.valueOf(properties.getLeaseTtl().toMillis());
+        for (Lease lease : held.values()) {
+            if (lease.lost) {
+                continue;
+            }
+            try {
+                Long renewed = redisTemplate.execute(RENEW_SCRIPT, List.of(lockKey(lease.threadId)), lease.owner, ttl);
+                if (renewed == null || renewed == 0) {
+                    log.warn("会话锁已失效，取消本轮对话, threadId={}, token={}", lease.threadId, lease.token);
+                    lease.markLost();
+                }
+            } catch (Exception e) {
+                log.warn("会话锁续约失败, threadId={}, error={}", lease.threadId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 会话锁租约，重复关闭无副作用
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final String threadId;
+        private final String owner;
+        private final long token;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean lost;
+        private Runnable lostHandler;
+
+        private Lease(String threadId, String owner, long token) {
+            this.threadId = threadId;
+            this.owner = owner;
+            this.token = token;
+        }
+
+        /**
+         * 栅栏令牌，未实际加锁（锁关闭或Redis不可用）时为0
+         */
+        public long token() {
+            return token;
+        }
+
+        /**
+         * 租约是否已失效（过期或被其他持有者取代）
+         */
+        public boolean isLost() {
+            return lost;
+        }
+
+        /**
+         * 登记租约失效回调，已失效时立即执行；关闭后不再执行（回调与关闭互斥，关闭返回后不会再触发）
+         *
+         * @param handler 取消本轮对话的回调，应快速返回
+         */
+        public void onLost(Runnable handler) {
+            synchronized (this) {
+                lostHandler = handler;
+                if (!lost || released.get()) {
+                    return;
+                }
+                runLostHandler();
+            }
+        }
+
+        private synchronized void markLost() {
+            lost = true;
+            if (!released.get()) {
+                runLostHandler();
+            }
+        }
+
+        private void runLostHandler() {
+            if (lostHandler == null) {
+                return;
+            }
+            try {
+                lostHandler.run();
+            } catch (Exception e) {
+                log.warn("执行会话锁失效回调失败, threadId={}", threadId, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (owner == null) {
+                return;
+            }
+            synchronized (this) {
+                if (!released.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+            held.remove(threadId, this);
+            try {
+                redisTemplate.execute(RELEASE_SCRIPT, List.of(lockKey(threadId)), owner);
+            } catch (Exception e) {
+                log.warn("释放会话锁失败（租约到期后自动释放）, threadId={}, error={}", threadId, e.getMessage());
+            }
+            wakeWaiters(threadId);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.game.playforge.infrastructure.external.cluster;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 会话执行锁配置属性
+ * <p>
+ * 从 {@code application.yaml} 中的 {@code playforge.thread-lock} 前缀读取配置。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "playforge.thread-lock")
+public class ThreadLockProperties {
+
+    /**
+     * 是否启用会话执行锁
+     */
+    private boolean enabled = true;
+
+    /**
+     * 会话已被占用时的处理方式
+     */
+    private ContentionMode contention = ContentionMode.QUEUE;
+
+    /**
+     * 排队模式下的最长等待时间，超时返回会话繁忙
+     */
+    private Duration waitTimeout = Duration.ofSeconds(60);
+
+    /**
+     * 锁租约时长，持有期间按续约间隔延长；节点宕机后锁在该时长后释放
+     */
+    private Duration leaseTtl = Duration.ofSeconds(30);
+
+    /**
+     * 续约间隔，应明显小于租约时长
+     */
+    private Duration renewInterval = Duration.ofSeconds(10);
+
+    /**
+     * 排队模式下重试加锁的间隔
+     */
+    private Duration retryInterval = Duration.ofMillis(200);
+
+    /**
+     * 会话占用时的处理方式
+     */
+    public enum ContentionMode {
+
+        /**
+         * 排队等待上一轮结束
+         */
+        QUEUE,
+
+        /**
+         * 立即返回会话繁忙
+         */
+        FAIL_FAST
+    }
+}
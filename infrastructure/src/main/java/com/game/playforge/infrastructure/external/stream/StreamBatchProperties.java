@@ -0,0 +1,42 @@
+package com.game.playforge.infrastructure.external.stream;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 流式分片合并配置属性
+ * <p>
+ * 从 {@code application.yaml} 中的 {@code playforge.stream-batch} 前缀读取配置。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "playforge.stream-batch")
+public class StreamBatchProperties {
+
+    /**
+     * 是否合并相邻的token/thinking分片后再下发
+     */
+    private boolean enabled = true;
+
+    /**
+     * 默认合并窗口，客户端未指定时使用
+     */
+    private Duration flushInterval = Duration.ofMillis(50);
+
+    /**
+     * 客户端可指定的最大合并窗口
+     */
+    private Duration maxFlushInterval = Duration.ofSeconds(1);
+
+    /**
+     * 合并内容达到该字符数时立即下发，不等窗口结束
+     */
+    private int maxChars = 2048;
+}
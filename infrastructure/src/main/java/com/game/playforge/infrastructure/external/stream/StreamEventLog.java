@@ -0,0 +1,294 @@
+package com.game.playforge.infrastructure.external.stream;
+
+import com.game.playforge.common.constant.AgentConstants;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 会话生成事件流
+ * <p>
+ * 把进行中对话轮次的每个流式事件追加到会话的Redis Stream（长度有界、带过期），
+ * 断线重连的客户端按最后收到的事件ID续传：先补发错过的事件，再跟随后续事件直到本轮结束。
+ * </p>
+ * <p>
+ * 事件流按轮次裁剪：开启新轮次时删除更早轮次的事件，只保留上一轮与当前轮；
+ * 长度上限只用于兜底，单轮超出上限或写入失败时事件会出现缺口，由 {@link #isNext} 检测，续传方据此让客户端改为重新加载历史。
+ * </p>
+ * <p>
+ * 事件ID由本节点按 {@code 轮次-序号} 分配（轮次在会话内单调递增），发送给客户端时无需等待Redis写入；
+ * 写入由每轮一个的 {@link Recorder} 在虚拟线程上按批次用一次脚本调用完成，不阻塞模型回调线程。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Slf4j
+@Component
+public class StreamEventLog {
+
+    /**
+     * 开启新轮次：轮次号取计数+1，且大于事件流中已有的最大轮次（计数过期后仍保持ID递增），
+     * 并裁剪掉上一轮之前的事件
+     */
+    private static final RedisScript<Long> OPEN_SCRIPT = new DefaultRedisScript<>("""
+            local turn = redis.call('INCR', KEYS[2])
+            local last = redis.call('XREVRANGE', KEYS[1], '+', '-', 'COUNT', 1)
+            if #last > 0 then
+                local lastTurn = tonumber(string.match(last[1][1], '^(%d+)'))
+                if lastTurn >= turn then
+                    turn = lastTurn + 1
+                    redis.call('SET', KEYS[2], turn)
+                end
+            end
+            redis.call('XTRIM', KEYS[1], 'MINID', (turn - 1) .. '-0')
+            redis.call('EXPIRE', KEYS[2], ARGV[1])
+            return turn
+            """, Long.class);
+
+    /**
+     * 批量追加：ARGV为 最大长度、TTL秒数，其后每3个为 事件ID、类型、内容
+     */
+    private static final RedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>("""
+            for i = 3, #ARGV, 3 do
+                redis.call('XADD', KEYS[1], 'MAXLEN', '~', ARGV[1], ARGV[i],
+                        'type', ARGV[i + 1], 'content', ARGV[i + 2])
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            redis.call('EXPIRE', KEYS[2], ARGV[2])
+            return (#ARGV - 2) / 3
+            """, Long.class);
+
+    private static final String FIELD_TYPE = "type";
+    private static final String FIELD_CONTENT = "content";
+
+    private final StringRedisTemplate redisTemplate;
+    private final StreamEventLogProperties properties;
+    private final ExecutorService writer = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("stream-event-log-", 0).factory());
+
+    public StreamEventLog(StringRedisTemplate redisTemplate, StreamEventLogProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+    }
+
+    /**
+     * 开始记录会话的一轮生成
+     * <p>
+     * 未启用或Redis不可用时返回不记录的Recorder，其分配的事件ID为null。
+     * </p>
+     *
+     * @param threadId 会话ID
+     * @return 本轮的事件记录器
+     */
+    public Recorder open(Long threadId) {
+        if (!properties.isEnabled()) {
+            return new Recorder(threadId, 0);
+        }
+        try {
+            Long turn = redisTemplate.execute(OPEN_SCRIPT, List.of(streamKey(threadId), turnKey(threadId)),
+                    String.valueOf(properties.getTtl().toSeconds()));
+            return new Recorder(threadId, turn != null ? turn : 0);
+        } catch (Exception e) {
+            log.warn("开启会话事件流失败，本轮不支持续传, threadId={}, error={}", threadId, e.getMessage());
+            return new Recorder(threadId, 0);
+        }
+    }
+
+    /**
+     * 计算续传起点：客户端最后收到的事件属于更早的轮次（或为空）时，从当前轮次开头续传
+     *
+     * @param threadId    会话ID
+     * @param lastEventId 客户端最后收到的事件ID
+     * @return 续传起点（不含）
+     */
+    public String resumePoint(Long threadId, String lastEventId) {
+        if (!properties.isEnabled()) {
+            return "0-0";
+        }
+        String turnStart = currentTurnStart(threadId);
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return turnStart;
+        }
+        return turnOf(lastEventId) < turnOf(turnStart) ? turnStart : lastEventId;
+    }
+
+    /**
+     * 读取指定事件之后的事件
+     *
+     * @param threadId 会话ID
+     * @param after    起点事件ID（不含）
+     * @param count    最多读取的事件数
+     * @return 按ID升序的事件
+     */
+    public List<Entry> readAfter(Long threadId, String after, int count) {
+        if (!properties.isEnabled()) {
+            return Collections.emptyList();
+        }
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().range(streamKey(threadId),
+                Range.of(Range.Bound.exclusive(after), Range.Bound.unbounded()),
+                Limit.limit().count(count));
+        if (records == null || records.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Entry> entries = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<Object, Object> value = record.getValue();
+            entries.add(new Entry(record.getId().getValue(),
+                    String.valueOf(value.get(FIELD_TYPE)),
+                    String.valueOf(value.getOrDefault(FIELD_CONTENT, ""))));
+        }
+        return entries;
+    }
+
+    /**
+     * 事件是否紧接在续传游标之后：同一轮次的下一个序号，游标为轮次开头（序号0）时为某一轮的第一个事件
+     * <p>
+     * 不紧接说明中间的事件已被裁剪或写入失败，从事件流续传的内容不完整。
+     * </p>
+     *
+     * @param cursor  续传游标（不含）
+     * @param eventId 读到的第一个事件ID
+     */
+    public static boolean isNext(String cursor, String eventId) {
+        long cursorSequence = sequenceOf(cursor);
+        if (cursorSequence == 0) {
+            return sequenceOf(eventId) == 1 && turnOf(eventId) >= turnOf(cursor);
+        }
+        return turnOf(eventId) == turnOf(cursor) && sequenceOf(eventId) == cursorSequence + 1;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.close();
+    }
+
+    private String currentTurnStart(Long threadId) {
+        String turn = redisTemplate.opsForValue().get(turnKey(threadId));
+        return (turn != null ? turn : "0") + "-0";
+    }
+
+    private static long turnOf(String eventId) {
+        int dash = eventId.indexOf('-');
+        try {
+            return Long.parseLong(dash > 0 ? eventId.substring(0, dash) : eventId);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long sequenceOf(String eventId) {
+        int dash = eventId.indexOf('-');
+        try {
+            return dash > 0 ? Long.parseLong(eventId.substring(dash + 1)) : 0;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 事件流与轮次计数使用会话ID作哈希标签，保证落在同一集群槽位
+     */
+    private static String streamKey(Long threadId) {
+        return AgentConstants.EVENTS_PREFIX + "{" + threadId + "}";
+    }
+
+    private static String turnKey(Long threadId) {
+        return AgentConstants.EVENTS_PREFIX + "{" + threadId + "}:turn";
+    }
+
+    /**
+     * 事件流中的一条事件
+     *
+     * @param id      事件ID（轮次-序号）
+     * @param type    事件类型
+     * @param content 事件内容
+     */
+    public record Entry(String id, String type, String content) {
+    }
+
+    /**
+     * 一轮生成的事件记录器
+     * <p>
+     * {@link #record} 立即返回事件ID并把事件放入队列；同一时刻只有一个写入任务按批次排空队列，保证写入顺序。
+     * </p>
+     */
+    public final class Recorder {
+
+        private final Long threadId;
+        private final long turn;
+        private final AtomicInteger sequence = new AtomicInteger();
+        private final Queue<String[]> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private Recorder(Long threadId, long turn) {
+            this.threadId = threadId;
+            this.turn = turn;
+        }
+
+        /**
+         * 记录一个事件
+         *
+         * @return 事件ID，不记录时为null
+         */
+        public String record(String type, String content) {
+            if (turn <= 0) {
+                return null;
+            }
+            String id = turn + "-" + sequence.incrementAndGet();
+            pending.offer(new String[]{id, type, content != null ? content : ""});
+            if (wip.getAndIncrement() == 0) {
+                writer.execute(this::drain);
+            }
+            return id;
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                flushPending();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void flushPending() {
+            int batchSize = Math.max(1, properties.getWriteBatchSize());
+            List<String> args = new ArrayList<>(2 + batchSize * 3);
+            String[] event;
+            while (true) {
+                args.clear();
+                args.add(String.valueOf(properties.getMaxLength()));
+                args.add(String.valueOf(properties.getTtl().toSeconds()));
+                while (args.size() < 2 + batchSize * 3 && (event = pending.poll()) != null) {
+                    Collections.addAll(args, event);
+                }
+                if (args.size() == 2) {
+                    return;
+                }
+                try {
+                    redisTemplate.execute(APPEND_SCRIPT, List.of(streamKey(threadId), turnKey(threadId)),
+                            args.toArray());
+                } catch (Exception e) {
+                    log.warn("写入会话事件流失败, threadId={}, count={}, error={}",
+                            threadId, (args.size() - 2) / 3, e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.game.playforge.infrastructure.external.stream;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 生成事件流配置属性
+ * <p>
+ * 从 {@code application.yaml} 中的 {@code playforge.stream-log} 前缀读取配置。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "playforge.stream-log")
+public class StreamEventLogProperties {
+
+    /**
+     * 是否把生成事件记录到Redis Stream
+     */
+    private boolean enabled = true;
+
+    /**
+     * 单个会话事件流的最大长度（近似裁剪，兜底上限）
+     * <p>
+     * 事件流按轮次裁剪，只保留上一轮与当前轮；单轮事件数超出上限时最早的事件被裁剪，
+     * 从被裁剪位置续传的客户端会收到重新加载历史的通知。
+     * </p>
+     */
+    private int maxLength = 20000;
+
+    /**
+     * 事件流在最后一次写入后的保留时长
+     */
+    private Duration ttl = Duration.ofMinutes(30);
+
+    /**
+     * 单次批量写入的最大事件数
+     */
+    private int writeBatchSize = 256;
+
+    /**
+     * 续传跟随时轮询新事件的间隔
+     */
+    private Duration pollInterval = Duration.ofMillis(150);
+
+    /**
+     * 续传单次读取的最大事件数
+     */
+    private int readBatchSize = 500;
+
+    /**
+     * 续传跟随的最长时间
+     */
+    private Duration followTimeout = Duration.ofMinutes(30);
+}
@@ -0,0 +1,307 @@
+package com.game.playforge.infrastructure.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Agent运行指标
+ * <p>
+ * 统一定义LLM调用、工具执行、Redis记忆、数据库访问与连接/流数量的Micrometer指标，
+ * 由Actuator的Prometheus端点暴露。容器中没有MeterRegistry时退回全局注册表（无导出，开销可忽略）。
+ * 标签值只使用有限集合（供应商、模型、Agent类型、工具名、Mapper方法），避免高基数。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Component
+public class AgentMetrics {
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_ERROR = "error";
+    public static final String OUTCOME_RATE_LIMITED = "rate_limited";
+
+    private static final String UNKNOWN = "unknown";
+
+    private final MeterRegistry registry;
+    private final AtomicInteger webSocketSessions = new AtomicInteger();
+    private final AtomicInteger inFlightStreams = new AtomicInteger();
+
+    @Autowired
+    public AgentMetrics(ObjectProvider<MeterRegistry> registryProvider) {
+        this(registryProvider.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    public AgentMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("playforge.ws.sessions", webSocketSessions, AtomicInteger::get)
+                .description("当前WebSocket连接数")
+                .register(registry);
+        Gauge.builder("playforge.streams.inflight", inFlightStreams, AtomicInteger::get)
+                .description("进行中的生成流数量")
+                .register(registry);
+    }
+
+    /**
+     * 记录一次LLM调用耗时
+     */
+    public void recordLlmCall(String provider, String model, String agentType, String outcome, long durationNanos) {
+        Timer.builder("playforge.llm.duration")
+                .description("LLM调用耗时")
+                .tags(llmTags(provider, model, agentType).and("outcome", tagValue(outcome)))
+                .register(registry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录流式调用首Token延迟
+     */
+    public void recordTimeToFirstToken(String provider, String model, String agentType, long nanos) {
+        Timer.builder("playforge.llm.ttft")
+                .description("流式调用首Token延迟")
+                .tags(llmTags(provider, model, agentType))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录输出速率（Token/秒）
+     */
+    public void recordTokensPerSecond(String provider, String model, String agentType, int outputTokens,
+                                      long generationNanos) {
+        if (outputTokens <= 0 || generationNanos <= 0) {
+            return;
+        }
+        DistributionSummary.builder("playforge.llm.tokens.per.second")
+                .description("LLM输出速率")
+                .tags(llmTags(provider, model, agentType))
+                .register(registry)
+                .record(outputTokens * 1_000_000_000.0 / generationNanos);
+    }
+
+    /**
+     * 累加Token用量
+     *
+     * @param type input / output / cached
+     */
+    public void countTokens(String provider, String model, String agentType, String type, int tokens) {
+        if (tokens <= 0) {
+            return;
+        }
+        registry.counter("playforge.llm.tokens", llmTags(provider, model, agentType).and("type", type))
+                .increment(tokens);
+    }
+
+    /**
+     * 记录一次供应商限流响应
+     */
+    public void countRateLimited(String provider, String model) {
+        registry.counter("playforge.llm.rate.limited",
+                Tags.of("provider", tagValue(provider), "model", tagValue(model))).increment();
+    }
+
+    /**
+     * 记录一次重试
+     *
+     * @param scope  chat / stream / sub_agent
+     * @param reason 重试原因
+     */
+    public void countRetry(String scope, String reason) {
+        registry.counter("playforge.llm.retries", Tags.of("scope", tagValue(scope), "reason", tagValue(reason)))
+                .increment();
+    }
+
+    /**
+     * 记录一次工具执行耗时
+     */
+    public void recordToolExecution(String tool, boolean failed, long durationNanos) {
+        Timer.builder("playforge.tool.duration")
+                .description("工具执行耗时")
+                .tags("tool", tagValue(tool), "outcome", failed ? OUTCOME_ERROR : OUTCOME_SUCCESS)
+                .register(registry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一次Redis记忆读写耗时
+     *
+     * @param operation load / store
+     */
+    public void recordMemoryOperation(String operation, String mode, long durationNanos) {
+        Timer.builder("playforge.memory.duration")
+                .description("Redis记忆读写耗时")
+                .tags("operation", operation, "mode", tagValue(mode))
+                .register(registry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一次Redis记忆读写的载荷字节数
+     */
+    public void recordMemoryPayload(String operation, String codec, long bytes) {
+        DistributionSummary.builder("playforge.memory.payload")
+                .description("Redis记忆单次读写字节数")
+                .baseUnit("bytes")
+                .tags("operation", operation, "codec", tagValue(codec))
+                .register(registry)
+                .record(bytes);
+    }
+
+    /**
+     * 记录一次SQL执行耗时
+     *
+     * @param statement Mapper方法（如 AgentMessageMapper.insertBatch）
+     * @param command   SELECT / INSERT / UPDATE / DELETE
+     */
+    public void recordSql(String statement, String command, boolean failed, long durationNanos) {
+        Timer.builder("playforge.db.duration")
+                .description("MySQL语句执行耗时")
+                .tags("statement", tagValue(statement), "command", tagValue(command),
+                        "outcome", failed ? OUTCOME_ERROR : OUTCOME_SUCCESS)
+                .register(registry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一次限流许可的排队等待时长
+     */
+    public void recordLimiterWait(String provider, String model, long waitNanos) {
+        Timer.builder("playforge.llm.limiter.wait")
+                .description("供应商限流排队等待时长")
+                .tags("provider", tagValue(provider), "model", tagValue(model))
+                .register(registry)
+                .record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 登记限流通道的排队数与当前速率
+     */
+    public <T> void registerLimiterLane(String provider, String model, T lane,
+                                        ToDoubleFunction<T> queued, ToDoubleFunction<T> requestsPerMinute) {
+        Tags tags = Tags.of("provider", tagValue(provider), "model", tagValue(model));
+        Gauge.builder("playforge.llm.limiter.queued", lane, queued)
+                .description("限流通道排队请求数")
+                .tags(tags)
+                .register(registry);
+        Gauge.builder("playforge.llm.limiter.rpm", lane, requestsPerMinute)
+                .description("限流通道当前每分钟请求速率")
+                .tags(tags)
+                .register(registry);
+    }
+
+    /**
+     * 记录一次任务调度排队等待时长
+     *
+     * @param lane interactive / background
+     */
+    public void recordSchedulerWait(String lane, long waitNanos) {
+        Timer.builder("playforge.scheduler.wait")
+                .description("Agent任务排队等待时长")
+                .tags("lane", lane)
+                .register(registry)
+                .record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 登记任务调度通道的排队数与运行数
+     */
+    public <T> void registerSchedulerLane(String lane, T scheduler,
+                                          ToDoubleFunction<T> queued, ToDoubleFunction<T> running) {
+        Gauge.builder("playforge.scheduler.queued", scheduler, queued)
+                .description("Agent任务排队数")
+                .tags("lane", lane)
+                .register(registry);
+        Gauge.builder("playforge.scheduler.running", scheduler, running)
+                .description("Agent任务运行数")
+                .tags("lane", lane)
+                .register(registry);
+    }
+
+    /**
+     * 登记写后落库管道的待写入积压数
+     *
+     * @param pipeline messages（消息批量写入）/ thread_stats（会话统计合并）/ token_usage（用量明细）
+     */
+    public <T> void registerWriteBacklog(String pipeline, T owner, ToDoubleFunction<T> pending) {
+        Gauge.builder("playforge.persistence.pending", owner, pending)
+                .description("写后落库管道待写入数")
+                .tags("pipeline", pipeline)
+                .register(registry);
+    }
+
+    /**
+     * 记录消息异步写入失败的处理
+     *
+     * @param outcome requeued（重新入队）/ dead_letter（重试耗尽，记录死信日志）
+     */
+    public void countMessageWriteFailure(String outcome) {
+        registry.counter("playforge.message.write.failures", Tags.of("outcome", outcome)).increment();
+    }
+
+    /**
+     * 记录一次WebSocket帧发送耗时
+     */
+    public void recordWebSocketSend(long durationNanos) {
+        Timer.builder("playforge.ws.send.duration")
+                .description("WebSocket帧发送耗时")
+                .register(registry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录慢客户端缓冲溢出的处理
+     *
+     * @param action coalesced / dropped_thinking / terminated
+     * @param events 涉及的事件数
+     */
+    public void countWebSocketOverflow(String action, int events) {
+        registry.counter("playforge.ws.overflow", Tags.of("action", action)).increment(events);
+    }
+
+    public void webSocketOpened() {
+        webSocketSessions.incrementAndGet();
+    }
+
+    public void webSocketClosed() {
+        webSocketSessions.decrementAndGet();
+    }
+
+    /**
+     * 登记一条进行中的生成流
+     *
+     * @return 幂等的结束回调，流在任一终止路径上调用即可
+     */
+    public Runnable streamStarted() {
+        inFlightStreams.incrementAndGet();
+        AtomicBoolean finished = new AtomicBoolean();
+        return () -> {
+            if (finished.compareAndSet(false, true)) {
+                inFlightStreams.decrementAndGet();
+            }
+        };
+    }
+
+    public MeterRegistry registry() {
+        return registry;
+    }
+
+    private static Tags llmTags(String provider, String model, String agentType) {
+        return Tags.of("provider", tagValue(provider), "model", tagValue(model), "agent_type", tagValue(agentType));
+    }
+
+    private static String tagValue(String value) {
+        return value == null || value.isBlank() ? UNKNOWN : value;
+    }
+}
@@ -0,0 +1,66 @@
+package com.game.playforge.infrastructure.metrics;
+
+/**
+ * 单次模型调用的计时起点
+ * <p>
+ * 监听器在 {@code onRequest} 时创建并挂到当前线程，随后同一线程进入模型包装链：
+ * Agent包装读取它计算输出速率与首Token延迟，限流包装取走它并在拿到许可后重置起点，
+ * 使调用耗时、首Token延迟不包含限流排队时间（排队时间由限流器单独记录）。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public final class ModelCallTiming {
+
+    private static final ThreadLocal<ModelCallTiming> CURRENT = new ThreadLocal<>();
+
+    private volatile long startNanos = System.nanoTime();
+
+    private ModelCallTiming() {
+    }
+
+    /**
+     * 开始计时并挂到当前线程
+     */
+    public static ModelCallTiming begin() {
+        ModelCallTiming timing = new ModelCallTiming();
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    /**
+     * 读取当前线程的计时（不取走）
+     *
+     * @return 计时，未开始时为null
+     */
+    public static ModelCallTiming current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 取走当前线程的计时，之后的回调可能在其他线程执行
+     *
+     * @return 计时，未开始时为null
+     */
+    public static ModelCallTiming detach() {
+        ModelCallTiming timing = CURRENT.get();
+        CURRENT.remove();
+        return timing;
+    }
+
+    /**
+     * 重置计时起点（获得限流许可后调用）
+     */
+    public void restart() {
+        startNanos = System.nanoTime();
+    }
+
+    public long startNanos() {
+        return startNanos;
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+}
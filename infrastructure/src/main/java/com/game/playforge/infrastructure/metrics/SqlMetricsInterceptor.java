@@ -0,0 +1,69 @@
+package com.game.playforge.infrastructure.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SQL执行耗时拦截器
+ * <p>
+ * 拦截MyBatis {@link Executor} 的查询与更新，按Mapper方法记录执行耗时（包含获取连接与结果映射），
+ * 由MyBatis Plus自动配置注册为插件。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Component
+@RequiredArgsConstructor
+@Intercepts({
+        @Signature(type = Executor.class, method = "update",
+                args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class,
+                        CacheKey.class, BoundSql.class})
+})
+public class SqlMetricsInterceptor implements Interceptor {
+
+    private final AgentMetrics agentMetrics;
+
+    /**
+     * MappedStatement ID（全限定类名.方法名）到短名称的缓存
+     */
+    private final ConcurrentHashMap<String, String> statementNames = new ConcurrentHashMap<>();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            return invocation.proceed();
+        } catch (Throwable e) {
+            failed = true;
+            throw e;
+        } finally {
+            agentMetrics.recordSql(statementNames.computeIfAbsent(statement.getId(), SqlMetricsInterceptor::shortName),
+                    statement.getSqlCommandType().name(), failed, System.nanoTime() - start);
+        }
+    }
+
+    private static String shortName(String statementId) {
+        int method = statementId.lastIndexOf('.');
+        int type = method > 0 ? statementId.lastIndexOf('.', method - 1) : -1;
+        return type >= 0 ? statementId.substring(type + 1) : statementId;
+    }
+}
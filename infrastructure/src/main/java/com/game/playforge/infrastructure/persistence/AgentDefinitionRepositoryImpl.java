@@ -3,6 +3,7 @@ package com.game.playforge.infrastructure.persistence;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.game.playforge.domain.model.AgentDefinition;
 import com.game.playforge.domain.repository.AgentDefinitionRepository;
+import com.game.playforge.infrastructure.external.ai.AgentProfileRegistry;
 import com.game.playforge.infrastructure.persistence.mapper.AgentDefinitionMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,7 +14,8 @@ import java.util.List;
 /**
  * Agent定义仓储实现
  * <p>
- * 基于MyBatis Plus的 {@link AgentDefinitionMapper} 实现持久化操作。
+ * 基于MyBatis Plus的 {@link AgentDefinitionMapper} 实现持久化操作，
+ * 更新时同步失效 {@link AgentProfileRegistry} 中的运行时配置。
  * </p>
  *
  * @author Richard Zhang
@@ -25,6 +27,7 @@ import java.util.List;
 public class AgentDefinitionRepositoryImpl implements AgentDefinitionRepository {
 
     private final AgentDefinitionMapper agentDefinitionMapper;
+    private final AgentProfileRegistry agentProfileRegistry;
 
     @Override
     public AgentDefinition findById(Long id) {
@@ -92,6 +95,7 @@ public class AgentDefinitionRepositoryImpl implements AgentDefinitionRepository
     public void update(AgentDefinition agentDefinition) {
         log.info("更新Agent定义, id={}", agentDefinition.getId());
         agentDefinitionMapper.updateById(agentDefinition);
+        agentProfileRegistry.invalidate(agentDefinition.getId());
         log.info("更新Agent定义成功, id={}", agentDefinition.getId());
     }
 }
@@ -0,0 +1,285 @@
+package com.game.playforge.infrastructure.persistence;
+
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.game.playforge.domain.model.AgentMessage;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
+import com.game.playforge.infrastructure.persistence.mapper.AgentMessageMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 消息写后批量落库管道
+ * <p>
+ * 各会话提交的消息进入有界队列，由单个写线程按条数或等待时间攒批，
+ * 以一条多行INSERT写入，减少高并发子Agent场景下的小事务和连接占用。
+ * 消息ID与创建时间在提交时确定，保证调用方立即可用且排序与提交顺序一致；
+ * 同步写入同样经 {@link #prepare} 由应用时钟赋值，不依赖数据库默认值，两条路径的消息按同一时钟排序。
+ * 队列写满时生产者阻塞等待（背压），超时后退化为同步写入；
+ * 单条写入失败的消息重新入队重试，重试耗尽后计数并写入死信日志（logger {@code playforge.message.dead-letter}）；
+ * 入队与关闭互斥（读写锁）：关闭开始后的提交改为同步写入，已入队的消息都在排空队列时写入。
+ * 待写入数登记为 {@code playforge.persistence.pending{pipeline=messages}} 指标。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AgentMessageBatchWriter {
+
+    private static final long SHUTDOWN_WAIT_MILLIS = 10_000L;
+
+    /**
+     * 死信日志，包含完整内容以便人工补录
+     */
+    private static final Logger DEAD_LETTER = LoggerFactory.getLogger("playforge.message.dead-letter");
+
+    private final AgentMessageMapper agentMessageMapper;
+    private final AgentMessageWriterProperties properties;
+    private final AgentMetrics agentMetrics;
+
+    /**
+     * 写入失败消息的已重试次数：消息ID → 次数
+     */
+    private final Map<Long, Integer> failedAttempts = new ConcurrentHashMap<>();
+
+    /**
+     * 入队持读锁、关闭持写锁：关闭置位后不会再有消息进入已排空的队列
+     */
+    private final ReadWriteLock submitLock = new ReentrantReadWriteLock();
+
+    private BlockingQueue<AgentMessage> queue;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            log.info("消息异步批量写入未启用，使用同步写入");
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+        running = true;
+        writerThread = Thread.ofPlatform()
+                .name("agent-message-writer")
+                .daemon(true)
+                .start(this::runLoop);
+        agentMetrics.registerWriteBacklog("messages", queue, BlockingQueue::size);
+        log.info("消息异步批量写入已启动, queueCapacity={}, batchSize={}, flushInterval={}",
+                properties.getQueueCapacity(), properties.getBatchSize(), properties.getFlushInterval());
+    }
+
+    /**
+     * 提交消息
+     *
+     * @param message 消息实体（ID与创建时间为空时在此分配）
+     */
+    public void submit(AgentMessage message) {
+        prepare(message);
+        if (!enqueue(message)) {
+            agentMessageMapper.insert(message);
+        }
+    }
+
+    /**
+     * @return 是否已入队；未启用、正在关闭或队列已满时返回false，由调用方同步写入
+     */
+    private boolean enqueue(AgentMessage message) {
+        submitLock.readLock().lock();
+        try {
+            if (!running) {
+                return false;
+            }
+            if (queue.offer(message, properties.getOfferTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            log.warn("消息写入队列已满，改为同步写入, threadId={}, pending={}",
+                    message.getThreadId(), queue.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            submitLock.readLock().unlock();
+        }
+        return false;
+    }
+
+    /**
+     * 同步批量写入（一条多行INSERT，超过单批上限时分段）
+     *
+     * @param messages 消息列表
+     */
+    public void writeNow(List<AgentMessage> messages) {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        for (int from = 0; from < messages.size(); from += batchSize) {
+            List<AgentMessage> batch = messages.subList(from, Math.min(from + batchSize, messages.size()));
+            batch.forEach(this::prepare);
+            flush(batch);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 等待进行中的入队完成，此后的提交都走同步写入
+        submitLock.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            submitLock.writeLock().unlock();
+        }
+        try {
+            writerThread.join(SHUTDOWN_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<AgentMessage> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            log.info("关闭前写入剩余消息, count={}", remaining.size());
+            writeNow(remaining);
+        }
+    }
+
+    private void runLoop() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        long lingerNanos = properties.getFlushInterval().toNanos();
+        List<AgentMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                AgentMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    AgentMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                if (!flush(batch)) {
+                    Thread.sleep(properties.getRetryBackoff().toMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("消息批量写入线程异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * @return 整批是否全部写入成功
+     */
+    private boolean flush(List<AgentMessage> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        try {
+            agentMessageMapper.insertRows(batch);
+            log.debug("批量写入消息, count={}", batch.size());
+            clearAttempts(batch);
+            return true;
+        } catch (Exception e) {
+            log.error("批量写入消息失败，逐条重试, count={}", batch.size(), e);
+        }
+        boolean allWritten = true;
+        for (AgentMessage message : batch) {
+            try {
+                agentMessageMapper.insertRows(List.of(message));
+                failedAttempts.remove(message.getId());
+            } catch (DuplicateKeyException duplicate) {
+                // 之前的尝试已写入
+                failedAttempts.remove(message.getId());
+            } catch (Exception single) {
+                allWritten = false;
+                handleFailure(message, single);
+            }
+        }
+        return allWritten;
+    }
+
+    /**
+     * 重试次数未耗尽且写线程仍在运行时重新入队，否则计数并写入死信日志
+     */
+    private void handleFailure(AgentMessage message, Exception cause) {
+        int attempt = failedAttempts.merge(message.getId(), 1, Integer::sum);
+        if (attempt <= properties.getMaxRetries() && requeue(message)) {
+            agentMetrics.countMessageWriteFailure("requeued");
+            log.warn("写入消息失败，重新入队, threadId={}, messageId={}, attempt={}, error={}",
+                    message.getThreadId(), message.getId(), attempt, cause.getMessage());
+            return;
+        }
+        failedAttempts.remove(message.getId());
+        agentMetrics.countMessageWriteFailure("dead_letter");
+        log.error("写入消息失败，重试耗尽, threadId={}, messageId={}, role={}",
+                message.getThreadId(), message.getId(), message.getRole(), cause);
+        DEAD_LETTER.error("id={}, threadId={}, role={}, toolName={}, tokenCount={}, createdAt={}, content={}",
+                message.getId(), message.getThreadId(), message.getRole(), message.getToolName(),
+                message.getTokenCount(), message.getCreatedAt(), message.getContent());
+    }
+
+    private boolean requeue(AgentMessage message) {
+        submitLock.readLock().lock();
+        try {
+            return running && queue.offer(message);
+        } finally {
+            submitLock.readLock().unlock();
+        }
+    }
+
+    private void clearAttempts(List<AgentMessage> batch) {
+        if (failedAttempts.isEmpty()) {
+            return;
+        }
+        for (AgentMessage message : batch) {
+            failedAttempts.remove(message.getId());
+        }
+    }
+
+    /**
+     * 分配消息ID与创建时间（已有值时保留），同步与异步写入共用
+     */
+    void prepare(AgentMessage message) {
+        if (message.getId() == null) {
+            message.setId(IdWorker.getId());
+        }
+        if (message.getCreatedAt() == null) {
+            // 与数据库DATETIME精度一致，避免毫秒进位打乱与同步写入消息的先后顺序
+            message.setCreatedAt(LocalDateTime.now().withNano(0));
+        }
+        if (message.getTokenCount() == null) {
+            message.setTokenCount(0);
+        }
+    }
+}
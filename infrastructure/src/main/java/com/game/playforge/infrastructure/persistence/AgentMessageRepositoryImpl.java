@@ -3,19 +3,26 @@ package com.game.playforge.infrastructure.persistence;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.game.playforge.domain.model.AgentMessage;
+import com.game.playforge.domain.model.AgentMessageChunk;
 import com.game.playforge.domain.repository.AgentMessageRepository;
+import com.game.playforge.infrastructure.persistence.mapper.AgentMessageChunkMapper;
 import com.game.playforge.infrastructure.persistence.mapper.AgentMessageMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Agent消息仓储实现
  * <p>
- * 基于MyBatis Plus的 {@link AgentMessageMapper} 实现持久化操作。
+ * 基于MyBatis Plus的 {@link AgentMessageMapper} 实现持久化操作，
+ * 异步写入经 {@link AgentMessageBatchWriter} 攒批落库。
  * </p>
  *
  * @author Richard Zhang
@@ -27,23 +34,32 @@ import java.util.List;
 public class AgentMessageRepositoryImpl implements AgentMessageRepository {
 
     private final AgentMessageMapper agentMessageMapper;
+    private final AgentMessageChunkMapper agentMessageChunkMapper;
+    private final AgentMessageBatchWriter agentMessageBatchWriter;
 
     @Override
     public void insert(AgentMessage agentMessage) {
         log.debug("新增消息, threadId={}, role={}", agentMessage.getThreadId(), agentMessage.getRole());
+        // 与异步写入使用同一时钟分配创建时间，保证游标分页的排序一致
+        agentMessageBatchWriter.prepare(agentMessage);
         agentMessageMapper.insert(agentMessage);
         log.debug("新增消息成功, messageId={}", agentMessage.getId());
     }
 
+    @Override
+    public void insertAsync(AgentMessage agentMessage) {
+        agentMessageBatchWriter.submit(agentMessage);
+        log.debug("提交消息写入, threadId={}, role={}, messageId={}",
+                agentMessage.getThreadId(), agentMessage.getRole(), agentMessage.getId());
+    }
+
     @Override
     public void insertBatch(List<AgentMessage> messages) {
         if (messages == null || messages.isEmpty()) {
             return;
         }
         log.info("批量新增消息, count={}", messages.size());
-        for (AgentMessage message : messages) {
-            agentMessageMapper.insert(message);
-        }
+        agentMessageBatchWriter.writeNow(messages);
         log.info("批量新增消息成功, count={}", messages.size());
     }
 
@@ -61,6 +77,46 @@ public class AgentMessageRepositoryImpl implements AgentMessageRepository {
         );
     }
 
+    @Override
+    public void appendContentChunk(Long messageId, int seq, String content) {
+        if (messageId == null || content == null || content.isEmpty()) {
+            return;
+        }
+        AgentMessageChunk chunk = new AgentMessageChunk();
+        chunk.setMessageId(messageId);
+        chunk.setSeq(seq);
+        chunk.setContent(content);
+        agentMessageChunkMapper.insert(chunk);
+        log.debug("追加消息分片, messageId={}, seq={}, length={}", messageId, seq, content.length());
+    }
+
+    /**
+     * 合并分片：更新内容与删除分片在同一事务内，读取方不会看到已合并内容再叠加旧分片
+     */
+    @Override
+    @Transactional
+    public void compactContent(Long messageId, String content, int tokenCount) {
+        if (messageId == null) {
+            return;
+        }
+        log.debug("更新消息内容及Token数, messageId={}, tokenCount={}", messageId, tokenCount);
+        agentMessageMapper.update(
+                null,
+                new LambdaUpdateWrapper<AgentMessage>()
+                        .eq(AgentMessage::getId, messageId)
+                        .set(AgentMessage::getContent, content)
+                        .set(AgentMessage::getTokenCount, tokenCount)
+        );
+        deleteChunks(messageId);
+    }
+
+    private void deleteChunks(Long messageId) {
+        int removed = agentMessageChunkMapper.delete(
+                new LambdaQueryWrapper<AgentMessageChunk>()
+                        .eq(AgentMessageChunk::getMessageId, messageId));
+        log.debug("合并消息分片, messageId={}, removedChunks={}", messageId, removed);
+    }
+
     @Override
     public List<AgentMessage> findByThreadId(Long threadId, int limit, int offset) {
         int safeLimit = Math.max(1, Math.min(limit, 200));
@@ -69,15 +125,48 @@ public class AgentMessageRepositoryImpl implements AgentMessageRepository {
         List<AgentMessage> messages = agentMessageMapper.selectByThreadIdPaged(
                 threadId, safeLimit, safeOffset);
         Collections.reverse(messages); // DB returns DESC, reverse to chronological ASC
+        mergePendingChunks(messages);
         log.debug("查询会话消息结果, threadId={}, count={}", threadId, messages.size());
         return messages;
     }
 
+    @Override
+    public List<AgentMessage> findByThreadIdBefore(Long threadId, Long beforeId, int limit) {
+        int safeLimit = Math.max(1, Math.min(limit, 200));
+        log.debug("游标查询会话消息, threadId={}, beforeId={}, limit={}", threadId, beforeId, safeLimit);
+        AgentMessage cursor = findCursor(threadId, beforeId);
+        if (cursor == null) {
+            return new ArrayList<>();
+        }
+        List<AgentMessage> messages = agentMessageMapper.selectBeforeCursor(
+                threadId, cursor.getCreatedAt(), cursor.getId(), safeLimit);
+        Collections.reverse(messages); // DB returns DESC, reverse to chronological ASC
+        mergePendingChunks(messages);
+        log.debug("游标查询会话消息结果, threadId={}, count={}", threadId, messages.size());
+        return messages;
+    }
+
+    @Override
+    public List<AgentMessage> findByThreadIdAfter(Long threadId, Long afterId, int limit) {
+        int safeLimit = Math.max(1, Math.min(limit, 200));
+        log.debug("游标查询会话消息, threadId={}, afterId={}, limit={}", threadId, afterId, safeLimit);
+        AgentMessage cursor = findCursor(threadId, afterId);
+        if (cursor == null) {
+            return new ArrayList<>();
+        }
+        List<AgentMessage> messages = agentMessageMapper.selectAfterCursor(
+                threadId, cursor.getCreatedAt(), cursor.getId(), safeLimit);
+        mergePendingChunks(messages);
+        log.debug("游标查询会话消息结果, threadId={}, count={}", threadId, messages.size());
+        return messages;
+    }
+
     @Override
     public List<AgentMessage> findLatestByThreadId(Long threadId, int limit) {
         int safeLimit = Math.max(1, Math.min(limit, 200));
         log.debug("查询会话最新消息, threadId={}, limit={}", threadId, safeLimit);
         List<AgentMessage> messages = agentMessageMapper.selectLatestByThreadId(threadId, safeLimit);
+        mergePendingChunks(messages);
         log.debug("查询会话最新消息结果, threadId={}, count={}", threadId, messages.size());
         return messages;
     }
@@ -91,4 +180,51 @@ public class AgentMessageRepositoryImpl implements AgentMessageRepository {
         log.debug("统计会话消息数量, threadId={}, count={}", threadId, count);
         return count;
     }
+
+    /**
+     * 读取游标消息的排序键，游标不存在或不属于该会话时返回null
+     */
+    private AgentMessage findCursor(Long threadId, Long messageId) {
+        if (messageId == null) {
+            return null;
+        }
+        AgentMessage cursor = agentMessageMapper.selectOne(
+                new LambdaQueryWrapper<AgentMessage>()
+                        .select(AgentMessage::getId, AgentMessage::getThreadId, AgentMessage::getCreatedAt)
+                        .eq(AgentMessage::getId, messageId)
+                        .eq(AgentMessage::getThreadId, threadId));
+        if (cursor == null) {
+            log.debug("游标消息不存在, threadId={}, messageId={}", threadId, messageId);
+        }
+        return cursor;
+    }
+
+    /**
+     * 拼接尚未合并的流式分片（流式进行中或进程中断后未完成合并的assistant消息）
+     */
+    private void mergePendingChunks(List<AgentMessage> messages) {
+        List<Long> assistantIds = messages.stream()
+                .filter(message -> "assistant".equals(message.getRole()))
+                .map(AgentMessage::getId)
+                .toList();
+        if (assistantIds.isEmpty()) {
+            return;
+        }
+        List<AgentMessageChunk> chunks = agentMessageChunkMapper.selectByMessageIds(assistantIds);
+        if (chunks.isEmpty()) {
+            return;
+        }
+        Map<Long, StringBuilder> pending = new HashMap<>();
+        for (AgentMessageChunk chunk : chunks) {
+            pending.computeIfAbsent(chunk.getMessageId(), ignored -> new StringBuilder())
+                    .append(chunk.getContent());
+        }
+        for (AgentMessage message : messages) {
+            StringBuilder tail = pending.get(message.getId());
+            if (tail != null) {
+                String head = message.getContent() != null ? message.getContent() : "";
+                message.setContent(head + tail);
+            }
+        }
+    }
 }
@@ -0,0 +1,54 @@
+package com.game.playforge.infrastructure.persistence;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 消息写后批量落库配置属性
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "playforge.message-writer")
+public class AgentMessageWriterProperties {
+
+    /**
+     * 是否启用异步批量写入（关闭时退化为同步单条插入）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 待写入队列容量
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 单批最大行数（一条多行INSERT）
+     */
+    private int batchSize = 200;
+
+    /**
+     * 攒批等待时间，首条消息入队后最多等待该时长再刷写
+     */
+    private Duration flushInterval = Duration.ofMillis(20);
+
+    /**
+     * 队列已满时生产者的最长等待时间，超时后改为同步写入
+     */
+    private Duration offerTimeout = Duration.ofSeconds(2);
+
+    /**
+     * 单条消息写入失败后重新入队的最大次数，耗尽后记录死信日志
+     */
+    private int maxRetries = 3;
+
+    /**
+     * 出现写入失败后写线程的退避时长，避免数据库故障期间空转重试
+     */
+    private Duration retryBackoff = Duration.ofSeconds(1);
+}
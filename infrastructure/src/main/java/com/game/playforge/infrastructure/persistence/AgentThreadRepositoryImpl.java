@@ -1,7 +1,6 @@
 package com.game.playforge.infrastructure.persistence;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.game.playforge.common.enums.ThreadStatus;
 import com.game.playforge.domain.model.AgentThread;
 import com.game.playforge.domain.repository.AgentThreadRepository;
@@ -18,7 +17,8 @@ import java.util.Map;
 /**
  * Agent会话仓储实现
  * <p>
- * 基于MyBatis Plus的 {@link AgentThreadMapper} 实现持久化操作。
+ * 基于MyBatis Plus的 {@link AgentThreadMapper} 实现持久化操作，
+ * 消息数与Token用量递增经 {@link AgentThreadStatsAggregator} 在内存中合并后批量刷写。
  * </p>
  *
  * @author Richard Zhang
@@ -30,6 +30,7 @@ import java.util.Map;
 public class AgentThreadRepositoryImpl implements AgentThreadRepository {
 
     private final AgentThreadMapper agentThreadMapper;
+    private final AgentThreadStatsAggregator agentThreadStatsAggregator;
 
     @Override
     public AgentThread findById(Long id) {
@@ -103,12 +104,20 @@ public class AgentThreadRepositoryImpl implements AgentThreadRepository {
             return;
         }
         log.debug("递增会话消息数, threadId={}, delta={}", threadId, messageDelta);
-        agentThreadMapper.update(
-                null,
-                new LambdaUpdateWrapper<AgentThread>()
-                        .eq(AgentThread::getId, threadId)
-                        .setSql("message_count = COALESCE(message_count, 0) + {0}", messageDelta)
-                        .set(AgentThread::getLastMessageAt, lastMessageAt)
-        );
+        agentThreadStatsAggregator.record(threadId, messageDelta, lastMessageAt);
+    }
+
+    @Override
+    public void flushMessageStats(Long threadId) {
+        agentThreadStatsAggregator.flush(threadId);
+    }
+
+    @Override
+    public void addTokensUsed(Long threadId, long tokens) {
+        if (tokens <= 0) {
+            return;
+        }
+        log.debug("累加会话Token用量, threadId={}, tokens={}", threadId, tokens);
+        agentThreadStatsAggregator.recordTokens(threadId, tokens);
     }
 }
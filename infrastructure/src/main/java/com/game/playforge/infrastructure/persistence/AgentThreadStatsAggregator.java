@@ -0,0 +1,204 @@
+package com.game.playforge.infrastructure.persistence;
+
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.game.playforge.domain.model.AgentTokenUsage;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
+import com.game.playforge.infrastructure.persistence.mapper.AgentThreadMapper;
+import com.game.playforge.infrastructure.persistence.mapper.AgentTokenUsageMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话统计增量合并器
+ * <p>
+ * 每条消息都对 t_agent_thread 执行一次 {@code message_count + 1} 会在热点会话上产生行锁竞争。
+ * 此处在内存中按会话合并消息数、Token用量增量与最后消息时间，由后台线程定时刷写，
+ * 流式回复结束时也可按会话立即刷写；刷写失败的增量会合并回内存等待下次重试，
+ * 应用关闭时刷写全部剩余增量。
+ * 每次LLM调用的Token用量明细同样在内存中排队，随定时刷写以多行INSERT批量落库。
+ * 待刷写的会话数与用量明细数登记为 {@code playforge.persistence.pending} 指标。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AgentThreadStatsAggregator {
+
+    private static final int USAGE_BATCH_SIZE = 200;
+
+    private final AgentThreadMapper agentThreadMapper;
+    private final AgentTokenUsageMapper agentTokenUsageMapper;
+    private final AgentThreadStatsProperties properties;
+    private final AgentMetrics agentMetrics;
+
+    private final ConcurrentHashMap<Long, PendingStats> pending = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<AgentTokenUsage> pendingUsages = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            log.info("会话统计合并写入未启用，使用同步更新");
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("agent-thread-stats").daemon(true).factory());
+        long intervalMillis = Math.max(1L, properties.getFlushInterval().toMillis());
+        scheduler.scheduleWithFixedDelay(this::flushAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        agentMetrics.registerWriteBacklog("thread_stats", pending, Map::size);
+        agentMetrics.registerWriteBacklog("token_usage", pendingUsages, ConcurrentLinkedQueue::size);
+        log.info("会话统计合并写入已启动, flushInterval={}", properties.getFlushInterval());
+    }
+
+    /**
+     * 记录会话消息数增量
+     *
+     * @param threadId      会话ID
+     * @param messageDelta  增量消息数
+     * @param lastMessageAt 最后消息时间
+     */
+    public void record(Long threadId, int messageDelta, LocalDateTime lastMessageAt) {
+        merge(threadId, new PendingStats(messageDelta, 0L, lastMessageAt));
+    }
+
+    /**
+     * 记录会话Token用量增量
+     *
+     * @param threadId   会话ID
+     * @param tokenDelta 增量Token数
+     */
+    public void recordTokens(Long threadId, long tokenDelta) {
+        merge(threadId, new PendingStats(0, tokenDelta, null));
+    }
+
+    /**
+     * 记录一次LLM调用的Token用量明细
+     *
+     * @param usage 用量记录（ID与创建时间为空时在此分配）
+     */
+    public void recordUsage(AgentTokenUsage usage) {
+        if (usage.getId() == null) {
+            usage.setId(IdWorker.getId());
+        }
+        if (usage.getCreatedAt() == null) {
+            usage.setCreatedAt(LocalDateTime.now());
+        }
+        if (scheduler == null) {
+            agentTokenUsageMapper.insertRows(List.of(usage));
+            return;
+        }
+        pendingUsages.add(usage);
+    }
+
+    /**
+     * 立即刷写指定会话的增量
+     *
+     * @param threadId 会话ID
+     */
+    public void flush(Long threadId) {
+        PendingStats stats = pending.remove(threadId);
+        if (stats != null) {
+            write(threadId, stats);
+        }
+    }
+
+    /**
+     * 刷写全部会话的增量与排队的用量明细
+     */
+    public void flushAll() {
+        for (Long threadId : new ArrayList<>(pending.keySet())) {
+            flush(threadId);
+        }
+        flushUsages();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!pending.isEmpty() || !pendingUsages.isEmpty()) {
+            log.info("关闭前刷写会话统计, threads={}, usages={}", pending.size(), pendingUsages.size());
+            flushAll();
+        }
+    }
+
+    private void merge(Long threadId, PendingStats stats) {
+        if (threadId == null) {
+            return;
+        }
+        if (scheduler == null) {
+            agentThreadMapper.addThreadStats(threadId, stats.messageDelta(), stats.tokenDelta(), stats.lastMessageAt());
+            return;
+        }
+        pending.merge(threadId, stats, PendingStats::plus);
+    }
+
+    private void write(Long threadId, PendingStats stats) {
+        try {
+            agentThreadMapper.addThreadStats(threadId, stats.messageDelta(), stats.tokenDelta(), stats.lastMessageAt());
+            log.debug("刷写会话统计, threadId={}, messageDelta={}, tokenDelta={}",
+                    threadId, stats.messageDelta(), stats.tokenDelta());
+        } catch (Exception e) {
+            log.warn("刷写会话统计失败，等待下次重试, threadId={}, messageDelta={}, tokenDelta={}",
+                    threadId, stats.messageDelta(), stats.tokenDelta(), e);
+            pending.merge(threadId, stats, PendingStats::plus);
+        }
+    }
+
+    private void flushUsages() {
+        List<AgentTokenUsage> batch = new ArrayList<>(USAGE_BATCH_SIZE);
+        AgentTokenUsage usage;
+        while ((usage = pendingUsages.poll()) != null) {
+            batch.add(usage);
+            if (batch.size() >= USAGE_BATCH_SIZE) {
+                writeUsages(batch);
+                batch = new ArrayList<>(USAGE_BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeUsages(batch);
+        }
+    }
+
+    private void writeUsages(List<AgentTokenUsage> batch) {
+        try {
+            agentTokenUsageMapper.insertRows(batch);
+            log.debug("刷写Token用量明细, count={}", batch.size());
+        } catch (Exception e) {
+            // 明细仅用于统计分析，失败时丢弃避免重复插入主键冲突阻塞后续批次
+            log.warn("刷写Token用量明细失败, count={}", batch.size(), e);
+        }
+    }
+
+    private record PendingStats(int messageDelta, long tokenDelta, LocalDateTime lastMessageAt) {
+
+        PendingStats plus(PendingStats other) {
+            LocalDateTime latest = lastMessageAt == null || (other.lastMessageAt != null
+                    && other.lastMessageAt.isAfter(lastMessageAt)) ? other.lastMessageAt : lastMessageAt;
+            return new PendingStats(messageDelta + other.messageDelta, tokenDelta + other.tokenDelta, latest);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.game.playforge.infrastructure.persistence;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 会话统计合并写入配置属性
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "playforge.thread-stats")
+public class AgentThreadStatsProperties {
+
+    /**
+     * 是否启用内存合并（关闭时每次递增直接更新数据库）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 定时刷写间隔
+     */
+    private Duration flushInterval = Duration.ofSeconds(1);
+}
@@ -0,0 +1,31 @@
+package com.game.playforge.infrastructure.persistence;
+
+import com.game.playforge.domain.model.AgentTokenUsage;
+import com.game.playforge.domain.repository.AgentTokenUsageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Agent Token用量仓储实现
+ * <p>
+ * 用量明细经 {@link AgentThreadStatsAggregator} 排队，随会话统计定时批量写入。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class AgentTokenUsageRepositoryImpl implements AgentTokenUsageRepository {
+
+    private final AgentThreadStatsAggregator agentThreadStatsAggregator;
+
+    @Override
+    public void recordAsync(AgentTokenUsage usage) {
+        log.debug("记录Token用量, threadId={}, model={}, total={}",
+                usage.getThreadId(), usage.getModelName(), usage.getTotalTokens());
+        agentThreadStatsAggregator.recordUsage(usage);
+    }
+}
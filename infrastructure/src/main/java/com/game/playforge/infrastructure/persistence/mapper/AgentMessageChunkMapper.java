@@ -0,0 +1,36 @@
+package com.game.playforge.infrastructure.persistence.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.game.playforge.domain.model.AgentMessageChunk;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Agent流式消息分片MyBatis Mapper接口
+ * <p>
+ * 继承 {@link BaseMapper}，由MyBatis Plus自动提供CRUD实现。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Mapper
+public interface AgentMessageChunkMapper extends BaseMapper<AgentMessageChunk> {
+
+    @Select("""
+            <script>
+            SELECT message_id, seq, content
+            FROM t_agent_message_chunk
+            WHERE message_id IN
+            <foreach collection="messageIds" item="messageId" open="(" separator="," close=")">
+                #{messageId}
+            </foreach>
+            ORDER BY message_id, seq
+            </script>
+            """)
+    List<AgentMessageChunk> selectByMessageIds(@Param("messageIds") Collection<Long> messageIds);
+}
@@ -2,10 +2,12 @@ package com.game.playforge.infrastructure.persistence.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.game.playforge.domain.model.AgentMessage;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -32,6 +34,40 @@ public interface AgentMessageMapper extends BaseMapper<AgentMessage> {
             @Param("limit") int limit,
             @Param("offset") int offset);
 
+    /**
+     * 游标分页：查询早于游标的消息（按创建时间倒序），沿 (thread_id, created_at, id) 索引范围扫描
+     */
+    @Select("""
+            SELECT id, thread_id, role, content, tool_name, token_count, created_at
+            FROM t_agent_message
+            WHERE thread_id = #{threadId}
+              AND (created_at < #{createdAt} OR (created_at = #{createdAt} AND id < #{id}))
+            ORDER BY created_at DESC, id DESC
+            LIMIT #{limit}
+            """)
+    List<AgentMessage> selectBeforeCursor(
+            @Param("threadId") Long threadId,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            @Param("limit") int limit);
+
+    /**
+     * 游标分页：查询晚于游标的消息（按创建时间升序）
+     */
+    @Select("""
+            SELECT id, thread_id, role, content, tool_name, token_count, created_at
+            FROM t_agent_message
+            WHERE thread_id = #{threadId}
+              AND (created_at > #{createdAt} OR (created_at = #{createdAt} AND id > #{id}))
+            ORDER BY created_at ASC, id ASC
+            LIMIT #{limit}
+            """)
+    List<AgentMessage> selectAfterCursor(
+            @Param("threadId") Long threadId,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            @Param("limit") int limit);
+
     @Select("""
             SELECT id, thread_id, role, content, tool_name, token_count, created_at
             FROM t_agent_message
@@ -42,4 +78,15 @@ public interface AgentMessageMapper extends BaseMapper<AgentMessage> {
     List<AgentMessage> selectLatestByThreadId(
             @Param("threadId") Long threadId,
             @Param("limit") int limit);
+
+    @Insert("""
+            <script>
+            INSERT INTO t_agent_message (id, thread_id, role, content, tool_name, token_count, created_at)
+            VALUES
+            <foreach collection="messages" item="m" separator=",">
+                (#{m.id}, #{m.threadId}, #{m.role}, #{m.content}, #{m.toolName}, #{m.tokenCount}, #{m.createdAt})
+            </foreach>
+            </script>
+            """)
+    int insertRows(@Param("messages") List<AgentMessage> messages);
 }
@@ -5,7 +5,9 @@ import com.game.playforge.domain.model.AgentThread;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -37,4 +39,23 @@ public interface AgentThreadMapper extends BaseMapper<AgentThread> {
     List<Map<String, Object>> selectLatestThreadIdsByAgentIds(
             @Param("userId") Long userId,
             @Param("agentIds") List<Long> agentIds);
+
+    /**
+     * 累加会话消息数与Token用量，最后消息时间只前进不回退（为空时不更新）
+     */
+    @Update("""
+            <script>
+            UPDATE t_agent_thread
+            SET message_count = COALESCE(message_count, 0) + #{messageDelta},
+                total_tokens_used = COALESCE(total_tokens_used, 0) + #{tokenDelta}
+                <if test="lastMessageAt != null">
+                , last_message_at = GREATEST(COALESCE(last_message_at, #{lastMessageAt}), #{lastMessageAt})
+                </if>
+            WHERE id = #{threadId}
+            </script>
+            """)
+    int addThreadStats(@Param("threadId") Long threadId,
+                       @Param("messageDelta") int messageDelta,
+                       @Param("tokenDelta") long tokenDelta,
+                       @Param("lastMessageAt") LocalDateTime lastMessageAt);
 }
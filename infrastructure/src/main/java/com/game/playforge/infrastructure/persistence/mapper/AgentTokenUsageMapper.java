@@ -0,0 +1,35 @@
+package com.game.playforge.infrastructure.persistence.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.game.playforge.domain.model.AgentTokenUsage;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * Agent Token用量MyBatis Mapper接口
+ * <p>
+ * 继承 {@link BaseMapper}，由MyBatis Plus自动提供CRUD实现。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Mapper
+public interface AgentTokenUsageMapper extends BaseMapper<AgentTokenUsage> {
+
+    @Insert("""
+            <script>
+            INSERT INTO t_agent_token_usage (id, thread_id, user_id, agent_id, agent_name, provider, model_name,
+                input_tokens, output_tokens, cached_tokens, total_tokens, created_at)
+            VALUES
+            <foreach collection="rows" item="u" separator=",">
+                (#{u.id}, #{u.threadId}, #{u.userId}, #{u.agentId}, #{u.agentName}, #{u.provider}, #{u.modelName},
+                 #{u.inputTokens}, #{u.outputTokens}, #{u.cachedTokens}, #{u.totalTokens}, #{u.createdAt})
+            </foreach>
+            </script>
+            """)
+    int insertRows(@Param("rows") List<AgentTokenUsage> rows);
+}
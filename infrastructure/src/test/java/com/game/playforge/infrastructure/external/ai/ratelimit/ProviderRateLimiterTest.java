@@ -0,0 +1,141 @@
+package com.game.playforge.infrastructure.external.ai.ratelimit;
+
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
+import dev.langchain4j.exception.RateLimitException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class ProviderRateLimiterTest {
+
+    private static final String PROVIDER = "test";
+    private static final String MODEL = "model";
+
+    private final ProviderRateLimiter rateLimiter = new ProviderRateLimiter(properties(),
+            new AgentMetrics(new SimpleMeterRegistry()));
+
+    @AfterEach
+    void tearDown() {
+        rateLimiter.shutdown();
+    }
+
+    @Test
+    void releasedPermitIsGrantedToNextWaiter() throws Exception {
+        ProviderRateLimiter.Permit first = rateLimiter.acquire(PROVIDER, MODEL).get(1, TimeUnit.SECONDS);
+        CompletableFuture<ProviderRateLimiter.Permit> second = rateLimiter.acquire(PROVIDER, MODEL);
+        assertThat(second).isNotDone();
+
+        first.complete(null);
+
+        assertThat(second.get(1, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test
+    void cancelledWaiterDoesNotConsumeSlot() throws Exception {
+        ProviderRateLimiter.Permit first = rateLimiter.acquire(PROVIDER, MODEL).get(1, TimeUnit.SECONDS);
+        CompletableFuture<ProviderRateLimiter.Permit> cancelled = rateLimiter.acquire(PROVIDER, MODEL);
+        CompletableFuture<ProviderRateLimiter.Permit> next = rateLimiter.acquire(PROVIDER, MODEL);
+
+        cancelled.cancel(false);
+        first.complete(null);
+
+        assertThat(next.get(1, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test
+    void repeatedReleaseReturnsSlotOnce() throws Exception {
+        ProviderRateLimiter.Permit first = rateLimiter.acquire(PROVIDER, MODEL).get(1, TimeUnit.SECONDS);
+        first.complete(null);
+        first.fail(new RuntimeException("late"));
+
+        ProviderRateLimiter.Permit second = rateLimiter.acquire(PROVIDER, MODEL).get(1, TimeUnit.SECONDS);
+        CompletableFuture<ProviderRateLimiter.Permit> third = rateLimiter.acquire(PROVIDER, MODEL);
+
+        assertThat(third).isNotDone();
+        second.complete(null);
+        assertThat(third.get(1, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test
+    void interruptedBlockingAcquireFailsAndKeepsSlotFree() throws Exception {
+        ProviderRateLimiter.Permit first = rateLimiter.acquire(PROVIDER, MODEL).get(1, TimeUnit.SECONDS);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread waiter = Thread.ofVirtual().start(() -> {
+            try {
+                rateLimiter.acquireBlocking(PROVIDER, MODEL).complete(null);
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        await().atMost(1, TimeUnit.SECONDS).until(() -> waiter.getState() == Thread.State.WAITING);
+
+        waiter.interrupt();
+        waiter.join(1000);
+        first.complete(null);
+
+        assertThat(failure.get()).isInstanceOf(RateLimitException.class);
+        rateLimiter.acquire(PROVIDER, MODEL).get(1, TimeUnit.SECONDS).complete(null);
+    }
+
+    @Test
+    void permitGrantedWhileInterruptedIsReturned() throws Exception {
+        ProviderRateLimiter.Permit held = rateLimiter.acquire(PROVIDER, MODEL).get(1, TimeUnit.SECONDS);
+        ProviderRateLimiter racingLimiter = new ProviderRateLimiter(properties(),
+                new AgentMetrics(new SimpleMeterRegistry())) {
+            @Override
+            public CompletableFuture<Permit> acquire(String provider, String model) {
+                return new GrantedOnInterruptFuture(rateLimiter.acquire(provider, model), held);
+            }
+        };
+
+        try {
+            assertThatThrownBy(() -> racingLimiter.acquireBlocking(PROVIDER, MODEL))
+                    .isInstanceOf(RateLimitException.class);
+            assertThat(Thread.interrupted()).isTrue();
+
+            // 并发数为1：中断时已发放的许可被归还，下一次申请可立即获得
+            rateLimiter.acquire(PROVIDER, MODEL).get(1, TimeUnit.SECONDS).complete(null);
+        } finally {
+            racingLimiter.shutdown();
+        }
+    }
+
+    private static ProviderRateLimitProperties properties() {
+        ProviderRateLimitProperties properties = new ProviderRateLimitProperties();
+        properties.setAcquireTimeout(Duration.ofSeconds(5));
+        properties.setProviders(Map.of(PROVIDER, new ProviderRateLimitProperties.Limits(600_000, 1, "default")));
+        return properties;
+    }
+
+    /**
+     * 等待时被中断、但在中断抛出前许可已经发放的Future，重现中断与发放并发的时序
+     */
+    private static final class GrantedOnInterruptFuture extends CompletableFuture<ProviderRateLimiter.Permit> {
+
+        private final CompletableFuture<ProviderRateLimiter.Permit> pending;
+        private final ProviderRateLimiter.Permit held;
+
+        private GrantedOnInterruptFuture(CompletableFuture<ProviderRateLimiter.Permit> pending,
+                                         ProviderRateLimiter.Permit held) {
+            this.pending = pending;
+            this.held = held;
+        }
+
+        @Override
+        public ProviderRateLimiter.Permit get() throws InterruptedException {
+            held.complete(null);
+            complete(pending.join());
+            throw new InterruptedException();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.game.playforge.infrastructure.external.ai.scheduling;
+
+import com.game.playforge.common.exception.BusinessException;
+import com.game.playforge.common.result.ResultCode;
+import com.game.playforge.infrastructure.external.ai.scheduling.AgentTaskScheduler.Lane;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class AgentTaskSchedulerTest {
+
+    private static final long USER_A = 1L;
+    private static final long USER_B = 2L;
+    private static final String PROVIDER = "openai";
+
+    private final AgentTaskSchedulerProperties properties = new AgentTaskSchedulerProperties();
+    private AgentTaskScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void backgroundSlotsRotateAcrossUsers() throws Exception {
+        properties.setMaxConcurrency(1);
+        properties.setBackgroundGuaranteed(1);
+        properties.setMaxBackgroundPerUser(10);
+        scheduler = newScheduler();
+
+        List<CompletableFuture<AgentTaskScheduler.Permit>> pending = new ArrayList<>();
+        List<String> names = List.of("a1", "a2", "a3", "b1", "b2");
+        for (String name : names) {
+            pending.add(scheduler.acquire(Lane.BACKGROUND, name.startsWith("a") ? USER_A : USER_B, PROVIDER));
+        }
+
+        // 同一时刻只有一个名额：依次释放，记录发放顺序
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            await().atMost(1, TimeUnit.SECONDS).pollInterval(1, TimeUnit.MILLISECONDS)
+                    .until(() -> pending.stream().anyMatch(CompletableFuture::isDone));
+            assertThat(pending.stream().filter(CompletableFuture::isDone)).hasSize(1);
+            int granted = indexOfDone(pending);
+            order.add(names.get(granted));
+            AgentTaskScheduler.Permit permit = pending.get(granted).get();
+            pending.set(granted, new CompletableFuture<>());
+            permit.release();
+        }
+
+        // 用户A排队中的任务不会连续占满名额，B的任务在A的后续任务之间得到发放
+        assertThat(order).containsExactly("a1", "a2", "b1", "a3", "b2");
+    }
+
+    @Test
+    void backgroundPerUserCapDoesNotBlockOtherUsers() throws Exception {
+        properties.setMaxBackgroundPerUser(2);
+        scheduler = newScheduler();
+
+        AgentTaskScheduler.Permit a1 = scheduler.acquire(Lane.BACKGROUND, USER_A, PROVIDER).get(1, TimeUnit.SECONDS);
+        scheduler.acquire(Lane.BACKGROUND, USER_A, PROVIDER).get(1, TimeUnit.SECONDS);
+        CompletableFuture<AgentTaskScheduler.Permit> a3 = scheduler.acquire(Lane.BACKGROUND, USER_A, PROVIDER);
+
+        assertThat(scheduler.acquire(Lane.BACKGROUND, USER_B, PROVIDER).get(1, TimeUnit.SECONDS)).isNotNull();
+        assertThat(a3).isNotDone();
+
+        a1.release();
+        assertThat(a3.get(1, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test
+    void backgroundProviderCapLeavesOtherProvidersFree() throws Exception {
+        properties.setProviderConcurrency(Map.of(PROVIDER, 1));
+        scheduler = newScheduler();
+
+        AgentTaskScheduler.Permit first = scheduler.acquire(Lane.BACKGROUND, USER_A, PROVIDER).get(1, TimeUnit.SECONDS);
+        CompletableFuture<AgentTaskScheduler.Permit> sameProvider = scheduler.acquire(Lane.BACKGROUND, USER_B, PROVIDER);
+
+        assertThat(scheduler.acquire(Lane.BACKGROUND, USER_B, "gemini").get(1, TimeUnit.SECONDS)).isNotNull();
+        assertThat(sameProvider).isNotDone();
+
+        first.release();
+        assertThat(sameProvider.get(1, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test
+    void interactiveIgnoresTotalCapButRespectsPerUserCap() throws Exception {
+        properties.setMaxConcurrency(1);
+        properties.setBackgroundGuaranteed(0);
+        properties.setMaxInteractivePerUser(2);
+        scheduler = newScheduler();
+
+        AgentTaskScheduler.Permit first = scheduler.acquire(Lane.INTERACTIVE, USER_A, PROVIDER).get(1, TimeUnit.SECONDS);
+        scheduler.acquire(Lane.INTERACTIVE, USER_A, PROVIDER).get(1, TimeUnit.SECONDS);
+        CompletableFuture<AgentTaskScheduler.Permit> third = scheduler.acquire(Lane.INTERACTIVE, USER_A, PROVIDER);
+        CompletableFuture<AgentTaskScheduler.Permit> background = scheduler.acquire(Lane.BACKGROUND, USER_B, PROVIDER);
+
+        assertThat(scheduler.acquire(Lane.INTERACTIVE, USER_B, PROVIDER).get(1, TimeUnit.SECONDS)).isNotNull();
+        assertThat(third).isNotDone();
+        assertThat(background).isNotDone();
+
+        first.release();
+        assertThat(third.get(1, TimeUnit.SECONDS)).isNotNull();
+        assertThat(background).isNotDone();
+    }
+
+    @Test
+    void releasedSlotGoesToInteractiveBeforeBackground() throws Exception {
+        properties.setMaxConcurrency(1);
+        properties.setBackgroundGuaranteed(0);
+        properties.setMaxInteractivePerUser(1);
+        scheduler = newScheduler();
+
+        AgentTaskScheduler.Permit running = scheduler.acquire(Lane.INTERACTIVE, USER_A, PROVIDER)
+                .get(1, TimeUnit.SECONDS);
+        CompletableFuture<AgentTaskScheduler.Permit> background = scheduler.acquire(Lane.BACKGROUND, USER_B, PROVIDER);
+        CompletableFuture<AgentTaskScheduler.Permit> interactive = scheduler.acquire(Lane.INTERACTIVE, USER_A, PROVIDER);
+
+        running.release();
+
+        interactive.get(1, TimeUnit.SECONDS).release();
+        assertThat(background.get(1, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test
+    void guaranteedBackgroundRunsWhenInteractiveFillsTotal() throws Exception {
+        properties.setMaxConcurrency(2);
+        properties.setBackgroundGuaranteed(1);
+        scheduler = newScheduler();
+
+        scheduler.acquire(Lane.INTERACTIVE, USER_A, PROVIDER).get(1, TimeUnit.SECONDS);
+        scheduler.acquire(Lane.INTERACTIVE, USER_B, PROVIDER).get(1, TimeUnit.SECONDS);
+
+        assertThat(scheduler.acquire(Lane.BACKGROUND, USER_A, PROVIDER).get(1, TimeUnit.SECONDS)).isNotNull();
+        assertThat(scheduler.acquire(Lane.BACKGROUND, USER_B, PROVIDER)).isNotDone();
+    }
+
+    @Test
+    void queuedTicketTimesOutAsAgentBusy() throws Exception {
+        properties.setMaxBackgroundPerUser(1);
+        properties.setBackgroundQueueTimeout(Duration.ofMillis(100));
+        scheduler = newScheduler();
+        scheduler.acquire(Lane.BACKGROUND, USER_A, PROVIDER).get(1, TimeUnit.SECONDS);
+
+        CompletableFuture<AgentTaskScheduler.Permit> queued = scheduler.acquire(Lane.BACKGROUND, USER_A, PROVIDER);
+
+        assertThatThrownBy(() -> queued.get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .cause()
+                .isInstanceOfSatisfying(BusinessException.class,
+                        e -> assertThat(e.getResultCode()).isEqualTo(ResultCode.AGENT_BUSY));
+    }
+
+    @Test
+    void cancelledTicketDoesNotConsumeSlot() throws Exception {
+        properties.setMaxBackgroundPerUser(1);
+        scheduler = newScheduler();
+        AgentTaskScheduler.Permit running = scheduler.acquire(Lane.BACKGROUND, USER_A, PROVIDER)
+                .get(1, TimeUnit.SECONDS);
+        CompletableFuture<AgentTaskScheduler.Permit> cancelled = scheduler.acquire(Lane.BACKGROUND, USER_A, PROVIDER);
+        CompletableFuture<AgentTaskScheduler.Permit> next = scheduler.acquire(Lane.BACKGROUND, USER_A, PROVIDER);
+
+        cancelled.cancel(false);
+        running.release();
+
+        assertThat(next.get(1, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test
+    void permitGrantedWhileInterruptedIsReturned() throws Exception {
+        properties.setMaxInteractivePerUser(1);
+        scheduler = newScheduler();
+        AgentTaskScheduler.Permit held = scheduler.acquire(Lane.INTERACTIVE, USER_A, PROVIDER).get(1, TimeUnit.SECONDS);
+        AgentTaskScheduler racingScheduler = new AgentTaskScheduler(properties,
+                new AgentMetrics(new SimpleMeterRegistry())) {
+            @Override
+            public CompletableFuture<Permit> acquire(Lane lane, Long userId, String provider) {
+                return new GrantedOnInterruptFuture(scheduler.acquire(lane, userId, provider), held);
+            }
+        };
+
+        try {
+            assertThatThrownBy(() -> racingScheduler.acquireBlocking(Lane.INTERACTIVE, USER_A, PROVIDER))
+                    .isInstanceOfSatisfying(BusinessException.class,
+                            e -> assertThat(e.getResultCode()).isEqualTo(ResultCode.AGENT_BUSY));
+            assertThat(Thread.interrupted()).isTrue();
+
+            // 单用户上限为1：中断时已发放的名额被归还，下一次申请可立即获得
+            scheduler.acquire(Lane.INTERACTIVE, USER_A, PROVIDER).get(1, TimeUnit.SECONDS).release();
+        } finally {
+            racingScheduler.shutdown();
+        }
+    }
+
+    private AgentTaskScheduler newScheduler() {
+        return new AgentTaskScheduler(properties, new AgentMetrics(new SimpleMeterRegistry()));
+    }
+
+    private static int indexOfDone(List<CompletableFuture<AgentTaskScheduler.Permit>> futures) {
+        for (int i = 0; i < futures.size(); i++) {
+            if (futures.get(i).isDone()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 等待时被中断、但在中断抛出前名额已经发放的Future，重现中断与发放并发的时序
+     */
+    private static final class GrantedOnInterruptFuture extends CompletableFuture<AgentTaskScheduler.Permit> {
+
+        private final CompletableFuture<AgentTaskScheduler.Permit> pending;
+        private final AgentTaskScheduler.Permit held;
+
+        private GrantedOnInterruptFuture(CompletableFuture<AgentTaskScheduler.Permit> pending,
+                                         AgentTaskScheduler.Permit held) {
+            this.pending = pending;
+            this.held = held;
+        }
+
+        @Override
+        public AgentTaskScheduler.Permit get() throws InterruptedException {
+            held.release();
+            complete(pending.join());
+            throw new InterruptedException();
+        }
+    }
+}
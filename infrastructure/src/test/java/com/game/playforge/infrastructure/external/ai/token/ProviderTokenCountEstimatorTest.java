@@ -0,0 +1,34 @@
+package com.game.playforge.infrastructure.external.ai.token;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProviderTokenCountEstimatorTest {
+
+    private final Encoding encoding = Encodings.newDefaultEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+    private final ProviderTokenCountEstimator estimator = new ProviderTokenCountEstimator(encoding, 1.0);
+
+    @Test
+    void textsWithSameHashAndLengthAreCountedSeparately() {
+        // "Aa"与"BB"哈希相同，逐段替换得到的两段文本哈希与长度都相同
+        String first = "Aa".repeat(16);
+        String second = "BB".repeat(16);
+        assertThat(first.hashCode()).isEqualTo(second.hashCode());
+
+        assertThat(estimator.estimateTokenCountInText(first)).isEqualTo(encoding.countTokensOrdinary(first));
+        assertThat(estimator.estimateTokenCountInText(second)).isEqualTo(encoding.countTokensOrdinary(second));
+    }
+
+    @Test
+    void cachedCountMatchesFreshCount() {
+        String text = "记忆窗口每次读写都会重新估算整个窗口";
+        int first = estimator.estimateTokenCountInText(text);
+
+        assertThat(estimator.estimateTokenCountInText(new String(text.toCharArray()))).isEqualTo(first);
+        assertThat(first).isEqualTo(encoding.countTokensOrdinary(text));
+    }
+}
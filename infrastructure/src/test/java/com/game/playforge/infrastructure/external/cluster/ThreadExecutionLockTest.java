@@ -0,0 +1,265 @@
+package com.game.playforge.infrastructure.external.cluster;
+
+import com.game.playforge.common.constant.AgentConstants;
+import com.game.playforge.common.exception.BusinessException;
+import com.game.playforge.common.result.ResultCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class ThreadExecutionLockTest {
+
+    private static final Long THREAD_ID = 42L;
+
+    private final FakeLockRedisTemplate redisTemplate = new FakeLockRedisTemplate();
+    private ThreadExecutionLock lock;
+
+    @AfterEach
+    void tearDown() {
+        if (lock != null) {
+            lock.shutdown();
+        }
+    }
+
+    @Test
+    void acquireIssuesIncreasingFencingTokens() throws Exception {
+        lock = new ThreadExecutionLock(redisTemplate, properties(ThreadLockProperties.ContentionMode.QUEUE));
+
+        ThreadExecutionLock.Lease first = lock.acquire(THREAD_ID).get(1, TimeUnit.SECONDS);
+        assertThat(lock.fencingToken(THREAD_ID)).hasValue(first.token());
+        first.close();
+        assertThat(lock.fencingToken(THREAD_ID)).isEmpty();
+
+        ThreadExecutionLock.Lease second = lock.acquire(THREAD_ID).get(1, TimeUnit.SECONDS);
+        assertThat(second.token()).isGreaterThan(first.token());
+        second.close();
+    }
+
+    @Test
+    void failFastRejectsWhileHeld() throws Exception {
+        lock = new ThreadExecutionLock(redisTemplate, properties(ThreadLockProperties.ContentionMode.FAIL_FAST));
+        ThreadExecutionLock.Lease held = lock.acquire(THREAD_ID).get(1, TimeUnit.SECONDS);
+
+        CompletableFuture<ThreadExecutionLock.Lease> rejected = lock.acquire(THREAD_ID);
+
+        assertThatThrownBy(() -> rejected.get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .cause()
+                .isInstanceOfSatisfying(BusinessException.class,
+                        e -> assertThat(e.getResultCode()).isEqualTo(ResultCode.THREAD_BUSY));
+        held.close();
+    }
+
+    @Test
+    void queuedAcquireIsWokenByLocalRelease() throws Exception {
+        ThreadLockProperties properties = properties(ThreadLockProperties.ContentionMode.QUEUE);
+        // 重试间隔远大于等待时长：只有本地释放的唤醒能让排队请求及时取得锁
+        properties.setRetryInterval(Duration.ofSeconds(30));
+        lock = new ThreadExecutionLock(redisTemplate, properties);
+        ThreadExecutionLock.Lease held = lock.acquire(THREAD_ID).get(1, TimeUnit.SECONDS);
+        CompletableFuture<ThreadExecutionLock.Lease> queued = lock.acquire(THREAD_ID);
+        assertThat(queued).isNotDone();
+
+        held.close();
+
+        ThreadExecutionLock.Lease next = queued.get(1, TimeUnit.SECONDS);
+        assertThat(next.token()).isGreaterThan(held.token());
+        next.close();
+    }
+
+    @Test
+    void queuedAcquireTimesOut() throws Exception {
+        ThreadLockProperties properties = properties(ThreadLockProperties.ContentionMode.QUEUE);
+        properties.setWaitTimeout(Duration.ofMillis(100));
+        properties.setRetryInterval(Duration.ofMillis(20));
+        lock = new ThreadExecutionLock(redisTemplate, properties);
+        ThreadExecutionLock.Lease held = lock.acquire(THREAD_ID).get(1, TimeUnit.SECONDS);
+
+        assertThatThrownBy(() -> lock.acquireBlocking(THREAD_ID))
+                .isInstanceOfSatisfying(BusinessException.class,
+                        e -> assertThat(e.getResultCode()).isEqualTo(ResultCode.THREAD_BUSY));
+        held.close();
+    }
+
+    @Test
+    void renewalKeepsLeaseWhileHeld() throws Exception {
+        lock = new ThreadExecutionLock(redisTemplate, properties(ThreadLockProperties.ContentionMode.QUEUE));
+        ThreadExecutionLock.Lease lease = lock.acquire(THREAD_ID).get(1, TimeUnit.SECONDS);
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> redisTemplate.renewals.get() >= 3);
+
+        assertThat(lease.isLost()).isFalse();
+        lease.close();
+        assertThat(redisTemplate.owners).isEmpty();
+    }
+
+    @Test
+    void lostLeaseRunsHandlerAndDoesNotReleaseNewHolder() throws Exception {
+        lock = new ThreadExecutionLock(redisTemplate, properties(ThreadLockProperties.ContentionMode.QUEUE));
+        ThreadExecutionLock.Lease lease = lock.acquire(THREAD_ID).get(1, TimeUnit.SECONDS);
+        AtomicInteger lostCalls = new AtomicInteger();
+        lease.onLost(lostCalls::incrementAndGet);
+
+        // 租约过期后被其他节点取得
+        redisTemplate.steal(THREAD_ID, "other-node");
+
+        await().atMost(2, TimeUnit.SECONDS).until(lease::isLost);
+        assertThat(lostCalls.get()).isEqualTo(1);
+        // 失效后仍返回令牌，由记忆写入脚本比较栅栏计数拒绝写入
+        assertThat(lock.fencingToken(THREAD_ID)).hasValue(lease.token());
+
+        lease.close();
+        assertThat(redisTemplate.owners).containsValue("other-node");
+    }
+
+    @Test
+    void onLostAfterCloseDoesNotRun() throws Exception {
+        lock = new ThreadExecutionLock(redisTemplate, properties(ThreadLockProperties.ContentionMode.QUEUE));
+        ThreadExecutionLock.Lease lease = lock.acquire(THREAD_ID).get(1, TimeUnit.SECONDS);
+        redisTemplate.steal(THREAD_ID, "other-node");
+        await().atMost(2, TimeUnit.SECONDS).until(lease::isLost);
+        lease.close();
+
+        AtomicBoolean called = new AtomicBoolean();
+        lease.onLost(() -> called.set(true));
+
+        assertThat(called).isFalse();
+    }
+
+    @Test
+    void leaseGrantedWhileInterruptedIsReleased() {
+        lock = new ThreadExecutionLock(redisTemplate, properties(ThreadLockProperties.ContentionMode.QUEUE));
+        ThreadExecutionLock racingLock = new ThreadExecutionLock(redisTemplate,
+                properties(ThreadLockProperties.ContentionMode.QUEUE)) {
+            @Override
+            public CompletableFuture<Lease> acquire(Long threadId) {
+                return new GrantedOnInterruptFuture(lock.acquire(threadId));
+            }
+        };
+
+        try {
+            assertThatThrownBy(() -> racingLock.acquireBlocking(THREAD_ID))
+                    .isInstanceOfSatisfying(BusinessException.class,
+                            e -> assertThat(e.getResultCode()).isEqualTo(ResultCode.THREAD_BUSY));
+            assertThat(Thread.interrupted()).isTrue();
+
+            // 中断时已取得的锁被释放
+            assertThat(redisTemplate.owners).isEmpty();
+            assertThat(lock.fencingToken(THREAD_ID)).isEmpty();
+        } finally {
+            racingLock.shutdown();
+        }
+    }
+
+    @Test
+    void redisFailureFailsOpenWithoutToken() throws Exception {
+        redisTemplate.failing = true;
+        lock = new ThreadExecutionLock(redisTemplate, properties(ThreadLockProperties.ContentionMode.FAIL_FAST));
+
+        ThreadExecutionLock.Lease first = lock.acquire(THREAD_ID).get(1, TimeUnit.SECONDS);
+        ThreadExecutionLock.Lease second = lock.acquire(THREAD_ID).get(1, TimeUnit.SECONDS);
+
+        assertThat(first.token()).isZero();
+        assertThat(second.token()).isZero();
+        assertThat(lock.fencingToken(THREAD_ID)).isEmpty();
+    }
+
+    @Test
+    void disabledLockGrantsWithoutRedis() throws Exception {
+        ThreadLockProperties properties = properties(ThreadLockProperties.ContentionMode.FAIL_FAST);
+        properties.setEnabled(false);
+        lock = new ThreadExecutionLock(redisTemplate, properties);
+
+        assertThat(lock.acquire(THREAD_ID).get(1, TimeUnit.SECONDS).token()).isZero();
+        assertThat(lock.acquire(THREAD_ID).get(1, TimeUnit.SECONDS).token()).isZero();
+        assertThat(redisTemplate.calls.get()).isZero();
+    }
+
+    private static ThreadLockProperties properties(ThreadLockProperties.ContentionMode contention) {
+        ThreadLockProperties properties = new ThreadLockProperties();
+        properties.setContention(contention);
+        properties.setLeaseTtl(Duration.ofSeconds(30));
+        properties.setRenewInterval(Duration.ofMillis(50));
+        properties.setRetryInterval(Duration.ofMillis(20));
+        properties.setWaitTimeout(Duration.ofSeconds(5));
+        return properties;
+    }
+
+    /**
+     * 按脚本内容模拟加锁、续约、解锁的Redis模板（不模拟租约过期，由 {@link #steal} 模拟被其他节点取得）
+     */
+    private static final class FakeLockRedisTemplate extends StringRedisTemplate {
+
+        private final Map<String, String> owners = new ConcurrentHashMap<>();
+        private final Map<String, Long> fences = new ConcurrentHashMap<>();
+        private final AtomicInteger renewals = new AtomicInteger();
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile boolean failing;
+
+        void steal(Long threadId, String owner) {
+            owners.put(AgentConstants.LOCK_PREFIX + "{" + threadId + "}", owner);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            calls.incrementAndGet();
+            if (failing) {
+                throw new RedisConnectionFailureException("redis down");
+            }
+            String source = script.getScriptAsString();
+            String lockKey = keys.getFirst();
+            if (source.contains("INCR")) {
+                if (owners.containsKey(lockKey)) {
+                    return (T) Long.valueOf(0);
+                }
+                long token = fences.merge(keys.get(1), 1L, Long::sum);
+                owners.put(lockKey, (String) args[0]);
+                return (T) Long.valueOf(token);
+            }
+            boolean owned = args[0].equals(owners.get(lockKey));
+            if (source.contains("PEXPIRE")) {
+                renewals.incrementAndGet();
+                return (T) Long.valueOf(owned ? 1 : 0);
+            }
+            if (owned) {
+                owners.remove(lockKey);
+            }
+            return (T) Long.valueOf(owned ? 1 : 0);
+        }
+    }
+
+    /**
+     * 等待时被中断、但在中断抛出前锁已经取得的Future，重现中断与加锁成功并发的时序
+     */
+    private static final class GrantedOnInterruptFuture extends CompletableFuture<ThreadExecutionLock.Lease> {
+
+        private final CompletableFuture<ThreadExecutionLock.Lease> pending;
+
+        private GrantedOnInterruptFuture(CompletableFuture<ThreadExecutionLock.Lease> pending) {
+            this.pending = pending;
+        }
+
+        @Override
+        public ThreadExecutionLock.Lease get() throws InterruptedException {
+            complete(pending.join());
+            throw new InterruptedException();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.game.playforge.infrastructure.external.stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class StreamEventLogTest {
+
+    private static final long TURN = 7;
+
+    private final RecordingRedisTemplate redisTemplate = new RecordingRedisTemplate();
+    private final StreamEventLog streamEventLog = new StreamEventLog(redisTemplate, properties());
+
+    @AfterEach
+    void tearDown() {
+        streamEventLog.shutdown();
+    }
+
+    @Test
+    void recorderAssignsSequentialIdsWithinTurn() {
+        StreamEventLog.Recorder recorder = streamEventLog.open(1L);
+
+        assertThat(recorder.record("token", "a")).isEqualTo(TURN + "-1");
+        assertThat(recorder.record("token", "b")).isEqualTo(TURN + "-2");
+        assertThat(recorder.record("done", null)).isEqualTo(TURN + "-3");
+    }
+
+    @Test
+    void recorderWritesEventsInRecordOrderWithoutConcurrentBatches() {
+        StreamEventLog.Recorder recorder = streamEventLog.open(1L);
+        int count = 2000;
+        for (int i = 1; i <= count; i++) {
+            recorder.record("token", "c" + i);
+        }
+
+        await().atMost(10, TimeUnit.SECONDS).until(() -> redisTemplate.appended.size() == count * 3);
+
+        List<String> appended = new ArrayList<>(redisTemplate.appended);
+        for (int i = 0; i < count; i++) {
+            assertThat(appended.get(i * 3)).isEqualTo(TURN + "-" + (i + 1));
+            assertThat(appended.get(i * 3 + 1)).isEqualTo("token");
+            assertThat(appended.get(i * 3 + 2)).isEqualTo("c" + (i + 1));
+        }
+        assertThat(redisTemplate.maxConcurrentAppends.get()).isEqualTo(1);
+        assertThat(redisTemplate.batchSizes).allMatch(size -> size <= 16);
+    }
+
+    @Test
+    void disabledLogReturnsNullIds() {
+        StreamEventLogProperties properties = properties();
+        properties.setEnabled(false);
+        StreamEventLog disabled = new StreamEventLog(redisTemplate, properties);
+
+        assertThat(disabled.open(1L).record("token", "a")).isNull();
+        assertThat(redisTemplate.appended).isEmpty();
+        disabled.shutdown();
+    }
+
+    @Test
+    void isNextDetectsTrimmedOrMissingEvents() {
+        assertThat(StreamEventLog.isNext("7-0", "7-1")).isTrue();
+        assertThat(StreamEventLog.isNext("7-3", "7-4")).isTrue();
+        assertThat(StreamEventLog.isNext("0-0", "7-1")).isTrue();
+
+        // 轮次开头之后的事件已被裁剪
+        assertThat(StreamEventLog.isNext("7-0", "7-120")).isFalse();
+        // 游标之后的事件缺失
+        assertThat(StreamEventLog.isNext("7-3", "7-9")).isFalse();
+        // 游标所在轮次已被裁剪，读到了下一轮
+        assertThat(StreamEventLog.isNext("6-40", "7-1")).isFalse();
+    }
+
+    private static StreamEventLogProperties properties() {
+        StreamEventLogProperties properties = new StreamEventLogProperties();
+        properties.setWriteBatchSize(16);
+        return properties;
+    }
+
+    /**
+     * 记录脚本调用的Redis模板：开启轮次返回固定轮次号，追加时记录参数并统计并发写入数
+     */
+    private static final class RecordingRedisTemplate extends StringRedisTemplate {
+
+        private final List<String> appended = new CopyOnWriteArrayList<>();
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private final AtomicInteger concurrentAppends = new AtomicInteger();
+        private final AtomicInteger maxConcurrentAppends = new AtomicInteger();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            if (script.getScriptAsString().contains("XADD")) {
+                int concurrent = concurrentAppends.incrementAndGet();
+                maxConcurrentAppends.accumulateAndGet(concurrent, Math::max);
+                try {
+                    // 放慢写入，让记录方在写入期间继续入队
+                    Thread.sleep(1);
+                    batchSizes.add((args.length - 2) / 3);
+                    for (int i = 2; i < args.length; i++) {
+                        appended.add((String) args[i]);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    concurrentAppends.decrementAndGet();
+                }
+                return (T) Long.valueOf((args.length - 2) / 3);
+            }
+            return (T) Long.valueOf(TURN);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.game.playforge.infrastructure.persistence;
+
+import com.game.playforge.domain.model.AgentMessage;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
+import com.game.playforge.infrastructure.persistence.mapper.AgentMessageMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class AgentMessageBatchWriterTest {
+
+    private final AgentMessageMapper mapper = mock(AgentMessageMapper.class);
+    private final Set<Long> written = ConcurrentHashMap.newKeySet();
+
+    @Test
+    void submitAfterShutdownWritesSynchronously() {
+        recordWrites();
+        AgentMessageBatchWriter writer = newWriter();
+        writer.start();
+        writer.shutdown();
+
+        AgentMessage message = message();
+        writer.submit(message);
+
+        assertThat(written).containsExactly(message.getId());
+    }
+
+    @Test
+    void messageOfferedWhileShutdownStartsIsNotLost() throws Exception {
+        recordWrites();
+        CountDownLatch inSubmit = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        // 提交方已确认写线程在运行、尚未入队时暂停，重现入队与关闭排空并发的时序
+        AgentMessageWriterProperties properties = new AgentMessageWriterProperties() {
+            @Override
+            public Duration getOfferTimeout() {
+                inSubmit.countDown();
+                awaitQuietly(resume);
+                return super.getOfferTimeout();
+            }
+        };
+        AgentMessageBatchWriter writer = newWriter(properties);
+        writer.start();
+        AgentMessage message = message();
+        Thread producer = Thread.ofPlatform().start(() -> writer.submit(message));
+        inSubmit.await();
+
+        Thread closer = Thread.ofPlatform().start(writer::shutdown);
+        closer.join(500);
+        resume.countDown();
+        closer.join();
+        producer.join();
+
+        assertThat(written).containsExactly(message.getId());
+    }
+
+    private void recordWrites() {
+        doAnswer(invocation -> {
+            List<AgentMessage> rows = invocation.getArgument(0);
+            rows.forEach(row -> written.add(row.getId()));
+            return rows.size();
+        }).when(mapper).insertRows(anyList());
+        doAnswer(invocation -> {
+            AgentMessage row = invocation.getArgument(0);
+            written.add(row.getId());
+            return 1;
+        }).when(mapper).insert(any(AgentMessage.class));
+    }
+
+    private AgentMessageBatchWriter newWriter() {
+        return newWriter(new AgentMessageWriterProperties());
+    }
+
+    private AgentMessageBatchWriter newWriter(AgentMessageWriterProperties properties) {
+        properties.setFlushInterval(Duration.ofMillis(1));
+        return new AgentMessageBatchWriter(mapper, properties, new AgentMetrics(new SimpleMeterRegistry()));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static AgentMessage message() {
+        AgentMessage message = new AgentMessage();
+        message.setThreadId(1L);
+        message.setRole("user");
+        message.setContent("hi");
+        return message;
+    }
+}
@@ -0,0 +1,80 @@
+package com.game.playforge.bench;
+
+import com.game.playforge.application.service.agent.AgentFactory;
+import com.game.playforge.application.service.agent.AgentStreamingChatService;
+import com.game.playforge.application.service.agent.tools.SubAgentTool;
+import com.game.playforge.domain.model.AgentDefinition;
+import com.game.playforge.infrastructure.external.ai.AsyncTaskManager;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AgentFactory.createStreamingAgent 基准
+ * <p>
+ * AiService代理按Agent定义版本缓存，每条用户消息只需绑定会话和调用级工具；
+ * 此处分别测量Lead Agent（全部技能 + SubAgentTool）和普通子Agent的命中开销，
+ * 以及定义版本变化后的冷构建开销（解析提示词、收集工具、反射生成工具规格）。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AgentFactoryBenchmark {
+
+    private AnnotationConfigApplicationContext context;
+    private AgentFactory agentFactory;
+    private AsyncTaskManager taskManager;
+    private AgentDefinition leadAgent;
+    private AgentDefinition subAgent;
+    private List<Object> leadExtraTools;
+    private long version;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchAgentContext.start();
+        agentFactory = context.getBean(AgentFactory.class);
+        taskManager = new AsyncTaskManager(BenchFixtures.taskScheduler(), BenchFixtures.localRegistry(),
+                BenchFixtures.USER_ID, BenchFixtures.THREAD_ID, "mock");
+        leadAgent = BenchFixtures.leadAgent("mock");
+        leadAgent.setUpdatedAt(LocalDateTime.now());
+        subAgent = BenchFixtures.subAgent("mock");
+        leadExtraTools = List.of(new SubAgentTool(
+                BenchFixtures.USER_ID, BenchFixtures.THREAD_ID, null, taskManager, null));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        taskManager.shutdown();
+        context.close();
+    }
+
+    @Benchmark
+    public AgentStreamingChatService leadAgent() {
+        return agentFactory.createStreamingAgent(
+                leadAgent, BenchFixtures.THREAD_ID, BenchFixtures.USER_ID, leadExtraTools);
+    }
+
+    @Benchmark
+    public AgentStreamingChatService leadAgentColdBuild() {
+        AgentDefinition changed = BenchFixtures.leadAgent("mock");
+        changed.setUpdatedAt(leadAgent.getUpdatedAt().plusNanos(++version));
+        return agentFactory.createStreamingAgent(
+                changed, BenchFixtures.THREAD_ID, BenchFixtures.USER_ID, leadExtraTools);
+    }
+
+    @Benchmark
+    public AgentStreamingChatService subAgent() {
+        return agentFactory.createStreamingAgent(
+                subAgent, BenchFixtures.THREAD_ID, BenchFixtures.USER_ID, List.of());
+    }
+}
@@ -0,0 +1,64 @@
+package com.game.playforge.bench;
+
+import com.game.playforge.application.service.agent.tools.SubAgentTool;
+import com.game.playforge.infrastructure.external.ai.AsyncTaskManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SubAgentTool.awaitResults 结果格式化基准
+ * <p>
+ * 每次调用前在 {@link Level#Invocation} 阶段分发一批立即完成的任务并等待其全部落入结果队列，
+ * 使测量只覆盖结果收集与字符串拼接。单次调用在微秒级以上，Invocation级别的准备开销可以接受。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AwaitResultsBenchmark {
+
+    @Param({"1", "4", "8"})
+    public int agentCount;
+
+    @Param({"2000", "16000"})
+    public int resultLength;
+
+    private AsyncTaskManager taskManager;
+    private SubAgentTool subAgentTool;
+    private String result;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        taskManager = new AsyncTaskManager(BenchFixtures.taskScheduler(), BenchFixtures.localRegistry(),
+                BenchFixtures.USER_ID, BenchFixtures.THREAD_ID, "mock");
+        subAgentTool = new SubAgentTool(BenchFixtures.USER_ID, BenchFixtures.THREAD_ID, null, taskManager, null);
+        result = "Design document paragraph. ".repeat(Math.max(resultLength / 27, 1));
+    }
+
+    @Setup(Level.Invocation)
+    public void dispatchCompletedTasks() throws InterruptedException {
+        for (int i = 0; i < agentCount; i++) {
+            taskManager.dispatch(String.valueOf(BenchFixtures.THREAD_ID + i), "agent-" + i, () -> result);
+        }
+        while (taskManager.hasPendingTasks()) {
+            Thread.onSpinWait();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        taskManager.shutdown();
+    }
+
+    @Benchmark
+    public String awaitResults() {
+        return subAgentTool.awaitResults(1);
+    }
+}
@@ -0,0 +1,98 @@
+package com.game.playforge.bench;
+
+import com.game.playforge.application.service.agent.AgentFactory;
+import com.game.playforge.infrastructure.external.ai.AgentProfileRegistry;
+import com.game.playforge.infrastructure.external.ai.AgentTypeRegistry;
+import com.game.playforge.infrastructure.external.ai.ChatMemoryProperties;
+import com.game.playforge.infrastructure.external.ai.ModelProviderRegistry;
+import com.game.playforge.infrastructure.external.ai.RedisChatMemoryStore;
+import com.game.playforge.infrastructure.external.ai.SkillRegistry;
+import com.game.playforge.infrastructure.external.ai.StreamRetryProperties;
+import com.game.playforge.infrastructure.external.ai.SummarizingChatMemoryStore;
+import com.game.playforge.infrastructure.external.ai.SystemPromptResolver;
+import com.game.playforge.infrastructure.external.ai.ToolRegistry;
+import com.game.playforge.infrastructure.external.ai.codec.JsonChatMemoryCodec;
+import com.game.playforge.infrastructure.external.ai.codec.ZstdChatMemoryCodec;
+import com.game.playforge.infrastructure.external.ai.mock.MockChatModel;
+import com.game.playforge.infrastructure.external.ai.mock.MockModelProperties;
+import com.game.playforge.infrastructure.external.ai.mock.MockStreamingChatModel;
+import com.game.playforge.infrastructure.external.ai.ratelimit.ProviderRateLimitProperties;
+import com.game.playforge.infrastructure.external.ai.ratelimit.ProviderRateLimiter;
+import com.game.playforge.infrastructure.external.ai.token.MemoryTokenBudgetProperties;
+import com.game.playforge.infrastructure.external.ai.token.MemoryTokenBudgetRegistry;
+import com.game.playforge.infrastructure.external.ai.tools.DateTimeTool;
+import com.game.playforge.infrastructure.external.ai.tools.SkillLoaderTool;
+import com.game.playforge.infrastructure.external.cluster.ThreadExecutionLock;
+import com.game.playforge.infrastructure.external.cluster.ThreadLockProperties;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.List;
+
+/**
+ * 基准测试用的最小Spring上下文
+ * <p>
+ * 只装配构建Agent所需的注册中心、提示词解析器和模拟模型，不连接MySQL/Redis：
+ * Redis连接工厂不会被启动，构建Agent的路径也不会访问记忆存储。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@Configuration
+@ComponentScan("com.game.playforge.infrastructure.external.ai.skills")
+@Import({
+        MockModelProperties.class,
+        ProviderRateLimitProperties.class,
+        ProviderRateLimiter.class,
+        ModelProviderRegistry.class,
+        SystemPromptResolver.class,
+        AgentTypeRegistry.class,
+        SkillRegistry.class,
+        ToolRegistry.class,
+        SkillLoaderTool.class,
+        DateTimeTool.class,
+        ChatMemoryProperties.class,
+        JsonChatMemoryCodec.class,
+        ZstdChatMemoryCodec.class,
+        ThreadLockProperties.class,
+        ThreadExecutionLock.class,
+        RedisChatMemoryStore.class,
+        SummarizingChatMemoryStore.class,
+        MemoryTokenBudgetProperties.class,
+        MemoryTokenBudgetRegistry.class,
+        AgentMetrics.class,
+        StreamRetryProperties.class,
+        AgentProfileRegistry.class,
+        AgentFactory.class
+})
+public class BenchAgentContext {
+
+    /**
+     * 启动上下文
+     */
+    public static AnnotationConfigApplicationContext start() {
+        return new AnnotationConfigApplicationContext(BenchAgentContext.class);
+    }
+
+    @Bean
+    public StringRedisTemplate stringRedisTemplate() {
+        return new StringRedisTemplate(new LettuceConnectionFactory());
+    }
+
+    @Bean("playforgeMockChatModel")
+    public MockChatModel playforgeMockChatModel(MockModelProperties properties) {
+        return new MockChatModel(properties, List.of());
+    }
+
+    @Bean("playforgeMockStreamingChatModel")
+    public MockStreamingChatModel playforgeMockStreamingChatModel(MockModelProperties properties) {
+        return new MockStreamingChatModel(properties, List.of());
+    }
+}
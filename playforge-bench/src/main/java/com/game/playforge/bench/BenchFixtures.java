@@ -0,0 +1,142 @@
+package com.game.playforge.bench;
+
+import com.game.playforge.domain.model.AgentDefinition;
+import com.game.playforge.infrastructure.external.ai.scheduling.AgentTaskScheduler;
+import com.game.playforge.infrastructure.external.ai.scheduling.AgentTaskSchedulerProperties;
+import com.game.playforge.infrastructure.external.cluster.ClusterRegistryProperties;
+import com.game.playforge.infrastructure.external.cluster.ClusterTaskRegistry;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准测试公共数据
+ * <p>
+ * 构造与线上形态一致的Agent定义和记忆窗口：Lead Agent挂载全部技能和subAgentTool，
+ * 记忆窗口按"用户消息 → 工具调用 → 工具结果 → 助手回复"循环填充。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public final class BenchFixtures {
+
+    public static final long THREAD_ID = 2024214713863147522L;
+    public static final long USER_ID = 2024214713863140001L;
+
+    private static final String LEAD_SKILL_NAMES =
+            "gameDesign,systemDesign,combatDesign,balancingDesign,levelDesign,narrativeDesign,technicalDesign,executionPlanning,webSearch";
+
+    private BenchFixtures() {
+    }
+
+    /**
+     * 默认配置的任务调度器（指标写入独立的内存注册表）
+     */
+    public static AgentTaskScheduler taskScheduler() {
+        return new AgentTaskScheduler(new AgentTaskSchedulerProperties(),
+                new AgentMetrics(new SimpleMeterRegistry()));
+    }
+
+    /**
+     * 仅本节点登记的集群注册中心（不访问Redis）
+     */
+    public static ClusterTaskRegistry localRegistry() {
+        ClusterRegistryProperties properties = new ClusterRegistryProperties();
+        properties.setEnabled(false);
+        properties.setNodeId("bench");
+        return new ClusterTaskRegistry(new StringRedisTemplate(), properties);
+    }
+
+    /**
+     * Lead Agent定义（与AgentManagementServiceImpl创建的默认Agent一致）
+     */
+    public static AgentDefinition leadAgent(String provider) {
+        AgentDefinition agent = new AgentDefinition();
+        agent.setId(1L);
+        agent.setUserId(USER_ID);
+        agent.setName(provider + "-bench-lead");
+        agent.setDisplayName("Lead Designer");
+        agent.setProvider(provider);
+        agent.setModelName("playforge-mock");
+        agent.setSystemPromptRef("agents/lead-designer.txt");
+        agent.setToolNames("subAgentTool");
+        agent.setSkillNames(LEAD_SKILL_NAMES);
+        agent.setMemoryWindowSize(20);
+        agent.setTemperature(0.7);
+        agent.setMaxTokens(32768);
+        return agent;
+    }
+
+    /**
+     * 子Agent定义（内联提示词，单技能）
+     */
+    public static AgentDefinition subAgent(String provider) {
+        AgentDefinition agent = new AgentDefinition();
+        agent.setId(2L);
+        agent.setUserId(USER_ID);
+        agent.setName(provider + "-bench-system-designer");
+        agent.setDisplayName("Systems Designer");
+        agent.setProvider(provider);
+        agent.setModelName("playforge-mock");
+        agent.setSystemPrompt("You are a systems designer. ".repeat(200));
+        agent.setToolNames("dateTimeTool");
+        agent.setSkillNames("systemDesign,webSearch");
+        agent.setMemoryWindowSize(20);
+        return agent;
+    }
+
+    /**
+     * 构造指定长度的记忆窗口
+     *
+     * @param size         消息条数（含首条系统消息）
+     * @param withSignature 工具调用轮次是否携带Gemini thinking签名
+     */
+    public static List<ChatMessage> messageWindow(int size, boolean withSignature) {
+        List<ChatMessage> messages = new ArrayList<>(size);
+        messages.add(SystemMessage.from("You are the lead designer. ".repeat(80)));
+        int round = 0;
+        while (messages.size() < size) {
+            String callId = "call-" + round;
+            switch (messages.size() % 4) {
+                case 1 -> messages.add(UserMessage.from(
+                        ("Round " + round + ": refine the progression loop and economy sinks. ").repeat(6)));
+                case 2 -> {
+                    AiMessage.Builder builder = AiMessage.builder()
+                            .thinking("Need a specialist for this round. ".repeat(10))
+                            .toolExecutionRequests(List.of(ToolExecutionRequest.builder()
+                                    .id(callId)
+                                    .name("dispatchTask")
+                                    .arguments("{\"threadId\":\"" + THREAD_ID + "\",\"message\":\"Design round "
+                                            + round + "\"}")
+                                    .build()));
+                    if (withSignature) {
+                        builder.attributes(Map.of("thinking_signature", "sig-" + round));
+                    }
+                    messages.add(builder.build());
+                }
+                case 3 -> messages.add(ToolExecutionResultMessage.from(callId, "dispatchTask",
+                        ("=== Agent systemDesigner (threadId: " + THREAD_ID + ") completed ===\n"
+                                + "Core loop: gather -> craft -> upgrade -> challenge. ").repeat(12)));
+                default -> {
+                    messages.add(AiMessage.builder()
+                            .text(("## Round " + round + " summary\n- Loop tuned\n- Sinks balanced\n").repeat(20))
+                            .thinking("Summarize results for the user. ".repeat(8))
+                            .build());
+                    round++;
+                }
+            }
+        }
+        return messages;
+    }
+}
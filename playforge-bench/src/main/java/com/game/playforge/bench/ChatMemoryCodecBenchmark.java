@@ -0,0 +1,62 @@
+package com.game.playforge.bench;
+
+import com.game.playforge.infrastructure.external.ai.ChatMemoryProperties;
+import com.game.playforge.infrastructure.external.ai.codec.ChatMemoryCodec;
+import com.game.playforge.infrastructure.external.ai.codec.JsonChatMemoryCodec;
+import com.game.playforge.infrastructure.external.ai.codec.ZstdChatMemoryCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static dev.langchain4j.data.message.ChatMessageSerializer.messagesToJson;
+
+/**
+ * RedisChatMemoryStore 记忆编码器基准
+ * <p>
+ * 对同一记忆窗口的JSON比较各编码器的编解码耗时，启动时打印编码后字节数，
+ * 用于评估Redis内存占用与每轮网络传输量。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChatMemoryCodecBenchmark {
+
+    @Param({"json", "zstd"})
+    public String codecName;
+
+    @Param({"40", "200"})
+    public int windowSize;
+
+    private ChatMemoryCodec codec;
+    private String json;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ChatMemoryProperties properties = new ChatMemoryProperties();
+        codec = ZstdChatMemoryCodec.NAME.equals(codecName)
+                ? new ZstdChatMemoryCodec(properties)
+                : new JsonChatMemoryCodec();
+        json = messagesToJson(BenchFixtures.messageWindow(windowSize, true));
+        encoded = codec.encode(json);
+        System.out.printf("%n[%s] window=%d jsonBytes=%d encodedBytes=%d%n",
+                codecName, windowSize, new JsonChatMemoryCodec().encode(json).length, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(json);
+    }
+
+    @Benchmark
+    public String decode() {
+        return codec.decode(encoded);
+    }
+}
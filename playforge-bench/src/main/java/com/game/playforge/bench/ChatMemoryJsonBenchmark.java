@@ -0,0 +1,58 @@
+package com.game.playforge.bench;
+
+import dev.langchain4j.data.message.ChatMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static dev.langchain4j.data.message.ChatMessageDeserializer.messagesFromJson;
+import static dev.langchain4j.data.message.ChatMessageSerializer.messageToJson;
+import static dev.langchain4j.data.message.ChatMessageSerializer.messagesToJson;
+
+/**
+ * RedisChatMemoryStore 记忆窗口JSON编解码基准
+ * <p>
+ * 与 RedisChatMemoryStore 使用相同的序列化方式，每轮对话（含每次工具调用）
+ * 都会完整读写一次窗口，窗口大小覆盖默认40条到摘要前的200条。
+ * {@code appendOne} 对应LIST存储模式下一次更新只编码新增的一条消息。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChatMemoryJsonBenchmark {
+
+    @Param({"40", "100", "200"})
+    public int windowSize;
+
+    private List<ChatMessage> messages;
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        messages = BenchFixtures.messageWindow(windowSize, true);
+        json = messagesToJson(messages);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return messagesToJson(messages);
+    }
+
+    @Benchmark
+    public List<ChatMessage> deserialize() {
+        return messagesFromJson(json);
+    }
+
+    @Benchmark
+    public String appendOne() {
+        return messageToJson(messages.getLast());
+    }
+}
@@ -0,0 +1,70 @@
+package com.game.playforge.bench;
+
+import com.game.playforge.application.service.agent.AgentScopedChatModel;
+import com.game.playforge.infrastructure.metrics.AgentMetrics;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AgentScopedChatModel.sanitizeGeminiToolMessages 基准
+ * <p>
+ * 通过 doChat 驱动私有的清洗逻辑，下游是直接返回的桩模型。
+ * signed=true 对应所有工具调用都带签名（无需改写）的常见路径，
+ * signed=false 对应需要剔除工具调用并重建请求的路径。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeminiSanitizeBenchmark {
+
+    @Param({"40", "200"})
+    public int windowSize;
+
+    @Param({"true", "false"})
+    public boolean signed;
+
+    private AgentScopedChatModel model;
+    private ChatRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ChatResponse response = ChatResponse.builder().aiMessage(AiMessage.from("ok")).build();
+        ChatModel gemini = new ChatModel() {
+            @Override
+            public ChatResponse doChat(ChatRequest chatRequest) {
+                return response;
+            }
+
+            @Override
+            public ModelProvider provider() {
+                return ModelProvider.GOOGLE_AI_GEMINI;
+            }
+        };
+        model = new AgentScopedChatModel(gemini, ChatRequestParameters.builder().build(),
+                Map.of("threadId", BenchFixtures.THREAD_ID), new AgentMetrics(new SimpleMeterRegistry()));
+        request = ChatRequest.builder()
+                .messages(BenchFixtures.messageWindow(windowSize, signed))
+                .build();
+    }
+
+    @Benchmark
+    public ChatResponse sanitize() {
+        return model.doChat(request);
+    }
+}
@@ -0,0 +1,56 @@
+package com.game.playforge.bench;
+
+import com.game.playforge.domain.model.AgentDefinition;
+import com.game.playforge.infrastructure.external.ai.AgentTypeRegistry;
+import com.game.playforge.infrastructure.external.ai.SystemPromptResolver;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SystemPromptResolver.resolve 基准
+ * <p>
+ * 文件引用的提示词在首次加载后命中缓存，测量的是每条消息都要付出的拼接开销
+ * （基础提示词 + 技能目录 + Agent类型目录）。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SystemPromptResolverBenchmark {
+
+    private SystemPromptResolver resolver;
+    private AgentDefinition leadAgent;
+    private AgentDefinition subAgent;
+    private String additionalContext;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DefaultResourceLoader resourceLoader = new DefaultResourceLoader();
+        resolver = new SystemPromptResolver(resourceLoader);
+        AgentTypeRegistry typeRegistry = new AgentTypeRegistry(resourceLoader);
+        typeRegistry.init();
+        additionalContext = "## 可用技能\n" + "- **skill**: description of the skill\n".repeat(9)
+                + "\n\n" + typeRegistry.getTypeCatalog();
+        leadAgent = BenchFixtures.leadAgent("mock");
+        subAgent = BenchFixtures.subAgent("mock");
+        resolver.resolve(leadAgent, additionalContext);
+    }
+
+    @Benchmark
+    public String fileRefWithContext() {
+        return resolver.resolve(leadAgent, additionalContext);
+    }
+
+    @Benchmark
+    public String inlineWithoutContext() {
+        return resolver.resolve(subAgent, "");
+    }
+}
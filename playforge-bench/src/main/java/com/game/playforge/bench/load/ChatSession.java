@@ -0,0 +1,174 @@
+package com.game.playforge.bench.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 单个压测会话
+ * <p>
+ * 通过 {@code bearer} 子协议携带JWT建立WebSocket连接（与 AgentChatWebSocketHandler.extractToken 一致），
+ * 依次发送消息并等待 done/error 事件，记录TTFT、完成耗时和输出速率。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public class ChatSession implements WebSocket.Listener {
+
+    private final LoadTestOptions options;
+    private final LoadReport report;
+    private final ObjectMapper objectMapper;
+    private final StringBuilder frame = new StringBuilder();
+
+    private volatile Turn turn;
+
+    private long sessionTokens;
+    private long sessionStreamingNanos;
+
+    /**
+     * 单条消息的计时状态
+     */
+    private static final class Turn {
+        final long sentAt = System.nanoTime();
+        final CompletableFuture<Boolean> finished = new CompletableFuture<>();
+        long firstTokenAt;
+        long lastTokenAt;
+        long tokens;
+    }
+
+    public ChatSession(LoadTestOptions options, LoadReport report, ObjectMapper objectMapper) {
+        this.options = options;
+        this.report = report;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 连接并按配置发送全部消息，阻塞直到会话结束
+     */
+    public void run(HttpClient httpClient, String accessToken, long threadId) {
+        WebSocket webSocket;
+        try {
+            webSocket = httpClient.newWebSocketBuilder()
+                    .subprotocols("bearer", accessToken)
+                    .buildAsync(URI.create(options.webSocketUrl(threadId)), this)
+                    .get(30, TimeUnit.SECONDS);
+            report.connectedSessions.incrementAndGet();
+        } catch (Exception e) {
+            report.connectFailures.incrementAndGet();
+            System.err.println("WebSocket连接失败, threadId=" + threadId + ": " + e.getMessage());
+            return;
+        }
+
+        try {
+            for (int i = 0; i < options.messagesPerSession(); i++) {
+                if (i > 0) {
+                    Thread.sleep(options.thinkTime().toMillis());
+                }
+                Turn current = new Turn();
+                turn = current;
+                String payload = objectMapper.writeValueAsString(
+                        Map.of("type", "message", "content", options.message()));
+                webSocket.sendText(payload, true).join();
+                try {
+                    if (current.finished.get(options.messageTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                        recordTurn(current);
+                    } else {
+                        report.errorMessages.incrementAndGet();
+                    }
+                } catch (TimeoutException e) {
+                    report.timedOutMessages.incrementAndGet();
+                    webSocket.sendText("{\"type\":\"cancel\"}", true).join();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("会话异常, threadId=" + threadId + ": " + e.getMessage());
+        } finally {
+            if (sessionStreamingNanos > 0 && sessionTokens > 1) {
+                report.sessionTokensPerSecond.record(sessionTokens / (sessionStreamingNanos / 1_000_000_000.0));
+            }
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "load test finished");
+        }
+    }
+
+    private void recordTurn(Turn current) {
+        long now = System.nanoTime();
+        report.completedMessages.incrementAndGet();
+        report.completionTime.record((now - current.sentAt) / 1_000_000.0);
+        if (current.tokens > 0) {
+            report.timeToFirstToken.record((current.firstTokenAt - current.sentAt) / 1_000_000.0);
+            report.tokenEvents.addAndGet(current.tokens);
+            sessionTokens += current.tokens - 1;
+            sessionStreamingNanos += current.lastTokenAt - current.firstTokenAt;
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        frame.append(data);
+        if (last) {
+            String text = frame.toString();
+            frame.setLength(0);
+            handleEvent(text);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    private void handleEvent(String text) {
+        Turn current = turn;
+        if (current == null) {
+            return;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(text);
+            switch (node.path("type").asText()) {
+                case "token" -> {
+                    long now = System.nanoTime();
+                    if (current.tokens == 0) {
+                        current.firstTokenAt = now;
+                    }
+                    current.lastTokenAt = now;
+                    current.tokens++;
+                }
+                case "done" -> current.finished.complete(true);
+                case "error" -> {
+                    System.err.println("服务端错误: " + node.path("content").asText());
+                    current.finished.complete(false);
+                }
+                default -> {
+                    // thinking/progress 等事件不计入token速率
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("解析事件失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        Turn current = turn;
+        if (current != null) {
+            current.finished.complete(false);
+        }
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        Turn current = turn;
+        if (current != null) {
+            current.finished.complete(false);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.game.playforge.bench.load;
+
+import java.util.Arrays;
+
+/**
+ * 简单的采样分位数统计
+ * <p>
+ * 压测样本量在十万级以内，直接保存全部样本并在汇总时排序，避免引入额外依赖。
+ * 线程安全：所有写入通过同步方法完成。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public class LatencyHistogram {
+
+    private double[] samples = new double[1024];
+    private int size;
+
+    /**
+     * 记录一个样本
+     */
+    public synchronized void record(double value) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = value;
+    }
+
+    /**
+     * 样本数量
+     */
+    public synchronized int count() {
+        return size;
+    }
+
+    /**
+     * 计算分位数
+     *
+     * @param percentile 0~100
+     * @return 分位数值，无样本时返回NaN
+     */
+    public synchronized double percentile(double percentile) {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        double[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        return sorted[Math.max(0, Math.min(index, size - 1))];
+    }
+
+    /**
+     * 平均值
+     */
+    public synchronized double mean() {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += samples[i];
+        }
+        return sum / size;
+    }
+}
@@ -0,0 +1,78 @@
+package com.game.playforge.bench.load;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 压测结果汇总
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public class LoadReport {
+
+    /**
+     * 发送消息到收到首个token事件的耗时（毫秒）
+     */
+    final LatencyHistogram timeToFirstToken = new LatencyHistogram();
+
+    /**
+     * 发送消息到收到done事件的耗时（毫秒）
+     */
+    final LatencyHistogram completionTime = new LatencyHistogram();
+
+    /**
+     * 每个会话的平均输出速率（token事件数/秒，只统计首token到末token之间）
+     */
+    final LatencyHistogram sessionTokensPerSecond = new LatencyHistogram();
+
+    final AtomicLong connectedSessions = new AtomicLong();
+    final AtomicLong connectFailures = new AtomicLong();
+    final AtomicLong completedMessages = new AtomicLong();
+    final AtomicLong errorMessages = new AtomicLong();
+    final AtomicLong timedOutMessages = new AtomicLong();
+    final AtomicLong tokenEvents = new AtomicLong();
+
+    /**
+     * 输出文本报告
+     */
+    public String format(LoadTestOptions options, ServerCounters.Snapshot before, ServerCounters.Snapshot after) {
+        double wallSeconds = (after.nanoTime() - before.nanoTime()) / 1_000_000_000.0;
+        long messages = completedMessages.get();
+        StringBuilder sb = new StringBuilder();
+        sb.append("\n===== PlayForge WebSocket 压测报告 =====\n");
+        sb.append(String.format("会话: %d 目标 / %d 已连接 / %d 连接失败%n",
+                options.sessions(), connectedSessions.get(), connectFailures.get()));
+        sb.append(String.format("消息: %d 完成 / %d 错误 / %d 超时, 耗时 %.1fs, 吞吐 %.2f msg/s%n",
+                messages, errorMessages.get(), timedOutMessages.get(), wallSeconds,
+                wallSeconds > 0 ? messages / wallSeconds : 0));
+        sb.append(String.format("聚合输出: %.1f tokens/s%n",
+                wallSeconds > 0 ? tokenEvents.get() / wallSeconds : 0));
+        appendPercentiles(sb, "TTFT (ms)", timeToFirstToken);
+        appendPercentiles(sb, "完成耗时 (ms)", completionTime);
+        appendPercentiles(sb, "会话速率 (tokens/s)", sessionTokensPerSecond);
+
+        Double cpu = ServerCounters.cpuPercent(before, after);
+        sb.append(cpu != null
+                ? String.format("服务端CPU: %.1f%% (单核=100%%)%n", cpu)
+                : "服务端CPU: 未采集 (--server-pid)\n");
+        sb.append(perMessage("MySQL语句/消息", before.mysqlStatements(), after.mysqlStatements(), messages,
+                "--mysql-url"));
+        sb.append(perMessage("Redis命令/消息", before.redisCommands(), after.redisCommands(), messages,
+                "--redis-uri"));
+        return sb.toString();
+    }
+
+    private void appendPercentiles(StringBuilder sb, String name, LatencyHistogram histogram) {
+        sb.append(String.format("%-20s n=%-7d mean=%-9.1f p50=%-9.1f p95=%-9.1f p99=%-9.1f%n",
+                name, histogram.count(), histogram.mean(),
+                histogram.percentile(50), histogram.percentile(95), histogram.percentile(99)));
+    }
+
+    private String perMessage(String name, Long before, Long after, long messages, String option) {
+        if (before == null || after == null) {
+            return name + ": 未采集 (" + option + ")\n";
+        }
+        long delta = after - before;
+        return String.format("%s: %.2f (总计 %d)%n", name, messages > 0 ? (double) delta / messages : 0, delta);
+    }
+}
@@ -0,0 +1,109 @@
+package com.game.playforge.bench.load;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * WebSocket压测参数
+ * <p>
+ * 通过 {@code --key=value} 形式的命令行参数传入，未指定的参数使用默认值。
+ * MySQL/Redis/服务端PID为可选项，未提供时对应指标不输出。
+ * </p>
+ *
+ * @param baseUrl             服务端地址（http/https）
+ * @param phone               管理员账号手机号（WebSocket聊天仅对管理员开放）
+ * @param password            管理员账号密码
+ * @param sessions            并发会话数，每个会话独占一个Agent+Thread
+ * @param messagesPerSession  每个会话发送的消息条数
+ * @param rampUp              全部会话建立完成所用时间
+ * @param thinkTime           同一会话两条消息之间的间隔
+ * @param messageTimeout      单条消息等待 done 的超时时间
+ * @param message             发送的消息内容
+ * @param modelName           创建mock Agent时使用的模型名称
+ * @param setupConcurrency    准备阶段并发创建Agent的数量
+ * @param cleanup             结束后是否删除压测创建的Agent
+ * @param serverPid           服务端进程PID（同机部署时通过/proc采集CPU）
+ * @param mysqlUrl            MySQL JDBC地址（采集Com_*语句计数）
+ * @param mysqlUser           MySQL用户名
+ * @param mysqlPassword       MySQL密码
+ * @param redisUri            Redis地址，如 redis://:password@localhost:6379（采集命令计数）
+ * @param flushMillis         token分片合并窗口（连接参数flushMs），默认0即逐个下发；
+ *                            token速率按token帧计数，大于0时一帧可能合并多个分片，速率不再代表模型增量数
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public record LoadTestOptions(
+        String baseUrl,
+        String phone,
+        String password,
+        int sessions,
+        int messagesPerSession,
+        Duration rampUp,
+        Duration thinkTime,
+        Duration messageTimeout,
+        String message,
+        String modelName,
+        int setupConcurrency,
+        boolean cleanup,
+        Long serverPid,
+        String mysqlUrl,
+        String mysqlUser,
+        String mysqlPassword,
+        String redisUri,
+        long flushMillis
+) {
+
+    /**
+     * 解析命令行参数
+     */
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("参数格式应为 --key=value: " + arg);
+            }
+            int index = arg.indexOf('=');
+            values.put(arg.substring(2, index), arg.substring(index + 1));
+        }
+        String phone = values.get("phone");
+        String password = values.get("password");
+        if (phone == null || password == null) {
+            throw new IllegalArgumentException("必须提供管理员账号: --phone=... --password=...");
+        }
+        String serverPid = values.get("server-pid");
+        return new LoadTestOptions(
+                stripTrailingSlash(values.getOrDefault("base-url", "http://localhost:8080")),
+                phone,
+                password,
+                Integer.parseInt(values.getOrDefault("sessions", "100")),
+                Integer.parseInt(values.getOrDefault("messages", "5")),
+                Duration.ofSeconds(Long.parseLong(values.getOrDefault("ramp-up-seconds", "30"))),
+                Duration.ofMillis(Long.parseLong(values.getOrDefault("think-time-ms", "1000"))),
+                Duration.ofSeconds(Long.parseLong(values.getOrDefault("message-timeout-seconds", "300"))),
+                values.getOrDefault("message", "Design a core gameplay loop for a roguelike deck builder."),
+                values.getOrDefault("model", "playforge-mock"),
+                Integer.parseInt(values.getOrDefault("setup-concurrency", "16")),
+                Boolean.parseBoolean(values.getOrDefault("cleanup", "true")),
+                serverPid != null ? Long.parseLong(serverPid) : null,
+                values.get("mysql-url"),
+                values.getOrDefault("mysql-user", "root"),
+                values.getOrDefault("mysql-password", ""),
+                values.get("redis-uri"),
+                Long.parseLong(values.getOrDefault("flush-ms", "0")));
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    /**
+     * WebSocket地址（显式指定合并窗口，不受服务端默认配置影响）
+     */
+    public String webSocketUrl(long threadId) {
+        String wsBase = baseUrl.startsWith("https://")
+                ? "wss://" + baseUrl.substring("https://".length())
+                : "ws://" + baseUrl.substring(baseUrl.indexOf("://") + 3);
+        return wsBase + "/ws/agent-chat?threadId=" + threadId + "&flushMs=" + flushMillis;
+    }
+}
@@ -0,0 +1,134 @@
+package com.game.playforge.bench.load;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * 服务端计数器采集
+ * <p>
+ * 压测前后各采集一次快照，按差值计算CPU占用、每条消息的SQL语句数和Redis命令数：
+ * <ul>
+ *   <li>CPU：读取 {@code /proc/<pid>/stat} 的 utime+stime，要求与服务端同机运行</li>
+ *   <li>MySQL：{@code SHOW GLOBAL STATUS} 中 Com_select/insert/update/delete 之和</li>
+ *   <li>Redis：{@code INFO stats} 中的 total_commands_processed</li>
+ * </ul>
+ * 计数器均为实例级全局值，压测应在独占的MySQL/Redis上运行。
+ * </p>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public class ServerCounters implements AutoCloseable {
+
+    /**
+     * Linux下 /proc 时间单位（USER_HZ），绝大多数发行版为100
+     */
+    private static final double CLOCK_TICKS_PER_SECOND = 100.0;
+
+    private final LoadTestOptions options;
+    private final RedisClient redisClient;
+    private final StatefulRedisConnection<String, String> redisConnection;
+
+    public record Snapshot(long nanoTime, Long cpuTicks, Long mysqlStatements, Long redisCommands) {}
+
+    public ServerCounters(LoadTestOptions options) {
+        this.options = options;
+        if (options.redisUri() != null) {
+            this.redisClient = RedisClient.create(options.redisUri());
+            this.redisConnection = redisClient.connect();
+        } else {
+            this.redisClient = null;
+            this.redisConnection = null;
+        }
+    }
+
+    /**
+     * 采集当前快照，不可用的计数器为null
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(System.nanoTime(), readCpuTicks(), readMysqlStatements(), readRedisCommands());
+    }
+
+    /**
+     * 两次快照之间的平均CPU占用（单核=100%）
+     */
+    public static Double cpuPercent(Snapshot before, Snapshot after) {
+        if (before.cpuTicks() == null || after.cpuTicks() == null) {
+            return null;
+        }
+        double cpuSeconds = (after.cpuTicks() - before.cpuTicks()) / CLOCK_TICKS_PER_SECOND;
+        double wallSeconds = (after.nanoTime() - before.nanoTime()) / 1_000_000_000.0;
+        return wallSeconds > 0 ? cpuSeconds / wallSeconds * 100.0 : null;
+    }
+
+    private Long readCpuTicks() {
+        if (options.serverPid() == null) {
+            return null;
+        }
+        try {
+            String stat = Files.readString(Path.of("/proc", String.valueOf(options.serverPid()), "stat"));
+            // 进程名可能包含空格，从最后一个')'之后开始按空格切分：字段3起，utime/stime为第14/15字段
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("读取服务端CPU失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Long readMysqlStatements() {
+        if (options.mysqlUrl() == null) {
+            return null;
+        }
+        String sql = "SHOW GLOBAL STATUS WHERE Variable_name IN "
+                + "('Com_select', 'Com_insert', 'Com_update', 'Com_delete')";
+        try (Connection connection = DriverManager.getConnection(
+                options.mysqlUrl(), options.mysqlUser(), options.mysqlPassword());
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            long total = 0;
+            while (rs.next()) {
+                total += rs.getLong(2);
+            }
+            return total;
+        } catch (Exception e) {
+            System.err.println("读取MySQL语句计数失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Long readRedisCommands() {
+        if (redisConnection == null) {
+            return null;
+        }
+        try {
+            for (String line : redisConnection.sync().info("stats").split("\r?\n")) {
+                if (line.startsWith("total_commands_processed:")) {
+                    return Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+                }
+            }
+            return null;
+        } catch (Exception e) {
+            System.err.println("读取Redis命令计数失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (redisConnection != null) {
+            redisConnection.close();
+        }
+        if (redisClient != null) {
+            redisClient.shutdown();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.game.playforge.bench.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * /ws/agent-chat 端到端压测入口
+ * <p>
+ * 流程：管理员登录 → 为每个会话创建 provider=mock 的Agent+Thread → 按ramp-up逐步建立WebSocket会话
+ * 并发送消息 → 汇总TTFT、输出速率、服务端CPU、每消息SQL语句数和Redis命令数 → 清理压测Agent。
+ * 服务端需以 {@code MOCK_LLM_ENABLED=true} 启动，所有模型调用都落在本地模拟供应商上。
+ * </p>
+ * <pre>
+ * java -cp playforge-bench/target/benchmarks.jar com.game.playforge.bench.load.WsLoadGenerator \
+ *     --phone=13800000000 --password=secret --sessions=2000 --messages=3 \
+ *     --server-pid=$(pgrep -f playforge-start) \
+ *     --mysql-url=jdbc:mysql://localhost:3306/play-forge --mysql-user=root --mysql-password=... \
+ *     --redis-uri=redis://localhost:6379
+ * </pre>
+ *
+ * @author Richard Zhang
+ * @since 1.0
+ */
+public class WsLoadGenerator {
+
+    private final LoadTestOptions options;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient;
+
+    private record SessionTarget(long agentId, long threadId) {}
+
+    public WsLoadGenerator(LoadTestOptions options) {
+        this.options = options;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        new WsLoadGenerator(options).run();
+    }
+
+    /**
+     * 执行完整压测流程并输出报告
+     */
+    public void run() throws Exception {
+        String accessToken = login();
+        System.out.printf("登录成功, 准备 %d 个mock会话...%n", options.sessions());
+        List<SessionTarget> targets = prepareTargets(accessToken);
+        System.out.printf("准备完成, 共 %d 个会话, 开始压测 (ramp-up %ds)%n",
+                targets.size(), options.rampUp().toSeconds());
+
+        LoadReport report = new LoadReport();
+        try (ServerCounters counters = new ServerCounters(options)) {
+            ServerCounters.Snapshot before = counters.snapshot();
+            runSessions(accessToken, targets, report);
+            ServerCounters.Snapshot after = counters.snapshot();
+            System.out.println(report.format(options, before, after));
+        } finally {
+            if (options.cleanup()) {
+                cleanup(accessToken, targets);
+            }
+        }
+    }
+
+    private String login() throws IOException, InterruptedException {
+        JsonNode data = call("POST", "/api/auth/login", null,
+                Map.of("phone", options.phone(), "password", options.password()));
+        return data.path("accessToken").asText();
+    }
+
+    private List<SessionTarget> prepareTargets(String accessToken) throws Exception {
+        Semaphore permits = new Semaphore(options.setupConcurrency());
+        List<Future<SessionTarget>> futures = new ArrayList<>(options.sessions());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < options.sessions(); i++) {
+                int index = i;
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        JsonNode data = call("POST", "/api/agents/with-thread", accessToken, Map.of(
+                                "provider", "mock",
+                                "modelName", options.modelName(),
+                                "displayName", "load-test-" + index));
+                        return new SessionTarget(
+                                data.path("agent").path("id").asLong(),
+                                data.path("thread").path("id").asLong());
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        }
+        List<SessionTarget> targets = new ArrayList<>(futures.size());
+        for (Future<SessionTarget> future : futures) {
+            targets.add(future.get());
+        }
+        return targets;
+    }
+
+    private void runSessions(String accessToken, List<SessionTarget> targets, LoadReport report) {
+        long staggerNanos = targets.isEmpty() ? 0 : options.rampUp().toNanos() / targets.size();
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < targets.size(); i++) {
+                SessionTarget target = targets.get(i);
+                long startAt = start + staggerNanos * i;
+                executor.submit(() -> {
+                    long delay = startAt - System.nanoTime();
+                    if (delay > 0) {
+                        Thread.sleep(Duration.ofNanos(delay));
+                    }
+                    new ChatSession(options, report, objectMapper).run(httpClient, accessToken, target.threadId());
+                    return null;
+                });
+            }
+        }
+    }
+
+    private void cleanup(String accessToken, List<SessionTarget> targets) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Semaphore permits = new Semaphore(options.setupConcurrency());
+            for (SessionTarget target : targets) {
+                executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        call("DELETE", "/api/agents/" + target.agentId(), accessToken, null);
+                    } catch (Exception e) {
+                        System.err.println("清理压测Agent失败, agentId=" + target.agentId() + ": " + e.getMessage());
+                    } finally {
+                        permits.release();
+                    }
+                    return null;
+                });
+            }
+        }
+        System.out.printf("已清理 %d 个压测Agent%n", targets.size());
+    }
+
+    private JsonNode call(String method, String path, String accessToken, Object body)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(options.baseUrl() + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json");
+        if (accessToken != null) {
+            builder.header("Authorization", "Bearer " + accessToken);
+        }
+        builder.method(method, body != null
+                ? HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body))
+                : HttpRequest.BodyPublishers.noBody());
+
+        HttpResponse<String> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+        JsonNode result = objectMapper.readTree(response.body());
+        if (response.statusCode() >= 400 || result.path("code").asInt(-1) != 0) {
+            throw new IllegalStateException(method + " " + path + " 失败: HTTP " + response.statusCode()
+                    + " " + response.body());
+        }
+        return result.path("data");
+    }
+}
@@ -0,0 +1,36 @@
+package com.game.playforge.config;
+
+import com.game.playforge.infrastructure.external.ai.mock.MockChatModel;
+import com.game.playforge.infrastructure.external.ai.mock.MockModelProperties;
+import com.game.playforge.infrastructure.external.ai.mock.MockStreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 模拟LLM供应商配置
+ * <p>
+ * 仅当 {@code playforge.mock-llm.enabled=true} 时注册，供本地压测和基准测试使用，
+ * 不发起任何外部请求。创建Agent时指定 provider 为 {@code mock} 即可使用。
+ * </p>
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "playforge.mock-llm", name = "enabled", havingValue = "true")
+public class MockModelConfig {
+
+    @Bean("playforgeMockChatModel")
+    public MockChatModel playforgeMockChatModel(
+            MockModelProperties properties,
+            ObjectProvider<ChatModelListener> listenerProvider) {
+        return new MockChatModel(properties, listenerProvider.orderedStream().toList());
+    }
+
+    @Bean("playforgeMockStreamingChatModel")
+    public MockStreamingChatModel playforgeMockStreamingChatModel(
+            MockModelProperties properties,
+            ObjectProvider<ChatModelListener> listenerProvider) {
+        return new MockStreamingChatModel(properties, listenerProvider.orderedStream().toList());
+    }
+}
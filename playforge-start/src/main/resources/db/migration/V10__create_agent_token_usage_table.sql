@@ -0,0 +1,22 @@
+-- Per LLM call token usage, attributed to thread / user / agent / model.
+-- Rows are written in batches by AgentTokenUsageRepositoryImpl; t_agent_thread.total_tokens_used
+-- and t_agent_message.token_count are maintained alongside for quick per-thread views.
+
+CREATE TABLE IF NOT EXISTS t_agent_token_usage (
+    id             BIGINT       NOT NULL COMMENT '记录ID',
+    thread_id      BIGINT       DEFAULT NULL COMMENT '会话ID',
+    user_id        BIGINT       DEFAULT NULL COMMENT '用户ID',
+    agent_id       BIGINT       DEFAULT NULL COMMENT 'Agent定义ID',
+    agent_name     VARCHAR(100) DEFAULT NULL COMMENT 'Agent名称',
+    provider       VARCHAR(20)  DEFAULT NULL COMMENT '模型供应商',
+    model_name     VARCHAR(100) DEFAULT NULL COMMENT '模型名称',
+    input_tokens   INT          NOT NULL DEFAULT 0 COMMENT '输入Token数',
+    output_tokens  INT          NOT NULL DEFAULT 0 COMMENT '输出Token数',
+    cached_tokens  INT          NOT NULL DEFAULT 0 COMMENT '命中缓存的输入Token数',
+    total_tokens   INT          NOT NULL DEFAULT 0 COMMENT '总Token数',
+    created_at     DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    PRIMARY KEY (id),
+    KEY idx_usage_thread (thread_id, created_at),
+    KEY idx_usage_user_created (user_id, created_at),
+    KEY idx_usage_agent_created (agent_id, created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='Agent Token用量表';
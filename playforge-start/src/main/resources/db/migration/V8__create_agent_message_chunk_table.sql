@@ -0,0 +1,13 @@
+-- Append-only chunks for streaming assistant messages.
+-- Partial output is appended here while streaming and compacted into t_agent_message.content on completion,
+-- so that a long answer is not rewritten as a whole MEDIUMTEXT on every flush.
+
+CREATE TABLE IF NOT EXISTS t_agent_message_chunk (
+    id          BIGINT     NOT NULL COMMENT '分片ID',
+    message_id  BIGINT     NOT NULL COMMENT '消息ID',
+    seq         INT        NOT NULL COMMENT '分片序号',
+    content     TEXT       NOT NULL COMMENT '分片内容',
+    created_at  DATETIME   NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    PRIMARY KEY (id),
+    KEY idx_message_seq (message_id, seq)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='Agent流式消息分片表';
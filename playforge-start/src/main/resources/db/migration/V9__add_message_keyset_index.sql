@@ -0,0 +1,35 @@
+-- Keyset pagination for /api/agent-threads/{id}/messages.
+-- (thread_id, created_at, id) matches the ORDER BY created_at, id of the cursor queries,
+-- so both directions become an index range scan; it supersedes idx_thread_time.
+
+DELIMITER //
+
+CREATE PROCEDURE __v9_add_message_keyset_index()
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM information_schema.statistics
+        WHERE table_schema = DATABASE()
+          AND table_name = 't_agent_message'
+          AND index_name = 'idx_thread_created_id'
+    ) THEN
+        ALTER TABLE t_agent_message
+            ADD INDEX idx_thread_created_id (thread_id, created_at, id);
+    END IF;
+
+    IF EXISTS (
+        SELECT 1
+        FROM information_schema.statistics
+        WHERE table_schema = DATABASE()
+          AND table_name = 't_agent_message'
+          AND index_name = 'idx_thread_time'
+    ) THEN
+        ALTER TABLE t_agent_message
+            DROP INDEX idx_thread_time;
+    END IF;
+END //
+
+DELIMITER ;
+
+CALL __v9_add_message_keyset_index();
+DROP PROCEDURE IF EXISTS __v9_add_message_keyset_index;